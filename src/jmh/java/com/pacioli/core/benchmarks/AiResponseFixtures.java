@@ -0,0 +1,156 @@
+package com.pacioli.core.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Raw AI service responses shaped like the ones the batch receives: the extracted entries are a JSON
+ * document inside {@code outputText}, usually wrapped in a markdown code fence.
+ */
+final class AiResponseFixtures {
+
+    private AiResponseFixtures() {
+    }
+
+    /**
+     * An invoice: supplier credit, two expense lines and the VAT line, all on the invoice date.
+     */
+    static JsonNode invoiceResponse(ObjectMapper objectMapper) {
+        ArrayNode ecritures = objectMapper.createArrayNode();
+        ecritures.add(invoiceEntry(objectMapper, "441100", "Fournisseurs - Atlas Informatique", "0.00", "14520,00"));
+        ecritures.add(invoiceEntry(objectMapper, "611300", "Maintenance logiciels", "8100,00", "0.00"));
+        ecritures.add(invoiceEntry(objectMapper, "612500", "Hébergement serveurs", "4000,00", "0.00"));
+        ecritures.add(invoiceEntry(objectMapper, "345520", "TVA récupérable sur charges", "2420,00", "0.00"));
+
+        ObjectNode output = objectMapper.createObjectNode();
+        output.set("Ecritures", ecritures);
+        return wrap(objectMapper, output);
+    }
+
+    /**
+     * A generated invoice: the supplier credit, {@code expenseLines} expense lines and the VAT line, with amounts
+     * derived from {@code seed} so that distinct seeds never look like the same invoice.
+     */
+    static JsonNode invoiceResponse(ObjectMapper objectMapper, String invoiceNumber, int expenseLines, long seed) {
+        long totalHtCents = 0;
+        ArrayNode expenses = objectMapper.createArrayNode();
+        for (int i = 0; i < expenseLines; i++) {
+            long cents = 10_000 + Math.floorMod(seed * 7_919 + i * 104_729L, 5_000_000L);
+            totalHtCents += cents;
+            expenses.add(invoiceEntry(objectMapper, "6113" + String.format("%02d", i % 100), "Prestations " + (i + 1),
+                    invoiceNumber, amount(cents), "0.00", 0, 0));
+        }
+        long vatCents = totalHtCents / 5;
+        long totalTtcCents = totalHtCents + vatCents;
+
+        ArrayNode ecritures = objectMapper.createArrayNode();
+        ecritures.add(invoiceEntry(objectMapper, "441100", "Fournisseurs", invoiceNumber,
+                "0.00", amount(totalTtcCents), totalHtCents, totalTtcCents));
+        for (JsonNode expense : expenses) {
+            ObjectNode entry = (ObjectNode) expense;
+            entry.put("TotalHT", amount(totalHtCents));
+            entry.put("TotalTTC", amount(totalTtcCents));
+            ecritures.add(entry);
+        }
+        ecritures.add(invoiceEntry(objectMapper, "345520", "TVA récupérable sur charges", invoiceNumber,
+                amount(vatCents), "0.00", totalHtCents, totalTtcCents));
+
+        ObjectNode output = objectMapper.createObjectNode();
+        output.set("Ecritures", ecritures);
+        return wrap(objectMapper, output);
+    }
+
+    /**
+     * A bank statement of {@code transactions} transaction groups, each the bank line and its counterpart.
+     */
+    static JsonNode bankResponse(ObjectMapper objectMapper, int transactions) {
+        return bankResponse(objectMapper, transactions, 0);
+    }
+
+    /**
+     * Same statement shape, with references and amounts shifted by {@code seed}.
+     */
+    static JsonNode bankResponse(ObjectMapper objectMapper, int transactions, long seed) {
+        ArrayNode groups = objectMapper.createArrayNode();
+        for (int i = 0; i < transactions; i++) {
+            long n = i + seed * transactions;
+            String date = String.format("%02d/03/2024", 1 + i % 28);
+            String amount = String.format("%d.%02d", 150 + (n * 37) % 9000, n % 100);
+            boolean incoming = i % 3 == 0;
+            String label = incoming ? "VIR RECU CLIENT REF " + (20240000 + n) : "PRLV SEPA FOURNISSEUR " + (i % 40);
+
+            ArrayNode entries = objectMapper.createArrayNode();
+            entries.add(bankEntry(objectMapper, date, "514100", "Banque BMCE", label,
+                    incoming ? amount : "0", incoming ? "0" : amount));
+            entries.add(bankEntry(objectMapper, date, incoming ? "342100" : "441100",
+                    incoming ? "Clients" : "Fournisseurs", label,
+                    incoming ? "0" : amount, incoming ? amount : "0"));
+
+            ObjectNode group = objectMapper.createObjectNode();
+            group.set("entries", entries);
+            groups.add(group);
+        }
+
+        ObjectNode output = objectMapper.createObjectNode();
+        output.set("Ecritures", groups);
+        return wrap(objectMapper, output);
+    }
+
+    private static ObjectNode invoiceEntry(ObjectMapper objectMapper, String account, String accountLabel,
+                                           String debit, String credit) {
+        ObjectNode entry = objectMapper.createObjectNode();
+        entry.put("Date", "14/03/2024");
+        entry.put("JournalCode", "ACH");
+        entry.put("JournalLib", "Achats");
+        entry.put("CompteNum", account);
+        entry.put("CompteLib", accountLabel);
+        entry.put("EcritLib", "Facture FA-2024-0342 Atlas Informatique");
+        entry.put("FactureNum", "FA-2024-0342");
+        entry.put("DebitAmt", debit);
+        entry.put("CreditAmt", credit);
+        entry.put("Devise", "EUR");
+        entry.put("TVARate", "20");
+        entry.put("TotalHT", "12100,00");
+        entry.put("TotalTTC", "14520,00");
+        return entry;
+    }
+
+    private static ObjectNode invoiceEntry(ObjectMapper objectMapper, String account, String accountLabel,
+                                           String invoiceNumber, String debit, String credit,
+                                           long totalHtCents, long totalTtcCents) {
+        ObjectNode entry = invoiceEntry(objectMapper, account, accountLabel, debit, credit);
+        entry.put("EcritLib", "Facture " + invoiceNumber);
+        entry.put("FactureNum", invoiceNumber);
+        entry.put("TotalHT", amount(totalHtCents));
+        entry.put("TotalTTC", amount(totalTtcCents));
+        return entry;
+    }
+
+    // Comma decimals, as most responses have them
+    private static String amount(long cents) {
+        return String.format("%d,%02d", cents / 100, cents % 100);
+    }
+
+    private static ObjectNode bankEntry(ObjectMapper objectMapper, String date, String account, String accountLabel,
+                                        String label, String debit, String credit) {
+        ObjectNode entry = objectMapper.createObjectNode();
+        entry.put("Date", date);
+        entry.put("JournalCode", "BQ1");
+        entry.put("JournalLib", "Banque");
+        entry.put("CompteNum", account);
+        entry.put("CompteLib", accountLabel);
+        entry.put("EcritLib", label);
+        entry.put("DebitAmt", debit);
+        entry.put("CreditAmt", credit);
+        entry.put("Devise", "EUR");
+        return entry;
+    }
+
+    private static JsonNode wrap(ObjectMapper objectMapper, JsonNode output) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("outputText", "```json\n" + output.toPrettyString() + "\n```");
+        return response;
+    }
+}
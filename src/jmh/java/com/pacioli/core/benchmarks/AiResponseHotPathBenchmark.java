@@ -0,0 +1,192 @@
+package com.pacioli.core.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pacioli.core.DTO.EcrituresDTO2;
+import com.pacioli.core.DTO.PieceDTO;
+import com.pacioli.core.batches.DTO.BaseDTOBuilder;
+import com.pacioli.core.batches.DTO.DTOBuilder;
+import com.pacioli.core.batches.processors.EcritureBuilder;
+import com.pacioli.core.batches.processors.FactureDataBuilder;
+import com.pacioli.core.batches.processors.NormalAIProcessor;
+import com.pacioli.core.batches.processors.PieceValidator;
+import com.pacioli.core.batches.processors.converters.CurrencyConversionService;
+import com.pacioli.core.batches.processors.normalizers.AIResponseNormalizer;
+import com.pacioli.core.models.Dossier;
+import com.pacioli.core.models.Piece;
+import com.pacioli.core.utils.NormalizeCurrencyCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU-bound steps between the AI response and the PieceDTO handed to persistence, on an invoice and on
+ * a bank statement of {@code transactions} transaction groups. The components are wired by hand (no
+ * Spring context), and the application loggers are raised to WARN so the console does not dominate.
+ * <p>
+ * Reports throughput; the allocation rate per operation comes with {@code -prof gc} (the default jmh.args):
+ * {@code mvn -Pbenchmarks test-compile exec:exec -Djmh.args="AiResponseHotPath -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AiResponseHotPathBenchmark {
+
+    @Param({"invoice", "bank"})
+    public String shape;
+
+    // Transaction groups of the bank statement
+    @Param({"150"})
+    public int transactions;
+
+    // Date formats seen in AI responses, the later ones only matching after earlier formatters failed
+    private static final String[] DATES = {"14/03/2024", "2024-03-14", "14-03-2024", "2024-3-14", "2024-14-03"};
+
+    private AIResponseNormalizer normalizer;
+    private PieceValidator pieceValidator;
+    private EcritureBuilder ecritureBuilder;
+    private DTOBuilder dtoBuilder;
+    private CurrencyConversionService currencyConversionService;
+    private DateParsingProcessor dateParsingProcessor;
+
+    private boolean bank;
+    private Piece piece;
+    private JsonNode rawResponse;
+    private JsonNode normalizedResponse;
+    private JsonNode convertedEcritures;
+
+    /**
+     * Exposes {@code BaseAIProcessor.parseDate} to the benchmark.
+     */
+    static final class DateParsingProcessor extends NormalAIProcessor {
+        LocalDate parse(String dateStr) {
+            return parseDate(dateStr);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.pacioli")).setLevel(Level.WARN);
+
+        // Same defaults as the Spring Boot auto-configured mapper
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        NormalizeCurrencyCode normalizeCurrencyCode = new NormalizeCurrencyCode();
+
+        normalizer = new AIResponseNormalizer();
+        ReflectionTestUtils.setField(normalizer, "objectMapper", objectMapper);
+        pieceValidator = new PieceValidator();
+        ReflectionTestUtils.setField(pieceValidator, "objectMapper", objectMapper);
+        currencyConversionService = new CurrencyConversionService();
+        ReflectionTestUtils.setField(currencyConversionService, "objectMapper", objectMapper);
+
+        ecritureBuilder = builder(new EcritureBuilder(), objectMapper, normalizeCurrencyCode);
+        dtoBuilder = new DTOBuilder();
+        ReflectionTestUtils.setField(dtoBuilder, "factureDataBuilder",
+                builder(new FactureDataBuilder(), objectMapper, normalizeCurrencyCode));
+        ReflectionTestUtils.setField(dtoBuilder, "ecritureBuilder", ecritureBuilder);
+        ReflectionTestUtils.setField(dtoBuilder, "baseDTOBuilder",
+                builder(new BaseDTOBuilder(), objectMapper, normalizeCurrencyCode));
+        ReflectionTestUtils.setField(dtoBuilder, "currencyConversionService", currencyConversionService);
+        dateParsingProcessor = new DateParsingProcessor();
+
+        bank = "bank".equals(shape);
+        piece = buildPiece(bank);
+        rawResponse = bank
+                ? AiResponseFixtures.bankResponse(objectMapper, transactions)
+                : AiResponseFixtures.invoiceResponse(objectMapper);
+        normalizedResponse = normalizer.normalizeAIResponse(rawResponse, bank);
+        convertedEcritures = currencyConversionService.convertEcrituresCurrency(normalizedResponse.get("ecritures"), piece);
+
+        boolean valid = bank ? pieceValidator.isValidBankAIResponse(normalizedResponse)
+                : pieceValidator.isValidAIResponse(normalizedResponse);
+        if (!valid) {
+            throw new IllegalStateException("The " + shape + " fixture does not pass validation");
+        }
+    }
+
+    @Benchmark
+    public JsonNode normalizeAIResponse() {
+        return normalizer.normalizeAIResponse(rawResponse, bank);
+    }
+
+    @Benchmark
+    public boolean validateAIResponse() {
+        return bank ? pieceValidator.isValidBankAIResponse(normalizedResponse)
+                : pieceValidator.isValidAIResponse(normalizedResponse);
+    }
+
+    @Benchmark
+    public JsonNode convertEcrituresCurrency() {
+        return currencyConversionService.convertEcrituresCurrency(normalizedResponse.get("ecritures"), piece);
+    }
+
+    @Benchmark
+    public List<EcrituresDTO2> buildEcritures() {
+        return ecritureBuilder.buildEcritures(convertedEcritures);
+    }
+
+    @Benchmark
+    public PieceDTO buildPieceDTO() throws Exception {
+        return dtoBuilder.buildPieceDTO(piece, normalizedResponse);
+    }
+
+    // One operation parses every sample date
+    @Benchmark
+    public void parseDate(Blackhole bh) {
+        for (String date : DATES) {
+            bh.consume(dateParsingProcessor.parse(date));
+        }
+    }
+
+    private static <T extends BaseDTOBuilder> T builder(T builder, ObjectMapper objectMapper,
+                                                        NormalizeCurrencyCode normalizeCurrencyCode) {
+        ReflectionTestUtils.setField(builder, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(builder, "normalizeCurrencyCode", normalizeCurrencyCode);
+        return builder;
+    }
+
+    private static Piece buildPiece(boolean bank) {
+        Dossier dossier = new Dossier();
+        dossier.setId(1L);
+        dossier.setName("Atlas Services SARL");
+
+        Piece piece = new Piece();
+        piece.setId(1L);
+        piece.setFilename(bank ? "releve-mars-2024.pdf" : "facture-fa-2024-0342.pdf");
+        piece.setType(bank ? "Relevés bancaires" : "Achats");
+        piece.setUploadDate(new Date());
+        piece.setDossier(dossier);
+        piece.setIsDuplicate(false);
+        piece.setIsForced(false);
+        // EUR document in a MAD dossier: every line goes through the conversion
+        piece.setAiCurrency("EUR");
+        piece.setConvertedCurrency("MAD");
+        piece.setExchangeRate(10.85);
+        piece.setExchangeRateDate(LocalDate.of(2024, 3, 14));
+        return piece;
+    }
+}
@@ -0,0 +1,147 @@
+package com.pacioli.core.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pacioli.core.DTO.AccountDTO;
+import com.pacioli.core.DTO.EcrituresDTO2;
+import com.pacioli.core.DTO.FactureDataDTO;
+import com.pacioli.core.DTO.JournalDTO;
+import com.pacioli.core.DTO.LineDTO;
+import com.pacioli.core.DTO.PieceDTO;
+import com.pacioli.core.models.Ecriture;
+import com.pacioli.core.models.FactureData;
+import com.pacioli.core.services.serviceImp.mappers.PieceDTOMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-piece cost of handing the AI result over to persistence.
+ * {@code jsonRoundTrip} replays what the batch path used to do (serialize the PieceDTO, then re-parse the
+ * string for the FactureData, the debug dump and the Ecritures); {@code typedResult} is the direct
+ * DTO to entity mapping used now. Run with {@code -prof gc} to see the allocation per piece.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AiResultPersistenceBenchmark {
+
+    // invoice: one ecriture with a few lines; bank: one ecriture per transaction
+    @Param({"invoice", "bank"})
+    public String shape;
+
+    private ObjectMapper objectMapper;
+    private PieceDTOMapper pieceDTOMapper;
+    private PieceDTO pieceDTO;
+
+    @Setup
+    public void setUp() {
+        // Same defaults as the Spring Boot auto-configured mapper
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        pieceDTOMapper = new PieceDTOMapper();
+        pieceDTO = "bank".equals(shape) ? buildPiece(150, 2) : buildPiece(1, 4);
+    }
+
+    @Benchmark
+    public void jsonRoundTrip(Blackhole bh) throws Exception {
+        String pieceData = objectMapper.writeValueAsString(pieceDTO);
+
+        JsonNode factureRoot = objectMapper.readTree(pieceData);
+        bh.consume(objectMapper.treeToValue(factureRoot.get("factureData"), FactureData.class));
+
+        bh.consume(objectMapper.readTree(pieceData));
+
+        JsonNode ecrituresRoot = objectMapper.readTree(pieceData);
+        for (JsonNode ecritureNode : ecrituresRoot.get("ecritures")) {
+            bh.consume(objectMapper.treeToValue(ecritureNode, Ecriture.class));
+        }
+    }
+
+    @Benchmark
+    public void typedResult(Blackhole bh) {
+        bh.consume(pieceDTOMapper.toFactureData(pieceDTO.getFactureData()));
+        bh.consume(pieceDTOMapper.toEcritures(pieceDTO.getEcritures()));
+    }
+
+    private static PieceDTO buildPiece(int ecritureCount, int linesPerEcriture) {
+        PieceDTO piece = new PieceDTO();
+        piece.setId(1L);
+        piece.setFilename("piece.pdf");
+        piece.setUploadDate(new Date());
+        piece.setDossierId(1L);
+
+        FactureDataDTO factureData = new FactureDataDTO();
+        factureData.setInvoiceNumber("FA-2024-0042");
+        factureData.setInvoiceDate(new Date());
+        factureData.setTotalTTC(1200.0);
+        factureData.setTotalHT(1000.0);
+        factureData.setTotalTVA(200.0);
+        factureData.setTaxRate(20.0);
+        factureData.setDevise("EUR");
+        factureData.setExchangeRate(10.85);
+        factureData.setOriginalCurrency("EUR");
+        factureData.setConvertedCurrency("MAD");
+        factureData.setExchangeRateDate(LocalDate.of(2024, 3, 14));
+        piece.setFactureData(factureData);
+
+        List<EcrituresDTO2> ecritures = new ArrayList<>(ecritureCount);
+        for (int i = 0; i < ecritureCount; i++) {
+            EcrituresDTO2 ecriture = new EcrituresDTO2();
+            ecriture.setUniqueEntryNumber(UUID.randomUUID().toString());
+            ecriture.setEntryDate("14/03/2024");
+            JournalDTO journal = new JournalDTO();
+            journal.setName("ACH");
+            journal.setType("Achats");
+            ecriture.setJournal(journal);
+
+            List<LineDTO> lines = new ArrayList<>(linesPerEcriture);
+            for (int j = 0; j < linesPerEcriture; j++) {
+                LineDTO line = new LineDTO();
+                line.setLabel("Prestation de services " + i + "-" + j);
+                double amount = 100.0 + i + j;
+                line.setDebit(j == 0 ? 0.0 : amount);
+                line.setCredit(j == 0 ? amount : 0.0);
+                line.setOriginalDebit(line.getDebit() / 10.85);
+                line.setOriginalCredit(line.getCredit() / 10.85);
+                line.setConvertedDebit(line.getDebit());
+                line.setConvertedCredit(line.getCredit());
+                line.setOriginalCurrency("EUR");
+                line.setConvertedCurrency("MAD");
+                line.setExchangeRate(10.85);
+                line.setExchangeRateDate(LocalDate.of(2024, 3, 14));
+                AccountDTO account = new AccountDTO();
+                account.setAccount(j == 0 ? "441100" : "611000");
+                account.setLabel(j == 0 ? "Fournisseurs" : "Achats de services");
+                line.setAccount(account);
+                lines.add(line);
+            }
+            ecriture.setLines(lines);
+            ecritures.add(ecriture);
+        }
+        piece.setEcritures(ecritures);
+        return piece;
+    }
+}
@@ -0,0 +1,195 @@
+package com.pacioli.core.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.pacioli.core.utils.AiValueParsers;
+import com.pacioli.core.utils.NormalizeCurrencyCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AiValueParsers} and the alias table of {@link NormalizeCurrencyCode} against the implementations they
+ * replaced (kept here as {@code legacy*}), on the values of a generated bank statement. One operation parses
+ * every sample; compare the {@code legacy*}/{@code parse*} pairs, with their allocation rate from {@code -prof gc}:
+ * {@code mvn -Pbenchmarks test-compile exec:exec -Djmh.args="AiValueParsers -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AiValueParsersBenchmark {
+
+    private static final List<DateTimeFormatter> LEGACY_DATE_FORMATTERS = List.of(
+            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"),
+            DateTimeFormatter.ofPattern("yyyy-MM-d"),
+            DateTimeFormatter.ofPattern("yyyy-M-dd"),
+            DateTimeFormatter.ofPattern("yyyy-M-d"),
+            DateTimeFormatter.ofPattern("yyyy-dd-MM")
+    );
+
+    // Every format the AI returns, the later ones only matching after earlier formatters failed
+    private static final String[] DATE_SHAPES = {"14/03/2024", "2024-03-14", "14-03-2024", "2024-3-14", "2024-14-03"};
+    private static final String[] CURRENCIES = {"EUR", "MAD", "eur", " USD ", "€", "DH", "Dirhams", "CHF"};
+
+    private NormalizeCurrencyCode normalizeCurrencyCode;
+    private String[] dates;
+    private JsonNode[] entries;
+
+    @Setup
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.pacioli")).setLevel(Level.WARN);
+        normalizeCurrencyCode = new NormalizeCurrencyCode();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        ArrayNode groups = (ArrayNode) readEcritures(objectMapper,
+                AiResponseFixtures.bankResponse(objectMapper, 150)).get("Ecritures");
+        entries = new JsonNode[groups.size() * 2];
+        dates = new String[entries.length];
+        for (int i = 0; i < groups.size(); i++) {
+            for (int j = 0; j < 2; j++) {
+                int index = i * 2 + j;
+                entries[index] = groups.get(i).get("entries").get(j);
+                dates[index] = i % 2 == 0 ? entries[index].get("Date").asText() : DATE_SHAPES[i % DATE_SHAPES.length];
+            }
+        }
+    }
+
+    private static JsonNode readEcritures(ObjectMapper objectMapper, JsonNode response) {
+        String text = response.get("outputText").asText();
+        try {
+            return objectMapper.readTree(text.substring(text.indexOf('{'), text.lastIndexOf('}') + 1));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public void legacyDates(Blackhole bh) {
+        for (String date : dates) {
+            bh.consume(legacyParseDate(date));
+        }
+    }
+
+    @Benchmark
+    public void parseDates(Blackhole bh) {
+        for (String date : dates) {
+            bh.consume(AiValueParsers.parseDate(date));
+        }
+    }
+
+    @Benchmark
+    public double legacyAmounts() {
+        double total = 0;
+        for (JsonNode entry : entries) {
+            total += legacyParseDouble(entry, "DebitAmt") - legacyParseDouble(entry, "CreditAmt");
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double parseAmounts() {
+        double total = 0;
+        for (JsonNode entry : entries) {
+            total += AiValueParsers.parseAmount(entry, "DebitAmt") - AiValueParsers.parseAmount(entry, "CreditAmt");
+        }
+        return total;
+    }
+
+    @Benchmark
+    public void legacyCurrencies(Blackhole bh) {
+        for (String currency : CURRENCIES) {
+            bh.consume(legacyNormalizeCurrency(currency));
+        }
+    }
+
+    @Benchmark
+    public void normalizeCurrencies(Blackhole bh) {
+        for (String currency : CURRENCIES) {
+            bh.consume(normalizeCurrencyCode.normalizeCurrencyCode(currency));
+        }
+    }
+
+    // Former BaseAIProcessor.parseDate, without the logging
+    private static LocalDate legacyParseDate(String dateStr) {
+        for (DateTimeFormatter formatter : LEGACY_DATE_FORMATTERS) {
+            try {
+                return LocalDate.parse(dateStr.trim(), formatter);
+            } catch (DateTimeParseException ignored) {
+                // Continue to next formatter
+            }
+        }
+        return LocalDate.now();
+    }
+
+    // Former BaseAIProcessor.parseDoubleSafely
+    private static double legacyParseDouble(JsonNode node, String fieldName) {
+        if (node == null || !node.has(fieldName) || node.get(fieldName).isNull()) {
+            return 0.0;
+        }
+        try {
+            String value = node.get(fieldName).asText();
+            if (value == null || value.trim().isEmpty()) {
+                return 0.0;
+            }
+            return Double.parseDouble(value.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    // Former NormalizeCurrencyCode: the symbol switch after trim().toUpperCase(), then the regex check
+    private static String legacyNormalizeCurrency(String input) {
+        String normalized = input.trim().toUpperCase(Locale.ROOT);
+        switch (normalized) {
+            case "$", "USD$", "US$", "DOLLAR", "DOLLARS", "US DOLLAR", "US DOLLARS", "UNITED STATES DOLLAR":
+                return "USD";
+            case "€", "EUR€", "EU€", "EURO", "EUROS":
+                return "EUR";
+            case "£", "GBP£", "UK£", "POUND", "POUNDS", "BRITISH POUND":
+                return "GBP";
+            case "¥", "JPY¥", "JP¥", "YEN":
+                return "JPY";
+            case "DH", "MAD", "DIRHAM", "DIRHAMS", "MOROCCAN DIRHAM":
+                return "MAD";
+            case "DA", "DZD", "DINAR", "DINARS", "ALGERIAN DINAR":
+                return "DZD";
+            case "CFA", "XOF", "FRANC", "FRANCS", "CFA FRANC":
+                return "XOF";
+            default:
+                if (normalized.length() == 3 && normalized.matches("[A-Z]{3}")) {
+                    return normalized;
+                }
+                if (normalized.contains("USD") || normalized.contains("DOLLAR")) {
+                    return "USD";
+                } else if (normalized.contains("EUR") || normalized.contains("EURO")) {
+                    return "EUR";
+                } else if (normalized.contains("MAD") || normalized.contains("DIRHAM")) {
+                    return "MAD";
+                }
+                return "USD";
+        }
+    }
+}
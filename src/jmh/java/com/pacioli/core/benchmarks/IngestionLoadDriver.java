@@ -0,0 +1,288 @@
+package com.pacioli.core.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end ingestion load: uploads pieces through PieceController (POST /api/pieces) as the web client
+ * does, then polls the dossier until every piece reaches PROCESSED, DUPLICATE or REJECTED. Reports the
+ * upload latency, the time from upload to PROCESSED (p50/p90/p99/max) and pieces per second.
+ * <p>
+ * Meant to run against an application wired to {@link StubAiServer}, on a dossier kept for load tests:
+ * every piece is a distinct generated PDF. Completion times are only as precise as poll-ms.
+ * <p>
+ * Options ({@code --name=value}): base-url (http://localhost:8080), email, password, dossier-id,
+ * country (MA), type (piece type, as configured for the dossier), pieces (100), concurrency (8),
+ * file-kb (64), poll-ms (500), timeout-s (900).
+ * {@code mvn -Pbenchmarks test-compile exec:exec -Dbenchmarks.main=com.pacioli.core.benchmarks.IngestionLoadDriver
+ * -Djmh.args="--email=... --password=... --dossier-id=42 --type=Achats --pieces=500"}
+ */
+public class IngestionLoadDriver {
+
+    private static final List<String> FINAL_STATUSES = List.of("PROCESSED", "DUPLICATE", "REJECTED");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    private final String baseUrl;
+    private final long dossierId;
+    private final String country;
+    private final String type;
+    private final int pieces;
+    private final int concurrency;
+    private final int fileKb;
+    private final long pollMs;
+    private final long timeoutMs;
+    private String token;
+
+    // Piece id -> upload start (nanos), removed once the piece reaches a final status
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+    private final List<Long> uploadMillis = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> processedMillis = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, AtomicInteger> outcomes = new ConcurrentHashMap<>();
+
+    IngestionLoadDriver(Map<String, String> options) {
+        this.baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        this.dossierId = Long.parseLong(required(options, "dossier-id"));
+        this.country = options.getOrDefault("country", "MA");
+        this.type = required(options, "type");
+        this.pieces = Integer.parseInt(options.getOrDefault("pieces", "100"));
+        this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+        this.fileKb = Integer.parseInt(options.getOrDefault("file-kb", "64"));
+        this.pollMs = Long.parseLong(options.getOrDefault("poll-ms", "500"));
+        this.timeoutMs = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("timeout-s", "900")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = StubAiServer.parseOptions(args);
+        IngestionLoadDriver driver = new IngestionLoadDriver(options);
+        driver.login(required(options, "email"), required(options, "password"));
+        driver.run();
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing option --" + name + "=...");
+        }
+        return value;
+    }
+
+    void login(String email, String password) throws IOException, InterruptedException {
+        String body = objectMapper.writeValueAsString(Map.of("email", email, "password", password));
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/auth/login"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed with status " + response.statusCode() + ": " + response.body());
+        }
+        token = response.body().trim();
+    }
+
+    void run() throws Exception {
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        System.out.printf("Run %s: %d pieces of %d KB, %d concurrent uploads, dossier %d%n",
+                runId, pieces, fileKb, concurrency, dossierId);
+
+        long start = System.nanoTime();
+        ExecutorService uploaders = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < pieces; i++) {
+            int index = i;
+            uploaders.submit(() -> upload(runId, index));
+        }
+        uploaders.shutdown();
+
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long lastCompletion = start;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(pollMs);
+            long completedAt = pollDossier();
+            if (completedAt > 0) {
+                lastCompletion = completedAt;
+            }
+            if (uploaders.isTerminated() && pending.isEmpty()) {
+                break;
+            }
+        }
+        uploaders.awaitTermination(1, TimeUnit.MINUTES);
+
+        report(start, lastCompletion);
+    }
+
+    private void upload(String runId, int index) {
+        String filename = "load-" + runId + "-" + index + ".pdf";
+        String boundary = "----pacioli-load-" + UUID.randomUUID();
+        long uploadStart = System.nanoTime();
+        try {
+            byte[] body = multipartBody(boundary, filename, runId + "-" + index);
+            URI uri = URI.create(baseUrl + "/api/pieces?dossier_id=" + dossierId
+                    + "&country=" + URLEncoder.encode(country, StandardCharsets.UTF_8));
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri)
+                            .header("Authorization", "Bearer " + token)
+                            .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            uploadMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - uploadStart));
+
+            if (response.statusCode() != 200) {
+                outcome("UPLOAD_FAILED");
+                System.err.printf("Upload %d failed with status %d: %s%n", index, response.statusCode(), response.body());
+                return;
+            }
+            pending.put(objectMapper.readTree(response.body()).get("id").asLong(), uploadStart);
+        } catch (Exception e) {
+            outcome("UPLOAD_FAILED");
+            System.err.printf("Upload %d failed: %s%n", index, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the time (nanos) at which this poll saw pieces complete, 0 if none did
+     */
+    private long pollDossier() throws IOException, InterruptedException {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/api/pieces/dossier/" + dossierId))
+                        .header("Authorization", "Bearer " + token)
+                        .GET()
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        long now = System.nanoTime();
+        if (response.statusCode() != 200) {
+            System.err.printf("Polling dossier %d failed with status %d%n", dossierId, response.statusCode());
+            return 0;
+        }
+
+        boolean completed = false;
+        for (JsonNode piece : objectMapper.readTree(response.body())) {
+            long id = piece.path("id").asLong();
+            String status = piece.path("status").asText();
+            if (!FINAL_STATUSES.contains(status)) {
+                continue;
+            }
+            Long uploadStart = pending.remove(id);
+            if (uploadStart != null) {
+                completed = true;
+                outcome(status);
+                if ("PROCESSED".equals(status)) {
+                    processedMillis.add(TimeUnit.NANOSECONDS.toMillis(now - uploadStart));
+                }
+            }
+        }
+        return completed ? now : 0;
+    }
+
+    private void outcome(String status) {
+        outcomes.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void report(long start, long lastCompletion) {
+        double seconds = Math.max(1, lastCompletion - start) / 1e9;
+        int processed = outcomes.getOrDefault("PROCESSED", new AtomicInteger()).get();
+
+        System.out.println();
+        System.out.printf("Outcomes: %s, still pending: %d%n", outcomes, pending.size());
+        System.out.printf("Upload (ms):          %s%n", percentiles(uploadMillis));
+        System.out.printf("Upload->PROCESSED (ms): %s%n", percentiles(processedMillis));
+        System.out.printf("Throughput: %.2f pieces/s processed (%d in %.1f s)%n", processed / seconds, processed, seconds);
+    }
+
+    static String percentiles(List<Long> samples) {
+        List<Long> sorted;
+        synchronized (samples) {
+            sorted = new ArrayList<>(samples);
+        }
+        if (sorted.isEmpty()) {
+            return "no samples";
+        }
+        Collections.sort(sorted);
+        return String.format("p50=%d p90=%d p99=%d max=%d (n=%d)",
+                rank(sorted, 0.50), rank(sorted, 0.90), rank(sorted, 0.99), sorted.get(sorted.size() - 1), sorted.size());
+    }
+
+    // Nearest-rank percentile
+    private static long rank(List<Long> sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+
+    private byte[] multipartBody(String boundary, String filename, String marker) throws IOException {
+        String pieceJson = objectMapper.writeValueAsString(Map.of("type", type, "originalFileName", filename));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(fileKb * 1024 + 1024);
+        writeAscii(out, "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"piece\"\r\n"
+                + "Content-Type: application/json\r\n\r\n");
+        out.write(pieceJson.getBytes(StandardCharsets.UTF_8));
+        writeAscii(out, "\r\n--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n");
+        out.write(pdf(marker, fileKb));
+        writeAscii(out, "\r\n--" + boundary + "--\r\n");
+        return out.toByteArray();
+    }
+
+    /**
+     * A one-page PDF showing {@code marker}, padded with a comment stream up to about {@code sizeKb}.
+     */
+    static byte[] pdf(String marker, int sizeKb) {
+        String text = "BT /F1 14 Tf 72 720 Td (Facture " + marker + ") Tj ET\n";
+        StringBuilder content = new StringBuilder(text);
+        String filler = "% " + marker + " ".repeat(60) + "\n";
+        while (content.length() < sizeKb * 1024L) {
+            content.append(filler);
+        }
+
+        String[] objects = {
+                "<< /Type /Catalog /Pages 2 0 R >>",
+                "<< /Type /Pages /Kids [3 0 R] /Count 1 >>",
+                "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] /Contents 4 0 R"
+                        + " /Resources << /Font << /F1 5 0 R >> >> >>",
+                "<< /Length " + content.length() + " >>\nstream\n" + content + "endstream",
+                "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>"
+        };
+
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        long[] offsets = new long[objects.length];
+        for (int i = 0; i < objects.length; i++) {
+            offsets[i] = pdf.length();
+            pdf.append(i + 1).append(" 0 obj\n").append(objects[i]).append("\nendobj\n");
+        }
+        long xref = pdf.length();
+        pdf.append("xref\n0 ").append(objects.length + 1).append("\n0000000000 65535 f \n");
+        for (long offset : offsets) {
+            pdf.append(String.format("%010d 00000 n \n", offset));
+        }
+        pdf.append("trailer\n<< /Size ").append(objects.length + 1).append(" /Root 1 0 R >>\nstartxref\n")
+                .append(xref).append("\n%%EOF\n");
+        return pdf.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void writeAscii(ByteArrayOutputStream out, String s) {
+        out.writeBytes(s.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,197 @@
+package com.pacioli.core.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the invoice, bank and company AI APIs, so ingestion can be load tested without the
+ * API Gateway endpoints. Point the application at it:
+ * <pre>
+ * ai.service.url=http://localhost:8089/invoice/
+ * ai.service.base-url=http://localhost:8089/company
+ * bank.api.url=http://localhost:8089/bank
+ * </pre>
+ * Uploads (PUT) are accepted and discarded; results (GET {id}.json) are generated with
+ * {@link AiResponseFixtures}, seeded by the file id so every piece gets a distinct invoice or statement.
+ * <p>
+ * Options ({@code --name=value}): port (8089), upload-latency-ms (150), latency-ms (2000) and
+ * latency-jitter-ms (500) for result calls, error-rate (0.0, answered with 503), invoice-lines (3),
+ * bank-transactions (150).
+ * {@code mvn -Pbenchmarks test-compile exec:exec -Dbenchmarks.main=com.pacioli.core.benchmarks.StubAiServer -Djmh.args="--latency-ms=3000"}
+ */
+public class StubAiServer {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long uploadLatencyMs;
+    private final long latencyMs;
+    private final long latencyJitterMs;
+    private final double errorRate;
+    private final int invoiceLines;
+    private final int bankTransactions;
+
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong results = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    StubAiServer(Map<String, String> options) {
+        this.uploadLatencyMs = Long.parseLong(options.getOrDefault("upload-latency-ms", "150"));
+        this.latencyMs = Long.parseLong(options.getOrDefault("latency-ms", "2000"));
+        this.latencyJitterMs = Long.parseLong(options.getOrDefault("latency-jitter-ms", "500"));
+        this.errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0.0"));
+        this.invoiceLines = Integer.parseInt(options.getOrDefault("invoice-lines", "3"));
+        this.bankTransactions = Integer.parseInt(options.getOrDefault("bank-transactions", "150"));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        int port = Integer.parseInt(options.getOrDefault("port", "8089"));
+        StubAiServer stub = new StubAiServer(options);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 512);
+        server.createContext("/invoice/", stub.resultHandler(false));
+        server.createContext("/bank/", stub.resultHandler(true));
+        server.createContext("/company", stub::handleCompany);
+        // Latency is simulated by sleeping: one thread per in-flight call, like the real gateway
+        ExecutorService executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(0);
+            executor.shutdownNow();
+            System.out.println(stub.summary());
+        }));
+        System.out.printf("Stub AI server listening on port %d (latency %d +- %d ms, error rate %.2f)%n",
+                port, stub.latencyMs, stub.latencyJitterMs, stub.errorRate);
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int eq = arg.indexOf('=');
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    private HttpHandler resultHandler(boolean bank) {
+        return exchange -> {
+            try {
+                drain(exchange.getRequestBody());
+                String method = exchange.getRequestMethod();
+                if ("PUT".equals(method)) {
+                    sleep(uploadLatencyMs);
+                    if (failNow()) {
+                        respond(exchange, 503, "{\"message\":\"Service Unavailable\"}");
+                        return;
+                    }
+                    uploads.incrementAndGet();
+                    respond(exchange, 200, "{\"message\":\"uploaded\"}");
+                } else if ("GET".equals(method) && exchange.getRequestURI().getRawPath().endsWith(".json")) {
+                    sleep(latencyMs + (latencyJitterMs > 0 ? ThreadLocalRandom.current().nextLong(-latencyJitterMs, latencyJitterMs + 1) : 0));
+                    if (failNow()) {
+                        respond(exchange, 503, "{\"message\":\"Service Unavailable\"}");
+                        return;
+                    }
+                    results.incrementAndGet();
+                    String fileId = fileId(exchange);
+                    long seed = Math.floorMod(fileId.hashCode(), 1_000_000);
+                    JsonNode result = bank
+                            ? AiResponseFixtures.bankResponse(objectMapper, bankTransactions, seed)
+                            : AiResponseFixtures.invoiceResponse(objectMapper, "FA-" + fileId.substring(0, Math.min(8, fileId.length())),
+                                    invoiceLines, seed);
+                    respond(exchange, 200, objectMapper.writeValueAsString(result));
+                } else {
+                    respond(exchange, 404, "{\"message\":\"Not Found\"}");
+                }
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private void handleCompany(HttpExchange exchange) throws IOException {
+        try {
+            sleep(uploadLatencyMs);
+            if (failNow()) {
+                respond(exchange, 503, "{\"message\":\"Service Unavailable\"}");
+                return;
+            }
+            switch (exchange.getRequestMethod()) {
+                case "POST", "PUT" -> {
+                    JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+                    ObjectNode company = body != null && body.isObject() ? (ObjectNode) body : objectMapper.createObjectNode();
+                    if (!company.hasNonNull("id")) {
+                        company.put("id", ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE));
+                    }
+                    respond(exchange, 200, objectMapper.writeValueAsString(company));
+                }
+                case "DELETE" -> exchange.sendResponseHeaders(204, -1);
+                default -> respond(exchange, 200, "{}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // {base}/{id}.json
+    private static String fileId(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getRawPath();
+        return path.substring(path.lastIndexOf('/') + 1, path.length() - ".json".length());
+    }
+
+    private boolean failNow() {
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        in.transferTo(OutputStream.nullOutputStream());
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    String summary() {
+        return String.format("Stub AI server: %d uploads, %d results, %d injected errors",
+                uploads.get(), results.get(), errors.get());
+    }
+}
@@ -3,6 +3,8 @@ package com.pacioli.core.DTO.AI;
 import lombok.Data;
 import org.springframework.http.HttpStatus;
 
+import java.nio.file.Path;
+
 @Data
 public class BankStatementGetResponse {
     private boolean success;
@@ -11,6 +13,7 @@ public class BankStatementGetResponse {
     private String jsonResponse; // The actual JSON content from the API
     private HttpStatus httpStatus;
     private String rawResponse;
+    private Path resultFile; // Set instead of jsonResponse when the result was downloaded to disk
 
     public static BankStatementGetResponse success(String fileId, String jsonResponse, String rawResponse) {
         BankStatementGetResponse response = new BankStatementGetResponse();
@@ -23,6 +26,16 @@ public class BankStatementGetResponse {
         return response;
     }
 
+    public static BankStatementGetResponse downloaded(String fileId, Path resultFile) {
+        BankStatementGetResponse response = new BankStatementGetResponse();
+        response.setSuccess(true);
+        response.setMessage("Bank statement result downloaded successfully");
+        response.setFileId(fileId);
+        response.setResultFile(resultFile);
+        response.setHttpStatus(HttpStatus.OK);
+        return response;
+    }
+
     public static BankStatementGetResponse error(String message, HttpStatus httpStatus, String rawResponse) {
         BankStatementGetResponse response = new BankStatementGetResponse();
         response.setSuccess(false);
@@ -47,6 +47,7 @@ public class PieceDTO {
 
     private Long originalPieceId;
     private String originalPieceName;
+    private Long nearDuplicateOfId;
 
 
     public void setEcritures(List<EcrituresDTO2> ecritures) {
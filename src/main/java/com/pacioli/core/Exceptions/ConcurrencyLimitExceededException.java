@@ -0,0 +1,24 @@
+package com.pacioli.core.Exceptions;
+
+import com.pacioli.core.config.http.OutboundDestination;
+
+import java.util.Date;
+
+/**
+ * Exception thrown when no concurrency permit could be obtained for an outbound call in time.
+ * The dependency itself did not fail: callers park the work until {@link #getRetryAt()} like for
+ * any other unavailable dependency, without counting an attempt.
+ */
+public class ConcurrencyLimitExceededException extends DependencyUnavailableException {
+
+    /**
+     * Constructs a new ConcurrencyLimitExceededException.
+     *
+     * @param destination the dependency whose limit is reached
+     * @param message the detail message
+     * @param retryAt the earliest time the call should be attempted again
+     */
+    public ConcurrencyLimitExceededException(OutboundDestination destination, String message, Date retryAt) {
+        super(destination, message, retryAt);
+    }
+}
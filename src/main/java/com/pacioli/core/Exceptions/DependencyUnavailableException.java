@@ -0,0 +1,51 @@
+package com.pacioli.core.Exceptions;
+
+import com.pacioli.core.config.http.OutboundDestination;
+
+import java.util.Date;
+
+/**
+ * Exception thrown when an external dependency is not called because its circuit is open
+ * or its bulkhead is full. The call can be attempted again from {@link #getRetryAt()}.
+ */
+public class DependencyUnavailableException extends RuntimeException {
+
+    private final OutboundDestination destination;
+    private final Date retryAt;
+
+    /**
+     * Constructs a new DependencyUnavailableException.
+     *
+     * @param destination the unavailable dependency
+     * @param message the detail message
+     * @param retryAt the earliest time the dependency should be called again
+     */
+    public DependencyUnavailableException(OutboundDestination destination, String message, Date retryAt) {
+        super(message);
+        this.destination = destination;
+        this.retryAt = retryAt;
+    }
+
+    public OutboundDestination getDestination() {
+        return destination;
+    }
+
+    public Date getRetryAt() {
+        return retryAt;
+    }
+
+    /**
+     * Returns the DependencyUnavailableException in the cause chain of {@code e}, or null.
+     */
+    public static DependencyUnavailableException find(Throwable e) {
+        for (Throwable current = e; current != null; current = current.getCause()) {
+            if (current instanceof DependencyUnavailableException unavailable) {
+                return unavailable;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return null;
+    }
+}
@@ -1,24 +1,37 @@
 package com.pacioli.core.batches;
 
 import com.pacioli.core.config.batch.BatchProcessingConfig;
+import com.pacioli.core.config.http.OutboundDestination;
 import com.pacioli.core.enums.PieceStatus;
 import com.pacioli.core.models.Piece;
-import com.pacioli.core.repositories.PieceRepository;
+import com.pacioli.core.resilience.DependencyGuards;
+import com.pacioli.core.resilience.DependencyRecoveredEvent;
 import com.pacioli.core.services.PieceService;
-import com.pacioli.core.services.serviceImp.DuplicateDetectionService;
+import com.pacioli.core.services.serviceImp.pieces.PieceUpdates;
+import com.pacioli.core.batches.events.PieceReadyEvent;
+import com.pacioli.core.batches.PipelineMetrics.Stage;
 import com.pacioli.core.batches.processors.AIResponseProcessor;
-import jakarta.transaction.Transactional;
+import com.pacioli.core.batches.processors.detection.DuplicationDetectionService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Pageable;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,99 +41,156 @@ public class AIPieceProcessingService {
     @Autowired
     private BatchProcessingConfig batchConfig;
     @Autowired
-    private PieceRepository pieceRepository;
-    @Autowired
     private PieceService pieceService;
     @Autowired
-    private DuplicateDetectionService duplicateDetectionService;
+    private PieceUpdates pieceUpdates;
     @Autowired
     private AIResponseProcessor aiResponseProcessor;
+    @Autowired
+    private PieceWorkQueue pieceWorkQueue;
+    @Autowired
+    private PieceRetryScheduler retryScheduler;
+    @Autowired
+    private DependencyGuards dependencyGuards;
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+    @Autowired
+    private DuplicationDetectionService duplicationDetectionService;
 
-    @Scheduled(fixedRate = 60000)
-    @Transactional
-    public void processPieceBatch() {
-        List<Piece> pendingPieces = findPendingPieces();
+    // Guard so concurrent triggers (events + sweep) coalesce into a single drain
+    private final LaneGuard lanes = new LaneGuard();
 
-        // Filter out bank statements (process all EXCEPT bank)
-        List<Piece> nonBankPieces = pendingPieces.stream()
-                .filter(piece -> !"Relevés bancaires".equals(piece.getType()))
-                .collect(Collectors.toList());
+    /**
+     * Wakes the pipeline as soon as an uploaded piece is committed instead of waiting for the next sweep.
+     */
+    @Async("batchTaskExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPieceReady(PieceReadyEvent event) {
+        log.debug("📨 Piece ready event received: {}", event);
+        drainLanes();
+    }
 
-        if (nonBankPieces.isEmpty()) {
-            log.info("⏭️ No pending non-bank pieces to process");
-            return;
+    /**
+     * Resumes the lanes of the AI service that just recovered: the pieces parked during the outage are due again.
+     */
+    @Async("batchTaskExecutor")
+    @EventListener
+    public void onDependencyRecovered(DependencyRecoveredEvent event) {
+        if (event.getDestination() == OutboundDestination.BANK_AI
+                || event.getDestination() == OutboundDestination.INVOICE_AI) {
+            drainLanes();
         }
-
-        log.info("⭐️ Starting batch processing of {} non-bank pieces", nonBankPieces.size());
-        processPiecesConcurrently(nonBankPieces);
-        log.info("✅ Non-bank batch processing completed");
     }
 
-    @Scheduled(fixedRate = 300000) // 300000 ms = 5 minutes
-    @Transactional
-    public void processBankPieceBatch() {
-        List<Piece> pendingPieces = findPendingPiecesForBank();
-
-        // Filter only bank statements
-        List<Piece> bankPieces = pendingPieces.stream()
-                .filter(piece -> "Relevés bancaires".equals(piece.getType()))
-                .collect(Collectors.toList());
-
-        if (!bankPieces.isEmpty()) {
-            log.info("🏦 Starting BANK batch processing of {} pieces", bankPieces.size());
-            processPiecesConcurrently(bankPieces);
-        } else {
-            log.info("⏭️ No pending bank statements to process");
-        }
+    // Safety net for missed events (node restart, failed listener...) and for retries becoming due
+    // No surrounding transaction: claims must be committed before the pieces are processed
+    // The drain runs on the batch executor: a scheduler thread held by it would delay the lease
+    // heartbeat (PieceWorkQueue.renewHeldLeases) and let other nodes re-claim pieces in flight
+    @Async("batchTaskExecutor")
+    @Scheduled(fixedRateString = "${batch.processing.sweep-rate-ms:60000}")
+    public void processPieceBatch() {
+        drainLanes();
     }
 
-    private List<Piece> findPendingPiecesForBank() {
-        // Get UPLOADED bank pieces first (priority for new pieces)
-        List<Piece> uploadedPieces = pieceRepository
-                .findTopNByStatusOrderByUploadDateAsc(PieceStatus.UPLOADED, Pageable.ofSize(batchConfig.getBatchSize()))
-                .stream()
-                .filter(piece -> !duplicateDetectionService.isDuplicate(piece))
-                .filter(piece -> "Relevés bancaires".equals(piece.getType())) // Only bank statements
-                .collect(Collectors.toList());
+    /**
+     * Runs batches until nothing is left to claim in any lane. A trigger arriving while a drain is
+     * running only marks it pending, and the running drain picks it up.
+     */
+    private void drainLanes() {
+        lanes.pending.set(true);
+        do {
+            if (!lanes.running.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                while (lanes.pending.getAndSet(false)) {
+                    int claimed = runBatch();
+                    if (claimed >= batchConfig.getBatchSize()) {
+                        // Full batch: there is probably more waiting
+                        lanes.pending.set(true);
+                    }
+                }
+            } finally {
+                lanes.running.set(false);
+            }
+        } while (lanes.pending.get());
+    }
 
-        // If we have UPLOADED pieces, use them and don't include PROCESSING pieces
-        if (!uploadedPieces.isEmpty()) {
-            return uploadedPieces;
+    /**
+     * Claims one batch shared between the priority lanes (new uploads, retries, recovered pieces,
+     * bank statements) and processes it.
+     */
+    private int runBatch() {
+        Set<PieceLane> openLanes = EnumSet.allOf(PieceLane.class);
+        // Don't claim (and tie up threads and connections for) pieces whose AI service is known to be down
+        if (dependencyGuards.isOpen(OutboundDestination.INVOICE_AI)) {
+            log.warn("🔌 invoice-ai circuit open, invoice lanes paused");
+            openLanes.removeIf(lane -> !lane.isBank());
+        }
+        if (dependencyGuards.isOpen(OutboundDestination.BANK_AI)) {
+            log.warn("🔌 bank-ai circuit open, bank lane paused");
+            openLanes.remove(PieceLane.BANK);
+        }
+        if (openLanes.isEmpty()) {
+            return 0;
         }
 
-        // Only get PROCESSING pieces if no UPLOADED pieces found
-        List<Piece> processingPieces = pieceRepository
-                .findTopNByStatusOrderByUploadDateAsc(PieceStatus.PROCESSING, Pageable.ofSize(batchConfig.getBatchSize()))
-                .stream()
-                .filter(piece -> !duplicateDetectionService.isDuplicate(piece))
-                .filter(piece -> "Relevés bancaires".equals(piece.getType())) // Only bank statements
-                .collect(Collectors.toList());
+        List<Piece> pieces = pipelineMetrics.time(Stage.CLAIM, null,
+                () -> pieceWorkQueue.claim(batchConfig.getBatchSize(), openLanes));
+        if (pieces.isEmpty()) {
+            log.info("⏭️ No pending pieces to process");
+            return 0;
+        }
 
-        return processingPieces;
+        pieces.forEach(pipelineMetrics::claimed);
+        log.info("⭐️ Starting batch processing of {} pieces", pieces.size());
+        processPiecesConcurrently(screenDuplicates(pieces));
+        log.info("✅ Batch processing completed");
+        return pieces.size();
     }
 
-    // scheduled method for bank statements (every 5 minutes)
-    private List<Piece> findPendingPieces() {
-        // Get UPLOADED pieces first (new pieces - priority)
-        List<Piece> uploadedPieces = pieceRepository
-                .findTopNByStatusOrderByUploadDateAsc(PieceStatus.UPLOADED, Pageable.ofSize(batchConfig.getBatchSize()))
-                .stream()
-                .filter(piece -> !duplicateDetectionService.isDuplicate(piece))
-                .collect(Collectors.toList());
-
-        // If we have UPLOADED pieces, process them immediately (1-minute cycle)
-        if (!uploadedPieces.isEmpty()) {
-            return uploadedPieces;
+    /**
+     * Marks the copies of earlier pieces in the claimed batch as duplicates, with one query for the whole
+     * batch, and releases them: only the remaining pieces are dispatched to the AI.
+     */
+    private List<Piece> screenDuplicates(List<Piece> pieces) {
+        Map<Long, Long> originals;
+        try {
+            originals = pipelineMetrics.time(Stage.DUPLICATE_CHECK, null,
+                    () -> duplicationDetectionService.findBatchDuplicates(pieces));
+        } catch (Exception e) {
+            // The comprehensive check after the AI call still catches them
+            log.error("❌ Batch duplicate screen failed, processing all {} pieces: {}", pieces.size(), e.getMessage());
+            return pieces;
+        }
+        if (originals.isEmpty()) {
+            return pieces;
         }
 
-        // Only get PROCESSING pieces if no UPLOADED pieces found
-        List<Piece> processingPieces = pieceRepository
-                .findTopNByStatusOrderByUploadDateAsc(PieceStatus.PROCESSING, Pageable.ofSize(batchConfig.getBatchSize()))
-                .stream()
-                .filter(piece -> !duplicateDetectionService.isDuplicate(piece))
-                .collect(Collectors.toList());
-
-        return processingPieces;
+        List<Piece> remaining = new ArrayList<>(pieces.size());
+        Map<Long, Piece> dossiersToNotify = new LinkedHashMap<>();
+        for (Piece piece : pieces) {
+            Long originalId = originals.get(piece.getId());
+            if (originalId == null) {
+                remaining.add(piece);
+                continue;
+            }
+            try {
+                pieceUpdates.markDuplicate(piece, originalId);
+                log.info("🚫 Piece {} is a copy of piece {}, not sent to AI", piece.getId(), originalId);
+                dossiersToNotify.putIfAbsent(piece.getDossier().getId(), piece);
+            } catch (OptimisticLockingFailureException e) {
+                log.warn("⚠️ Piece {} changed status meanwhile, not marking it duplicate: {}", piece.getId(), e.getMessage());
+            } catch (Exception e) {
+                log.error("❌ Failed to mark piece {} as duplicate of {}, processing it: {}", piece.getId(), originalId, e.getMessage());
+                remaining.add(piece);
+                continue;
+            }
+            pieceWorkQueue.release(piece.getId());
+            pipelineMetrics.completed(piece);
+        }
+        dossiersToNotify.values().forEach(this::notifyPiecesUpdate);
+        return remaining;
     }
 
     private void processPiecesConcurrently(List<Piece> pieces) {
@@ -139,43 +209,57 @@ public class AIPieceProcessingService {
         return CompletableFuture.runAsync(() -> processSinglePiece(piece));
     }
 
+    /**
+     * One unit of work: the piece claimed for this batch is the aggregate every step reads and updates
+     * in place, and status changes are versioned UPDATEs (see PieceUpdates), so the piece is never
+     * reloaded. The statements run are checked against batch.processing.max-statements-per-piece.
+     */
     private void processSinglePiece(Piece piece) {
-        try {
-            Piece currentPiece = pieceRepository.findById(piece.getId()).orElse(piece);
-
-            if (shouldSkipProcessing(currentPiece)) {
-                log.info("⏭️ Skipping piece {} - status: {}", currentPiece.getId(), currentPiece.getStatus());
-                return;
+        try (StatementCounter.Scope statements = StatementCounter.open()) {
+            try {
+                if (shouldSkipProcessing(piece)) {
+                    log.info("⏭️ Skipping piece {} - status: {}", piece.getId(), piece.getStatus());
+                    return;
+                }
+                // Process the piece through AI - use configurable retries
+                aiResponseProcessor.processPieceWithRetry(piece, retryScheduler.nextAttempt(piece));
+
+                log.info("✅ AI processing completed for piece {} - new status: {}, AI Amount: {}, AI Currency: {}",
+                        piece.getId(), piece.getStatus(), piece.getAiAmount(), piece.getAiCurrency());
+
+                notifyPiecesUpdate(piece);
+
+            } catch (OptimisticLockingFailureException e) {
+                // Another worker moved the piece on: the outcome is theirs to report
+                log.warn("⚠️ Piece {} changed status while being processed, leaving it: {}", piece.getId(), e.getMessage());
+            } catch (Exception e) {
+                log.error("❌ Failed to process piece {}: {}", piece.getId(), e.getMessage());
+                rejectPiece(piece, "Processing failed: " + e.getMessage());
+            } finally {
+                pieceWorkQueue.release(piece.getId());
             }
-             // log.info("🔄 Processing piece {} - current status: {}", currentPiece.getId(), currentPiece.getStatus());
-            // Process the piece through AI - use configurable retries
-            aiResponseProcessor.processPieceWithRetry(currentPiece, 1);
-
-            // ✅ CRITICAL FIX: Reload the piece after AI processing to get updated AI data
-            Piece processedPiece = pieceRepository.findById(piece.getId())
-                    .orElseThrow(() -> new RuntimeException("Piece not found after processing: " + piece.getId()));
-
-            log.info("✅ AI processing completed for piece {} - new status: {}, AI Amount: {}, AI Currency: {}",
-                    processedPiece.getId(), processedPiece.getStatus(),
-                    processedPiece.getAiAmount(), processedPiece.getAiCurrency());
-
-            // ✅ CRITICAL FIX: Force WebSocket notification with the updated piece data
-            notifyPiecesUpdate(processedPiece.getDossier().getId());
+            pipelineMetrics.completed(piece);
+            checkStatementBudget(piece, statements);
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Failed to process piece {}: {}", piece.getId(), e.getMessage());
-            rejectPiece(piece, "Processing failed: " + e.getMessage());
+    private void checkStatementBudget(Piece piece, StatementCounter.Scope statements) {
+        int budget = batchConfig.getMaxStatementsPerPiece();
+        if (budget > 0 && statements.getFixedCost() > budget) {
+            log.warn("🐢 Piece {} ({}) took {} statements, over the budget of {} per piece: {}",
+                    piece.getId(), piece.getType(), statements.getFixedCost(), budget, statements);
+        } else {
+            log.debug("🧮 Piece {} took {}", piece.getId(), statements);
         }
     }
 
     private boolean shouldSkipProcessing(Piece piece) {
+        // Duplicates are detected by the batch screen before dispatch (see screenDuplicates)
         boolean shouldSkip = piece.getStatus() == PieceStatus.PROCESSED ||
-                piece.getStatus() == PieceStatus.DUPLICATE ||
-                duplicateDetectionService.isDuplicate(piece);
+                piece.getStatus() == PieceStatus.DUPLICATE;
 
         if (shouldSkip) {
-            log.debug("⏭️ Skipping piece {} - Status: {}, IsDuplicate: {}",
-                    piece.getId(), piece.getStatus(), duplicateDetectionService.isDuplicate(piece));
+            log.debug("⏭️ Skipping piece {} - Status: {}", piece.getId(), piece.getStatus());
         }
 
         return shouldSkip;
@@ -183,38 +267,30 @@ public class AIPieceProcessingService {
 
     private void rejectPiece(Piece piece, String reason) {
         log.error("❌ Rejecting piece {}: {}", piece.getId(), reason);
-        updatePieceStatus(piece, PieceStatus.REJECTED);
-
-        // ✅ Ensure notification is sent for rejected pieces too
-        notifyPiecesUpdate(piece.getDossier().getId());
-    }
-
-    private void updatePieceStatus(Piece piece, PieceStatus status) {
-        Piece currentPiece = pieceRepository.findById(piece.getId()).orElse(piece);
-        currentPiece.setStatus(status);
-
-        // ✅ Preserve AI data if it exists
-        if (piece.getAiAmount() != null) {
-            currentPiece.setAiAmount(piece.getAiAmount());
-        }
-        if (piece.getAiCurrency() != null) {
-            currentPiece.setAiCurrency(piece.getAiCurrency());
+        try {
+            pieceUpdates.transition(piece, PieceStatus.REJECTED);
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("⚠️ Piece {} changed status meanwhile, not rejecting it: {}", piece.getId(), e.getMessage());
+            return;
         }
 
-        Piece savedPiece = pieceRepository.save(currentPiece);
-
-        log.info("📝 Updated piece {} status to: {}", savedPiece.getId(), status);
-
-        // WebSocket notification will be handled by the calling method
+        // ✅ Ensure notification is sent for rejected pieces too
+        notifyPiecesUpdate(piece);
     }
 
-    private void notifyPiecesUpdate(Long dossierId) {
+    private void notifyPiecesUpdate(Piece piece) {
+        Long dossierId = piece.getDossier().getId();
         try {
             log.info("📢 Sending WebSocket notification for dossier {}", dossierId);
-            pieceService.notifyPiecesUpdate(dossierId);
+            pipelineMetrics.run(Stage.NOTIFY, piece, () -> pieceService.notifyPiecesUpdate(dossierId));
             log.info("✅ WebSocket notification sent for dossier {}", dossierId);
         } catch (Exception e) {
             log.error("❌ Failed to notify WebSocket for dossier {}: {}", dossierId, e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static class LaneGuard {
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private final AtomicBoolean pending = new AtomicBoolean(false);
+    }
+}
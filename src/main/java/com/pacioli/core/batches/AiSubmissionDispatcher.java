@@ -0,0 +1,151 @@
+package com.pacioli.core.batches;
+
+import com.pacioli.core.Exceptions.DependencyUnavailableException;
+import com.pacioli.core.batches.events.AiSubmissionQueuedEvent;
+import com.pacioli.core.batches.events.PieceReadyEvent;
+import com.pacioli.core.config.batch.AiSubmissionConfig;
+import com.pacioli.core.enums.PieceStatus;
+import com.pacioli.core.models.AiSubmissionOutbox;
+import com.pacioli.core.resilience.DependencyRecoveredEvent;
+import com.pacioli.core.services.PieceService;
+import com.pacioli.core.services.serviceImp.pieces.AIService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends uploaded files from the AI submission outbox to the AI services, off the upload request.
+ * At most {@code ai.submission.concurrency} uploads run at once on this node; failures are retried
+ * with backoff and, once exhausted, the piece is rejected.
+ */
+@Service
+@Slf4j
+public class AiSubmissionDispatcher {
+
+    @Autowired
+    private AiSubmissionConfig submissionConfig;
+    @Autowired
+    private AiSubmissionQueue submissionQueue;
+    @Autowired
+    private AIService aiService;
+    @Autowired
+    private PieceService pieceService;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    @Qualifier("aiSubmissionExecutor")
+    private Executor aiSubmissionExecutor;
+
+    private Semaphore slots;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    @PostConstruct
+    void init() {
+        slots = new Semaphore(submissionConfig.getConcurrency());
+    }
+
+    @Async("aiSubmissionTriggerExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSubmissionQueued(AiSubmissionQueuedEvent event) {
+        log.debug("📨 AI submission queued: {}", event);
+        dispatchDue();
+    }
+
+    /**
+     * Sends the submissions parked during an outage as soon as the AI service is back.
+     */
+    @Async("aiSubmissionTriggerExecutor")
+    @EventListener
+    public void onDependencyRecovered(DependencyRecoveredEvent event) {
+        dispatchDue();
+    }
+
+    // Safety net for missed events and for scheduled retries becoming due
+    @Scheduled(fixedDelayString = "${ai.submission.poll-interval-ms:15000}")
+    public void dispatchDue() {
+        pending.set(true);
+        do {
+            if (!running.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                while (pending.getAndSet(false)) {
+                    fillFreeSlots();
+                }
+            } finally {
+                running.set(false);
+            }
+        } while (pending.get());
+    }
+
+    private void fillFreeSlots() {
+        int free = slots.availablePermits();
+        while (free > 0) {
+            List<AiSubmissionOutbox> due = submissionQueue.claimDue(Math.min(free, submissionConfig.getBatchSize()));
+            if (due.isEmpty()) {
+                return;
+            }
+            for (AiSubmissionOutbox submission : due) {
+                slots.acquireUninterruptibly();
+                try {
+                    aiSubmissionExecutor.execute(() -> {
+                        try {
+                            submit(submission);
+                        } finally {
+                            slots.release();
+                            // A slot just freed up: pick up whatever is due
+                            dispatchDue();
+                        }
+                    });
+                } catch (TaskRejectedException e) {
+                    // Due again right away, for the poller; no attempt counted
+                    slots.release();
+                    submissionQueue.park(submission.getId(), new Date());
+                    log.warn("⚠️ AI submission executor full, piece {} left for the next poll", submission.getPieceId());
+                }
+            }
+            free = slots.availablePermits();
+        }
+    }
+
+    private void submit(AiSubmissionOutbox submission) {
+        try {
+            aiService.submitStoredFile(submission.getFilename(), submission.getContentType(),
+                    submission.getDossierId(), submission.getCountry(), submission.getPieceType());
+            submissionQueue.markSent(submission.getId());
+            log.info("📤 File {} submitted to AI for piece {}", submission.getFilename(), submission.getPieceId());
+
+            eventPublisher.publishEvent(new PieceReadyEvent(submission.getPieceId(),
+                    submission.getDossierId(), submission.getPieceType()));
+
+        } catch (DependencyUnavailableException e) {
+            submissionQueue.park(submission.getId(), e.getRetryAt());
+            log.warn("🅿️ AI submission of piece {} parked until {}: {}",
+                    submission.getPieceId(), e.getRetryAt(), e.getMessage());
+        } catch (Exception e) {
+            boolean exhausted = submissionQueue.markFailed(submission.getId(), e.getMessage());
+            if (exhausted) {
+                log.error("❌ AI submission of piece {} failed after {} attempts: {}",
+                        submission.getPieceId(), submissionConfig.getMaxAttempts(), e.getMessage());
+                pieceService.updatePieceStatus(submission.getPieceId(), PieceStatus.REJECTED.name());
+                pieceService.notifyPiecesUpdate(submission.getDossierId());
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.pacioli.core.batches;
+
+import com.pacioli.core.config.batch.AiSubmissionConfig;
+import com.pacioli.core.enums.AiSubmissionStatus;
+import com.pacioli.core.models.AiSubmissionOutbox;
+import com.pacioli.core.repositories.AiSubmissionOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Transactional operations on the AI submission outbox.
+ */
+@Service
+@Slf4j
+public class AiSubmissionQueue {
+
+    @Autowired
+    private AiSubmissionConfig submissionConfig;
+    @Autowired
+    private AiSubmissionOutboxRepository outboxRepository;
+
+    /**
+     * Claims up to {@code limit} due submissions. Committed on return so other nodes skip them.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<AiSubmissionOutbox> claimDue(int limit) {
+        Date now = new Date();
+        List<Long> ids = outboxRepository.lockDueIds(now, limit);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        outboxRepository.claim(ids, new Date(now.getTime() + submissionConfig.getClaimTimeoutMs()));
+
+        List<AiSubmissionOutbox> claimed = new ArrayList<>(outboxRepository.findAllById(ids));
+        claimed.sort(Comparator.comparing(AiSubmissionOutbox::getCreatedAt));
+        return claimed;
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void markSent(Long submissionId) {
+        outboxRepository.findById(submissionId).ifPresent(submission -> {
+            submission.setStatus(AiSubmissionStatus.SENT);
+            submission.setAttempts(submission.getAttempts() + 1);
+            submission.setSentAt(new Date());
+            submission.setLastError(null);
+            outboxRepository.save(submission);
+        });
+    }
+
+    /**
+     * Postpones the submission until {@code until} without counting an attempt (dependency unavailable).
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void park(Long submissionId, Date until) {
+        outboxRepository.park(submissionId, until);
+    }
+
+    /**
+     * Records a failed attempt and schedules the next one.
+     *
+     * @return true if the submission gave up (status FAILED)
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean markFailed(Long submissionId, String error) {
+        AiSubmissionOutbox submission = outboxRepository.findById(submissionId).orElse(null);
+        if (submission == null) {
+            return false;
+        }
+
+        int attempts = submission.getAttempts() + 1;
+        submission.setAttempts(attempts);
+        submission.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+
+        boolean exhausted = attempts >= submissionConfig.getMaxAttempts();
+        if (exhausted) {
+            submission.setStatus(AiSubmissionStatus.FAILED);
+        } else {
+            long delayMs = PieceRetryScheduler.computeDelayMs(attempts,
+                    submissionConfig.getRetryDelayMs(), submissionConfig.getMaxRetryDelayMs());
+            submission.setNextAttemptAt(new Date(System.currentTimeMillis() + delayMs));
+            log.warn("⏰ AI submission {} (piece {}) attempt {}/{} failed, next attempt in {} s: {}",
+                    submissionId, submission.getPieceId(), attempts, submissionConfig.getMaxAttempts(),
+                    delayMs / 1000, error);
+        }
+        outboxRepository.save(submission);
+        return exhausted;
+    }
+}
@@ -2,6 +2,7 @@ package com.pacioli.core.batches.DTO;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pacioli.core.utils.AiValueParsers;
 import com.pacioli.core.utils.NormalizeCurrencyCode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,9 +10,6 @@ import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.Arrays;
-import java.util.List;
 
 @Slf4j
 @Component
@@ -20,52 +18,21 @@ public class BaseDTOBuilder {
     @Autowired protected ObjectMapper objectMapper;
     @Autowired protected NormalizeCurrencyCode normalizeCurrencyCode;
 
-    protected static final List<DateTimeFormatter> DATE_FORMATTERS = Arrays.asList(
-            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
-            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
-            DateTimeFormatter.ofPattern("dd-MM-yyyy")
-    );
+    private static final DateTimeFormatter STANDARD_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
     // ==================== UTILITY METHODS ====================
 
     protected LocalDate parseDate(String dateStr) {
-        if (dateStr == null || dateStr.trim().isEmpty()) {
-            return LocalDate.now();
-        }
-
-        for (DateTimeFormatter formatter : DATE_FORMATTERS) {
-            try {
-                return LocalDate.parse(dateStr.trim(), formatter);
-            } catch (DateTimeParseException ignored) {
-                // Continue to next formatter
-            }
-        }
-        return LocalDate.now();
+        LocalDate date = AiValueParsers.parseDate(dateStr);
+        return date != null ? date : LocalDate.now();
     }
 
     protected String formatDateToStandard(String dateStr) {
-        try {
-            LocalDate date = parseDate(dateStr);
-            return date.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-        } catch (Exception e) {
-            return LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-        }
+        return parseDate(dateStr).format(STANDARD_DATE_FORMAT);
     }
 
     protected double parseDoubleSafely(JsonNode node, String fieldName) {
-        if (node == null || !node.has(fieldName) || node.get(fieldName).isNull()) {
-            return 0.0;
-        }
-
-        try {
-            String value = node.get(fieldName).asText();
-            if (value == null || value.trim().isEmpty()) {
-                return 0.0;
-            }
-            return Double.parseDouble(value.replace(',', '.'));
-        } catch (NumberFormatException e) {
-            return 0.0;
-        }
+        return AiValueParsers.parseAmount(node, fieldName);
     }
 
     protected String extractStringSafely(JsonNode node, String fieldName, String defaultValue) {
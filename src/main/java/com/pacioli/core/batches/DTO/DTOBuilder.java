@@ -18,6 +18,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
+import java.util.List;
 
 @Slf4j
 @Component
@@ -118,46 +119,40 @@ public class DTOBuilder {
     }
 
 
-    private PieceDTO buildPieceDTOFromData(Piece piece, JsonNode convertedEcritures, JsonNode firstEntry) {
+    /**
+     * Piece level part of the DTO, without ecritures: used when a large bank statement is persisted
+     * chunk by chunk (see {@link #buildEcrituresChunk}).
+     */
+    public PieceDTO buildPieceHeaderDTO(Piece piece, JsonNode firstEntry) {
         PieceDTO pieceDTO = new PieceDTO();
-
         try {
-            // Set basic piece information
+            setPieceFields(pieceDTO, piece, firstEntry);
+        } catch (Exception e) {
+            log.error("❌ Error building PieceDTO header: {}", e.getMessage());
             pieceDTO.setId(piece.getId());
             pieceDTO.setFilename(piece.getFilename());
-            pieceDTO.setType(piece.getType());
-            pieceDTO.setUploadDate(piece.getUploadDate());
-            pieceDTO.setAmount(calculateLargestAmount(convertedEcritures));
             pieceDTO.setDossierId(piece.getDossier().getId());
-            pieceDTO.setDossierName(piece.getDossier().getName());
-            pieceDTO.setIsDuplicate(piece.getIsDuplicate());
-            pieceDTO.setIsForced(piece.getIsForced());
+        }
+        return pieceDTO;
+    }
 
-            // Set facture data
-            pieceDTO.setFactureData(factureDataBuilder.buildFactureData(firstEntry));
+    /**
+     * Converted ecritures of one chunk of (normalized) transaction groups.
+     */
+    public List<EcrituresDTO2> buildEcrituresChunk(Piece piece, JsonNode transactionGroups) {
+        JsonNode convertedEcritures = currencyConversionService.convertEcrituresCurrency(transactionGroups, piece);
+        return ecritureBuilder.buildEcritures(convertedEcritures);
+    }
 
-            // Set ecritures
-            pieceDTO.setEcritures(ecritureBuilder.buildEcritures(convertedEcritures));
+    private PieceDTO buildPieceDTOFromData(Piece piece, JsonNode convertedEcritures, JsonNode firstEntry) {
+        PieceDTO pieceDTO = new PieceDTO();
 
-            if (firstEntry != null) {
-                pieceDTO.setFactureData(factureDataBuilder.buildFactureData(firstEntry));
-            }
-            // Set currency information
-            pieceDTO.setAiCurrency(piece.getAiCurrency());
-            pieceDTO.setAiAmount(piece.getAiAmount());
-            pieceDTO.setOriginalCurrency(piece.getAiCurrency());
-            pieceDTO.setDossierCurrency(piece.getConvertedCurrency());
-
-            if (piece.getExchangeRate() != null) {
-                pieceDTO.setExchangeRate(piece.getExchangeRate());
-                pieceDTO.setConvertedCurrency(piece.getConvertedCurrency());
-                pieceDTO.setExchangeRateDate(piece.getExchangeRateDate());
-            }
+        try {
+            setPieceFields(pieceDTO, piece, firstEntry);
+            pieceDTO.setAmount(calculateLargestAmount(convertedEcritures));
 
-            if (piece.getOriginalPiece() != null) {
-                pieceDTO.setOriginalPieceId(piece.getOriginalPiece().getId());
-                pieceDTO.setOriginalPieceName(piece.getOriginalPiece().getOriginalFileName());
-            }
+            // Set ecritures
+            pieceDTO.setEcritures(ecritureBuilder.buildEcritures(convertedEcritures));
 
             log.info("✅ Successfully built DTO for piece {}", piece.getId());
 
@@ -172,6 +167,38 @@ public class DTOBuilder {
         return pieceDTO;
     }
 
+    private void setPieceFields(PieceDTO pieceDTO, Piece piece, JsonNode firstEntry) {
+        // Set basic piece information
+        pieceDTO.setId(piece.getId());
+        pieceDTO.setFilename(piece.getFilename());
+        pieceDTO.setType(piece.getType());
+        pieceDTO.setUploadDate(piece.getUploadDate());
+        pieceDTO.setDossierId(piece.getDossier().getId());
+        pieceDTO.setDossierName(piece.getDossier().getName());
+        pieceDTO.setIsDuplicate(piece.getIsDuplicate());
+        pieceDTO.setIsForced(piece.getIsForced());
+
+        // Set facture data
+        pieceDTO.setFactureData(factureDataBuilder.buildFactureData(firstEntry));
+
+        // Set currency information
+        pieceDTO.setAiCurrency(piece.getAiCurrency());
+        pieceDTO.setAiAmount(piece.getAiAmount());
+        pieceDTO.setOriginalCurrency(piece.getAiCurrency());
+        pieceDTO.setDossierCurrency(piece.getConvertedCurrency());
+
+        if (piece.getExchangeRate() != null) {
+            pieceDTO.setExchangeRate(piece.getExchangeRate());
+            pieceDTO.setConvertedCurrency(piece.getConvertedCurrency());
+            pieceDTO.setExchangeRateDate(piece.getExchangeRateDate());
+        }
+
+        if (piece.getOriginalPiece() != null) {
+            pieceDTO.setOriginalPieceId(piece.getOriginalPiece().getId());
+            pieceDTO.setOriginalPieceName(piece.getOriginalPiece().getOriginalFileName());
+        }
+    }
+
     private Double calculateLargestAmount(JsonNode ecritures) {
         double maxAmount = 0.0;
         for (JsonNode entry : ecritures) {
@@ -0,0 +1,98 @@
+package com.pacioli.core.batches;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Picks the pieces to claim fairly across cabinets: weighted round-robin over cabinets, and
+ * round-robin over the dossiers of each cabinet, so a bulk upload from one cabinet (or one dossier)
+ * cannot make everybody else wait behind it. A cabinet stops being served once it reaches its cap.
+ */
+final class FairShareSelector {
+
+    private FairShareSelector() {
+    }
+
+    static final class Candidate {
+        final Long pieceId;
+        final Long cabinetId;
+        final Long dossierId;
+
+        Candidate(Long pieceId, Long cabinetId, Long dossierId) {
+            this.pieceId = pieceId;
+            this.cabinetId = cabinetId;
+            this.dossierId = dossierId;
+        }
+    }
+
+    /**
+     * @param candidates        claimable pieces, oldest first within a cabinet; cabinets are served in order of appearance
+     * @param weight            pieces a cabinet may take per round
+     * @param remainingCapacity pieces a cabinet may still start now (cap minus in flight)
+     * @return ids of the selected pieces, in claim order
+     */
+    static List<Long> select(List<Candidate> candidates, int limit,
+                             ToIntFunction<Long> weight, ToIntFunction<Long> remainingCapacity) {
+        Map<Long, CabinetQueue> cabinets = new LinkedHashMap<>();
+        for (Candidate candidate : candidates) {
+            cabinets.computeIfAbsent(candidate.cabinetId, id -> new CabinetQueue(
+                    Math.max(1, weight.applyAsInt(id)), remainingCapacity.applyAsInt(id))).add(candidate);
+        }
+
+        List<Long> selected = new ArrayList<>(Math.min(limit, candidates.size()));
+        boolean progress = true;
+        while (selected.size() < limit && progress) {
+            progress = false;
+            for (CabinetQueue cabinet : cabinets.values()) {
+                for (int i = 0; i < cabinet.weight && cabinet.budget > 0 && cabinet.hasNext()
+                        && selected.size() < limit; i++) {
+                    selected.add(cabinet.next());
+                    cabinet.budget--;
+                    progress = true;
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static final class CabinetQueue {
+        private final int weight;
+        private int budget;
+        private final Map<Long, Deque<Long>> byDossier = new LinkedHashMap<>();
+        // Dossiers with pieces left, in round-robin order
+        private final Deque<Deque<Long>> rotation = new ArrayDeque<>();
+
+        CabinetQueue(int weight, int budget) {
+            this.weight = weight;
+            this.budget = budget;
+        }
+
+        void add(Candidate candidate) {
+            Deque<Long> dossierQueue = byDossier.get(candidate.dossierId);
+            if (dossierQueue == null) {
+                dossierQueue = new ArrayDeque<>();
+                byDossier.put(candidate.dossierId, dossierQueue);
+                rotation.addLast(dossierQueue);
+            }
+            dossierQueue.addLast(candidate.pieceId);
+        }
+
+        boolean hasNext() {
+            return !rotation.isEmpty();
+        }
+
+        Long next() {
+            Deque<Long> dossierQueue = rotation.pollFirst();
+            Long pieceId = dossierQueue.pollFirst();
+            if (!dossierQueue.isEmpty()) {
+                rotation.addLast(dossierQueue);
+            }
+            return pieceId;
+        }
+    }
+}
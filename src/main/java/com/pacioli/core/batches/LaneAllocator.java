@@ -0,0 +1,65 @@
+package com.pacioli.core.batches;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Splits the slots of a batch between the priority lanes. Each lane with work first gets its
+ * guaranteed minimum share, the remaining slots are then handed out by weight; slots a lane cannot
+ * use (not enough work) go to the other lanes.
+ */
+final class LaneAllocator {
+
+    private LaneAllocator() {
+    }
+
+    /**
+     * @param slots     batch size
+     * @param demand    claimable pieces per lane
+     * @param weights   lane weights (&gt; 0)
+     * @param minShares guaranteed fraction of the slots per lane (0..1)
+     * @return slots per lane, never more than the lane's demand
+     */
+    static Map<PieceLane, Integer> allocate(int slots, Map<PieceLane, Integer> demand,
+                                            Map<PieceLane, Integer> weights, Map<PieceLane, Double> minShares) {
+        Map<PieceLane, Integer> quota = new EnumMap<>(PieceLane.class);
+        int remaining = slots;
+
+        // 1. Guaranteed minimum shares (at least one slot for a lane with a share and some work)
+        for (Map.Entry<PieceLane, Integer> entry : demand.entrySet()) {
+            PieceLane lane = entry.getKey();
+            double share = minShares.getOrDefault(lane, 0.0);
+            int guaranteed = share > 0 ? Math.max(1, (int) Math.floor(share * slots)) : 0;
+            int granted = Math.min(Math.min(guaranteed, entry.getValue()), remaining);
+            quota.put(lane, granted);
+            remaining -= granted;
+        }
+
+        // 2. Weighted split of what is left, repeated while some lane can still take more
+        while (remaining > 0) {
+            int totalWeight = 0;
+            for (Map.Entry<PieceLane, Integer> entry : demand.entrySet()) {
+                if (entry.getValue() > quota.get(entry.getKey())) {
+                    totalWeight += Math.max(1, weights.getOrDefault(entry.getKey(), 1));
+                }
+            }
+            if (totalWeight == 0) {
+                break;
+            }
+
+            int round = remaining;
+            for (Map.Entry<PieceLane, Integer> entry : demand.entrySet()) {
+                PieceLane lane = entry.getKey();
+                int unmet = entry.getValue() - quota.get(lane);
+                if (unmet <= 0 || remaining == 0) {
+                    continue;
+                }
+                int weight = Math.max(1, weights.getOrDefault(lane, 1));
+                int extra = Math.min(Math.min(unmet, remaining), Math.max(1, round * weight / totalWeight));
+                quota.put(lane, quota.get(lane) + extra);
+                remaining -= extra;
+            }
+        }
+        return quota;
+    }
+}
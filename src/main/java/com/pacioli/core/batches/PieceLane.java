@@ -0,0 +1,51 @@
+package com.pacioli.core.batches;
+
+import com.pacioli.core.enums.PieceStatus;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Priority lanes of the AI work queue. Every batch is shared between the lanes by weight, with a
+ * guaranteed minimum share for each, so no kind of work waits for another to be fully drained.
+ * Lanes are disjoint: a claimable piece belongs to exactly one of them.
+ */
+public enum PieceLane {
+    // Fresh uploads, never attempted
+    NEW(false, 0, 0, PieceStatus.UPLOADED),
+    // Pieces whose previous attempt failed and whose retry is due
+    RETRY(false, 1, Integer.MAX_VALUE, PieceStatus.UPLOADED, PieceStatus.PROCESSING),
+    // Pieces left in PROCESSING without a failed attempt: lease expired after a crash, or parked during an outage
+    RECOVERED(false, 0, 0, PieceStatus.PROCESSING),
+    // Bank statements, whatever their state
+    BANK(true, 0, Integer.MAX_VALUE, PieceStatus.UPLOADED, PieceStatus.PROCESSING);
+
+    private final boolean bank;
+    private final int minAttempts;
+    private final int maxAttempts;
+    private final List<String> statuses;
+
+    PieceLane(boolean bank, int minAttempts, int maxAttempts, PieceStatus... statuses) {
+        this.bank = bank;
+        this.minAttempts = minAttempts;
+        this.maxAttempts = maxAttempts;
+        this.statuses = Arrays.stream(statuses).map(Enum::name).collect(Collectors.toList());
+    }
+
+    public boolean isBank() {
+        return bank;
+    }
+
+    public int getMinAttempts() {
+        return minAttempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public List<String> getStatuses() {
+        return statuses;
+    }
+}
@@ -0,0 +1,81 @@
+package com.pacioli.core.batches;
+
+import com.pacioli.core.config.batch.BatchProcessingConfig;
+import com.pacioli.core.models.Piece;
+import com.pacioli.core.repositories.PieceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Persisted retry schedule for AI processing.
+ * Instead of sleeping on a worker thread, a failed attempt stores the attempt count and the
+ * next attempt timestamp on the piece; the work queue only claims it again once that time is due.
+ */
+@Service
+@Slf4j
+public class PieceRetryScheduler {
+    private static final long PARK_JITTER_MS = 5000;
+
+    @Autowired
+    private BatchProcessingConfig batchConfig;
+    @Autowired
+    private PieceRepository pieceRepository;
+
+    /**
+     * Attempt number of the next processing run for this piece (1-based).
+     */
+    public int nextAttempt(Piece piece) {
+        Integer attempts = piece.getAttemptCount();
+        return (attempts == null ? 0 : attempts) + 1;
+    }
+
+    /**
+     * Records a failed attempt and schedules the next one with exponential backoff and jitter.
+     *
+     * @param attempt     the attempt that just failed (1-based)
+     * @param baseDelayMs delay before the second attempt, doubled for every following one
+     */
+    @Transactional
+    public void scheduleRetry(Piece piece, int attempt, long baseDelayMs, String reason) {
+        long delayMs = computeDelayMs(attempt, baseDelayMs, batchConfig.getMaxRetryDelayMs());
+        Date nextAttemptAt = new Date(System.currentTimeMillis() + delayMs);
+
+        pieceRepository.scheduleRetry(piece.getId(), attempt, nextAttemptAt);
+        piece.setAttemptCount(attempt);
+        piece.setNextAttemptAt(nextAttemptAt);
+
+        log.warn("⏰ Piece {} attempt {}/{} failed ({}), next attempt in {} s",
+                piece.getId(), attempt, batchConfig.getMaxRetries(), reason, delayMs / 1000);
+    }
+
+    /**
+     * Parks the piece until {@code until} without counting an attempt: the failure is the dependency's,
+     * not the piece's. A few seconds of jitter avoid all parked pieces hitting the half-open circuit at once.
+     */
+    @Transactional
+    public void park(Piece piece, Date until, String reason) {
+        Date nextAttemptAt = new Date(Math.max(until.getTime(), System.currentTimeMillis())
+                + ThreadLocalRandom.current().nextLong(PARK_JITTER_MS + 1));
+
+        pieceRepository.parkPiece(piece.getId(), nextAttemptAt);
+        piece.setNextAttemptAt(nextAttemptAt);
+
+        log.warn("🅿️ Piece {} parked until {} ({})", piece.getId(), nextAttemptAt, reason);
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half of the backoff is fixed, the other half random,
+     * so retries of pieces failing together spread out instead of hitting the AI service in waves.
+     */
+    static long computeDelayMs(int attempt, long baseDelayMs, long maxDelayMs) {
+        int exponent = Math.max(0, Math.min(attempt - 1, 20));
+        long backoff = Math.min(maxDelayMs, baseDelayMs * (1L << exponent));
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+}
@@ -0,0 +1,211 @@
+package com.pacioli.core.batches;
+
+import com.pacioli.core.config.batch.BatchProcessingConfig;
+import com.pacioli.core.enums.PieceStatus;
+import com.pacioli.core.models.Piece;
+import com.pacioli.core.repositories.PieceRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Lease-based work queue on the piece table.
+ * Claims are taken with SELECT ... FOR UPDATE SKIP LOCKED so several nodes can poll
+ * concurrently without picking the same piece; a lease that is not renewed expires
+ * and the piece becomes claimable again (crashed node, killed thread...).
+ */
+@Service
+@Slf4j
+public class PieceWorkQueue {
+    private static final String BANK_TYPE = "Relevés bancaires";
+    private static final List<String> CLAIMABLE_STATUSES =
+            List.of(PieceStatus.UPLOADED.name(), PieceStatus.PROCESSING.name());
+
+    @Autowired
+    private BatchProcessingConfig batchConfig;
+    @Autowired
+    private PieceRepository pieceRepository;
+
+    // Pieces currently leased by this node, renewed by the heartbeat
+    private final Set<Long> heldLeases = ConcurrentHashMap.newKeySet();
+    private String nodeId;
+
+    @PostConstruct
+    void init() {
+        nodeId = batchConfig.getNodeId();
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = resolveHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        log.info("🪪 Piece work queue node id: {}", nodeId);
+    }
+
+    /**
+     * Claims up to {@code limit} pieces for this node from the given priority lanes.
+     * The batch is first split between the lanes (weights and minimum shares, see {@link LaneAllocator}),
+     * each lane's share is then taken fairly across cabinets within their in-flight caps
+     * (see {@link FairShareSelector}); slots a lane could not fill go to the others.
+     * Runs in its own transaction so the lease is committed (and visible to other nodes)
+     * before any processing starts.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<Piece> claim(int limit, Set<PieceLane> lanes) {
+        Date now = new Date();
+        BatchProcessingConfig.Fairness fairness = batchConfig.getFairness();
+
+        Map<PieceLane, List<FairShareSelector.Candidate>> candidates = new EnumMap<>(PieceLane.class);
+        Map<PieceLane, Integer> demand = new EnumMap<>(PieceLane.class);
+        Map<PieceLane, Integer> weights = new EnumMap<>(PieceLane.class);
+        Map<PieceLane, Double> minShares = new EnumMap<>(PieceLane.class);
+        for (PieceLane lane : lanes) {
+            List<FairShareSelector.Candidate> laneCandidates = findCandidates(lane, now, limit, fairness);
+            if (!laneCandidates.isEmpty()) {
+                candidates.put(lane, laneCandidates);
+                demand.put(lane, Math.min(limit, laneCandidates.size()));
+                weights.put(lane, batchConfig.laneOf(lane).getWeight());
+                minShares.put(lane, batchConfig.laneOf(lane).getMinShare());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Integer> remainingCapacity = new HashMap<>();
+        for (Object[] row : pieceRepository.countLeasedPiecesByCabinet(now)) {
+            Long cabinetId = toLong(row[0]);
+            int cap = fairness.maxInFlightOf(cabinetId);
+            if (cap > 0) {
+                remainingCapacity.put(cabinetId, cap - ((Number) row[1]).intValue());
+            }
+        }
+
+        Map<PieceLane, Integer> quotas = LaneAllocator.allocate(limit, demand, weights, minShares);
+        List<Long> chosen = new ArrayList<>();
+        Set<Long> chosenIds = new HashSet<>();
+        Map<PieceLane, Integer> chosenPerLane = new EnumMap<>(PieceLane.class);
+        // First pass takes each lane's quota, the second hands out what the cabinet caps left unused
+        for (int pass = 0; pass < 2 && chosen.size() < limit; pass++) {
+            for (Map.Entry<PieceLane, List<FairShareSelector.Candidate>> entry : candidates.entrySet()) {
+                int want = pass == 0 ? quotas.getOrDefault(entry.getKey(), 0) : limit - chosen.size();
+                if (want <= 0) {
+                    continue;
+                }
+                List<FairShareSelector.Candidate> available = entry.getValue().stream()
+                        .filter(candidate -> !chosenIds.contains(candidate.pieceId))
+                        .collect(Collectors.toList());
+                List<Long> picked = FairShareSelector.select(available, want, fairness::weightOf,
+                        cabinetId -> remainingCapacity.computeIfAbsent(cabinetId, id -> capOf(fairness, id)));
+                chosenIds.addAll(picked);
+                for (FairShareSelector.Candidate candidate : available) {
+                    if (chosenIds.contains(candidate.pieceId)) {
+                        remainingCapacity.merge(candidate.cabinetId, -1, Integer::sum);
+                    }
+                }
+                chosen.addAll(picked);
+                chosenPerLane.merge(entry.getKey(), picked.size(), Integer::sum);
+            }
+        }
+        if (chosen.isEmpty()) {
+            log.debug("⏸️ Claimable pieces in {} but every cabinet is at its in-flight cap", demand.keySet());
+            return Collections.emptyList();
+        }
+
+        // Another node may have taken some candidates meanwhile: lock only those still claimable
+        List<Long> ids = pieceRepository.lockClaimablePieceIds(chosen, CLAIMABLE_STATUSES, now);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        pieceRepository.claimPieces(ids, nodeId, leaseUntil(now));
+        heldLeases.addAll(ids);
+
+        List<Piece> claimed = new ArrayList<>(pieceRepository.findAllById(ids));
+        // Keep the scheduling order: the first pieces get the first free threads
+        claimed.sort(Comparator.comparingInt(piece -> chosen.indexOf(piece.getId())));
+
+        log.info("🔒 Node {} claimed {} piece(s), per lane {}", nodeId, claimed.size(), chosenPerLane);
+        return claimed;
+    }
+
+    private List<FairShareSelector.Candidate> findCandidates(PieceLane lane, Date now, int limit,
+                                                             BatchProcessingConfig.Fairness fairness) {
+        List<FairShareSelector.Candidate> candidates = new ArrayList<>();
+        for (Object[] row : pieceRepository.findClaimCandidates(lane.getStatuses(), lane.isBank(), BANK_TYPE,
+                lane.getMinAttempts(), lane.getMaxAttempts(), now,
+                limit, limit * Math.max(1, fairness.getCandidateFactor()))) {
+            candidates.add(new FairShareSelector.Candidate(toLong(row[0]), toLong(row[1]), toLong(row[2])));
+        }
+        return candidates;
+    }
+
+    private static int capOf(BatchProcessingConfig.Fairness fairness, Long cabinetId) {
+        int cap = fairness.maxInFlightOf(cabinetId);
+        return cap <= 0 ? Integer.MAX_VALUE : cap;
+    }
+
+    /**
+     * Gives the piece back to the queue. Only the lease owned by this node is cleared.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void release(Long pieceId) {
+        heldLeases.remove(pieceId);
+        pieceRepository.releaseLease(pieceId, nodeId);
+    }
+
+    /**
+     * Heartbeat: extends the leases of the pieces still being processed on this node.
+     */
+    @Scheduled(fixedDelayString = "${batch.processing.lease-heartbeat-ms:60000}")
+    @Transactional
+    public void renewHeldLeases() {
+        if (heldLeases.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(heldLeases);
+        int renewed = pieceRepository.renewLeases(ids, nodeId, leaseUntil(new Date()));
+        if (renewed < ids.size()) {
+            log.warn("⚠️ Node {} renewed {}/{} leases - some claims were lost (expired and taken over)",
+                    nodeId, renewed, ids.size());
+        } else {
+            log.debug("💓 Node {} renewed {} lease(s)", nodeId, renewed);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    private Date leaseUntil(Date now) {
+        return new Date(now.getTime() + batchConfig.getLeaseDurationMs());
+    }
+
+    private static String resolveHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.pacioli.core.batches;
+
+import com.pacioli.core.enums.PieceStatus;
+import com.pacioli.core.models.Piece;
+import com.pacioli.core.repositories.PieceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the piece pipeline, exposed through actuator (/actuator/prometheus):
+ * <ul>
+ *     <li>{@code piece.pipeline.stage}: timer per stage, tagged by piece type, cabinet and outcome</li>
+ *     <li>{@code piece.pipeline.claimed} and {@code piece.pipeline.completed}: pieces entering and
+ *     leaving the pipeline, by type and cabinet (and final status)</li>
+ *     <li>{@code piece.queue.depth} per status and {@code piece.queue.oldest.uploaded.age}, refreshed
+ *     every batch.processing.metrics-refresh-ms rather than queried on each scrape</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class PipelineMetrics {
+
+    private static final String NONE = "none";
+
+    public enum Stage {
+        CLAIM("claim"),
+        AI_CALL("ai_call"),
+        NORMALIZATION("normalization"),
+        VALIDATION("validation"),
+        FX("fx"),
+        PERSISTENCE("persistence"),
+        DUPLICATE_CHECK("duplicate_check"),
+        NOTIFY("notify");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * A pipeline stage returning a value.
+     */
+    @FunctionalInterface
+    public interface StageCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * A pipeline stage without result.
+     */
+    @FunctionalInterface
+    public interface StageRun<E extends Exception> {
+        void run() throws E;
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final PieceRepository pieceRepository;
+
+    private final Map<PieceStatus, AtomicLong> queueDepth = new EnumMap<>(PieceStatus.class);
+    private final AtomicLong oldestUploadedAgeSeconds = new AtomicLong();
+
+    public PipelineMetrics(MeterRegistry meterRegistry, PieceRepository pieceRepository) {
+        this.meterRegistry = meterRegistry;
+        this.pieceRepository = pieceRepository;
+
+        for (PieceStatus status : PieceStatus.values()) {
+            AtomicLong depth = new AtomicLong();
+            queueDepth.put(status, depth);
+            Gauge.builder("piece.queue.depth", depth, AtomicLong::get)
+                    .description("Pieces per status")
+                    .tag("status", status.name())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("piece.queue.oldest.uploaded.age", oldestUploadedAgeSeconds, AtomicLong::get)
+                .description("Age of the oldest piece waiting in UPLOADED")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs and times a stage of the given piece (null for batch level stages).
+     */
+    public <T, E extends Exception> T time(Stage stage, Piece piece, StageCall<T, E> call) throws E {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.call();
+            success = true;
+            return result;
+        } finally {
+            Timer.builder("piece.pipeline.stage")
+                    .tag("stage", stage.tag)
+                    .tag("type", typeOf(piece))
+                    .tag("cabinet", cabinetOf(piece))
+                    .tag("outcome", success ? "success" : "failure")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public <E extends Exception> void run(Stage stage, Piece piece, StageRun<E> run) throws E {
+        time(stage, piece, () -> {
+            run.run();
+            return null;
+        });
+    }
+
+    public void claimed(Piece piece) {
+        Counter.builder("piece.pipeline.claimed")
+                .tag("type", typeOf(piece))
+                .tag("cabinet", cabinetOf(piece))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void completed(Piece piece) {
+        Counter.builder("piece.pipeline.completed")
+                .tag("status", piece.getStatus() != null ? piece.getStatus().name() : NONE)
+                .tag("type", typeOf(piece))
+                .tag("cabinet", cabinetOf(piece))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @Scheduled(fixedDelayString = "${batch.processing.metrics-refresh-ms:30000}")
+    public void refreshQueueGauges() {
+        try {
+            Map<PieceStatus, Long> counts = new EnumMap<>(PieceStatus.class);
+            for (Object[] row : pieceRepository.countGroupedByStatus()) {
+                if (row[0] != null) {
+                    counts.put((PieceStatus) row[0], ((Number) row[1]).longValue());
+                }
+            }
+            queueDepth.forEach((status, depth) -> depth.set(counts.getOrDefault(status, 0L)));
+
+            Date oldestUpload = pieceRepository.findOldestUploadDate(PieceStatus.UPLOADED);
+            oldestUploadedAgeSeconds.set(oldestUpload == null ? 0
+                    : Math.max(0, (System.currentTimeMillis() - oldestUpload.getTime()) / 1000));
+        } catch (Exception e) {
+            log.warn("⚠️ Could not refresh piece queue gauges: {}", e.getMessage());
+        }
+    }
+
+    private static String typeOf(Piece piece) {
+        return piece != null && piece.getType() != null ? piece.getType() : NONE;
+    }
+
+    private static String cabinetOf(Piece piece) {
+        if (piece == null || piece.getDossier() == null || piece.getDossier().getCabinet() == null) {
+            return NONE;
+        }
+        return String.valueOf(piece.getDossier().getCabinet().getId());
+    }
+}
@@ -0,0 +1,125 @@
+package com.pacioli.core.batches;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread while a scope is open, so a unit
+ * of work can check it stays within its statement budget. Registered as the session factory's
+ * statement inspector (spring.jpa.properties.hibernate.session_factory.statement_inspector); outside
+ * a scope it only hands the SQL back.
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.record(sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Starts counting on this thread until the returned scope is closed. Scopes nest: statements are
+     * counted by every open scope.
+     */
+    public static Scope open() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Scope outer;
+        private int selects;
+        private int inserts;
+        private int updates;
+        private int deletes;
+        private int sequences;
+        private int others;
+
+        private Scope(Scope outer) {
+            this.outer = outer;
+        }
+
+        private void record(String sql) {
+            String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+            if (isSequenceFetch(statement)) {
+                sequences++;
+            } else if (statement.startsWith("select") || statement.startsWith("with")) {
+                selects++;
+            } else if (statement.startsWith("insert")) {
+                inserts++;
+            } else if (statement.startsWith("update")) {
+                updates++;
+            } else if (statement.startsWith("delete")) {
+                deletes++;
+            } else {
+                others++;
+            }
+            if (outer != null) {
+                outer.record(sql);
+            }
+        }
+
+        public int getSelects() {
+            return selects;
+        }
+
+        public int getInserts() {
+            return inserts;
+        }
+
+        public int getUpdates() {
+            return updates;
+        }
+
+        public int getDeletes() {
+            return deletes;
+        }
+
+        public int getSequences() {
+            return sequences;
+        }
+
+        /**
+         * Statements whose number must not grow with the size of the piece: everything but inserts,
+         * which follow the number of ecritures and lines (and go out in JDBC batches), and the sequence
+         * fetches that hand out their ids (one per allocationSize rows).
+         */
+        public int getFixedCost() {
+            return selects + updates + deletes + others;
+        }
+
+        public int getTotal() {
+            return getFixedCost() + inserts + sequences;
+        }
+
+        @Override
+        public void close() {
+            if (CURRENT.get() == this) {
+                if (outer != null) {
+                    CURRENT.set(outer);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return selects + " selects, " + inserts + " inserts, " + updates + " updates, " + deletes + " deletes"
+                    + (sequences > 0 ? ", " + sequences + " sequence fetches" : "")
+                    + (others > 0 ? ", " + others + " others" : "");
+        }
+    }
+
+    // "select nextval('line_seq')" on PostgreSQL, "select next value for line_seq" on other dialects
+    private static boolean isSequenceFetch(String statement) {
+        return statement.startsWith("select") && (statement.contains("nextval(") || statement.contains("next value for"));
+    }
+}
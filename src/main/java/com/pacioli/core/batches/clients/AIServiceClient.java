@@ -2,15 +2,15 @@ package com.pacioli.core.batches.clients;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pacioli.core.config.http.OutboundDestination;
+import com.pacioli.core.config.http.OutboundHttpClients;
+import com.pacioli.core.resilience.AdaptiveConcurrencyLimiters;
+import com.pacioli.core.resilience.DependencyGuards;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -31,8 +31,10 @@ public class AIServiceClient {
     @Value("${file.upload.dir:Files/}")
     private String uploadDir;
 
-    @Autowired private RestTemplate restTemplate;
+    @Autowired private OutboundHttpClients httpClients;
     @Autowired private ObjectMapper objectMapper;
+    @Autowired private AdaptiveConcurrencyLimiters limiters;
+    @Autowired private DependencyGuards dependencyGuards;
 
     public JsonNode callAIService(String filename) throws IOException {
         Path filePath = Paths.get(uploadDir, filename);
@@ -43,19 +45,23 @@ public class AIServiceClient {
 
         log.info("🔗 Calling AI service: {}", apiUrl);
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("x-api-key", apiKey);
-
-        ResponseEntity<String> response = restTemplate.exchange(
-                apiUrl, HttpMethod.GET, new HttpEntity<>(headers), String.class
-        );
-
-        if (!response.getStatusCode().is2xxSuccessful()) {
-            throw new RuntimeException("AI service failed with status: " + response.getStatusCode());
-        }
+        // The body is parsed straight from the connection stream, never copied into a String first
+        JsonNode aiResponse = dependencyGuards.execute(OutboundDestination.INVOICE_AI, () ->
+                limiters.execute(OutboundDestination.INVOICE_AI, () ->
+                        httpClients.restTemplate(OutboundDestination.INVOICE_AI).execute(
+                                apiUrl,
+                                HttpMethod.GET,
+                                request -> request.getHeaders().set("x-api-key", apiKey),
+                                response -> {
+                                    if (!response.getStatusCode().is2xxSuccessful()) {
+                                        throw new RuntimeException("AI service failed with status: " + response.getStatusCode());
+                                    }
+                                    return objectMapper.readTree(response.getBody());
+                                }
+                        )));
 
         log.info("✅ AI service call successful");
-        return objectMapper.readTree(response.getBody());
+        return aiResponse;
     }
 
     private void validateFileExists(Path filePath) throws FileNotFoundException {
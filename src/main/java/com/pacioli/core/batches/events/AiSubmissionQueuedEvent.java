@@ -0,0 +1,16 @@
+package com.pacioli.core.batches.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published when an uploaded file was written to the AI submission outbox.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class AiSubmissionQueuedEvent {
+    private final Long submissionId;
+    private final Long pieceId;
+}
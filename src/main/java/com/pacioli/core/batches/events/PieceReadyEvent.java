@@ -0,0 +1,18 @@
+package com.pacioli.core.batches.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published when a piece is ready to be picked up by the AI processing pipeline.
+ * Listeners should react after commit so the piece row is visible to the work queue.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PieceReadyEvent {
+    private final Long pieceId;
+    private final Long dossierId;
+    private final String pieceType;
+}
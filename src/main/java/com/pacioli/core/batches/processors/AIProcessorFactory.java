@@ -23,7 +23,7 @@ public class AIProcessorFactory {
         return isBankStatement ? bankAIProcessor : normalAIProcessor;
     }
 
-    public void processPieceWithRetry(Piece piece, int attempt) throws InterruptedException {
+    public void processPieceWithRetry(Piece piece, int attempt) {
         BaseAIProcessor processor = getProcessor(piece);
 
         if (processor instanceof NormalAIProcessor) {
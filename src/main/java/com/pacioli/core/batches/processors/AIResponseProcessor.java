@@ -12,7 +12,7 @@ public class AIResponseProcessor {
     @Autowired
     private AIProcessorFactory processorFactory;
 
-    public void processPieceWithRetry(Piece piece, int attempt) throws InterruptedException {
+    public void processPieceWithRetry(Piece piece, int attempt) {
         log.info("🚀 Starting AI processing for piece {} (attempt {})", piece.getId(), attempt);
         processorFactory.processPieceWithRetry(piece, attempt);
     }
@@ -1,19 +1,26 @@
 package com.pacioli.core.batches.processors;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pacioli.core.DTO.PieceDTO;
 import com.pacioli.core.DTO.AI.BankStatementGetResponse;
+import com.pacioli.core.batches.PipelineMetrics.Stage;
 import com.pacioli.core.batches.processors.converters.CurrencyConversionService;
 import com.pacioli.core.batches.processors.converters.CurrencyDataExtractionService;
-import com.pacioli.core.batches.processors.detection.DuplicationDetectionService;
-import com.pacioli.core.batches.processors.normalizers.AIResponseNormalizer;
+import com.pacioli.core.batches.processors.normalizers.BankStatementStreamReader;
 import com.pacioli.core.enums.PieceStatus;
 import com.pacioli.core.models.Piece;
 import com.pacioli.core.services.AI.services.BankApiService;
+import com.pacioli.core.services.serviceImp.pieces.EcritureChunkSource;
+import com.pacioli.core.services.serviceImp.pieces.ResultFingerprint;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 
 @Slf4j
@@ -23,9 +30,6 @@ public class BankAIProcessor extends BaseAIProcessor {
     @Autowired
     private BankApiService bankApiService;
 
-    @Autowired
-    private AIResponseNormalizer responseNormalizer;
-
     @Autowired
     private CurrencyConversionService currencyConversionService;
 
@@ -33,94 +37,146 @@ public class BankAIProcessor extends BaseAIProcessor {
     private CurrencyDataExtractionService currencyDataExtractionService;
 
     @Autowired
-    private DuplicationDetectionService duplicationDetectionService;
+    private BankStatementStreamReader statementStreamReader;
 
-    public void processPieceWithRetry(Piece piece, int attempt) throws InterruptedException {
+    public void processPieceWithRetry(Piece piece, int attempt) {
         if (attempt > batchConfig.getMaxRetries()) {
             rejectPiece(piece, "Failed after " + batchConfig.getMaxRetries() + " AI attempts");
             return;
         }
 
-        if (duplicationDetectionService.isDuplicate(piece)) {
-            log.info("🚫 Skipping duplicate piece: {}", piece.getId());
-            updatePieceStatus(piece, PieceStatus.DUPLICATE);
-            return;
-        }
-
         updatePieceStatus(piece, PieceStatus.PROCESSING);
 
+        Path statementFile = null;
         try {
             log.info("🏦 Processing bank piece: {}", piece.getFilename());
-            JsonNode aiResponse = callBankService(piece);
-
-            // Normalize the response
-            JsonNode normalizedResponse = responseNormalizer.normalizeAIResponse(aiResponse, true);
-            log.info("🏦 Normalized response keys: {}", normalizedResponse.fieldNames());
-
-            // Check if the normalized response is valid
-            if (!pieceValidator.isValidBankAIResponse(normalizedResponse)) {
-                log.warn("❌ Invalid normalized bank response, retrying...");
-                handleInvalidResponse(piece, attempt, normalizedResponse.toString());
+            statementFile = pipelineMetrics.time(Stage.AI_CALL, piece, () -> downloadBankStatement(piece));
+
+            // Pass 1: validate and total the statement, one transaction group at a time
+            Path downloaded = statementFile;
+            StatementScan scan = pipelineMetrics.time(Stage.NORMALIZATION, piece, () -> scanStatement(downloaded));
+            if (!scan.valid || scan.groups == 0) {
+                log.warn("❌ Invalid or empty bank statement ({} groups read), retrying...", scan.groups);
+                handleInvalidResponse(piece, attempt, scan.describe());
                 return;
             }
 
-            // Extract the ecritures from normalized response for processing
-            JsonNode ecrituresNode = normalizedResponse.get("ecritures");
-            if (ecrituresNode == null || !ecrituresNode.isArray() || ecrituresNode.size() == 0) {
-                log.warn("❌ No ecritures in normalized bank response, retrying...");
-                handleInvalidResponse(piece, attempt, normalizedResponse.toString());
-                return;
-            }
+            log.info("✅ Valid bank AI response with {} ecritures", scan.groups);
 
-            log.info("✅ Valid bank AI response with {} ecritures", ecrituresNode.size());
+            extractAndSaveAIData(piece, scan);
 
-            // Process the data - pass the normalized response which contains ecritures
-            extractAndSaveAIData(piece, normalizedResponse);
-
-            // ✅ PASS THE NORMALIZED RESPONSE to the parent method, not the original aiResponse
-            processValidAIResponse(piece, normalizedResponse);
+            // Pass 2: build and persist the ecritures chunk by chunk
+            processStatementInChunks(piece, statementFile, scan);
 
         } catch (Exception e) {
+            rethrowIfStatusConflict(e);
+            if (parkIfDependencyUnavailable(piece, e)) {
+                return;
+            }
             log.error("❌ Error processing bank piece {}: {}", piece.getId(), e.getMessage());
             handleProcessingError(piece, attempt, e);
+        } finally {
+            deleteQuietly(statementFile);
         }
     }
 
-    private void extractAndSaveAIData(Piece piece, JsonNode aiResponse) throws JsonProcessingException {
-        try {
-            log.info("🔍 Starting extractAndSaveAIData for piece {}", piece.getId());
-
-            // ❌ PROBLEM: Don't call asText() on already parsed JSON!
-            // String responseText = aiResponse.asText();
-            // JsonNode parsedJson = objectMapper.readTree(responseText);
+    /**
+     * Running totals of pass 1: nothing but the first group is kept from the statement.
+     */
+    private class StatementScan {
+        int groups;
+        boolean valid = true;
+        double totalAmount;
+        ObjectNode firstGroup;
+        String currency;
+        boolean currencyFound;
+        // Over every transaction group read, in order
+        final ResultFingerprint fingerprint = ResultFingerprint.start();
+
+        void accept(ObjectNode group) {
+            if (!valid) {
+                return;
+            }
+            if (!pieceValidator.isValidBankTransactionGroup(group, groups)) {
+                valid = false;
+                return;
+            }
+            if (firstGroup == null) {
+                firstGroup = group;
+            }
+            JsonNode entries = group.get("entries");
+            for (JsonNode entry : entries) {
+                double debit = parseDoubleSafely(entry, "DebitAmt");
+                double credit = parseDoubleSafely(entry, "CreditAmt");
+                totalAmount += Math.max(debit, credit);
+            }
+            // Currency from the first group with entries
+            if (!currencyFound && entries.size() > 0) {
+                currency = extractAndNormalizeCurrency(entries.get(0));
+                currencyFound = true;
+            }
+            fingerprint.update(group.toString());
+            groups++;
+        }
 
-            // ✅ FIX: Use the aiResponse directly (it's already parsed JSON)
-            JsonNode ecrituresNode = findEcrituresNodeForAI(aiResponse);
-            log.info("🔍 Found ecritures node: {}", ecrituresNode != null);
+        String describe() {
+            return valid ? "no transaction groups" : "invalid transaction group at index " + groups;
+        }
+    }
 
-            if (ecrituresNode != null && ecrituresNode.isArray() && ecrituresNode.size() > 0) {
-                log.info("🏦 Processing {} bank entries", ecrituresNode.size());
-                JsonNode firstEntry = ecrituresNode.get(0);
+    private StatementScan scanStatement(Path statementFile) throws IOException {
+        StatementScan scan = new StatementScan();
+        statementStreamReader.read(statementFile, scan::accept);
+        return scan;
+    }
 
-                extractAmountAndCurrency(piece, ecrituresNode, firstEntry);
+    private void extractAndSaveAIData(Piece piece, StatementScan scan) {
+        try {
+            log.info("🔍 Starting extractAndSaveAIData for piece {}", piece.getId());
+            log.info("🏦 Processing {} bank entries", scan.groups);
 
-                // ✅ CRITICAL FIX: Set the final amount on the piece
-                setFinalPieceAmount(piece);
+            extractAmountAndCurrency(piece, scan);
 
-                pieceRepository.save(piece);
-                log.info("✅ Saved bank piece with AI Amount: {}, Final Amount: {}, Currency: {}",
-                        piece.getAiAmount(), piece.getAmount(), piece.getAiCurrency());
+            // ✅ CRITICAL FIX: Set the final amount on the piece
+            setFinalPieceAmount(piece);
 
-            } else {
-                log.warn("⚠️ No ecritures found in AI response");
-                applyFallbackCurrency(piece);
-            }
+            pieceUpdates.saveAiData(piece);
+            log.info("✅ Saved bank piece with AI Amount: {}, Final Amount: {}, Currency: {}",
+                    piece.getAiAmount(), piece.getAmount(), piece.getAiCurrency());
         } catch (Exception e) {
             log.error("❌ Failed to extract bank AI data: {}", e.getMessage(), e);
             applyFallbackCurrency(piece);
         }
     }
 
+    private void processStatementInChunks(Piece piece, Path statementFile, StatementScan scan) {
+        // The piece of this unit of work already carries the AI data just extracted
+        PieceDTO header = dtoBuilder.buildPieceHeaderDTO(piece, scan.firstGroup);
+        int chunkSize = Math.max(1, batchConfig.getBankChunkSize());
+
+        EcritureChunkSource ecritureChunks = sink -> {
+            ArrayNode chunk = objectMapper.createArrayNode();
+            statementStreamReader.read(statementFile, group -> {
+                chunk.add(group);
+                if (chunk.size() >= chunkSize) {
+                    sink.accept(dtoBuilder.buildEcrituresChunk(piece, chunk));
+                    chunk.removeAll();
+                }
+            });
+            if (chunk.size() > 0) {
+                sink.accept(dtoBuilder.buildEcrituresChunk(piece, chunk));
+            }
+        };
+
+        // The final status (PROCESSED, DUPLICATE or REJECTED) is set in the same transaction
+        Piece outcome = pieceService.saveEcrituresAndFacture(piece.getId(), piece.getDossier().getId(),
+                header, ecritureChunks, scan.fingerprint.finish());
+        pieceUpdates.adopt(piece, outcome);
+
+        log.info("✅ Successfully processed bank piece {} ({} transaction groups, chunks of {}), status: {}",
+                piece.getId(), scan.groups, chunkSize, piece.getStatus());
+    }
+
     private void setFinalPieceAmount(Piece piece) {
         if (piece.getAiAmount() != null && piece.getAiAmount() > 0) {
             if (piece.getExchangeRate() != null && piece.getExchangeRate() > 0) {
@@ -140,55 +196,28 @@ public class BankAIProcessor extends BaseAIProcessor {
         }
     }
 
-    private void extractAmountAndCurrency(Piece piece, JsonNode ecrituresNode, JsonNode firstEntry) {
+    private void extractAmountAndCurrency(Piece piece, StatementScan scan) {
         try {
             log.info("🔍 Starting extractAmountAndCurrency for bank statement");
 
-            // Calculate total amount from ALL transactions
-            double totalAmount = 0.0;
-            for (JsonNode node : ecrituresNode) {
-                if (node.has("entries") && node.get("entries").isArray()) {
-                    JsonNode entries = node.get("entries");
-                    for (JsonNode entry : entries) {
-                        double debit = parseDoubleSafely(entry, "DebitAmt");
-                        double credit = parseDoubleSafely(entry, "CreditAmt");
-                        totalAmount += Math.max(debit, credit);
-                    }
-                } else {
-                    double debit = parseDoubleSafely(node, "DebitAmt");
-                    double credit = parseDoubleSafely(node, "CreditAmt");
-                    totalAmount += Math.max(debit, credit);
-                }
-            }
-
-            piece.setAiAmount(totalAmount);
-            log.info("💰 Total bank statement amount: {}", totalAmount);
-
-            // Extract currency from first valid entry
-            String bankCurrency = null;
-            for (JsonNode node : ecrituresNode) {
-                if (node.has("entries") && node.get("entries").isArray() &&
-                        node.get("entries").size() > 0) {
-                    bankCurrency = extractAndNormalizeCurrency(node.get("entries").get(0));
-                    break;
-                } else if (node.has("Devise")) {
-                    bankCurrency = extractAndNormalizeCurrency(node);
-                    break;
-                }
-            }
+            // Total amount from ALL transactions, summed while scanning
+            piece.setAiAmount(scan.totalAmount);
+            log.info("💰 Total bank statement amount: {}", scan.totalAmount);
 
+            String bankCurrency = scan.currency;
             piece.setAiCurrency(bankCurrency);
             log.info("💰 Extracted bank currency: {}", bankCurrency);
 
-            // ... rest of the method remains the same
             String dossierCurrency = getDossierCurrencyCode(piece.getDossier());
             log.info("💰 Dossier currency: {}", dossierCurrency);
 
+            JsonNode firstEntry = scan.firstGroup;
             String transactionDateStr = extractStringSafely(firstEntry, "Date", null);
             LocalDate transactionDate = parseDate(transactionDateStr != null ? transactionDateStr : piece.getUploadDate().toString());
             log.info("📅 Transaction date: {}", transactionDate);
 
-            currencyDataExtractionService.calculateAndApplyExchangeRate(piece, bankCurrency, dossierCurrency, transactionDate);
+            pipelineMetrics.run(Stage.FX, piece, () -> currencyDataExtractionService.calculateAndApplyExchangeRate(
+                    piece, bankCurrency, dossierCurrency, transactionDate));
 
         } catch (Exception e) {
             log.error("❌ Error in extractAmountAndCurrency: {}", e.getMessage(), e);
@@ -201,44 +230,48 @@ public class BankAIProcessor extends BaseAIProcessor {
         String dossierCurrency = getDossierCurrencyCode(piece.getDossier());
         piece.setAiAmount(0.0);
         piece.setAiCurrency(null);
-        currencyDataExtractionService.applyDefaultCurrency(piece, dossierCurrency);
-        pieceRepository.save(piece);
+        pipelineMetrics.run(Stage.FX, piece, () -> currencyDataExtractionService.applyDefaultCurrency(piece, dossierCurrency));
+        pieceUpdates.saveAiData(piece);
     }
 
-    private JsonNode callBankService(Piece piece) {
-        try {
-            String filename = piece.getFilename();
-            String fileId = filename.substring(0, filename.lastIndexOf('.'));
-
-            log.info("🏦 Fetching bank statement for: {}", fileId);
-            BankStatementGetResponse bankResponse = bankApiService.getBankStatementResult(fileId);
+    /**
+     * Downloads the bank statement result to a temporary file; it is read from there by both passes.
+     */
+    private Path downloadBankStatement(Piece piece) throws IOException {
+        String filename = piece.getFilename();
+        String fileId = filename.substring(0, filename.lastIndexOf('.'));
 
+        log.info("🏦 Fetching bank statement for: {}", fileId);
+        Path statementFile = Files.createTempFile("bank-statement-" + piece.getId() + "-", ".json");
+        try {
+            BankStatementGetResponse bankResponse = bankApiService.downloadBankStatementResult(fileId, statementFile);
             if (!bankResponse.isSuccess()) {
                 throw new RuntimeException("Bank API failed: " + bankResponse.getMessage());
             }
+            return statementFile;
+        } catch (RuntimeException e) {
+            deleteQuietly(statementFile);
+            throw e;
+        }
+    }
 
-            String jsonResponse = bankResponse.getJsonResponse();
-
-            // ✅ NEW: Clean markdown code fences if present
-            if (jsonResponse != null && jsonResponse.contains("```json")) {
-                jsonResponse = cleanMarkdownCodeFences(jsonResponse);
-            }
-
-            return objectMapper.readTree(jsonResponse);
-
-        } catch (Exception e) {
-            log.error("❌ Bank API call failed: {}", e.getMessage());
-            throw new RuntimeException("Bank service call failed: " + e.getMessage(), e);
+    private void deleteQuietly(Path statementFile) {
+        if (statementFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(statementFile);
+        } catch (IOException e) {
+            log.warn("⚠️ Could not delete bank statement file {}: {}", statementFile, e.getMessage());
         }
     }
 
     @Override
-    protected void handleInvalidResponse(Piece piece, int attempt, String jsonResponse) throws InterruptedException {
+    protected void handleInvalidResponse(Piece piece, int attempt, String jsonResponse) {
         if (attempt < batchConfig.getMaxRetries()) {
-            log.warn("🔄 Retrying bank piece {} due to invalid AI response (attempt {}/{})",
+            log.warn("🔄 Scheduling retry of bank piece {} due to invalid AI response (attempt {}/{})",
                     piece.getId(), attempt, batchConfig.getMaxRetries());
-            Thread.sleep(batchConfig.getRetryDelayMs()); // This will now be 5 minutes
-            processPieceWithRetry(piece, attempt + 1);
+            retryScheduler.scheduleRetry(piece, attempt, batchConfig.getRetryDelayMs(), "invalid AI response");
         } else {
             log.error("❌ Bank file rejected - invalid AI response after all attempts: {}", jsonResponse);
             rejectPiece(piece, "Invalid AI response after all attempts");
@@ -246,12 +279,11 @@ public class BankAIProcessor extends BaseAIProcessor {
     }
 
     @Override
-    protected void handleProcessingError(Piece piece, int attempt, Exception e) throws InterruptedException {
+    protected void handleProcessingError(Piece piece, int attempt, Exception e) {
         if (attempt < batchConfig.getMaxRetries()) {
-            log.warn("🔄 Retrying bank piece {} after error (attempt {}/{}): {}",
+            log.warn("🔄 Scheduling retry of bank piece {} after error (attempt {}/{}): {}",
                     piece.getId(), attempt, batchConfig.getMaxRetries(), e.getMessage());
-            Thread.sleep(batchConfig.getRetryDelayMs()); // This will now be 5 minutes
-            processPieceWithRetry(piece, attempt + 1);
+            retryScheduler.scheduleRetry(piece, attempt, batchConfig.getRetryDelayMs(), e.getMessage());
         } else {
             rejectPiece(piece, "Failed after all attempts: " + e.getMessage());
         }
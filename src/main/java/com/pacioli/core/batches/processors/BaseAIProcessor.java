@@ -5,24 +5,25 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pacioli.core.DTO.EcrituresDTO2;
 import com.pacioli.core.DTO.PieceDTO;
+import com.pacioli.core.Exceptions.DependencyUnavailableException;
 import com.pacioli.core.batches.DTO.DTOBuilder;
+import com.pacioli.core.batches.PieceRetryScheduler;
+import com.pacioli.core.batches.PipelineMetrics;
 import com.pacioli.core.config.batch.BatchProcessingConfig;
 import com.pacioli.core.enums.PieceStatus;
 import com.pacioli.core.models.Dossier;
 import com.pacioli.core.models.Piece;
-import com.pacioli.core.repositories.PieceRepository;
 import com.pacioli.core.services.ExchangeRateService;
 import com.pacioli.core.services.PieceService;
+import com.pacioli.core.services.serviceImp.pieces.PieceUpdates;
+import com.pacioli.core.utils.AiValueParsers;
 import com.pacioli.core.utils.NormalizeCurrencyCode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.Arrays;
-import java.util.List;
 
 @Slf4j
 @Component
@@ -31,9 +32,6 @@ public abstract class BaseAIProcessor {
     @Autowired
     protected BatchProcessingConfig batchConfig;
 
-    @Autowired
-    protected PieceRepository pieceRepository;
-
     @Autowired
     protected PieceService pieceService;
 
@@ -52,15 +50,14 @@ public abstract class BaseAIProcessor {
     @Autowired
     protected ExchangeRateService exchangeRateService;
 
-    protected static final List<DateTimeFormatter> DATE_FORMATTERS = Arrays.asList(
-            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
-            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
-            DateTimeFormatter.ofPattern("dd-MM-yyyy"),
-            DateTimeFormatter.ofPattern("yyyy-MM-d"),
-            DateTimeFormatter.ofPattern("yyyy-M-dd"),
-            DateTimeFormatter.ofPattern("yyyy-M-d"),
-            DateTimeFormatter.ofPattern("yyyy-dd-MM")
-    );
+    @Autowired
+    protected PieceRetryScheduler retryScheduler;
+
+    @Autowired
+    protected PieceUpdates pieceUpdates;
+
+    @Autowired
+    protected PipelineMetrics pipelineMetrics;
 
     protected LocalDate parseDate(String dateStr) {
         if (dateStr == null || dateStr.trim().isEmpty()) {
@@ -68,15 +65,12 @@ public abstract class BaseAIProcessor {
             return LocalDate.now();
         }
 
-        for (DateTimeFormatter formatter : DATE_FORMATTERS) {
-            try {
-                return LocalDate.parse(dateStr.trim(), formatter);
-            } catch (DateTimeParseException ignored) {
-                // Continue to next formatter
-            }
+        LocalDate date = AiValueParsers.parseDate(dateStr);
+        if (date == null) {
+            log.warn("❌ Could not parse date: {}. Using current date.", dateStr);
+            return LocalDate.now();
         }
-        log.warn("❌ Could not parse date: {}. Using current date.", dateStr);
-        return LocalDate.now();
+        return date;
     }
 
     protected JsonNode findEcrituresNodeForAI(JsonNode parsedJson) {
@@ -116,14 +110,15 @@ public abstract class BaseAIProcessor {
         double maxAmount = 0.0;
         int entryCount = 0;
 
-        log.info("🔍 calculateLargestAmount - Ecritures structure: {}", ecritures);
+        // Size only: dumping the tree copies the whole statement into the log line
+        log.debug("🔍 calculateLargestAmount - {} ecritures", ecritures.size());
 
         for (JsonNode entry : ecritures) {
             //log.info("🔍 Processing entry: {}", entry);
 
             // Check for bank statement structure
             if (entry.has("entries") && entry.get("entries").isArray()) {
-                log.info("🏦 Detected bank statement structure with entries");
+                log.trace("🏦 Detected bank statement structure with entries");
                 JsonNode entries = entry.get("entries");
                 for (JsonNode nestedEntry : entries) {
                     double debit = parseDoubleSafely(nestedEntry, "DebitAmt");
@@ -133,7 +128,7 @@ public abstract class BaseAIProcessor {
                     maxAmount = Math.max(maxAmount, entryMax);
                     entryCount++;
 
-                    log.info("🔍 Bank entry - Debit: {}, Credit: {}, Max: {}", debit, credit, entryMax);
+                    log.trace("🔍 Bank entry - Debit: {}, Credit: {}, Max: {}", debit, credit, entryMax);
                 }
             } else {
                 // Regular structure
@@ -144,7 +139,7 @@ public abstract class BaseAIProcessor {
                 maxAmount = Math.max(maxAmount, entryMax);
                 entryCount++;
 
-                log.info("🔍 Regular entry - Debit: {}, Credit: {}, Max: {}", debit, credit, entryMax);
+                log.trace("🔍 Regular entry - Debit: {}, Credit: {}, Max: {}", debit, credit, entryMax);
             }
         }
 
@@ -179,22 +174,7 @@ public abstract class BaseAIProcessor {
     }
 
     protected double parseDoubleSafely(JsonNode node, String fieldName) {
-        if (node == null || !node.has(fieldName) || node.get(fieldName).isNull()) {
-            log.trace("Field {} not found or is null", fieldName);
-            return 0.0;
-        }
-
-        try {
-            String value = node.get(fieldName).asText();
-            if (value == null || value.trim().isEmpty()) {
-                return 0.0;
-            }
-            value = value.replace(',', '.');
-            return Double.parseDouble(value);
-        } catch (NumberFormatException e) {
-            log.trace("Error parsing {} value: {}", fieldName, node.get(fieldName).asText());
-            return 0.0;
-        }
+        return AiValueParsers.parseAmount(node, fieldName);
     }
 
     protected String extractStringSafely(JsonNode node, String fieldName, String defaultValue) {
@@ -220,31 +200,61 @@ public abstract class BaseAIProcessor {
         return dossierCurrency;
     }
 
+    /**
+     * Versioned transition of the piece loaded for this unit of work, see {@link PieceUpdates#transition}.
+     */
     protected void updatePieceStatus(Piece piece, PieceStatus status) {
-        pieceService.updatePieceStatus(piece.getId(), status.name());
+        pieceUpdates.transition(piece, status);
     }
 
     protected void rejectPiece(Piece piece, String reason) {
         log.error("❌ Rejecting piece {}: {}", piece.getId(), reason);
-        pieceService.updatePieceStatus(piece.getId(), PieceStatus.REJECTED.name());
+        pieceUpdates.transition(piece, PieceStatus.REJECTED);
+    }
+
+    /**
+     * A status conflict means another worker moved the piece on meanwhile: it is theirs now, so it is
+     * neither retried nor rejected here.
+     */
+    protected static void rethrowIfStatusConflict(Exception e) {
+        if (e instanceof OptimisticLockingFailureException conflict) {
+            throw conflict;
+        }
+    }
+
+    /**
+     * Parks the piece without consuming an attempt when the AI dependency is unavailable
+     * (circuit open, bulkhead full); it is picked up again once the dependency can be called.
+     *
+     * @return true if the piece was parked
+     */
+    protected boolean parkIfDependencyUnavailable(Piece piece, Exception e) {
+        DependencyUnavailableException unavailable = DependencyUnavailableException.find(e);
+        if (unavailable == null) {
+            return false;
+        }
+        retryScheduler.park(piece, unavailable.getRetryAt(), unavailable.getMessage());
+        return true;
     }
 
-    protected abstract void handleInvalidResponse(Piece piece, int attempt, String jsonResponse) throws InterruptedException;
+    /**
+     * Handles an unusable AI response: schedules the next attempt or rejects the piece. Must not block.
+     */
+    protected abstract void handleInvalidResponse(Piece piece, int attempt, String jsonResponse);
 
-    protected abstract void handleProcessingError(Piece piece, int attempt, Exception e) throws InterruptedException;
+    /**
+     * Handles a failed AI call: schedules the next attempt or rejects the piece. Must not block.
+     */
+    protected abstract void handleProcessingError(Piece piece, int attempt, Exception e);
 
     public void processValidAIResponse(Piece piece, JsonNode aiResponse) throws JsonProcessingException {
         try {
-            // ✅ STEP 1: Reload piece to ensure we have latest data
-            Piece refreshedPiece = pieceRepository.findById(piece.getId())
-                    .orElseThrow(() -> new RuntimeException("Piece not found after AI data extraction"));
-
-            // ✅ DEBUG: Check the amount before processing
+            // ✅ STEP 1: The piece of this unit of work already carries the AI data just extracted
             log.info("🔍 Before processing - Piece amount: {}, AI amount: {}",
-                    refreshedPiece.getAmount(), refreshedPiece.getAiAmount());
+                    piece.getAmount(), piece.getAiAmount());
 
             // ✅ STEP 2: Process DTO and save ecritures
-            PieceDTO pieceDTO = dtoBuilder.buildPieceDTO(refreshedPiece, aiResponse);
+            PieceDTO pieceDTO = dtoBuilder.buildPieceDTO(piece, aiResponse);
 
             // ❌ REMOVED: Duplicate amount setting logic (now handled in extractAndSaveAIData)
 
@@ -257,22 +267,17 @@ public abstract class BaseAIProcessor {
                 log.warn("⚠️ No ecritures in built DTO");
             }
 
-            // ✅ STEP 3: Create converted response and save
-            JsonNode convertedResponse = createConvertedResponseNode(pieceDTO, aiResponse);
-
-            // ✅ STEP 4: Save to database
-            pieceService.saveEcrituresAndFacture(
-                    refreshedPiece.getId(),
-                    refreshedPiece.getDossier().getId(),
-                    objectMapper.writeValueAsString(pieceDTO),
-                    convertedResponse
+            // ✅ STEP 3: Save to database - the typed DTO is handed over as-is, no JSON round-trip.
+            // The final status (PROCESSED, DUPLICATE or REJECTED) is set in the same transaction.
+            Piece outcome = pieceService.saveEcrituresAndFacture(
+                    piece.getId(),
+                    piece.getDossier().getId(),
+                    pieceDTO
             );
+            pieceUpdates.adopt(piece, outcome);
 
-            // ✅ STEP 5: Update status to PROCESSED
-            updatePieceStatus(refreshedPiece, PieceStatus.PROCESSED);
-
-            log.info("✅ Successfully processed piece {} with amount: {}",
-                    refreshedPiece.getId(), refreshedPiece.getAmount());
+            log.info("✅ Successfully processed piece {} with amount: {}, status: {}",
+                    piece.getId(), piece.getAmount(), piece.getStatus());
 
         } catch (Exception e) {
             log.error("❌ Error in processValidAIResponse for piece {}: {}", piece.getId(), e.getMessage(), e);
@@ -301,36 +306,4 @@ public abstract class BaseAIProcessor {
 
         return cleaned;
     }
-
-    /**
-     * ✅ Create a proper JsonNode for the converted response
-     */
-    protected JsonNode createConvertedResponseNode(PieceDTO pieceDTO, JsonNode originalAiResponse) {
-        try {
-            // Create a JSON structure that matches what the service expects
-            // You can customize this based on what PieceService.saveEcrituresAndFacture expects
-
-            // Option 1: Use the original AI response if it has the required structure
-            if (originalAiResponse != null && originalAiResponse.has("ecritures")) {
-                return originalAiResponse;
-            }
-
-            // Option 2: Create a new JSON structure from the DTO
-            String jsonString = objectMapper.writeValueAsString(pieceDTO);
-            return objectMapper.readTree(jsonString);
-
-            // Option 3: Create a minimal structure with just ecritures
-            /*
-            ObjectNode responseNode = objectMapper.createObjectNode();
-            ArrayNode ecrituresArray = objectMapper.valueToTree(pieceDTO.getEcritures());
-            responseNode.set("ecritures", ecrituresArray);
-            return responseNode;
-            */
-
-        } catch (Exception e) {
-            log.error("❌ Error creating converted response node: {}", e.getMessage(), e);
-            // Return empty object as fallback
-            return objectMapper.createObjectNode();
-        }
-    }
 }
\ No newline at end of file
@@ -3,9 +3,9 @@ package com.pacioli.core.batches.processors;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pacioli.core.batches.PipelineMetrics.Stage;
 import com.pacioli.core.batches.clients.AIServiceClient;
 import com.pacioli.core.batches.processors.converters.CurrencyDataExtractionService;
-import com.pacioli.core.batches.processors.detection.DuplicationDetectionService;
 import com.pacioli.core.batches.processors.normalizers.AIResponseNormalizer;
 import com.pacioli.core.enums.PieceStatus;
 import com.pacioli.core.models.Piece;
@@ -28,28 +28,20 @@ public class NormalAIProcessor extends BaseAIProcessor {
     @Autowired
     private CurrencyDataExtractionService currencyDataExtractionService;
 
-    @Autowired
-    private DuplicationDetectionService duplicationDetectionService;
-
 
-    public void processPieceWithRetry(Piece piece, int attempt) throws InterruptedException {
+    public void processPieceWithRetry(Piece piece, int attempt) {
         if (attempt > batchConfig.getMaxRetries()) {
             rejectPiece(piece, "Failed after " + batchConfig.getMaxRetries() + " AI attempts");
             return;
         }
 
-        if (duplicationDetectionService.isDuplicate(piece)) {
-            log.info("🚫 Skipping duplicate piece: {}", piece.getId());
-            updatePieceStatus(piece, PieceStatus.DUPLICATE);
-            return;
-        }
-
         updatePieceStatus(piece, PieceStatus.PROCESSING);
 
 
         try {
             log.info("📄 Processing normal piece: {}", piece.getFilename());
-            JsonNode aiResponse = aiServiceClient.callAIService(piece.getFilename());
+            JsonNode aiResponse = pipelineMetrics.time(Stage.AI_CALL, piece,
+                    () -> aiServiceClient.callAIService(piece.getFilename()));
 
             // Handle markdown in raw AI response if needed
             if (aiResponse.has("outputText")) {
@@ -61,11 +53,12 @@ public class NormalAIProcessor extends BaseAIProcessor {
             }
 
             // Normalize the response
-            JsonNode normalizedResponse = responseNormalizer.normalizeAIResponse(aiResponse, false);
+            JsonNode normalizedResponse = pipelineMetrics.time(Stage.NORMALIZATION, piece,
+                    () -> responseNormalizer.normalizeAIResponse(aiResponse, false));
             log.info("📄 Normalized response keys: {}", normalizedResponse.fieldNames());
 
             // Check if the normalized response is valid
-            if (!pieceValidator.isValidAIResponse(normalizedResponse)) {
+            if (!pipelineMetrics.time(Stage.VALIDATION, piece, () -> pieceValidator.isValidAIResponse(normalizedResponse))) {
                 log.warn("❌ Invalid normalized response, retrying...");
                 handleInvalidResponse(piece, attempt, normalizedResponse.toString());
                 return;
@@ -88,7 +81,11 @@ public class NormalAIProcessor extends BaseAIProcessor {
             processValidAIResponse(piece, normalizedResponse);
 
         } catch (Exception e) {
+            rethrowIfStatusConflict(e);
 //            log.error("❌ Error processing piece {}: {}", piece.getId(), e.getMessage());
+            if (parkIfDependencyUnavailable(piece, e)) {
+                return;
+            }
             handleProcessingError(piece, attempt, e);
         }
     }
@@ -102,7 +99,7 @@ public class NormalAIProcessor extends BaseAIProcessor {
                 JsonNode firstEntry = ecrituresNode.get(0);
 
                 extractAmountAndCurrency(piece, ecrituresNode, firstEntry);
-                pieceRepository.save(piece);
+                pieceUpdates.saveAiData(piece);
 
             } else {
                 applyFallbackCurrency(piece);
@@ -130,7 +127,8 @@ public class NormalAIProcessor extends BaseAIProcessor {
         LocalDate invoiceDate = parseDate(invoiceDateStr != null ? invoiceDateStr : piece.getUploadDate().toString());
 
         // Apply currency conversion using dedicated service
-        currencyDataExtractionService.calculateAndApplyExchangeRate(piece, invoiceCurrency, dossierCurrency, invoiceDate);
+        pipelineMetrics.run(Stage.FX, piece, () -> currencyDataExtractionService.calculateAndApplyExchangeRate(
+                piece, invoiceCurrency, dossierCurrency, invoiceDate));
 
         log.info("💰 Extracted invoice data - Amount: {}, Currency: {}, Converted: {}, Rate: {}",
                 originalAmount, invoiceCurrency, piece.getConvertedCurrency(), piece.getExchangeRate());
@@ -141,20 +139,17 @@ public class NormalAIProcessor extends BaseAIProcessor {
         String dossierCurrency = getDossierCurrencyCode(piece.getDossier());
         piece.setAiAmount(0.0);
         piece.setAiCurrency(null);
-        currencyDataExtractionService.applyDefaultCurrency(piece, dossierCurrency);
-        pieceRepository.save(piece);
+        pipelineMetrics.run(Stage.FX, piece, () -> currencyDataExtractionService.applyDefaultCurrency(piece, dossierCurrency));
+        pieceUpdates.saveAiData(piece);
     }
 
 
     @Override
-    protected void handleInvalidResponse(Piece piece, int attempt, String jsonResponse) throws InterruptedException {
+    protected void handleInvalidResponse(Piece piece, int attempt, String jsonResponse) {
         if (attempt < batchConfig.getMaxRetries()) {
-            log.warn("🔄 Retrying piece {} due to invalid AI response (attempt {}/{})",
+            log.warn("🔄 Scheduling retry of piece {} due to invalid AI response (attempt {}/{})",
                     piece.getId(), attempt, batchConfig.getMaxRetries());
-
-            // For normal pieces, use shorter delay or immediate retry
-            Thread.sleep(30000); // 30 seconds instead of 5 minutes
-            processPieceWithRetry(piece, attempt + 1);
+            retryScheduler.scheduleRetry(piece, attempt, batchConfig.getNormal().getRetryDelayMs(), "invalid AI response");
         } else {
             log.error("❌ File rejected - invalid AI response after all attempts: {}", jsonResponse);
             rejectPiece(piece, "Invalid AI response after all attempts");
@@ -162,14 +157,11 @@ public class NormalAIProcessor extends BaseAIProcessor {
     }
 
     @Override
-    protected void handleProcessingError(Piece piece, int attempt, Exception e) throws InterruptedException {
+    protected void handleProcessingError(Piece piece, int attempt, Exception e) {
         if (attempt < batchConfig.getMaxRetries()) {
-            log.warn("🔄 Retrying piece {} after error (attempt {}/{}): {}",
+            log.warn("🔄 Scheduling retry of piece {} after error (attempt {}/{}): {}",
                     piece.getId(), attempt, batchConfig.getMaxRetries(), e.getMessage());
-
-            // For normal pieces, use shorter delay or immediate retry
-            Thread.sleep(30000); // 30 seconds instead of 5 minutes
-            processPieceWithRetry(piece, attempt + 1);
+            retryScheduler.scheduleRetry(piece, attempt, batchConfig.getNormal().getRetryDelayMs(), e.getMessage());
         } else {
             rejectPiece(piece, "Failed after all attempts: " + e.getMessage());
         }
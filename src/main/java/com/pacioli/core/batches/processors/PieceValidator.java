@@ -164,6 +164,26 @@ public class PieceValidator {
         return hasValidNumericFields(entry, numericFields);
     }
 
+    /**
+     * Validates one transaction group as read by the streaming bank path, with the same rules as
+     * {@link #isValidBankAIResponse} applies to each group of a full response.
+     */
+    public boolean isValidBankTransactionGroup(JsonNode group, int groupIndex) {
+        JsonNode entries = group.get("entries");
+        if (entries == null || !entries.isArray()) {
+            log.error("❌ Bank transaction group {} has no entries array", groupIndex);
+            return false;
+        }
+        for (int j = 0; j < entries.size(); j++) {
+            if (!validateBankEcritureFields(entries.get(j))) {
+                log.error("❌ Invalid bank ecriture at index {} in transaction group {}: {}",
+                        j, groupIndex, entries.get(j));
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean hasAllRequiredFields(JsonNode entry, String[] fields) {
         for (String field : fields) {
             if (!entry.has(field) || entry.get(field).isNull() || entry.get(field).asText().trim().isEmpty()) {
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.pacioli.core.models.Piece;
+import com.pacioli.core.utils.AiValueParsers;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -92,10 +93,8 @@ public class CurrencyConversionService {
         entry.fields().forEachRemaining(field -> convertedEntry.set(field.getKey(), field.getValue()));
 
         // Get original amounts with null safety
-        double debitAmt = parseDoubleSafely(entry.get("DebitAmt") != null ?
-                entry.get("DebitAmt").asText() : "0");
-        double creditAmt = parseDoubleSafely(entry.get("CreditAmt") != null ?
-                entry.get("CreditAmt").asText() : "0");
+        double debitAmt = AiValueParsers.parseAmount(entry, "DebitAmt");
+        double creditAmt = AiValueParsers.parseAmount(entry, "CreditAmt");
 
         // Apply conversion
         double convertedDebitAmt = debitAmt * exchangeRate;
@@ -116,15 +115,4 @@ public class CurrencyConversionService {
 
         return convertedEntry;
     }
-
-
-    private double parseDoubleSafely(String value) {
-        if (value == null || value.trim().isEmpty()) return 0.0;
-        try {
-            return Double.parseDouble(value.replace(',', '.'));
-        } catch (NumberFormatException e) {
-            log.trace("Error parsing double: {}", value);
-            return 0.0;
-        }
-    }
 }
\ No newline at end of file
@@ -6,8 +6,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 @Slf4j
 @Component
@@ -16,84 +17,36 @@ public class DuplicationDetectionService {
     @Autowired
     private PieceRepository pieceRepository;
 
-    public boolean isDuplicate(Piece piece) {
-        if (piece == null || piece.getFilename() == null) {
-            return false;
-        }
-
-        // Check by filename
-        if (isDuplicateByFilename(piece)) {
-            return true;
-        }
-
-        // Check by content hash (if available)
-        if (isDuplicateByFileHash(piece)) {
-            return true;
-        }
-
-        // Check by AI data signature (amount + currency + date)
-        if (isAIDataDuplicate(piece)) {
-            return true;
-        }
-
-        return false;
-    }
-
-    private boolean isDuplicateByFilename(Piece piece) {
-        Optional<Piece> existingPiece = pieceRepository.findByFilename(piece.getFilename());
-        if (existingPiece.isPresent() && !existingPiece.get().getId().equals(piece.getId())) {
-            log.info("🚫 Detected duplicate by filename: {}", piece.getFilename());
-            return true;
-        }
-        return false;
-    }
-
-    private boolean isDuplicateByFileHash(Piece piece) {
-        // Check if Piece entity has fileHash field - if not, skip this check
-        try {
-            // Using reflection to check if fileHash field exists
-            piece.getClass().getDeclaredField("fileHash");
-
-            if (piece.getFileHash() != null) {
-                List<Piece> sameHashPieces = pieceRepository.findByFileHash(piece.getFileHash());
-                if (sameHashPieces.stream().anyMatch(p -> !p.getId().equals(piece.getId()))) {
-                    log.info("🚫 Detected duplicate by file hash: {}", piece.getFileHash());
-                    return true;
-                }
+    /**
+     * Screens a claimed batch before anything is sent to the AI: a piece is a duplicate when an earlier
+     * piece of its dossier has the same file content, earlier pieces of the same batch included (the same
+     * file uploaded twice seconds apart). One query for the batch. Forced pieces are never screened out.
+     *
+     * @return original piece id per duplicate piece id
+     */
+    public Map<Long, Long> findBatchDuplicates(List<Piece> pieces) {
+        Map<Long, Long> originals = new HashMap<>();
+        if (pieces.isEmpty()) {
+            return originals;
+        }
+
+        List<Long> ids = pieces.stream().map(Piece::getId).toList();
+        for (Object[] row : pieceRepository.findEarlierCopies(ids)) {
+            originals.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        }
+
+        // A copy of a piece screened out here is a copy of that piece's original
+        originals.replaceAll((pieceId, originalId) -> {
+            Long resolved = originalId;
+            while (originals.containsKey(resolved)) {
+                resolved = originals.get(resolved);
             }
-        } catch (NoSuchFieldException e) {
-            log.debug("FileHash field not available in Piece entity, skipping file hash check");
-        }
-        return false;
-    }
+            return resolved;
+        });
 
-    private boolean isAIDataDuplicate(Piece piece) {
-        if (piece.getAiAmount() == null || piece.getAiCurrency() == null || piece.getUploadDate() == null) {
-            return false;
+        if (!originals.isEmpty()) {
+            log.info("🚫 Batch duplicate screen: {} of {} pieces are copies of earlier pieces", originals.size(), pieces.size());
         }
-
-        // Calculate tolerance (1% of amount)
-        double tolerance = piece.getAiAmount() * 0.01;
-        double minAmount = piece.getAiAmount() - tolerance;
-        double maxAmount = piece.getAiAmount() + tolerance;
-
-        // Find pieces with similar AI data in the same dossier
-        List<Piece> similarPieces = pieceRepository.findSimilarAIData(
-                piece.getDossier().getId(),
-                minAmount,
-                maxAmount,
-                piece.getAiCurrency(),
-                piece.getUploadDate()
-        );
-
-        boolean isDuplicate = similarPieces.stream()
-                .anyMatch(p -> !p.getId().equals(piece.getId()));
-
-        if (isDuplicate) {
-            log.info("🚫 Detected duplicate by AI data: amount={}, currency={}, date={}",
-                    piece.getAiAmount(), piece.getAiCurrency(), piece.getUploadDate());
-        }
-
-        return isDuplicate;
+        return originals;
     }
-}
\ No newline at end of file
+}
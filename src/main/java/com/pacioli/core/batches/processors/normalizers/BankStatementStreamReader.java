@@ -0,0 +1,255 @@
+package com.pacioli.core.batches.processors.normalizers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Token-based reader for bank statement results. The response is walked once and each transaction
+ * group is handed over as soon as it is read, in the shape {@link AIResponseNormalizer} produces
+ * ({"entries": [...], "isTransactionGroup": true, "Date": ...}). Only one group is held in memory
+ * at a time, whatever the size of the statement.
+ * <p>
+ * The statement usually arrives as a JSON document embedded in the "outputText" string (optionally
+ * wrapped in a markdown code fence). That string is unescaped on the fly and parsed as a nested
+ * stream; it is never materialized.
+ */
+@Slf4j
+@Component
+public class BankStatementStreamReader {
+
+    private final ObjectMapper objectMapper;
+
+    public BankStatementStreamReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Streams the transaction groups of a spooled bank statement result.
+     *
+     * @return the number of groups handed to the consumer
+     */
+    public int read(Path statementFile, Consumer<ObjectNode> groupConsumer) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(statementFile))) {
+            return read(in, groupConsumer);
+        }
+    }
+
+    public int read(InputStream in, Consumer<ObjectNode> groupConsumer) throws IOException {
+        JsonParser parser = objectMapper.createParser(in);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+        JsonToken root = parser.nextToken();
+        if (root == JsonToken.START_ARRAY) {
+            return readGroups(parser, groupConsumer);
+        }
+        if (root != JsonToken.START_OBJECT) {
+            throw new IOException("Bank statement result is not a JSON object");
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if ("outputText".equals(field)) {
+                if (value != JsonToken.VALUE_STRING) {
+                    return readDocument(parser, value, groupConsumer);
+                }
+                // The string token is still unread: hand its raw bytes over to a nested parser
+                ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+                parser.releaseBuffered(buffered);
+                InputStream rest = new SequenceInputStream(new ByteArrayInputStream(buffered.toByteArray()), in);
+                Reader outputText = new JsonStringContentReader(
+                        new BufferedReader(new InputStreamReader(rest, StandardCharsets.UTF_8)));
+                try (JsonParser nested = objectMapper.createParser(outputText)) {
+                    return readDocument(nested, nested.nextToken(), groupConsumer);
+                }
+            }
+            if (isEcrituresField(field) && value == JsonToken.START_ARRAY) {
+                return readGroups(parser, groupConsumer);
+            }
+            parser.skipChildren();
+        }
+
+        log.error("❌ Bank statement result has neither outputText nor Ecritures");
+        return 0;
+    }
+
+    // Statement document: {"Ecritures": [...]} or directly the array of groups
+    private int readDocument(JsonParser parser, JsonToken root, Consumer<ObjectNode> groupConsumer) throws IOException {
+        if (root == JsonToken.START_ARRAY) {
+            return readGroups(parser, groupConsumer);
+        }
+        if (root != JsonToken.START_OBJECT) {
+            throw new IOException("Bank statement outputText is not a JSON document");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (isEcrituresField(field) && value == JsonToken.START_ARRAY) {
+                return readGroups(parser, groupConsumer);
+            }
+            parser.skipChildren();
+        }
+        log.error("❌ Could not find Ecritures in bank statement outputText");
+        return 0;
+    }
+
+    private int readGroups(JsonParser parser, Consumer<ObjectNode> groupConsumer) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Bank statement Ecritures is not an array");
+        }
+
+        int groups = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            JsonNode transactionGroup = parser.readValueAsTree();
+            JsonNode entries = transactionGroup != null ? transactionGroup.get("entries") : null;
+            if (entries == null || !entries.isArray()) {
+                log.debug("Skipping bank Ecritures item without entries");
+                continue;
+            }
+
+            ObjectNode group = objectMapper.createObjectNode();
+            group.set("entries", entries);
+            group.put("isTransactionGroup", true);
+            if (entries.size() > 0 && entries.get(0).has("Date")) {
+                group.put("Date", entries.get(0).get("Date").asText());
+            }
+
+            groupConsumer.accept(group);
+            groups++;
+        }
+        return groups;
+    }
+
+    private static boolean isEcrituresField(String field) {
+        return "Ecritures".equals(field) || "ecritures".equals(field);
+    }
+
+    /**
+     * Content of a JSON string value, read from just after its opening quote: escapes are decoded as
+     * they are read and the stream ends at the closing quote. A leading markdown code fence
+     * (```json) is skipped; a trailing one is never reached because the nested parser stops at the
+     * end of the document.
+     */
+    static class JsonStringContentReader extends Reader {
+        private final Reader raw;
+        private boolean ended;
+        private boolean fenceChecked;
+        // Decoded characters read ahead while looking for the fence
+        private final StringBuilder pending = new StringBuilder();
+
+        JsonStringContentReader(Reader raw) {
+            this.raw = raw;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fenceChecked) {
+                skipLeadingFence();
+            }
+
+            int count = 0;
+            while (count < length) {
+                int c;
+                if (pending.length() > 0) {
+                    c = pending.charAt(0);
+                    pending.deleteCharAt(0);
+                } else {
+                    c = nextDecoded();
+                }
+                if (c < 0) {
+                    break;
+                }
+                buffer[offset + count++] = (char) c;
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        private void skipLeadingFence() throws IOException {
+            fenceChecked = true;
+            int c = nextDecoded();
+            while (c >= 0 && Character.isWhitespace(c)) {
+                c = nextDecoded();
+            }
+            if (c != '`') {
+                if (c >= 0) {
+                    pending.append((char) c);
+                }
+                return;
+            }
+            while (c == '`') {
+                c = nextDecoded();
+            }
+            // Optional language tag ("json"), up to the end of the fence line
+            while (c >= 0 && Character.isLetter(c)) {
+                c = nextDecoded();
+            }
+            if (c >= 0 && !Character.isWhitespace(c)) {
+                pending.append((char) c);
+            }
+        }
+
+        private int nextDecoded() throws IOException {
+            if (ended) {
+                return -1;
+            }
+            int c = raw.read();
+            if (c < 0 || c == '"') {
+                ended = true;
+                return -1;
+            }
+            if (c != '\\') {
+                return c;
+            }
+
+            int escaped = raw.read();
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    return escaped;
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(raw.read(), 16);
+                        if (digit < 0) {
+                            throw new IOException("Invalid unicode escape in outputText");
+                        }
+                        code = (code << 4) | digit;
+                    }
+                    return code;
+                default:
+                    throw new IOException("Invalid escape in outputText: \\" + (char) escaped);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            raw.close();
+        }
+    }
+}
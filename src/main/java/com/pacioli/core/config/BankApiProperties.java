@@ -10,6 +10,7 @@ import org.springframework.stereotype.Component;
 public class BankApiProperties {
     private String url;
     private String stage;
+    private String apiKey;
     private String maxFileSize;
     private String allowedExtensions;
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.pacioli.core.config;
 
+import com.pacioli.core.config.http.OutboundDestination;
+import com.pacioli.core.config.http.OutboundHttpClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
@@ -7,8 +9,9 @@ import org.springframework.web.client.RestTemplate;
 @Configuration
 public class RestTemplateConfig {
 
+    // General purpose client (exchange rates...); AI integrations use their own destination client
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(OutboundHttpClients outboundHttpClients) {
+        return outboundHttpClients.restTemplate(OutboundDestination.DEFAULT);
     }
 }
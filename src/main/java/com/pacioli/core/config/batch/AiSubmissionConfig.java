@@ -0,0 +1,20 @@
+package com.pacioli.core.config.batch;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "ai.submission")
+public class AiSubmissionConfig {
+    // Max files uploaded to the AI services at the same time (per node)
+    private int concurrency = 4;
+    private int batchSize = 20;
+    private int maxAttempts = 5;
+    private long retryDelayMs = 10000;
+    private long maxRetryDelayMs = 600000;
+    private long pollIntervalMs = 15000;
+    // How long a claimed submission stays hidden from other nodes while being sent
+    private long claimTimeoutMs = 120000;
+}
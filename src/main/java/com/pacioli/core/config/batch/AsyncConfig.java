@@ -18,6 +18,9 @@ public class AsyncConfig {
     @Autowired
     private BatchProcessingConfig batchConfig;
 
+    @Autowired
+    private AiSubmissionConfig submissionConfig;
+
     @Bean(name = "batchTaskExecutor")
     public Executor batchTaskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
@@ -35,4 +38,38 @@ public class AsyncConfig {
 
         return executor;
     }
-}
\ No newline at end of file
+
+    @Bean(name = "aiSubmissionExecutor")
+    public Executor aiSubmissionExecutor() {
+        // Sized to the submission concurrency limit; AiSubmissionDispatcher never hands it more work than that
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(submissionConfig.getConcurrency());
+        executor.setMaxPoolSize(submissionConfig.getConcurrency());
+        executor.setQueueCapacity(submissionConfig.getConcurrency() * 2);
+        executor.setThreadNamePrefix("AiSubmission-");
+        // Never run an upload on the caller (an HTTP request or scheduler thread): the dispatcher hands a
+        // rejected submission back to the outbox
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        log.info("✅ AI submission executor configured: concurrency={}", submissionConfig.getConcurrency());
+
+        return executor;
+    }
+
+    @Bean(name = "aiSubmissionTriggerExecutor")
+    public Executor aiSubmissionTriggerExecutor() {
+        // Runs the dispatcher for upload and recovery events. One pending trigger covers any number of
+        // later ones, and the outbox rows are persisted: extra triggers are dropped, the poller catches up
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("AiSubmissionTrigger-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
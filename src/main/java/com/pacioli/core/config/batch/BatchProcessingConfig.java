@@ -1,9 +1,16 @@
 package com.pacioli.core.config.batch;
 
+import com.pacioli.core.batches.PieceLane;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "batch.processing")
@@ -15,4 +22,83 @@ public class BatchProcessingConfig {
     private int corePoolSize = 10;
     private int maxPoolSize = 50;
     private int queueCapacity = 100;
+
+    // Bank statement transaction groups built and persisted together by the streaming path
+    private int bankChunkSize = 200;
+
+    // Dossiers whose account and journal ids are kept in memory for the workers
+    private int referenceCacheDossiers = 500;
+
+    // Dossiers whose perceptual hashes are kept in memory for near-duplicate lookups at upload
+    private int perceptualHashCacheDossiers = 500;
+
+    // Hamming distance (of 64 bits) under which an upload is flagged as a possible copy of an earlier piece, -1 to disable
+    private int perceptualHashMaxDistance = 3;
+
+    // Statements (inserts aside) one piece may take through the pipeline before it is logged, 0 to disable
+    private int maxStatementsPerPiece = 30;
+
+    // Refresh period of the piece queue gauges (read by PipelineMetrics' schedule)
+    private long metricsRefreshMs = 30000;
+
+    // Retry schedule: retryDelayMs is the bank base delay, normal.retryDelayMs the invoice one
+    private long maxRetryDelayMs = 3600000;
+    private Normal normal = new Normal();
+
+    // Work queue leases (multi-node claiming)
+    private String nodeId;
+    private long leaseDurationMs = 300000;
+    private long leaseHeartbeatMs = 60000;
+
+    // Fair share across cabinets when claiming pieces
+    private Fairness fairness = new Fairness();
+
+    // Priority lanes sharing every batch (keys: new, retry, recovered, bank)
+    private Map<PieceLane, Lane> lanes = defaultLanes();
+
+    @Data
+    public static class Normal {
+        private long retryDelayMs = 30000;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Lane {
+        private int weight = 1;
+        // Fraction of each batch guaranteed to the lane when it has work
+        private double minShare = 0.1;
+    }
+
+    private static Map<PieceLane, Lane> defaultLanes() {
+        Map<PieceLane, Lane> lanes = new EnumMap<>(PieceLane.class);
+        lanes.put(PieceLane.NEW, new Lane(4, 0.25));
+        lanes.put(PieceLane.RETRY, new Lane(2, 0.15));
+        lanes.put(PieceLane.RECOVERED, new Lane(1, 0.1));
+        lanes.put(PieceLane.BANK, new Lane(2, 0.15));
+        return lanes;
+    }
+
+    public Lane laneOf(PieceLane lane) {
+        return lanes.getOrDefault(lane, new Lane());
+    }
+
+    @Data
+    public static class Fairness {
+        // Max pieces of one cabinet processed at the same time (all nodes), 0 for no cap
+        private int maxInFlightPerCabinet = 10;
+        // Per cabinet overrides, keyed by cabinet id: in-flight caps and round-robin weights (default 1)
+        private Map<Long, Integer> cabinetMaxInFlight = new HashMap<>();
+        private Map<Long, Integer> cabinetWeights = new HashMap<>();
+        // Candidates read per claim, as a multiple of the claim size
+        private int candidateFactor = 4;
+
+        public int maxInFlightOf(Long cabinetId) {
+            return cabinetMaxInFlight.getOrDefault(cabinetId, maxInFlightPerCabinet);
+        }
+
+        public int weightOf(Long cabinetId) {
+            return Math.max(1, cabinetWeights.getOrDefault(cabinetId, 1));
+        }
+    }
 }
\ No newline at end of file
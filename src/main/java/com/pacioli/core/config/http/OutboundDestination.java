@@ -0,0 +1,25 @@
+package com.pacioli.core.config.http;
+
+/**
+ * External services called by the backend, each with its own HTTP client, pool and settings.
+ */
+public enum OutboundDestination {
+    INVOICE_AI("invoice-ai"),
+    BANK_AI("bank-ai"),
+    COMPANY_AI("company-ai"),
+    HISTOIRE_AI("histoire-ai"),
+    DEFAULT("default");
+
+    private final String key;
+
+    OutboundDestination(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Name used in outbound.http.destinations.* properties and in metric tags
+     */
+    public String getKey() {
+        return key;
+    }
+}
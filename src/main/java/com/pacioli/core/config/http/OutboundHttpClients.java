@@ -0,0 +1,256 @@
+package com.pacioli.core.config.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared outbound HTTP layer: one pooled JDK {@link HttpClient} per destination (keep-alive,
+ * HTTP/2 when the server negotiates it, connect/read timeouts) and a {@link RestTemplate} on top of it.
+ * Request bodies are streamed, never buffered by this layer.
+ * <p>
+ * Metrics: {@code outbound.http.requests} (timer by destination/method/status),
+ * {@code outbound.http.in.flight} and {@code outbound.http.pool.*} gauges per destination.
+ */
+@Slf4j
+@Component
+public class OutboundHttpClients {
+
+    private final OutboundHttpProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<OutboundDestination, DestinationClient> clients = new EnumMap<>(OutboundDestination.class);
+
+    public OutboundHttpClients(OutboundHttpProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        // The JDK client pool is configured JVM wide, by -D options at startup (see README)
+        log.info("🌐 JDK HTTP client pool: keepalive.timeout={}s, connectionPoolSize={}",
+                System.getProperty("jdk.httpclient.keepalive.timeout", "1200 (JDK default)"),
+                System.getProperty("jdk.httpclient.connectionPoolSize", "0 (JDK default, no limit)"));
+
+        for (OutboundDestination destination : OutboundDestination.values()) {
+            clients.put(destination, createClient(destination));
+        }
+    }
+
+    public RestTemplate restTemplate(OutboundDestination destination) {
+        return clients.get(destination).restTemplate;
+    }
+
+    public HttpClient httpClient(OutboundDestination destination) {
+        return clients.get(destination).httpClient;
+    }
+
+    /**
+     * Request builder with the destination read timeout already applied.
+     */
+    public HttpRequest.Builder newRequest(OutboundDestination destination, URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(clients.get(destination).readTimeout);
+    }
+
+    /**
+     * Sends a request with the destination's client and records it in the outbound metrics.
+     */
+    public <T> HttpResponse<T> send(OutboundDestination destination, HttpRequest request,
+                                    HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        DestinationClient client = clients.get(destination);
+        long start = System.nanoTime();
+        String status = "IO_ERROR";
+        client.inFlight.incrementAndGet();
+        try {
+            HttpResponse<T> response = client.httpClient.send(request, bodyHandler);
+            status = String.valueOf(response.statusCode());
+            return response;
+        } finally {
+            client.inFlight.decrementAndGet();
+            record(destination, request.method(), status, System.nanoTime() - start);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.values().forEach(client -> client.executor.shutdown());
+    }
+
+    private DestinationClient createClient(OutboundDestination destination) {
+        int threads = properties.poolThreads(destination);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), namedThreads("http-" + destination.getKey() + "-"));
+        executor.allowCoreThreadTimeOut(true);
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(properties.http2(destination) ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(properties.connectTimeoutMs(destination)))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+
+        Duration readTimeout = Duration.ofMillis(properties.readTimeoutMs(destination));
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+
+        DestinationClient client = new DestinationClient(httpClient, executor, readTimeout);
+        client.restTemplate = new RestTemplate(new MeteredRequestFactory(destination, requestFactory, client.inFlight));
+
+        String key = destination.getKey();
+        Gauge.builder("outbound.http.in.flight", client.inFlight, AtomicInteger::get)
+                .description("Outbound HTTP requests currently in flight")
+                .tag("destination", key).register(meterRegistry);
+        Gauge.builder("outbound.http.pool.threads", executor, ThreadPoolExecutor::getPoolSize)
+                .tag("destination", key).register(meterRegistry);
+        Gauge.builder("outbound.http.pool.threads.active", executor, ThreadPoolExecutor::getActiveCount)
+                .tag("destination", key).register(meterRegistry);
+        Gauge.builder("outbound.http.pool.queued", executor, e -> e.getQueue().size())
+                .tag("destination", key).register(meterRegistry);
+
+        log.info("🌐 Outbound HTTP client '{}' ready: http2={}, connectTimeout={}ms, readTimeout={}ms, threads={}",
+                key, properties.http2(destination), properties.connectTimeoutMs(destination),
+                properties.readTimeoutMs(destination), threads);
+        return client;
+    }
+
+    private void record(OutboundDestination destination, String method, String status, long nanos) {
+        Timer.builder("outbound.http.requests")
+                .description("Outbound HTTP requests")
+                .tag("destination", destination.getKey())
+                .tag("method", method)
+                .tag("status", status)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class DestinationClient {
+        private final HttpClient httpClient;
+        private final ThreadPoolExecutor executor;
+        private final Duration readTimeout;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private RestTemplate restTemplate;
+
+        private DestinationClient(HttpClient httpClient, ThreadPoolExecutor executor, Duration readTimeout) {
+            this.httpClient = httpClient;
+            this.executor = executor;
+            this.readTimeout = readTimeout;
+        }
+    }
+
+    /**
+     * Records RestTemplate calls without an interceptor, which would buffer the request body.
+     */
+    private class MeteredRequestFactory implements ClientHttpRequestFactory {
+        private final OutboundDestination destination;
+        private final ClientHttpRequestFactory delegate;
+        private final AtomicInteger inFlight;
+
+        private MeteredRequestFactory(OutboundDestination destination, ClientHttpRequestFactory delegate,
+                                      AtomicInteger inFlight) {
+            this.destination = destination;
+            this.delegate = delegate;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+            return new MeteredRequest(destination, delegate.createRequest(uri, httpMethod), inFlight);
+        }
+    }
+
+    /**
+     * Keeps the delegate streaming: RestTemplate writes the body through {@link StreamingHttpOutputMessage}.
+     */
+    private class MeteredRequest implements ClientHttpRequest, StreamingHttpOutputMessage {
+        private final OutboundDestination destination;
+        private final ClientHttpRequest request;
+        private final AtomicInteger inFlight;
+
+        private MeteredRequest(OutboundDestination destination, ClientHttpRequest request, AtomicInteger inFlight) {
+            this.destination = destination;
+            this.request = request;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            long start = System.nanoTime();
+            String status = "IO_ERROR";
+            inFlight.incrementAndGet();
+            try {
+                ClientHttpResponse response = request.execute();
+                status = String.valueOf(response.getStatusCode().value());
+                return response;
+            } finally {
+                inFlight.decrementAndGet();
+                record(destination, request.getMethod().name(), status, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void setBody(Body body) {
+            if (request instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(body);
+            } else {
+                try {
+                    body.writeTo(request.getBody());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+    }
+}
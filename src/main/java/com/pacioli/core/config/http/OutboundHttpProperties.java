@@ -0,0 +1,56 @@
+package com.pacioli.core.config.http;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Settings of the outbound HTTP clients. {@code defaults} apply to every destination,
+ * {@code destinations.<key>} overrides them per destination (see OutboundDestination keys).
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "outbound.http")
+public class OutboundHttpProperties {
+
+    private Settings defaults = new Settings();
+    private Map<String, Settings> destinations = new HashMap<>();
+
+    @Data
+    public static class Settings {
+        private Long connectTimeoutMs;
+        private Long readTimeoutMs;
+        private Boolean http2;
+        // Threads handling the client's async work (response bodies, HTTP/2 frames)
+        private Integer poolThreads;
+    }
+
+    public long connectTimeoutMs(OutboundDestination destination) {
+        return pick(destination, Settings::getConnectTimeoutMs, defaults.getConnectTimeoutMs(), 5000L);
+    }
+
+    public long readTimeoutMs(OutboundDestination destination) {
+        return pick(destination, Settings::getReadTimeoutMs, defaults.getReadTimeoutMs(), 30000L);
+    }
+
+    public boolean http2(OutboundDestination destination) {
+        return pick(destination, Settings::getHttp2, defaults.getHttp2(), Boolean.TRUE);
+    }
+
+    public int poolThreads(OutboundDestination destination) {
+        return pick(destination, Settings::getPoolThreads, defaults.getPoolThreads(), 8);
+    }
+
+    private <T> T pick(OutboundDestination destination, Function<Settings, T> getter,
+                       T defaultValue, T fallback) {
+        Settings specific = destinations.get(destination.getKey());
+        if (specific != null && getter.apply(specific) != null) {
+            return getter.apply(specific);
+        }
+        return defaultValue != null ? defaultValue : fallback;
+    }
+}
@@ -1,5 +1,6 @@
 package com.pacioli.core.controllers;
 
+import com.pacioli.core.Exceptions.DependencyUnavailableException;
 import com.pacioli.core.services.HistoireService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -54,6 +55,10 @@ public class HistoireController {
 
             return ResponseEntity.ok(result);
 
+        } catch (DependencyUnavailableException e) {
+            // Circuit open / bulkhead full: answered with 503 and Retry-After by the global handler
+            throw e;
+
         } catch (IllegalArgumentException e) {
             // Client errors (validation failures)
             log.error("[{}] Validation error: {}", requestId, e.getMessage());
@@ -0,0 +1,8 @@
+package com.pacioli.core.enums;
+
+public enum AiSubmissionStatus {
+    PENDING, // Waiting to be sent to the AI service (first try or scheduled retry)
+    SENT,    // File accepted by the AI service, the piece can be processed
+    FAILED,  // Gave up after all attempts, the piece is rejected
+    HELD     // Upload kept as an exact duplicate: not sent, released to PENDING if the piece is forced
+}
@@ -0,0 +1,79 @@
+package com.pacioli.core.models;
+
+import com.pacioli.core.enums.AiSubmissionStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Transactional outbox row: written with the piece on upload, sent to the AI service
+ * asynchronously by AiSubmissionDispatcher. Written HELD for an upload kept as a duplicate, so the
+ * file can still be sent if the user forces the piece.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "ai_submission_outbox", indexes = {
+        @Index(name = "idx_ai_submission_outbox_due", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_ai_submission_outbox_piece", columnList = "piece_id")
+})
+public class AiSubmissionOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "piece_id", nullable = false)
+    private Long pieceId;
+
+    @Column(name = "dossier_id", nullable = false)
+    private Long dossierId;
+
+    // Stored file name (uuid.ext) in file.upload.dir
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(name = "piece_type")
+    private String pieceType;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    private String country;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AiSubmissionStatus status = AiSubmissionStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "next_attempt_at", nullable = false)
+    private Date nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "sent_at")
+    private Date sentAt;
+
+    public AiSubmissionOutbox(Piece piece, String contentType, String country) {
+        Date now = new Date();
+        this.pieceId = piece.getId();
+        this.dossierId = piece.getDossier().getId();
+        this.filename = piece.getFilename();
+        this.pieceType = piece.getType();
+        this.contentType = contentType;
+        this.country = country;
+        this.createdAt = now;
+        this.nextAttemptAt = now;
+    }
+}
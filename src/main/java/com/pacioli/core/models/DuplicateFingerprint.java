@@ -0,0 +1,56 @@
+package com.pacioli.core.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Functional duplicate key of a processed piece: its invoice (date, total TTC) or one of its ecritures
+ * (entry date, largest line amount), amounts in cents. Written by DuplicateDetectionService when the
+ * piece is processed, so the functional checks of a new piece are one indexed lookup instead of a join
+ * over lines per ecriture.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "duplicate_fingerprint", indexes = {
+        @Index(name = "idx_duplicate_fingerprint_lookup", columnList = "dossier_id, fingerprint_date, amount_cents"),
+        @Index(name = "idx_duplicate_fingerprint_piece", columnList = "piece_id")
+})
+public class DuplicateFingerprint {
+
+    public enum Kind {
+        INVOICE,
+        ECRITURE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "piece_id", nullable = false)
+    private Long pieceId;
+
+    @Column(name = "dossier_id", nullable = false)
+    private Long dossierId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Kind kind;
+
+    @Column(name = "fingerprint_date", nullable = false)
+    private LocalDate fingerprintDate;
+
+    @Column(name = "amount_cents", nullable = false)
+    private long amountCents;
+
+    public DuplicateFingerprint(Piece piece, Kind kind, LocalDate fingerprintDate, long amountCents) {
+        this.pieceId = piece.getId();
+        this.dossierId = piece.getDossier().getId();
+        this.kind = kind;
+        this.fingerprintDate = fingerprintDate;
+        this.amountCents = amountCents;
+    }
+}
@@ -17,7 +17,9 @@ import java.util.Objects;
 @Data
 public class Ecriture {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence (50 ids per round trip) so inserts can be JDBC-batched; IDENTITY disables batching
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ecriture_seq")
+    @SequenceGenerator(name = "ecriture_seq", sequenceName = "ecriture_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
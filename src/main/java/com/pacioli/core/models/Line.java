@@ -19,7 +19,9 @@ import java.math.BigDecimal;
 @Data
 public class Line {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence (50 ids per round trip) so inserts can be JDBC-batched; IDENTITY disables batching
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "line_seq")
+    @SequenceGenerator(name = "line_seq", sequenceName = "line_seq", allocationSize = 50)
     private Long id;
     private String label;             // Libellé de l'écriture
 
@@ -7,6 +7,7 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.ToString;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import java.time.LocalDate;
@@ -16,6 +17,11 @@ import java.util.Objects;
 
 @Entity
 @Data
+@Table(name = "piece", indexes = {
+        @Index(name = "idx_piece_status_upload_date", columnList = "status, upload_date"),
+        @Index(name = "idx_piece_dossier_file_hash", columnList = "dossier_id, file_hash"),
+        @Index(name = "idx_piece_dossier_file_name_key", columnList = "dossier_id, file_name_key")
+})
 @JsonIgnoreProperties(value = { "uploadDate" }, allowGetters = true)
 public class Piece {
     @Id
@@ -31,15 +37,28 @@ public class Piece {
     private String filename;
     @Column(name = "original_file_name", nullable = true)
     private String originalFileName;
+    // FileNameKey of the original file name, for similar-name duplicate detection
+    @JsonIgnore
+    @Column(name = "file_name_key", nullable = true)
+    private String fileNameKey;
     private String type;
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "upload_date")
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss", timezone = "UTC")
     private Date uploadDate;
     private Double amount;
+    // Set on insert; afterwards only written through PieceUpdates.transition (versioned), never by entity saves
     @Enumerated(EnumType.STRING)
+    @Column(name = "status", updatable = false)
     private PieceStatus status; // New Status field
 
+    // Bumped by every pipeline status transition, which only applies to the version it was loaded with.
+    // Only written through PieceRepository.transitionStatus, never by entity saves.
+    @JsonIgnore
+    @Column(name = "status_version", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint default 0")
+    private Long statusVersion;
+
     // Duplicate detection field
     @Column(name = "is_duplicate", nullable = false)
     private Boolean isDuplicate = false;
@@ -89,8 +108,46 @@ public class Piece {
     @ToString.Exclude  // Prevent circular reference in toString
     private List<Ecriture> ecritures;
 
+    // SHA-256 of the uploaded file, computed by FileService while it is written to disk
+    @Column(name = "file_hash", length = 64, nullable = true)
     private String fileHash;
 
+    // PerceptualHash of the first page, for near-duplicate detection of rescanned or re-exported files
+    @JsonIgnore
+    @Column(name = "perceptual_hash", nullable = true)
+    private Long perceptualHash;
+
+    // Earlier piece whose first page looks the same, found at upload. Only a candidate: invoices of one
+    // template look the same too, so the piece still goes to the AI and the fingerprint check decides
+    @Column(name = "near_duplicate_of_id", nullable = true)
+    private Long nearDuplicateOfId;
+
+    // SHA-256 of the AI result whose ecritures are persisted, see ResultFingerprint
+    @JsonIgnore
+    @Column(name = "result_fingerprint", length = 64, nullable = true)
+    private String resultFingerprint;
+
+    // Work queue lease: node currently owning the piece and until when the claim holds.
+    // Only written through PieceRepository lease queries, never by entity saves.
+    @JsonIgnore
+    @Column(name = "claimed_by", nullable = true, insertable = false, updatable = false)
+    private String claimedBy;
+
+    @JsonIgnore
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "lease_expires_at", nullable = true, insertable = false, updatable = false)
+    private Date leaseExpiresAt;
+
+    // Persisted retry schedule: failed AI attempts so far and when the piece may be picked up again
+    @JsonIgnore
+    @Column(name = "attempt_count", nullable = true, insertable = false, updatable = false)
+    private Integer attemptCount;
+
+    @JsonIgnore
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "next_attempt_at", nullable = true, insertable = false, updatable = false)
+    private Date nextAttemptAt;
+
 
     // Add these custom hashCode() and equals() methods to your model classes to prevent circular references
 
@@ -3,6 +3,7 @@ package com.pacioli.core.repositories;
 
 import com.pacioli.core.models.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -23,4 +24,20 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Query("SELECT a FROM Account a WHERE a.account IN :accounts AND a.dossier.id = :dossierId")
     List<Account> findByAccountInAndDossierId(@Param("accounts") List<String> accounts, @Param("dossierId") Long dossierId);
 
+    // (account number, id) pairs of a dossier, without loading the accounts
+    @Query("SELECT a.account, a.id FROM Account a WHERE a.dossier.id = :dossierId")
+    List<Object[]> findAccountIdsByDossierId(@Param("dossierId") Long dossierId);
+
+    @Query("SELECT a.id FROM Account a WHERE a.account = :account AND a.dossier.id = :dossierId")
+    Long findIdByAccountAndDossierId(@Param("account") String account, @Param("dossierId") Long dossierId);
+
+    // Relies on the (account, dossier_id) unique constraint: a concurrent insert of the same account
+    // waits for the other transaction and then does nothing
+    @Modifying
+    @Query(value = "INSERT INTO account (account, label, dossier_id, journal_id, has_entries) " +
+            "VALUES (:account, :label, :dossierId, CAST(:journalId AS bigint), true) " +
+            "ON CONFLICT (account, dossier_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("account") String account, @Param("label") String label,
+                       @Param("dossierId") Long dossierId, @Param("journalId") Long journalId);
+
 }
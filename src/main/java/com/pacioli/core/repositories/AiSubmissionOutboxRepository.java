@@ -0,0 +1,38 @@
+package com.pacioli.core.repositories;
+
+import com.pacioli.core.models.AiSubmissionOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AiSubmissionOutboxRepository extends JpaRepository<AiSubmissionOutbox, Long> {
+
+    /**
+     * Locks due PENDING submissions, skipping rows another node is claiming right now.
+     */
+    @Query(value = "SELECT o.id FROM ai_submission_outbox o " +
+            "WHERE o.status = 'PENDING' AND o.next_attempt_at <= :now " +
+            "ORDER BY o.created_at ASC " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") Date now, @Param("limit") int limit);
+
+    // Pushes next_attempt_at forward while the submission is in flight, so other nodes leave it alone
+    @Modifying
+    @Query(value = "UPDATE ai_submission_outbox SET next_attempt_at = :claimUntil WHERE id IN (:ids)", nativeQuery = true)
+    int claim(@Param("ids") List<Long> ids, @Param("claimUntil") Date claimUntil);
+
+    // Postpones the submission without consuming an attempt (dependency unavailable)
+    @Modifying
+    @Query(value = "UPDATE ai_submission_outbox SET next_attempt_at = :nextAttemptAt WHERE id = :id", nativeQuery = true)
+    int park(@Param("id") Long id, @Param("nextAttemptAt") Date nextAttemptAt);
+
+    Optional<AiSubmissionOutbox> findFirstByPieceIdOrderByIdDesc(Long pieceId);
+}
@@ -0,0 +1,38 @@
+package com.pacioli.core.repositories;
+
+import com.pacioli.core.models.DuplicateFingerprint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DuplicateFingerprintRepository extends JpaRepository<DuplicateFingerprint, Long> {
+
+    @Modifying
+    @Query("DELETE FROM DuplicateFingerprint f WHERE f.pieceId = :pieceId")
+    int deleteByPieceId(@Param("pieceId") Long pieceId);
+
+    /**
+     * Fingerprints of other pieces of the dossier on one of the dates and amounts, with their piece,
+     * oldest upload first. Rows: DuplicateFingerprint, Piece. Pieces that are duplicates themselves
+     * are left out.
+     */
+    @Query("SELECT f, p FROM DuplicateFingerprint f JOIN Piece p ON p.id = f.pieceId " +
+            "WHERE f.dossierId = :dossierId " +
+            "AND f.fingerprintDate IN (:dates) " +
+            "AND f.amountCents IN (:amountCents) " +
+            "AND f.pieceId <> :pieceId " +
+            "AND p.isDuplicate = false " +
+            "AND p.status != 'DUPLICATE' " +
+            "ORDER BY p.uploadDate ASC")
+    List<Object[]> findMatches(@Param("dossierId") Long dossierId,
+                               @Param("pieceId") Long pieceId,
+                               @Param("dates") Collection<LocalDate> dates,
+                               @Param("amountCents") Collection<Long> amountCents);
+}
@@ -5,6 +5,7 @@ import com.pacioli.core.models.Ecriture;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -19,6 +20,12 @@ public interface EcritureRepository extends JpaRepository<Ecriture, Long> {
     // Fetch all ecritures by Piece ID
     List<Ecriture> findByPieceId(Long pieceId);
 
+    boolean existsByPieceId(Long pieceId);
+
+    @Modifying
+    @Query("DELETE FROM Ecriture e WHERE e.piece.id = :pieceId")
+    int deleteByPieceId(@Param("pieceId") Long pieceId);
+
     // Fetch all ecritures
     List<Ecriture> findAll();
 
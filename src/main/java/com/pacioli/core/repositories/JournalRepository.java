@@ -18,6 +18,17 @@ public interface JournalRepository extends JpaRepository<Journal, Long> {
     @Query("SELECT COUNT(e) > 0 FROM Ecriture e WHERE e.journal.id = :journalId")
     boolean hasEntries(@Param("journalId") Long journalId);
 
+    // (name, id) pairs of a dossier, without loading the journals
+    @Query("SELECT j.name, j.id FROM Journal j WHERE j.dossier.id = :dossierId")
+    List<Object[]> findJournalIdsByDossierId(@Param("dossierId") Long dossierId);
+
+    @Query("SELECT j.id FROM Journal j WHERE UPPER(j.name) = UPPER(:name) AND j.dossier.id = :dossierId ORDER BY j.id")
+    List<Long> findIdsByNameIgnoreCaseAndDossierId(@Param("name") String name, @Param("dossierId") Long dossierId);
+
+    // Serializes journal creation on the key until the end of the transaction, across nodes
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:key)", nativeQuery = true)
+    Integer lockForCreation(@Param("key") long key);
+
     /*@Query("SELECT COUNT(j) > 0 FROM Journal j WHERE j.name = :name AND j.dossier.id = :dossierId")
     boolean existsByNameAndDossierId(@Param("name") String name, @Param("dossierId") Long dossierId);*/
 }
@@ -19,6 +19,10 @@ public interface LineRepository extends JpaRepository<Line, Long> {
     @Query("SELECT COUNT(l) FROM Line l WHERE l.manuallyUpdated = true")
     Long countManuallyUpdatedLines();
 
+    @Modifying
+    @Query("DELETE FROM Line l WHERE l.ecriture.id IN (SELECT e.id FROM Ecriture e WHERE e.piece.id = :pieceId)")
+    int deleteByEcriturePieceId(@Param("pieceId") Long pieceId);
+
     @Query("SELECT COUNT(l) FROM Line l WHERE l.manuallyUpdated = true AND l.manualUpdateDate BETWEEN :startDate AND :endDate")
     Long countManuallyUpdatedLinesInPeriod(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
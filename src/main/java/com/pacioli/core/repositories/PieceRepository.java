@@ -6,6 +6,7 @@ import com.pacioli.core.models.Piece;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -27,19 +28,46 @@ public interface PieceRepository extends JpaRepository<Piece, Long> {
     // Find by file hash
     List<Piece> findByFileHash(String fileHash);
 
-    // Find similar AI data with amount range
+    /**
+     * Batch duplicate screen: for each given piece that is not forced, the oldest earlier piece of its
+     * dossier with the same file content that is neither a duplicate nor rejected. The file name alone
+     * is not enough (scan.pdf, facture.pdf): similar names are only reported at upload. Rows created
+     * before the flags were mapped may hold NULL in them, read as false.
+     * Rows: piece id, original piece id.
+     */
+    @Query(value = "SELECT p.id, MIN(o.id) FROM piece p " +
+            "JOIN piece o ON o.dossier_id = p.dossier_id AND o.id < p.id " +
+            "AND o.file_hash = p.file_hash " +
+            "WHERE p.id IN (:ids) " +
+            "AND COALESCE(p.is_forced, false) = false " +
+            "AND COALESCE(o.is_duplicate, false) = false " +
+            "AND o.status NOT IN ('DUPLICATE', 'REJECTED') " +
+            "GROUP BY p.id", nativeQuery = true)
+    List<Object[]> findEarlierCopies(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query(value = "UPDATE piece SET is_duplicate = true, original_piece_id = :originalId WHERE id = :id", nativeQuery = true)
+    int linkDuplicate(@Param("id") Long id, @Param("originalId") Long originalId);
+
+    // Pieces of the dossier with the same file content that can serve as original, oldest first
     @Query("SELECT p FROM Piece p WHERE " +
             "p.dossier.id = :dossierId AND " +
-            "p.aiAmount BETWEEN :minAmount AND :maxAmount AND " +
-            "p.aiCurrency = :currency AND " +
-            "p.uploadDate = :uploadDate AND " +
+            "p.fileHash = :fileHash AND " +
             "p.isDuplicate = false AND " +
-            "p.status != 'DUPLICATE'")
-    List<Piece> findSimilarAIData(@Param("dossierId") Long dossierId,
-                                  @Param("minAmount") Double minAmount,
-                                  @Param("maxAmount") Double maxAmount,
-                                  @Param("currency") String currency,
-                                  @Param("uploadDate") Date uploadDate);
+            "p.status NOT IN ('DUPLICATE', 'REJECTED') " +
+            "ORDER BY p.id ASC")
+    List<Piece> findOriginalsByFileHash(@Param("dossierId") Long dossierId,
+                                        @Param("fileHash") String fileHash);
+
+    // Perceptual hashes of the dossier's pieces that can serve as original, uploaded since a given date, see PerceptualHashIndex
+    @Query(value = "SELECT p.id, p.perceptual_hash FROM piece p " +
+            "WHERE p.dossier_id = :dossierId " +
+            "AND p.upload_date >= :since " +
+            "AND p.perceptual_hash IS NOT NULL " +
+            "AND p.is_duplicate = false " +
+            "AND p.status NOT IN ('DUPLICATE', 'REJECTED') " +
+            "ORDER BY p.id", nativeQuery = true)
+    List<Object[]> findPerceptualHashes(@Param("dossierId") Long dossierId, @Param("since") Date since);
 
     // Find by AI data with tolerance
     @Query("SELECT p FROM Piece p WHERE " +
@@ -72,6 +100,105 @@ public interface PieceRepository extends JpaRepository<Piece, Long> {
     List<Piece> findTopNByStatusOrderByUploadDateAsc(@Param("status") PieceStatus status,
                                                      Pageable pageable);
 
+    // ==================== WORK QUEUE (LEASE CLAIMING) ====================
+
+    /**
+     * Claim candidates of one priority lane (statuses, bank or not, attempt range) for fair scheduling,
+     * without taking any lock: the {@code perCabinet} oldest claimable pieces of each cabinet,
+     * interleaved by rank so every cabinet shows up in the first rows.
+     * A piece is claimable when nobody holds a lease on it (or the lease has expired)
+     * its next scheduled attempt, if any, is due and its file has been submitted to the AI service.
+     * Rows: piece id, cabinet id, dossier id.
+     */
+    @Query(value = "SELECT c.id, c.cabinet_id, c.dossier_id FROM (" +
+            "SELECT p.id, d.cabinet_id, p.dossier_id, p.upload_date, " +
+            "ROW_NUMBER() OVER (PARTITION BY d.cabinet_id ORDER BY p.upload_date ASC) AS cabinet_rank " +
+            "FROM piece p JOIN dossier d ON d.id = p.dossier_id " +
+            "WHERE p.status IN (:statuses) " +
+            "AND p.is_duplicate = false " +
+            "AND COALESCE(p.type = :bankType, false) = :bank " +
+            "AND COALESCE(p.attempt_count, 0) BETWEEN :minAttempts AND :maxAttempts " +
+            "AND (p.lease_expires_at IS NULL OR p.lease_expires_at < :now) " +
+            "AND (p.next_attempt_at IS NULL OR p.next_attempt_at <= :now) " +
+            "AND NOT EXISTS (SELECT 1 FROM ai_submission_outbox o WHERE o.piece_id = p.id AND o.status <> 'SENT')" +
+            ") c WHERE c.cabinet_rank <= :perCabinet " +
+            "ORDER BY c.cabinet_rank ASC, c.upload_date ASC " +
+            "LIMIT :maxRows", nativeQuery = true)
+    List<Object[]> findClaimCandidates(@Param("statuses") List<String> statuses,
+                                       @Param("bank") boolean bank,
+                                       @Param("bankType") String bankType,
+                                       @Param("minAttempts") int minAttempts,
+                                       @Param("maxAttempts") int maxAttempts,
+                                       @Param("now") Date now,
+                                       @Param("perCabinet") int perCabinet,
+                                       @Param("maxRows") int maxRows);
+
+    /**
+     * Locks the chosen candidates that are still claimable, skipping rows already locked by another node.
+     * Must run inside the transaction that writes the lease.
+     */
+    @Query(value = "SELECT p.id FROM piece p " +
+            "WHERE p.id IN (:ids) " +
+            "AND p.status IN (:statuses) " +
+            "AND (p.lease_expires_at IS NULL OR p.lease_expires_at < :now) " +
+            "AND (p.next_attempt_at IS NULL OR p.next_attempt_at <= :now) " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockClaimablePieceIds(@Param("ids") List<Long> ids,
+                                     @Param("statuses") List<String> statuses,
+                                     @Param("now") Date now);
+
+    /**
+     * Pieces currently leased (being processed on any node), per cabinet. Rows: cabinet id, count.
+     */
+    @Query(value = "SELECT d.cabinet_id, COUNT(*) FROM piece p JOIN dossier d ON d.id = p.dossier_id " +
+            "WHERE p.lease_expires_at >= :now " +
+            "GROUP BY d.cabinet_id", nativeQuery = true)
+    List<Object[]> countLeasedPiecesByCabinet(@Param("now") Date now);
+
+    @Modifying
+    @Query(value = "UPDATE piece SET claimed_by = :owner, lease_expires_at = :leaseUntil WHERE id IN (:ids)", nativeQuery = true)
+    int claimPieces(@Param("ids") List<Long> ids, @Param("owner") String owner, @Param("leaseUntil") Date leaseUntil);
+
+    @Modifying
+    @Query(value = "UPDATE piece SET lease_expires_at = :leaseUntil WHERE id IN (:ids) AND claimed_by = :owner", nativeQuery = true)
+    int renewLeases(@Param("ids") List<Long> ids, @Param("owner") String owner, @Param("leaseUntil") Date leaseUntil);
+
+    @Modifying
+    @Query(value = "UPDATE piece SET claimed_by = NULL, lease_expires_at = NULL WHERE id = :id AND claimed_by = :owner", nativeQuery = true)
+    int releaseLease(@Param("id") Long id, @Param("owner") String owner);
+
+    @Modifying
+    @Query(value = "UPDATE piece SET attempt_count = :attempt, next_attempt_at = :nextAttemptAt WHERE id = :id", nativeQuery = true)
+    int scheduleRetry(@Param("id") Long id, @Param("attempt") int attempt, @Param("nextAttemptAt") Date nextAttemptAt);
+
+    // Pipeline gauges (PipelineMetrics): pieces per status and the oldest upload still waiting in a status
+    @Query("SELECT p.status, COUNT(p) FROM Piece p GROUP BY p.status")
+    List<Object[]> countGroupedByStatus();
+
+    @Query("SELECT MIN(p.uploadDate) FROM Piece p WHERE p.status = :status")
+    Date findOldestUploadDate(@Param("status") PieceStatus status);
+
+    // Optimistic status transition: applies only if no other transition happened since the piece was loaded
+    @Modifying
+    @Query(value = "UPDATE piece SET status = :status, status_version = status_version + 1 " +
+            "WHERE id = :id AND status_version = :version", nativeQuery = true)
+    int transitionStatus(@Param("id") Long id, @Param("version") long version, @Param("status") String status);
+
+    // AI amount and currency data extracted from the AI result, written without loading the piece
+    @Modifying
+    @Query("UPDATE Piece p SET p.aiAmount = :aiAmount, p.aiCurrency = :aiCurrency, p.amount = :amount, " +
+            "p.exchangeRate = :exchangeRate, p.convertedCurrency = :convertedCurrency, " +
+            "p.exchangeRateDate = :exchangeRateDate WHERE p.id = :id")
+    int updateAiData(@Param("id") Long id, @Param("aiAmount") Double aiAmount, @Param("aiCurrency") String aiCurrency,
+                     @Param("amount") Double amount, @Param("exchangeRate") Double exchangeRate,
+                     @Param("convertedCurrency") String convertedCurrency,
+                     @Param("exchangeRateDate") LocalDate exchangeRateDate);
+
+    // Postpones the piece without consuming an attempt (dependency unavailable)
+    @Modifying
+    @Query(value = "UPDATE piece SET next_attempt_at = :nextAttemptAt WHERE id = :id", nativeQuery = true)
+    int parkPiece(@Param("id") Long id, @Param("nextAttemptAt") Date nextAttemptAt);
+
     /**
      * Count the number of pieces uploaded by a specific user in a specific cabinet
      *
@@ -111,57 +238,23 @@ public interface PieceRepository extends JpaRepository<Piece, Long> {
     List<PieceStatsDTO> getPieceStatsByCabinetId(@Param("cabinetId") Long cabinetId);
 
 
-    @Query("SELECT p FROM Piece p " +
-            "JOIN p.factureData fd " +
-            "WHERE p.dossier.id = :dossierId " +
-            "AND fd.invoiceDate = :invoiceDate " +
-            "AND fd.totalTTC = :totalTTC " +
-            "AND p.isDuplicate = false " +
-            "AND p.status != 'DUPLICATE' " +
-            "ORDER BY p.uploadDate ASC")
-    List<Piece> findFunctionalDuplicates(@Param("dossierId") Long dossierId,
-                                         @Param("invoiceDate") Date invoiceDate,
-                                         @Param("totalTTC") Double totalTTC);
-
-
-    @Query("SELECT DISTINCT p FROM Piece p " +
-            "JOIN p.ecritures e " +
-            "JOIN e.lines l " +
-            "WHERE p.dossier.id = :dossierId " +
-            "AND e.entryDate = :entryDate " +
-            "AND p.isDuplicate = false " +
-            "AND p.status != 'DUPLICATE' " +
-            "AND (l.debit = :maxAmount OR l.credit = :maxAmount) " +
-            "ORDER BY p.uploadDate ASC")
-    List<Piece> findByEcritureData(@Param("dossierId") Long dossierId,
-                                   @Param("entryDate") LocalDate entryDate,
-                                   @Param("maxAmount") Double maxAmount);
-
-    @Query("SELECT DISTINCT p FROM Piece p " +
-            "JOIN p.ecritures e " +
-            "JOIN e.lines l " +
-            "WHERE p.dossier.id = :dossierId " +
-            "AND e.entryDate = :entryDate " +
-            "AND p.isDuplicate = false " +
-            "AND p.status != 'DUPLICATE' " +
-            "AND ((l.debit BETWEEN :minAmount AND :maxAmount) OR (l.credit BETWEEN :minAmount AND :maxAmount)) " +
-            "ORDER BY p.uploadDate ASC")
-    List<Piece> findByEcritureDataWithTolerance(@Param("dossierId") Long dossierId,
-                                                @Param("entryDate") LocalDate entryDate,
-                                                @Param("minAmount") Double minAmount,
-                                                @Param("maxAmount") Double maxAmount);
-
-
-    @Query("SELECT p FROM Piece p " +
-            "WHERE p.dossier.id = :dossierId " +
-            "AND p.isDuplicate = false " +
-            "AND p.status != 'DUPLICATE' " +
-            "AND (LOWER(p.originalFileName) LIKE LOWER(CONCAT('%', :baseFileName, '%')) " +
-            "OR LOWER(:originalFileName) LIKE LOWER(CONCAT('%', SUBSTRING(p.originalFileName, 1, LENGTH(p.originalFileName) - 4), '%'))) " +
-            "ORDER BY p.uploadDate ASC")
+    /**
+     * Oldest piece of the dossier whose file name key equals, contains or closely resembles (trigram
+     * similarity) the given key. Served by the (dossier_id, file_name_key gin_trgm_ops) index, see
+     * database_changes.lst.
+     */
+    @Query(value = "SELECT p.* FROM piece p " +
+            "WHERE p.dossier_id = :dossierId " +
+            "AND p.is_duplicate = false " +
+            "AND p.status <> 'DUPLICATE' " +
+            "AND (p.file_name_key = :fileNameKey " +
+            "OR p.file_name_key LIKE CONCAT('%', :fileNameKey, '%') " +
+            "OR (p.file_name_key % :fileNameKey AND similarity(p.file_name_key, :fileNameKey) >= :minSimilarity)) " +
+            "ORDER BY p.upload_date ASC " +
+            "LIMIT 1", nativeQuery = true)
     List<Piece> findSimilarFileNames(@Param("dossierId") Long dossierId,
-                                     @Param("originalFileName") String originalFileName,
-                                     @Param("baseFileName") String baseFileName);
+                                     @Param("fileNameKey") String fileNameKey,
+                                     @Param("minSimilarity") double minSimilarity);
 
 
 //    Long countPiecesByStatus(PieceStatus status);
@@ -0,0 +1,118 @@
+package com.pacioli.core.resilience;
+
+import com.pacioli.core.Exceptions.ConcurrencyLimitExceededException;
+import com.pacioli.core.config.http.OutboundDestination;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive concurrency limits on the AI service calls, one {@link AimdLimiter} per destination.
+ * Callers wait for a permit instead of all hitting a throttled backend at once.
+ * <p>
+ * Metrics: {@code outbound.limiter.limit} and {@code outbound.limiter.in.flight} gauges,
+ * {@code outbound.limiter.rejected} counter, all tagged by destination.
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiters {
+
+    private final AdaptiveLimiterProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<OutboundDestination, AimdLimiter> limiters = new ConcurrentHashMap<>();
+    private final Map<OutboundDestination, Counter> rejected = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimiters(AdaptiveLimiterProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the call under the destination's limit and feeds its outcome back to the limiter.
+     *
+     * @throws ConcurrencyLimitExceededException if no permit was obtained within the acquire timeout
+     */
+    public <T, E extends Exception> T execute(OutboundDestination destination, GuardedCall<T, E> call) throws E {
+        if (!properties.isEnabled()) {
+            return call.call();
+        }
+
+        AimdLimiter limiter = limiter(destination);
+        acquire(destination, limiter);
+
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            limiter.onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (Exception e) {
+            if (isOverloadSignal(e)) {
+                limiter.onDropped();
+                log.warn("📉 {} overloaded ({}), concurrency limit now {}",
+                        destination.getKey(), e.getMessage(), limiter.getLimit());
+            } else {
+                limiter.onIgnored();
+            }
+            throw e;
+        } catch (Error e) {
+            limiter.onIgnored();
+            throw e;
+        }
+    }
+
+    public AimdLimiter limiter(OutboundDestination destination) {
+        return limiters.computeIfAbsent(destination, this::createLimiter);
+    }
+
+    private void acquire(OutboundDestination destination, AimdLimiter limiter) {
+        try {
+            if (limiter.tryAcquire(properties.getAcquireTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.get(destination).increment();
+        throw new ConcurrencyLimitExceededException(destination, "No " + destination.getKey()
+                + " permit available (limit " + limiter.getLimit() + ")",
+                new Date(System.currentTimeMillis() + properties.getRetryDelayMs()));
+    }
+
+    /**
+     * Throttling, server errors and timeouts mean the backend is saturated; other failures say nothing about load.
+     */
+    static boolean isOverloadSignal(Throwable e) {
+        if (e instanceof HttpStatusCodeException statusException) {
+            int status = statusException.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return e instanceof ResourceAccessException || e instanceof IOException;
+    }
+
+    private AimdLimiter createLimiter(OutboundDestination destination) {
+        AimdLimiter limiter = new AimdLimiter(properties.getInitialLimit(), properties.getMinLimit(),
+                properties.getMaxLimit(), properties.getBackoffRatio(), properties.getLatencyTolerance());
+
+        String key = destination.getKey();
+        Gauge.builder("outbound.limiter.limit", limiter, AimdLimiter::getLimit)
+                .tag("destination", key).register(meterRegistry);
+        Gauge.builder("outbound.limiter.in.flight", limiter, AimdLimiter::getInFlight)
+                .tag("destination", key).register(meterRegistry);
+        rejected.put(destination, Counter.builder("outbound.limiter.rejected")
+                .tag("destination", key).register(meterRegistry));
+
+        log.info("🚦 Adaptive concurrency limiter for {}: initial {}, bounds [{}, {}]",
+                key, limiter.getLimit(), properties.getMinLimit(), properties.getMaxLimit());
+        return limiter;
+    }
+}
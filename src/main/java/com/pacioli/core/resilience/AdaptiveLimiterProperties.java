@@ -0,0 +1,39 @@
+package com.pacioli.core.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of the adaptive concurrency limiters guarding the AI services (one limiter per destination).
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "outbound.limiter")
+public class AdaptiveLimiterProperties {
+
+    private boolean enabled = true;
+    private int initialLimit = 10;
+    private int minLimit = 1;
+    private int maxLimit = 50;
+
+    /**
+     * Factor applied to the limit on a dropped call or a latency spike
+     */
+    private double backoffRatio = 0.7;
+
+    /**
+     * A call slower than this multiple of the baseline latency counts as a spike
+     */
+    private double latencyTolerance = 2.0;
+
+    /**
+     * Max time a call waits for a permit before failing. Kept short: the caller is a batch worker
+     */
+    private long acquireTimeoutMs = 2000;
+
+    /**
+     * How long work that got no permit is parked before it is tried again
+     */
+    private long retryDelayMs = 5000;
+}
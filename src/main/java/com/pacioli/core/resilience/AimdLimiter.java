@@ -0,0 +1,151 @@
+package com.pacioli.core.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit adjusted with AIMD (additive increase, multiplicative decrease).
+ * <p>
+ * The limit grows by about one per window of successful calls while latency stays within
+ * {@code latencyTolerance} times the baseline, and is multiplied by {@code backoffRatio} on a
+ * dropped call (429, 5xx, timeout) or a latency spike. The baseline is a moving average of the
+ * observed latencies, so a backend that becomes durably slower becomes the new normal.
+ */
+public class AimdLimiter {
+
+    // Weight of a sample in the baseline latency average (spikes move it much more slowly)
+    private static final double BASELINE_ALPHA = 0.1;
+    private static final double SPIKE_ALPHA = 0.01;
+    private static final long MIN_DECREASE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private double baselineRttNanos;
+    private long lastDecreaseNanos;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limiter bounds: min=" + minLimit + ", max=" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+    }
+
+    /**
+     * Takes a permit, waiting up to the timeout for one to be released.
+     *
+     * @return false if no permit became available in time
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = permitReleased.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a permit after a successful call that took {@code rttNanos}.
+     */
+    public void onSuccess(long rttNanos) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= limit / 2;
+            inFlight--;
+            if (baselineRttNanos == 0) {
+                baselineRttNanos = rttNanos;
+            }
+            if (rttNanos > baselineRttNanos * latencyTolerance) {
+                baselineRttNanos += (rttNanos - baselineRttNanos) * SPIKE_ALPHA;
+                decrease();
+            } else {
+                baselineRttNanos += (rttNanos - baselineRttNanos) * BASELINE_ALPHA;
+                // Only grow while the current limit is actually used, otherwise it drifts to the max
+                if (saturated) {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a permit after a call rejected or failed because the backend is overloaded.
+     */
+    public void onDropped() {
+        lock.lock();
+        try {
+            inFlight--;
+            decrease();
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a permit without adjusting the limit (failure unrelated to load, e.g. 404).
+     */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // At most one decrease per baseline latency: failures of calls sent in the same window count once
+    private void decrease() {
+        long now = System.nanoTime();
+        long window = Math.max(MIN_DECREASE_INTERVAL_NANOS, (long) baselineRttNanos);
+        if (now - lastDecreaseNanos < window) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
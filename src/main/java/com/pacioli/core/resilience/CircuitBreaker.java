@@ -0,0 +1,170 @@
+package com.pacioli.core.resilience;
+
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker.
+ * <p>
+ * CLOSED: outcomes of the last {@code windowSize} calls are recorded; once at least {@code minimumCalls}
+ * are known and the failure rate reaches {@code failureRateThreshold} percent, the circuit opens.
+ * OPEN: calls are refused for {@code openDurationMs}. HALF_OPEN: {@code halfOpenCalls} trial calls are let
+ * through; if they all succeed the circuit closes, the first failure opens it again.
+ */
+public class CircuitBreaker {
+
+    // Ordinal is exported as the circuit state gauge value
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationMs;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+    private final BiConsumer<State, State> onTransition;
+
+    private final boolean[] window;
+    private int windowIndex;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openDurationMs,
+                          int halfOpenCalls, LongSupplier clock, BiConsumer<State, State> onTransition) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.clock = clock;
+        this.onTransition = onTransition;
+        this.window = new boolean[this.windowSize];
+    }
+
+    /**
+     * @return true if the call may go through; when it does, exactly one of
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()} must follow
+     */
+    public boolean tryAcquirePermission() {
+        State from = null;
+        try {
+            synchronized (this) {
+                if (state == State.OPEN) {
+                    if (clock.getAsLong() < openUntil) {
+                        return false;
+                    }
+                    from = transitionTo(State.HALF_OPEN);
+                }
+                if (state == State.HALF_OPEN) {
+                    if (halfOpenPermits >= halfOpenCalls) {
+                        return false;
+                    }
+                    halfOpenPermits++;
+                }
+                return true;
+            }
+        } finally {
+            fireTransition(from, State.HALF_OPEN);
+        }
+    }
+
+    public void onSuccess() {
+        State from = null;
+        State to = null;
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                halfOpenSuccesses++;
+                if (halfOpenSuccesses >= halfOpenCalls) {
+                    from = transitionTo(to = State.CLOSED);
+                }
+            } else if (state == State.CLOSED) {
+                record(false);
+            }
+        }
+        fireTransition(from, to);
+    }
+
+    public void onFailure() {
+        State from = null;
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                from = transitionTo(State.OPEN);
+            } else if (state == State.CLOSED) {
+                record(true);
+                if (recorded >= minimumCalls && failures * 100.0 / recorded >= failureRateThreshold) {
+                    from = transitionTo(State.OPEN);
+                }
+            }
+        }
+        fireTransition(from, State.OPEN);
+    }
+
+    /**
+     * The call ended with an outcome that says nothing about the dependency's health.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * True while calls are refused outright (open and not yet due for a trial).
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && clock.getAsLong() < openUntil;
+    }
+
+    /**
+     * Time (epoch millis) at which the circuit lets trial calls through again.
+     */
+    public synchronized long getOpenUntil() {
+        return openUntil;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == windowSize) {
+            if (window[windowIndex]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            failures++;
+        }
+        windowIndex = (windowIndex + 1) % windowSize;
+    }
+
+    private State transitionTo(State next) {
+        State previous = state;
+        state = next;
+        halfOpenPermits = 0;
+        halfOpenSuccesses = 0;
+        if (next == State.OPEN) {
+            openUntil = clock.getAsLong() + openDurationMs;
+        } else if (next == State.CLOSED) {
+            recorded = 0;
+            failures = 0;
+            windowIndex = 0;
+        }
+        return previous;
+    }
+
+    // Listeners run outside the lock
+    private void fireTransition(State from, State to) {
+        if (from != null && onTransition != null) {
+            onTransition.accept(from, to);
+        }
+    }
+}
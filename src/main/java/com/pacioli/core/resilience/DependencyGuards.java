@@ -0,0 +1,152 @@
+package com.pacioli.core.resilience;
+
+import com.pacioli.core.Exceptions.DependencyUnavailableException;
+import com.pacioli.core.config.http.OutboundDestination;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker and bulkhead per external dependency.
+ * <p>
+ * A call first needs a circuit permission, then a bulkhead slot. When either is refused the call is not
+ * made and a {@link DependencyUnavailableException} tells the caller when to try again, so an outage of
+ * one service fails fast instead of holding threads and DB connections. Closing a circuit after an outage
+ * publishes a {@link DependencyRecoveredEvent}.
+ * <p>
+ * Metrics: {@code outbound.circuit.state} (0 closed, 1 half-open, 2 open), {@code outbound.bulkhead.available}
+ * and {@code outbound.guard.rejected} (by reason), all tagged by destination.
+ */
+@Slf4j
+@Component
+public class DependencyGuards {
+
+    private final ResilienceProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Map<OutboundDestination, Guard> guards = new ConcurrentHashMap<>();
+
+    public DependencyGuards(ResilienceProperties properties, MeterRegistry meterRegistry,
+                            ApplicationEventPublisher eventPublisher) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Runs the call behind the destination's circuit breaker and bulkhead.
+     *
+     * @throws DependencyUnavailableException if the circuit is open or the bulkhead stays full
+     */
+    public <T, E extends Exception> T execute(OutboundDestination destination, GuardedCall<T, E> call) throws E {
+        Guard guard = guard(destination);
+
+        if (!guard.breaker.tryAcquirePermission()) {
+            guard.circuitRejected.increment();
+            throw new DependencyUnavailableException(destination,
+                    destination.getKey() + " circuit is open", new Date(guard.breaker.getOpenUntil()));
+        }
+        if (!acquireSlot(guard)) {
+            guard.breaker.onIgnored();
+            guard.bulkheadRejected.increment();
+            throw new DependencyUnavailableException(destination, destination.getKey() + " bulkhead is full",
+                    new Date(System.currentTimeMillis() + properties.bulkheadRetryDelayMs(destination)));
+        }
+
+        try {
+            T result = call.call();
+            guard.breaker.onSuccess();
+            return result;
+        } catch (Exception e) {
+            if (AdaptiveConcurrencyLimiters.isOverloadSignal(e)) {
+                guard.breaker.onFailure();
+            } else {
+                guard.breaker.onIgnored();
+            }
+            throw e;
+        } catch (Error e) {
+            guard.breaker.onIgnored();
+            throw e;
+        } finally {
+            guard.bulkhead.release();
+        }
+    }
+
+    /**
+     * True while the destination's circuit refuses calls; lets callers skip claiming work for it.
+     */
+    public boolean isOpen(OutboundDestination destination) {
+        return guard(destination).breaker.isOpen();
+    }
+
+    private boolean acquireSlot(Guard guard) {
+        try {
+            return guard.bulkhead.tryAcquire(guard.maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Guard guard(OutboundDestination destination) {
+        return guards.computeIfAbsent(destination, this::createGuard);
+    }
+
+    private Guard createGuard(OutboundDestination destination) {
+        String key = destination.getKey();
+        CircuitBreaker breaker = new CircuitBreaker(
+                properties.slidingWindowSize(destination),
+                properties.minimumCalls(destination),
+                properties.failureRateThreshold(destination),
+                properties.openDurationMs(destination),
+                properties.halfOpenCalls(destination),
+                System::currentTimeMillis,
+                (from, to) -> onTransition(destination, from, to));
+        Semaphore bulkhead = new Semaphore(properties.maxConcurrentCalls(destination));
+
+        Gauge.builder("outbound.circuit.state", breaker, b -> b.getState().ordinal())
+                .tag("destination", key).register(meterRegistry);
+        Gauge.builder("outbound.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .tag("destination", key).register(meterRegistry);
+
+        return new Guard(breaker, bulkhead, properties.maxWaitMs(destination),
+                rejectedCounter(key, "circuit_open"), rejectedCounter(key, "bulkhead_full"));
+    }
+
+    private Counter rejectedCounter(String destination, String reason) {
+        return Counter.builder("outbound.guard.rejected")
+                .tag("destination", destination).tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private void onTransition(OutboundDestination destination, CircuitBreaker.State from, CircuitBreaker.State to) {
+        if (to == CircuitBreaker.State.OPEN) {
+            log.error("🔌 Circuit OPEN for {} (was {}): calls refused for {} ms",
+                    destination.getKey(), from, properties.openDurationMs(destination));
+        } else if (to == CircuitBreaker.State.HALF_OPEN) {
+            log.warn("🔌 Circuit HALF-OPEN for {}: sending trial calls", destination.getKey());
+        } else {
+            log.info("🔌 Circuit CLOSED for {}: dependency recovered", destination.getKey());
+            eventPublisher.publishEvent(new DependencyRecoveredEvent(destination));
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Guard {
+        private final CircuitBreaker breaker;
+        private final Semaphore bulkhead;
+        private final long maxWaitMs;
+        private final Counter circuitRejected;
+        private final Counter bulkheadRejected;
+    }
+}
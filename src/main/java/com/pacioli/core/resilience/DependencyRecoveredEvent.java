@@ -0,0 +1,17 @@
+package com.pacioli.core.resilience;
+
+import com.pacioli.core.config.http.OutboundDestination;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published when the circuit of an external dependency closes again after an outage,
+ * so work parked during the outage can be resumed right away.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class DependencyRecoveredEvent {
+    private final OutboundDestination destination;
+}
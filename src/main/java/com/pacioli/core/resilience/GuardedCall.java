@@ -0,0 +1,9 @@
+package com.pacioli.core.resilience;
+
+/**
+ * An outbound call run under a resilience guard (limiter, circuit breaker, bulkhead).
+ */
+@FunctionalInterface
+public interface GuardedCall<T, E extends Exception> {
+    T call() throws E;
+}
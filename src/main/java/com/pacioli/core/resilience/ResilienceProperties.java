@@ -0,0 +1,79 @@
+package com.pacioli.core.resilience;
+
+import com.pacioli.core.config.http.OutboundDestination;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Circuit breaker and bulkhead settings of the external dependencies. {@code defaults} apply to every
+ * destination, {@code destinations.<key>} overrides them per destination (see OutboundDestination keys).
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "outbound.resilience")
+public class ResilienceProperties {
+
+    private Settings defaults = new Settings();
+    private Map<String, Settings> destinations = new HashMap<>();
+
+    @Data
+    public static class Settings {
+        // Circuit breaker
+        private Integer slidingWindowSize;
+        private Integer minimumCalls;
+        private Double failureRateThreshold;
+        private Long openDurationMs;
+        private Integer halfOpenCalls;
+        // Bulkhead
+        private Integer maxConcurrentCalls;
+        private Long maxWaitMs;
+        // Delay before work refused by a full bulkhead is tried again
+        private Long bulkheadRetryDelayMs;
+    }
+
+    public int slidingWindowSize(OutboundDestination destination) {
+        return pick(destination, Settings::getSlidingWindowSize, defaults.getSlidingWindowSize(), 20);
+    }
+
+    public int minimumCalls(OutboundDestination destination) {
+        return pick(destination, Settings::getMinimumCalls, defaults.getMinimumCalls(), 10);
+    }
+
+    public double failureRateThreshold(OutboundDestination destination) {
+        return pick(destination, Settings::getFailureRateThreshold, defaults.getFailureRateThreshold(), 50.0);
+    }
+
+    public long openDurationMs(OutboundDestination destination) {
+        return pick(destination, Settings::getOpenDurationMs, defaults.getOpenDurationMs(), 60000L);
+    }
+
+    public int halfOpenCalls(OutboundDestination destination) {
+        return pick(destination, Settings::getHalfOpenCalls, defaults.getHalfOpenCalls(), 3);
+    }
+
+    public int maxConcurrentCalls(OutboundDestination destination) {
+        return pick(destination, Settings::getMaxConcurrentCalls, defaults.getMaxConcurrentCalls(), 50);
+    }
+
+    public long maxWaitMs(OutboundDestination destination) {
+        return pick(destination, Settings::getMaxWaitMs, defaults.getMaxWaitMs(), 1000L);
+    }
+
+    public long bulkheadRetryDelayMs(OutboundDestination destination) {
+        return pick(destination, Settings::getBulkheadRetryDelayMs, defaults.getBulkheadRetryDelayMs(), 10000L);
+    }
+
+    private <T> T pick(OutboundDestination destination, Function<Settings, T> getter,
+                       T defaultValue, T fallback) {
+        Settings specific = destinations.get(destination.getKey());
+        if (specific != null && getter.apply(specific) != null) {
+            return getter.apply(specific);
+        }
+        return defaultValue != null ? defaultValue : fallback;
+    }
+}
@@ -3,22 +3,31 @@ package com.pacioli.core.services.AI.imp;
 import com.pacioli.core.DTO.AI.BankStatementGetResponse;
 import com.pacioli.core.DTO.AI.BankStatementRequest;
 import com.pacioli.core.DTO.AI.BankStatementResponse;
+import com.pacioli.core.Exceptions.DependencyUnavailableException;
 import com.pacioli.core.config.BankApiProperties;
+import com.pacioli.core.config.http.OutboundDestination;
+import com.pacioli.core.config.http.OutboundHttpClients;
+import com.pacioli.core.resilience.AdaptiveConcurrencyLimiters;
+import com.pacioli.core.resilience.DependencyGuards;
 import com.pacioli.core.services.AI.services.BankApiService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
@@ -29,13 +38,18 @@ public class BankApiServiceImpl implements BankApiService {
 
     private final RestTemplate restTemplate;
     private final BankApiProperties bankApiProperties;
+    private final AdaptiveConcurrencyLimiters limiters;
+    private final DependencyGuards dependencyGuards;
 
     private static final List<String> ALLOWED_EXTENSIONS = Arrays.asList("pdf", "jpeg", "jpg", "png");
 
     @Autowired
-    public BankApiServiceImpl(RestTemplate restTemplate, BankApiProperties bankApiProperties) {
-        this.restTemplate = restTemplate;
+    public BankApiServiceImpl(OutboundHttpClients httpClients, BankApiProperties bankApiProperties,
+                              AdaptiveConcurrencyLimiters limiters, DependencyGuards dependencyGuards) {
+        this.restTemplate = httpClients.restTemplate(OutboundDestination.BANK_AI);
         this.bankApiProperties = bankApiProperties;
+        this.limiters = limiters;
+        this.dependencyGuards = dependencyGuards;
     }
 
     @Override
@@ -90,22 +104,23 @@ public class BankApiServiceImpl implements BankApiService {
             log.info("🔄 [{}] Uploading to external bank API: {}", requestId, fileUrl);
 
             // Prepare the request with appropriate content type
+            // Body is streamed from the file (Content-Length from the resource), never loaded in heap
             HttpHeaders headers = createHeadersForFileType(fileExtension);
-            byte[] fileBytes = request.getFile().getBytes();
-            HttpEntity<byte[]> requestEntity = new HttpEntity<>(fileBytes, headers);
+            HttpEntity<Resource> requestEntity = new HttpEntity<>(request.getFile().getResource(), headers);
 
             log.debug("📤 [{}] Sending PUT request with {} bytes, Content-Type: {}",
-                    requestId, fileBytes.length, headers.getContentType());
+                    requestId, request.getFile().getSize(), headers.getContentType());
 
             // Make the PUT request with detailed response logging
-            ResponseEntity<String> response = executeApiCall(requestId, fileUrl, requestEntity);
+            ResponseEntity<String> response = dependencyGuards.execute(OutboundDestination.BANK_AI,
+                    () -> executeApiCall(requestId, fileUrl, requestEntity));
 
             return handleApiResponse(requestId, request, fileId, fileUrl, fileExtension, response);
 
-        } catch (IOException e) {
-            log.error("💥 [{}] IO Error reading file {}: {}", requestId, originalFilename, e.getMessage(), e);
-            return BankStatementResponse.error("Error reading file: " + e.getMessage(),
-                    HttpStatus.INTERNAL_SERVER_ERROR, "FILE_READ_ERROR");
+        } catch (DependencyUnavailableException e) {
+            // Not an upload failure: the caller parks the submission until the bank API is back
+            log.warn("🔌 [{}] Bank API unavailable, upload not attempted: {}", requestId, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("💥 [{}] Unexpected error during bank statement upload: {}", requestId, e.getMessage(), e);
             return BankStatementResponse.error("Unexpected error: " + e.getMessage(),
@@ -134,7 +149,7 @@ public class BankApiServiceImpl implements BankApiService {
         return headers;
     }
 
-    private ResponseEntity<String> executeApiCall(String requestId, String fileUrl, HttpEntity<byte[]> requestEntity) {
+    private ResponseEntity<String> executeApiCall(String requestId, String fileUrl, HttpEntity<Resource> requestEntity) {
         try {
             long startTime = System.currentTimeMillis();
 
@@ -288,16 +303,20 @@ public class BankApiServiceImpl implements BankApiService {
 
             // Prepare headers with API key
             HttpHeaders headers = new HttpHeaders();
-            headers.set("x-api-key", "u4d9s6oPlh8BGnlfFkT4P1iuZKKP9heZ5uvJ57pL"); // Your API key
+            headers.set("x-api-key", bankApiProperties.getApiKey());
             headers.setAccept(Arrays.asList(MediaType.APPLICATION_JSON));
 
             HttpEntity<String> requestEntity = new HttpEntity<>(headers);
 
-            // Make the GET request
-            ResponseEntity<String> response = executeGetApiCall(requestId, fileUrl, requestEntity);
+            // Make the GET request behind the bank API circuit breaker and adaptive concurrency limit
+            ResponseEntity<String> response = dependencyGuards.execute(OutboundDestination.BANK_AI, () ->
+                    limiters.execute(OutboundDestination.BANK_AI, () -> executeGetApiCall(requestId, fileUrl, requestEntity)));
 
             return handleGetApiResponse(requestId, cleanFileId, response);
 
+        } catch (DependencyUnavailableException e) {
+            log.warn("🔌 [{}] Bank API unavailable, result not fetched: {}", requestId, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("💥 [{}] Unexpected error during bank statement retrieval: {}", requestId, e.getMessage(), e);
             return BankStatementGetResponse.error("Unexpected error: " + e.getMessage(),
@@ -305,6 +324,50 @@ public class BankApiServiceImpl implements BankApiService {
         }
     }
 
+    @Override
+    public BankStatementGetResponse downloadBankStatementResult(String fileId, Path target) {
+        String requestId = UUID.randomUUID().toString().substring(0, 8);
+        log.info("🏦 [{}] Downloading bank statement result for fileId: {}", requestId, fileId);
+
+        try {
+            if (fileId == null || fileId.trim().isEmpty()) {
+                log.error("❌ [{}] Validation failed: File ID is null or empty", requestId);
+                return BankStatementGetResponse.error("File ID is required", HttpStatus.BAD_REQUEST, "NO_FILE_ID");
+            }
+
+            String cleanFileId = fileId.replace(".json", "");
+            URI uri = URI.create(generateGetFileUrl(cleanFileId));
+            log.info("🔄 [{}] Streaming from external bank API: {}", requestId, uri);
+
+            // Body copied straight from the connection to disk; non-2xx statuses are thrown by the error handler
+            long bytes = dependencyGuards.execute(OutboundDestination.BANK_AI, () ->
+                    limiters.execute(OutboundDestination.BANK_AI, () -> restTemplate.execute(
+                            uri,
+                            HttpMethod.GET,
+                            request -> {
+                                request.getHeaders().set("x-api-key", bankApiProperties.getApiKey());
+                                request.getHeaders().setAccept(Arrays.asList(MediaType.APPLICATION_JSON));
+                            },
+                            response -> Files.copy(response.getBody(), target, StandardCopyOption.REPLACE_EXISTING))));
+
+            log.info("🎉 [{}] Bank statement result downloaded - FileId: {}, {} bytes", requestId, cleanFileId, bytes);
+            return BankStatementGetResponse.downloaded(cleanFileId, target);
+
+        } catch (DependencyUnavailableException e) {
+            log.warn("🔌 [{}] Bank API unavailable, result not fetched: {}", requestId, e.getMessage());
+            throw e;
+        } catch (HttpStatusCodeException e) {
+            log.error("❌ [{}] External GET API returned non-success status: {} - Response: {}",
+                    requestId, e.getStatusCode(), e.getResponseBodyAsString());
+            return BankStatementGetResponse.error("External API returned status: " + e.getStatusCode(),
+                    HttpStatus.valueOf(e.getStatusCode().value()), e.getResponseBodyAsString());
+        } catch (Exception e) {
+            log.error("💥 [{}] Unexpected error during bank statement download: {}", requestId, e.getMessage(), e);
+            return BankStatementGetResponse.error("Unexpected error: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR, "UNEXPECTED_ERROR");
+        }
+    }
+
     /**
      * Generates the URL for GET requests
      */
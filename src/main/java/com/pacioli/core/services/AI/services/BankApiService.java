@@ -5,6 +5,7 @@ import com.pacioli.core.DTO.AI.BankStatementRequest;
 import com.pacioli.core.DTO.AI.BankStatementResponse;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
 import java.util.List;
 
 public interface BankApiService {
@@ -14,4 +15,6 @@ public interface BankApiService {
     List<String> getAllowedExtensions();
     boolean isValidFileSize(MultipartFile file);
     BankStatementGetResponse getBankStatementResult(String fileId);
+    // Streams the result body to target instead of holding it in memory
+    BankStatementGetResponse downloadBankStatementResult(String fileId, Path target);
 }
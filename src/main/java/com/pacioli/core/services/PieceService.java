@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.pacioli.core.DTO.PieceDTO;
 import com.pacioli.core.DTO.PieceStatsDTO;
 import com.pacioli.core.models.Piece;
+import com.pacioli.core.services.serviceImp.pieces.EcritureChunkSource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
@@ -25,6 +26,11 @@ public interface PieceService {
     // Business operations
     Piece savePiece(String pieceData, MultipartFile file, Long dossierId, String country);
     Piece saveEcrituresAndFacture(Long pieceId, Long dossierId, String pieceData, JsonNode originalAiResponse);
+    // AI batch path: the DTO built from the normalized AI response is persisted as-is, never re-serialized
+    Piece saveEcrituresAndFacture(Long pieceId, Long dossierId, PieceDTO aiResult);
+    // Large bank statements: piece level DTO in memory, ecritures streamed chunk by chunk
+    Piece saveEcrituresAndFacture(Long pieceId, Long dossierId, PieceDTO aiResultHeader, EcritureChunkSource ecritureChunks,
+                                  String resultFingerprint);
 
     // Status operations
     Piece updatePieceStatus(Long id, String status);
@@ -3,6 +3,7 @@ package com.pacioli.core.services.serviceImp;
 import com.pacioli.core.models.Account;
 import com.pacioli.core.repositories.AccountRepository;
 import com.pacioli.core.services.AccountService;
+import com.pacioli.core.services.serviceImp.pieces.DossierReferenceCache;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -11,9 +12,11 @@ import java.util.List;
 public class AccountServiceImpl implements AccountService {
 
     private final AccountRepository accountRepository;
+    private final DossierReferenceCache referenceCache;
 
-    public AccountServiceImpl(AccountRepository accountRepository) {
+    public AccountServiceImpl(AccountRepository accountRepository, DossierReferenceCache referenceCache) {
         this.accountRepository = accountRepository;
+        this.referenceCache = referenceCache;
     }
 
     @Override
@@ -34,7 +37,9 @@ public class AccountServiceImpl implements AccountService {
 
     @Override
     public Account createAccount(Account account) {
-        return accountRepository.save(account);
+        Account savedAccount = accountRepository.save(account);
+        referenceCache.evict(savedAccount.getDossier() != null ? savedAccount.getDossier().getId() : null);
+        return savedAccount;
     }
 
     @Override
@@ -44,18 +49,25 @@ public class AccountServiceImpl implements AccountService {
             existingAccount.setAccount(updatedAccount.getAccount());
             existingAccount.setHasEntries(updatedAccount.getHasEntries());
             existingAccount.setJournal(updatedAccount.getJournal());
-            return accountRepository.save(existingAccount);
+            Account savedAccount = accountRepository.save(existingAccount);
+            referenceCache.evict(savedAccount.getDossier().getId());
+            return savedAccount;
         }).orElseThrow(() -> new RuntimeException("Account not found with ID: " + id));
     }
 
     @Override
     public void deleteAccounts(List<Long> ids) {
+        List<Account> accounts = accountRepository.findAllById(ids);
         for (Long id : ids) {
-            if (!accountRepository.existsById(id)) {
+            if (accounts.stream().noneMatch(account -> account.getId().equals(id))) {
                 throw new RuntimeException("Account not found with ID: " + id);
             }
         }
         accountRepository.deleteAllById(ids);
+        accounts.stream()
+                .map(account -> account.getDossier().getId())
+                .distinct()
+                .forEach(referenceCache::evict);
     }
 
     @Override
@@ -1,9 +1,12 @@
 package com.pacioli.core.services.serviceImp;
 
 import com.pacioli.core.DTO.Company;
+import com.pacioli.core.Exceptions.DependencyUnavailableException;
 import com.pacioli.core.config.AiServiceProperties;
+import com.pacioli.core.config.http.OutboundDestination;
+import com.pacioli.core.config.http.OutboundHttpClients;
+import com.pacioli.core.resilience.DependencyGuards;
 import com.pacioli.core.services.CompanyAiService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.http.*;
@@ -17,11 +20,18 @@ import java.util.UUID;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class CompanyAiServiceImpl implements CompanyAiService {
 
     private final RestTemplate restTemplate;
     private final AiServiceProperties properties;
+    private final DependencyGuards dependencyGuards;
+
+    public CompanyAiServiceImpl(OutboundHttpClients httpClients, AiServiceProperties properties,
+                                DependencyGuards dependencyGuards) {
+        this.restTemplate = httpClients.restTemplate(OutboundDestination.COMPANY_AI);
+        this.properties = properties;
+        this.dependencyGuards = dependencyGuards;
+    }
 
     @Override
     public Company createCompany(Company company) {
@@ -39,11 +49,8 @@ public class CompanyAiServiceImpl implements CompanyAiService {
 
         try {
             long startTime = System.currentTimeMillis();
-            ResponseEntity<Company> responseEntity = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    requestEntity,
-                    Company.class
+            ResponseEntity<Company> responseEntity = dependencyGuards.execute(OutboundDestination.COMPANY_AI, () ->
+                    restTemplate.exchange(url, HttpMethod.POST, requestEntity, Company.class)
             );
             long duration = System.currentTimeMillis() - startTime;
 
@@ -63,6 +70,9 @@ public class CompanyAiServiceImpl implements CompanyAiService {
                 log.error("API Request [{}] - Non-success status code: {}", requestId, statusCode);
                 throw new RuntimeException("Failed to create company: " + statusCode);
             }
+        } catch (DependencyUnavailableException e) {
+            log.warn("API Request [{}] - Company AI unavailable: {}", requestId, e.getMessage());
+            throw e;
         } catch (HttpStatusCodeException e) {
             // For HTTP error status codes (4xx, 5xx)
             logHttpError(requestId, e);
@@ -99,11 +109,8 @@ public class CompanyAiServiceImpl implements CompanyAiService {
 
         try {
             long startTime = System.currentTimeMillis();
-            ResponseEntity<Company> responseEntity = restTemplate.exchange(
-                    url,
-                    HttpMethod.PUT,
-                    requestEntity,
-                    Company.class
+            ResponseEntity<Company> responseEntity = dependencyGuards.execute(OutboundDestination.COMPANY_AI, () ->
+                    restTemplate.exchange(url, HttpMethod.PUT, requestEntity, Company.class)
             );
             long duration = System.currentTimeMillis() - startTime;
 
@@ -123,6 +130,9 @@ public class CompanyAiServiceImpl implements CompanyAiService {
                 log.error("API Request [{}] - Non-success status code: {}", requestId, statusCode);
                 throw new RuntimeException("Failed to update company: " + statusCode);
             }
+        } catch (DependencyUnavailableException e) {
+            log.warn("API Request [{}] - Company AI unavailable: {}", requestId, e.getMessage());
+            throw e;
         } catch (HttpStatusCodeException e) {
             // For HTTP error status codes (4xx, 5xx)
             logHttpError(requestId, e);
@@ -158,11 +168,8 @@ public class CompanyAiServiceImpl implements CompanyAiService {
 
         try {
             long startTime = System.currentTimeMillis();
-            ResponseEntity<Void> responseEntity = restTemplate.exchange(
-                    url,
-                    HttpMethod.DELETE,
-                    requestEntity,
-                    Void.class
+            ResponseEntity<Void> responseEntity = dependencyGuards.execute(OutboundDestination.COMPANY_AI, () ->
+                    restTemplate.exchange(url, HttpMethod.DELETE, requestEntity, Void.class)
             );
             long duration = System.currentTimeMillis() - startTime;
 
@@ -194,6 +201,10 @@ public class CompanyAiServiceImpl implements CompanyAiService {
             log.error("API Request [{}] - REST client error while deleting company with ID {}: {}",
                     requestId, companyId, e.getMessage(), e);
             return false;
+        } catch (DependencyUnavailableException e) {
+            log.warn("API Request [{}] - Company AI unavailable, company {} not deleted: {}",
+                    requestId, companyId, e.getMessage());
+            return false;
         } catch (Exception e) {
             // Unexpected errors
             log.error("API Request [{}] - Unexpected error while deleting company with ID {}: {}",
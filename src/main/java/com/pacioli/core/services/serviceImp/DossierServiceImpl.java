@@ -9,6 +9,7 @@ import com.pacioli.core.models.*;
 import com.pacioli.core.repositories.*;
 import com.pacioli.core.services.CompanyAiService;
 import com.pacioli.core.services.DossierService;
+import com.pacioli.core.services.serviceImp.pieces.DossierReferenceCache;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -43,6 +44,9 @@ public class DossierServiceImpl implements DossierService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private DossierReferenceCache referenceCache;
+
     @Autowired
     public DossierServiceImpl(DossierRepository dossierRepository, CompanyAiService companyAiService) {
         this.dossierRepository = dossierRepository;
@@ -347,6 +351,7 @@ public class DossierServiceImpl implements DossierService {
 
         // Now delete the dossier from our system
         dossierRepository.deleteById(dossierId);
+        referenceCache.evict(dossierId);
         log.info("[{}] Dossier deleted successfully with ID: {}", requestId, dossierId);
     }
 
@@ -506,6 +511,7 @@ public class DossierServiceImpl implements DossierService {
         // Save only new journals
         if (!journalsToCreate.isEmpty()) {
             journalRepository.saveAll(journalsToCreate);
+            referenceCache.evict(dossier.getId());
         }
     }
 
@@ -1,25 +1,137 @@
 package com.pacioli.core.services.serviceImp;
 
+import com.pacioli.core.config.batch.BatchProcessingConfig;
 import com.pacioli.core.enums.PieceStatus;
+import com.pacioli.core.models.DuplicateFingerprint;
 import com.pacioli.core.models.Ecriture;
+import com.pacioli.core.models.FactureData;
 import com.pacioli.core.models.Piece;
+import com.pacioli.core.repositories.DuplicateFingerprintRepository;
 import com.pacioli.core.repositories.PieceRepository;
+import com.pacioli.core.services.serviceImp.pieces.PerceptualHashIndex;
+import com.pacioli.core.utils.FileNameKey;
+import com.pacioli.core.utils.HammingBkTree;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.Date;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class DuplicateDetectionService {
 
+    // Trigram similarity (pg_trgm) above which two file name keys are considered the same name
+    private static final double MIN_FILE_NAME_SIMILARITY = 0.6;
+
+    // Amount tolerance of the ecriture-based check in the comprehensive check, for rounding differences
+    private static final long ECRITURE_TOLERANCE_CENTS = 1;
+
+    // Index matches checked against the database per query for a near-duplicate upload, nearest first
+    private static final int NEAR_DUPLICATE_CANDIDATES_PER_QUERY = 10;
+
     @Autowired
     private PieceRepository pieceRepository;
 
+    @Autowired
+    private DuplicateFingerprintRepository duplicateFingerprintRepository;
+
+    @Autowired
+    private PerceptualHashIndex perceptualHashIndex;
+
+    @Autowired
+    private BatchProcessingConfig batchConfig;
+
+    /**
+     * Check for an exact copy of an uploaded file, by content hash, before anything is sent to the AI.
+     * Rejected pieces do not count: uploading such a file again is a retry.
+     *
+     * @param dossierId The dossier ID
+     * @param fileHash  SHA-256 of the uploaded file
+     * @return Optional containing the original piece if duplicate found
+     */
+    public Optional<Piece> checkExactDuplicate(Long dossierId, String fileHash) {
+        if (fileHash == null) {
+            return Optional.empty();
+        }
+
+        List<Piece> matches = pieceRepository.findOriginalsByFileHash(dossierId, fileHash);
+        if (!matches.isEmpty()) {
+            Piece originalPiece = matches.get(0); // Take the oldest
+            log.warn("⚠️ Exact content duplicate detected in dossier {}: same file as piece {} ({})",
+                    dossierId, originalPiece.getId(), originalPiece.getOriginalFileName());
+            return Optional.of(originalPiece);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Look for a possible near copy of an uploaded file (the same page rescanned, photographed or
+     * exported again) by the Hamming distance between first page perceptual hashes. Invoices of one
+     * supplier template are as close, so a match is only a candidate: the piece is still sent to the
+     * AI, and marked duplicate only if the fingerprints of its result match (see
+     * performComprehensiveDuplicateCheck).
+     *
+     * @param dossierId      The dossier ID
+     * @param perceptualHash PerceptualHash of the uploaded file's first page
+     * @return Optional containing the nearest earlier piece that can serve as original
+     */
+    public Optional<Piece> findNearDuplicateCandidate(Long dossierId, Long perceptualHash) {
+        int maxDistance = batchConfig.getPerceptualHashMaxDistance();
+        if (perceptualHash == null || maxDistance < 0) {
+            return Optional.empty();
+        }
+
+        List<HammingBkTree.Match> matches = perceptualHashIndex.findNear(dossierId, perceptualHash, maxDistance);
+        if (matches.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // The index keeps pieces that were deleted, rejected or marked duplicate since it read them: they
+        // are dropped from it as they come up, and the next matches are checked until one can serve
+        List<HammingBkTree.Match> stale = new ArrayList<>();
+        try {
+            for (int from = 0; from < matches.size(); from += NEAR_DUPLICATE_CANDIDATES_PER_QUERY) {
+                List<HammingBkTree.Match> page = matches.subList(from,
+                        Math.min(matches.size(), from + NEAR_DUPLICATE_CANDIDATES_PER_QUERY));
+                Map<Long, Piece> candidates = pieceRepository.findAllById(page.stream().map(HammingBkTree.Match::id).toList())
+                        .stream().collect(Collectors.toMap(Piece::getId, Function.identity()));
+                for (HammingBkTree.Match match : page) {
+                    Piece candidate = candidates.get(match.id());
+                    if (candidate != null && !Boolean.TRUE.equals(candidate.getIsDuplicate())
+                            && candidate.getStatus() != PieceStatus.DUPLICATE && candidate.getStatus() != PieceStatus.REJECTED) {
+                        log.info("🖼️ Possible near duplicate in dossier {}: first page {} bit(s) away from piece {} ({})",
+                                dossierId, match.distance(), candidate.getId(), candidate.getOriginalFileName());
+                        return Optional.of(candidate);
+                    }
+                    stale.add(match);
+                }
+            }
+        } finally {
+            perceptualHashIndex.remove(dossierId, stale);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Makes an uploaded piece available to the near-duplicate check once its transaction commits.
+     */
+    public void indexPerceptualHash(Piece piece) {
+        if (piece.getPerceptualHash() != null) {
+            perceptualHashIndex.addAfterCommit(piece.getDossier().getId(), piece.getId(), piece.getPerceptualHash());
+        }
+    }
+
     /**
      * Check for technical duplicates based on original filename and similar patterns
      * This should be called during piece upload (savePiece method)
@@ -53,23 +165,24 @@ public class DuplicateDetectionService {
 
 
     /**
-     * Check for similar filename patterns to detect renamed files
+     * Check for similar filename patterns to detect renamed files, through the file name key stored
+     * on every piece at upload
      */
     private Optional<Piece> checkSimilarFilenames(Long dossierId, String originalFileName) {
         if (originalFileName == null || originalFileName.trim().isEmpty()) {
             return Optional.empty();
         }
 
-        // Extract base filename without extension and common suffixes
-        String baseFileName = extractBaseFileName(originalFileName);
+        // Base filename without extension and common suffixes
+        String fileNameKey = FileNameKey.of(originalFileName);
 
-        if (baseFileName.length() < 3) { // Skip very short filenames
+        if (fileNameKey.length() < 3) { // Skip very short filenames
             return Optional.empty();
         }
 
-        log.debug("🔍 Checking for similar filenames with base: {}", baseFileName);
+        log.debug("🔍 Checking for similar filenames with key: {}", fileNameKey);
 
-        List<Piece> similarPieces = pieceRepository.findSimilarFileNames(dossierId, originalFileName, baseFileName);
+        List<Piece> similarPieces = pieceRepository.findSimilarFileNames(dossierId, fileNameKey, MIN_FILE_NAME_SIMILARITY);
 
         if (!similarPieces.isEmpty()) {
             Piece similarPiece = similarPieces.get(0); // Take the oldest
@@ -80,42 +193,6 @@ public class DuplicateDetectionService {
         return Optional.empty();
     }
 
-    /**
-     * Extract base filename for similarity comparison
-     */
-    private String extractBaseFileName(String filename) {
-        if (filename == null) return "";
-
-        // Remove file extension
-        String nameWithoutExt = filename.contains(".") ?
-                filename.substring(0, filename.lastIndexOf('.')) : filename;
-
-        // Remove common suffixes that indicate copies/versions
-        String[] suffixesToRemove = {
-                "_copy", "_Copy", "_COPY",
-                "_duplicate", "_Duplicate", "_DUPLICATE",
-                "_new", "_New", "_NEW",
-                "_v1", "_v2", "_v3", "_V1", "_V2", "_V3",
-                "_version1", "_version2", "_version3",
-                "_final", "_Final", "_FINAL",
-                "(1)", "(2)", "(3)", "(4)", "(5)",
-                " - Copy", " - copy", " - COPY"
-        };
-
-        String result = nameWithoutExt;
-        for (String suffix : suffixesToRemove) {
-            if (result.endsWith(suffix)) {
-                result = result.substring(0, result.length() - suffix.length());
-                break; // Remove only one suffix
-            }
-        }
-
-        // Remove trailing numbers and spaces
-        result = result.replaceAll("\\s*\\d+\\s*$", "").trim();
-
-        return result;
-    }
-
     public Optional<Piece> checkFunctionalDuplicate(Piece piece) {
 
         if (Boolean.TRUE.equals(piece.getIsForced())) {
@@ -123,92 +200,11 @@ public class DuplicateDetectionService {
             return Optional.empty();
         }
 
-        Long dossierId = piece.getDossier().getId();
-
-        // Check 1: Invoice-based duplicates (if FactureData is available)
-        if (piece.getFactureData() != null) {
-            Optional<Piece> invoiceDuplicate = checkInvoiceDuplicate(piece);
-            if (invoiceDuplicate.isPresent()) {
-                return invoiceDuplicate;
-            }
-        }
-
-        // Check 2: Ecriture-based duplicates (if Ecritures are available)
-        if (piece.getEcritures() != null && !piece.getEcritures().isEmpty()) {
-            Optional<Piece> ecritudeDuplicate = checkEcritureDuplicate(piece);
-            if (ecritudeDuplicate.isPresent()) {
-                return ecritudeDuplicate;
-            }
+        Optional<Piece> functionalDuplicate = findFingerprintDuplicate(piece, 0);
+        if (functionalDuplicate.isEmpty()) {
+            log.info("✅ No functional duplicate found for piece {}", piece.getId());
         }
-
-        log.info("✅ No functional duplicate found for piece {}", piece.getId());
-        return Optional.empty();
-    }
-
-    /**
-     * Check for duplicates based on invoice data (FactureData)
-     */
-    private Optional<Piece> checkInvoiceDuplicate(Piece piece) {
-        Date invoiceDate = piece.getFactureData().getInvoiceDate();
-        Double totalTTC = piece.getFactureData().getTotalTTC();
-        Long dossierId = piece.getDossier().getId();
-
-        log.info("🔍 Checking for invoice-based duplicate: dossier={}, invoiceDate={}, totalTTC={}",
-                dossierId, invoiceDate, totalTTC);
-
-        if (invoiceDate == null || totalTTC == null) {
-            log.debug("Missing invoice date or total TTC for piece {}, skipping invoice duplicate check", piece.getId());
-            return Optional.empty();
-        }
-
-        List<Piece> duplicates = pieceRepository.findFunctionalDuplicates(dossierId, invoiceDate, totalTTC);
-
-        // Remove current piece from results if it's included
-        duplicates.removeIf(p -> p.getId().equals(piece.getId()));
-
-        if (!duplicates.isEmpty()) {
-            Piece originalPiece = duplicates.get(0); // Take the first (oldest) as original
-            log.warn("⚠️ Invoice-based duplicate detected for piece {}: matches piece {} (invoice date: {}, total: {})",
-                    piece.getId(), originalPiece.getId(), invoiceDate, totalTTC);
-            return Optional.of(originalPiece);
-        }
-
-        return Optional.empty();
-    }
-
-    /**
-     * Check for duplicates based on ecriture data
-     */
-    private Optional<Piece> checkEcritureDuplicate(Piece piece) {
-        Long dossierId = piece.getDossier().getId();
-
-        log.info("🔍 Checking for ecriture-based duplicate for piece {}", piece.getId());
-
-        for (Ecriture ecriture : piece.getEcritures()) {
-            LocalDate entryDate = ecriture.getEntryDate();
-            Double maxAmount = calculateMaxAmountFromEcriture(ecriture);
-
-            if (entryDate == null || maxAmount == null || maxAmount == 0.0) {
-                continue;
-            }
-
-//            log.debug("Checking ecriture: entryDate={}, maxAmount={}", entryDate, maxAmount);
-
-            // Check against existing ecritures in the dossier
-            List<Piece> duplicates = pieceRepository.findByEcritureData(dossierId, entryDate, maxAmount);
-
-            // Remove current piece from results if it's included
-            duplicates.removeIf(p -> p.getId().equals(piece.getId()));
-
-            if (!duplicates.isEmpty()) {
-                Piece originalPiece = duplicates.get(0); // Take the first (oldest) as original
-                log.warn("⚠️ Ecriture-based duplicate detected for piece {}: matches piece {} (entry date: {}, amount: {})",
-                        piece.getId(), originalPiece.getId(), entryDate, maxAmount);
-                return Optional.of(originalPiece);
-            }
-        }
-
-        return Optional.empty();
+        return functionalDuplicate;
     }
 
     public Optional<Piece> performComprehensiveDuplicateCheck(Piece piece) {
@@ -227,67 +223,108 @@ public class DuplicateDetectionService {
             return technicalDuplicate;
         }
 
-        // Check 2: Functional duplicates (invoice + ecriture based)
-        Optional<Piece> functionalDuplicate = checkFunctionalDuplicate(piece);
+        // Check 2: Functional duplicates (invoice + ecriture based), then ecritures with tolerance for rounding differences
+        Optional<Piece> functionalDuplicate = findFingerprintDuplicate(piece, ECRITURE_TOLERANCE_CENTS);
         if (functionalDuplicate.isPresent()) {
             log.warn("🚫 Functional duplicate found during comprehensive check");
             return functionalDuplicate;
         }
 
-        // Check 3: Enhanced ecriture-based check with tolerance for rounding differences
-        Optional<Piece> toleranceDuplicate = checkEcritureDuplicateWithTolerance(piece);
-        if (toleranceDuplicate.isPresent()) {
-            log.warn("🚫 Tolerance-based duplicate found during comprehensive check");
-            return toleranceDuplicate;
-        }
-
         log.info("✅ Comprehensive duplicate check passed for piece {}", piece.getId());
         return Optional.empty();
     }
 
-    private Optional<Piece> checkEcritureDuplicateWithTolerance(Piece piece) {
-        if (Boolean.TRUE.equals(piece.getIsForced())) {
-            log.info("⏭ Pièce {} ignorée dans checkEcritureDuplicateWithTolerance (isForced=true)", piece.getId());
+    /**
+     * Invoice-based, then ecriture-based duplicates, then ecriture-based within {@code toleranceCents}, all
+     * answered by one lookup of the fingerprints of other pieces. The oldest matching piece is the original.
+     */
+    private Optional<Piece> findFingerprintDuplicate(Piece piece, long toleranceCents) {
+        List<DuplicateFingerprint> fingerprints = fingerprintsOf(piece);
+        if (fingerprints.isEmpty()) {
+            log.debug("No invoice or ecriture data on piece {}, skipping functional duplicate check", piece.getId());
             return Optional.empty();
         }
 
-        if (piece.getEcritures() == null || piece.getEcritures().isEmpty()) {
-            return Optional.empty();
+        Set<LocalDate> dates = new HashSet<>();
+        Set<Long> amountCents = new HashSet<>();
+        for (DuplicateFingerprint fingerprint : fingerprints) {
+            dates.add(fingerprint.getFingerprintDate());
+            for (long delta = -toleranceCents; delta <= toleranceCents; delta++) {
+                amountCents.add(fingerprint.getAmountCents() + delta);
+            }
         }
 
-        Long dossierId = piece.getDossier().getId();
-        double tolerance = 0.01; // 1 cent tolerance
-
-        log.debug("🔍 Checking for ecriture duplicates with tolerance for piece {}", piece.getId());
-
-        for (Ecriture ecriture : piece.getEcritures()) {
-            LocalDate entryDate = ecriture.getEntryDate();
-            Double maxAmount = calculateMaxAmountFromEcriture(ecriture);
+        log.info("🔍 Checking {} fingerprints of piece {} for functional duplicates", fingerprints.size(), piece.getId());
+        List<Object[]> matches = duplicateFingerprintRepository.findMatches(
+                piece.getDossier().getId(), piece.getId(), dates, amountCents);
+        if (matches.isEmpty()) {
+            return Optional.empty();
+        }
 
-            if (entryDate == null || maxAmount == null || maxAmount == 0.0) {
-                continue;
+        // Exact matches first, the invoice before the ecritures; the tolerance only applies to ecritures
+        for (long tolerance = 0; tolerance <= toleranceCents; tolerance++) {
+            for (DuplicateFingerprint own : fingerprints) {
+                if (tolerance > 0 && own.getKind() != DuplicateFingerprint.Kind.ECRITURE) {
+                    continue;
+                }
+                for (Object[] match : matches) {
+                    DuplicateFingerprint other = (DuplicateFingerprint) match[0];
+                    if (other.getKind() == own.getKind()
+                            && other.getFingerprintDate().equals(own.getFingerprintDate())
+                            && Math.abs(other.getAmountCents() - own.getAmountCents()) <= tolerance) {
+                        Piece originalPiece = (Piece) match[1];
+                        log.warn("⚠️ {}-based duplicate detected for piece {}: matches piece {} (date: {}, amount: {} cents±{})",
+                                own.getKind(), piece.getId(), originalPiece.getId(), own.getFingerprintDate(),
+                                own.getAmountCents(), tolerance);
+                        return Optional.of(originalPiece);
+                    }
+                }
             }
+        }
+        return Optional.empty();
+    }
 
-            Double minAmount = maxAmount - tolerance;
-            Double maxAmountWithTolerance = maxAmount + tolerance;
+    /**
+     * Stores the functional fingerprints of a processed piece, replacing those of a previous run, so
+     * that later pieces are checked against it.
+     */
+    public void recordFingerprints(Piece piece) {
+        duplicateFingerprintRepository.deleteByPieceId(piece.getId());
+        duplicateFingerprintRepository.saveAll(fingerprintsOf(piece));
+    }
 
-//            log.debug("Checking ecriture with tolerance: entryDate={}, amount={}±{}", entryDate, maxAmount, tolerance);
+    public void deleteFingerprints(Long pieceId) {
+        duplicateFingerprintRepository.deleteByPieceId(pieceId);
+    }
 
-            List<Piece> duplicates = pieceRepository.findByEcritureDataWithTolerance(
-                    dossierId, entryDate, minAmount, maxAmountWithTolerance);
+    // The invoice fingerprint first, then one per ecriture with a date and a non-zero amount
+    private List<DuplicateFingerprint> fingerprintsOf(Piece piece) {
+        List<DuplicateFingerprint> fingerprints = new ArrayList<>();
 
-            // Remove current piece from results if it's included
-            duplicates.removeIf(p -> p.getId().equals(piece.getId()));
+        FactureData factureData = piece.getFactureData();
+        if (factureData != null && factureData.getInvoiceDate() != null && factureData.getTotalTTC() != null) {
+            LocalDate invoiceDate = Instant.ofEpochMilli(factureData.getInvoiceDate().getTime())
+                    .atZone(ZoneId.systemDefault()).toLocalDate();
+            fingerprints.add(new DuplicateFingerprint(piece, DuplicateFingerprint.Kind.INVOICE,
+                    invoiceDate, toCents(factureData.getTotalTTC())));
+        }
 
-            if (!duplicates.isEmpty()) {
-                Piece originalPiece = duplicates.get(0);
-                log.warn("⚠️ Tolerance-based duplicate detected for piece {}: matches piece {} (entry date: {}, amount: {}±{})",
-                        piece.getId(), originalPiece.getId(), entryDate, maxAmount, tolerance);
-                return Optional.of(originalPiece);
+        if (piece.getEcritures() != null) {
+            for (Ecriture ecriture : piece.getEcritures()) {
+                LocalDate entryDate = ecriture.getEntryDate();
+                Double maxAmount = calculateMaxAmountFromEcriture(ecriture);
+                if (entryDate == null || maxAmount == null || maxAmount == 0.0) {
+                    continue;
+                }
+                fingerprints.add(new DuplicateFingerprint(piece, DuplicateFingerprint.Kind.ECRITURE,
+                        entryDate, toCents(maxAmount)));
             }
         }
+        return fingerprints.stream().distinct().toList();
+    }
 
-        return Optional.empty();
+    private static long toCents(double amount) {
+        return Math.round(amount * 100.0);
     }
 
     private Double calculateMaxAmountFromEcriture(Ecriture ecriture) {
@@ -304,19 +341,6 @@ public class DuplicateDetectionService {
                 .orElse(0.0);
     }
 
-    public void markAsDuplicate(Piece duplicatePiece, Piece originalPiece) {
-        log.info("🔗 Marking piece {} as duplicate of piece {}", duplicatePiece.getId(), originalPiece.getId());
-
-        duplicatePiece.setIsDuplicate(true);
-        duplicatePiece.setOriginalPiece(originalPiece);
-        duplicatePiece.setStatus(PieceStatus.DUPLICATE);
-
-        // Save the changes
-        pieceRepository.save(duplicatePiece);
-
-        log.info("✅ Successfully marked piece {} as duplicate", duplicatePiece.getId());
-    }
-
     public boolean isDuplicate(Piece piece) {
         return piece.getIsDuplicate() != null && piece.getIsDuplicate();
     }
@@ -1,6 +1,10 @@
 package com.pacioli.core.services.serviceImp;
 
+import com.pacioli.core.Exceptions.DependencyUnavailableException;
 import com.pacioli.core.config.HistoireAiProperties;
+import com.pacioli.core.config.http.OutboundDestination;
+import com.pacioli.core.config.http.OutboundHttpClients;
+import com.pacioli.core.resilience.DependencyGuards;
 import com.pacioli.core.services.HistoireService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -8,15 +12,14 @@ import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
@@ -27,8 +30,9 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class HistoireServiceImpl implements HistoireService {
 
-    private final RestTemplate restTemplate;
+    private final OutboundHttpClients httpClients;
     private final HistoireAiProperties histoireAiProperties;
+    private final DependencyGuards dependencyGuards;
 
     private static final List<String> VALID_EXTENSIONS = Arrays.asList(".xlsx", ".csv");
     private static final List<String> VALID_MIME_TYPES = Arrays.asList(
@@ -73,45 +77,56 @@ public class HistoireServiceImpl implements HistoireService {
             String finalUrl = baseUrl + "/" + dossierId + "%2F" + fileName;
             log.info("[{}] Final AI URL: {}, filename: {}", requestId, finalUrl, fileName);
 
-            // Setup connection
-            URL url = new URL(finalUrl);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("PUT");
-            conn.setDoOutput(true);
-            conn.setRequestProperty("x-api-key", histoireAiProperties.getApiKey());
-            conn.setRequestProperty("Content-Type", file.getContentType() != null ? file.getContentType() : "application/octet-stream");
-
-            byte[] data = file.getBytes();
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(data);
-            }
-
-            int responseCode = conn.getResponseCode();
+            // Send through the pooled Histoire AI client, streaming the upload instead of buffering it
+            HttpRequest request = httpClients.newRequest(OutboundDestination.HISTOIRE_AI, URI.create(finalUrl))
+                    .header("x-api-key", histoireAiProperties.getApiKey())
+                    .header("Content-Type", file.getContentType() != null ? file.getContentType() : "application/octet-stream")
+                    .PUT(streamingBody(file))
+                    .build();
+
+            HttpResponse<String> httpResponse = dependencyGuards.execute(OutboundDestination.HISTOIRE_AI, () -> {
+                HttpResponse<String> sent = httpClients.send(OutboundDestination.HISTOIRE_AI, request,
+                        HttpResponse.BodyHandlers.ofString());
+                // Throttling and server errors count against the Histoire AI circuit
+                if (sent.statusCode() == 429 || sent.statusCode() >= 500) {
+                    throw new IOException("Histoire AI responded with status " + sent.statusCode() + ": " + sent.body());
+                }
+                return sent;
+            });
+            int responseCode = httpResponse.statusCode();
             log.info("[{}] AI response code: {}", requestId, responseCode);
 
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(
-                    responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
+            String response = httpResponse.body();
 
             if (responseCode == 200) {
                 log.info("[{}] Upload success: {}", requestId, response);
                 return "Le fichier a été transféré à l'IA avec succès !";
             } else {
                 log.error("[{}] AI error: {} - {}", requestId, responseCode, response);
-                throw new RuntimeException("Erreur lors de l'envoi à l'IA: " + response.toString());
+                throw new RuntimeException("Erreur lors de l'envoi à l'IA: " + response);
             }
 
+        } catch (DependencyUnavailableException e) {
+            log.warn("[{}] Histoire AI unavailable, upload not attempted: {}", requestId, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("[{}] Upload failure: {}", requestId, e.getMessage(), e);
             throw new RuntimeException("Erreur inattendue pendant l'envoi: " + e.getMessage());
         }
     }
 
+    private HttpRequest.BodyPublisher streamingBody(MultipartFile file) {
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return file.getInputStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // Known length so the request is not sent chunked
+        return HttpRequest.BodyPublishers.fromPublisher(stream, file.getSize());
+    }
+
     // Add this validation method
     private void validateFileType(String fileType) {
         if (fileType == null || fileType.trim().isEmpty()) {
@@ -3,6 +3,7 @@ package com.pacioli.core.services.serviceImp;
 import com.pacioli.core.models.Journal;
 import com.pacioli.core.repositories.JournalRepository;
 import com.pacioli.core.services.JournalService;
+import com.pacioli.core.services.serviceImp.pieces.DossierReferenceCache;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
 
@@ -11,9 +12,11 @@ import java.util.List;
 @Service
 public class JournalServiceImpl implements JournalService {
     private final JournalRepository journalRepository;
+    private final DossierReferenceCache referenceCache;
 
-    public JournalServiceImpl(JournalRepository journalRepository) {
+    public JournalServiceImpl(JournalRepository journalRepository, DossierReferenceCache referenceCache) {
         this.journalRepository = journalRepository;
+        this.referenceCache = referenceCache;
     }
 
     @Override
@@ -22,7 +25,9 @@ public class JournalServiceImpl implements JournalService {
         if (journalRepository.existsByNameAndDossierId(journal.getName(), dossierId)) {
             throw new RuntimeException("Un journal avec le même nom existe déjà dans ce dossier.");
         }
-        return journalRepository.save(journal);
+        Journal savedJournal = journalRepository.save(journal);
+        referenceCache.evict(dossierId);
+        return savedJournal;
     }
 
     @Override
@@ -31,22 +36,24 @@ public class JournalServiceImpl implements JournalService {
             existingJournal.setName(updatedJournal.getName());
             existingJournal.setType(updatedJournal.getType());
             existingJournal.setCabinet(updatedJournal.getCabinet());
-            return journalRepository.save(existingJournal);
+            Journal savedJournal = journalRepository.save(existingJournal);
+            referenceCache.evict(savedJournal.getDossier().getId());
+            return savedJournal;
         }).orElseThrow(() -> new RuntimeException("Journal non trouvé avec ID: " + id));
     }
 
     @Override
     @Transactional
     public void deleteJournal(Long id) {
-        if (!journalRepository.existsById(id)) {
-            throw new RuntimeException("Journal non trouvé avec ID " + id);
-        }
+        Journal journal = journalRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Journal non trouvé avec ID " + id));
 
         if (journalRepository.hasEntries(id)) {
             throw new RuntimeException("Impossible de supprimer le journal. Il contient des écritures comptables.");
         }
 
         journalRepository.deleteById(id);
+        referenceCache.evict(journal.getDossier().getId());
     }
 
     @Override
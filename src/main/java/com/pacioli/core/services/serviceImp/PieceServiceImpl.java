@@ -4,17 +4,27 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pacioli.core.DTO.PieceDTO;
 import com.pacioli.core.DTO.PieceStatsDTO;
+import com.pacioli.core.batches.PipelineMetrics;
+import com.pacioli.core.batches.PipelineMetrics.Stage;
+import com.pacioli.core.batches.events.AiSubmissionQueuedEvent;
+import com.pacioli.core.enums.AiSubmissionStatus;
 import com.pacioli.core.enums.PieceStatus;
 import com.pacioli.core.models.*;
 import com.pacioli.core.repositories.*;
 import com.pacioli.core.services.PieceService;
 import com.pacioli.core.services.serviceImp.mappers.PieceDTOMapper;
-import com.pacioli.core.services.serviceImp.pieces.AIService;
+import com.pacioli.core.services.serviceImp.pieces.EcritureChunkSource;
 import com.pacioli.core.services.serviceImp.pieces.FileProcessingResult;
 import com.pacioli.core.services.serviceImp.pieces.FileService;
+import com.pacioli.core.services.serviceImp.pieces.PieceContent;
 import com.pacioli.core.services.serviceImp.pieces.PieceProcessingService;
+import com.pacioli.core.services.serviceImp.pieces.PieceUpdates;
+import com.pacioli.core.utils.AiValueParsers;
+import com.pacioli.core.utils.FileNameKey;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -27,6 +37,7 @@ import org.springframework.web.server.ResponseStatusException;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -41,38 +52,47 @@ public class PieceServiceImpl implements PieceService {
     private final DossierRepository dossierRepository;
     private final SimpMessagingTemplate messagingTemplate;
     private final FileService fileService;
-    private final AIService aiService;
+    private final AiSubmissionOutboxRepository aiSubmissionOutboxRepository;
     private final PieceProcessingService pieceProcessingService;
     private final ObjectMapper objectMapper;
     private final FactureDataRepository factureDataRepository;
     private final EcritureRepository ecritureRepository;
     private final LineRepository lineRepository;
     private final DuplicateDetectionService duplicateDetectionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PieceUpdates pieceUpdates;
+    private final PipelineMetrics pipelineMetrics;
 
     public PieceServiceImpl(PieceRepository pieceRepository,
                             PieceDTOMapper pieceDTOMapper,
                             DossierRepository dossierRepository,
                             SimpMessagingTemplate messagingTemplate,
                             FileService fileService,
-                            AIService aiService,
+                            AiSubmissionOutboxRepository aiSubmissionOutboxRepository,
                             PieceProcessingService pieceProcessingService,
                             ObjectMapper objectMapper,
                             FactureDataRepository factureDataRepository,
                             EcritureRepository ecritureRepository,
                             LineRepository lineRepository,
-                            DuplicateDetectionService duplicateDetectionService) {
+                            DuplicateDetectionService duplicateDetectionService,
+                            ApplicationEventPublisher eventPublisher,
+                            PieceUpdates pieceUpdates,
+                            PipelineMetrics pipelineMetrics) {
         this.pieceRepository = pieceRepository;
         this.pieceDTOMapper = pieceDTOMapper;
         this.dossierRepository = dossierRepository;
         this.messagingTemplate = messagingTemplate;
         this.fileService = fileService;
-        this.aiService = aiService;
+        this.aiSubmissionOutboxRepository = aiSubmissionOutboxRepository;
         this.pieceProcessingService = pieceProcessingService;
         this.objectMapper = objectMapper;
         this.factureDataRepository = factureDataRepository;
         this.ecritureRepository = ecritureRepository;
         this.lineRepository = lineRepository;
         this.duplicateDetectionService = duplicateDetectionService;
+        this.eventPublisher = eventPublisher;
+        this.pieceUpdates = pieceUpdates;
+        this.pipelineMetrics = pipelineMetrics;
     }
 
     @Override
@@ -92,13 +112,45 @@ public class PieceServiceImpl implements PieceService {
 
             // Initialize piece with the actual saved filename
             initializePiece(piece, dossier, formattedFilename);
+            piece.setFileHash(fileResult.getFileHash());
+            piece.setFileNameKey(FileNameKey.of(piece.getOriginalFileName()));
+            piece.setPerceptualHash(fileResult.getPerceptualHash());
+
+            // Same file already in the dossier: keep the upload as its duplicate, without any AI call
+            boolean forced = Boolean.TRUE.equals(piece.getIsForced());
+            Optional<Piece> duplicateOf = forced ? Optional.empty()
+                    : duplicateDetectionService.checkExactDuplicate(dossierId, piece.getFileHash());
+            if (duplicateOf.isPresent()) {
+                piece.setIsDuplicate(true);
+                piece.setOriginalPiece(duplicateOf.get());
+                piece.setStatus(PieceStatus.DUPLICATE);
+                Piece savedPiece = pieceRepository.save(piece);
+                // Kept for forcePieceNotDuplicate, never dispatched as is
+                AiSubmissionOutbox held = new AiSubmissionOutbox(savedPiece, fileToProcess.getContentType(), country);
+                held.setStatus(AiSubmissionStatus.HELD);
+                aiSubmissionOutboxRepository.save(held);
+                log.info("⏭️ Piece {} saved as DUPLICATE of piece {}, not sent to AI",
+                        savedPiece.getId(), duplicateOf.get().getId());
+                return savedPiece;
+            }
 
-            // Process with AI - send the converted PNG file if PDF was converted
-            aiService.processFileBasedOnType(fileToProcess, formattedFilename, dossierId, country, piece.getType());
+            // The same page scanned or exported again, or another invoice on the same template: the
+            // AI result decides, see saveEcrituresAndFacture
+            if (!forced) {
+                duplicateDetectionService.findNearDuplicateCandidate(dossierId, piece.getPerceptualHash())
+                        .ifPresent(candidate -> piece.setNearDuplicateOfId(candidate.getId()));
+            }
 
             // Save and return
             Piece savedPiece = pieceRepository.save(piece);
             log.info("✅ Piece saved with ID: {}", savedPiece.getId());
+            duplicateDetectionService.indexPerceptualHash(savedPiece);
+
+            // Queue the AI submission in the same transaction (the stored file is the converted PNG
+            // if the PDF was converted); AiSubmissionDispatcher sends it once the transaction commits
+            AiSubmissionOutbox submission = aiSubmissionOutboxRepository.save(
+                    new AiSubmissionOutbox(savedPiece, fileToProcess.getContentType(), country));
+            eventPublisher.publishEvent(new AiSubmissionQueuedEvent(submission.getId(), savedPiece.getId()));
 
             return savedPiece;
 
@@ -115,69 +167,145 @@ public class PieceServiceImpl implements PieceService {
     @Override
     @Transactional
     public Piece saveEcrituresAndFacture(Long pieceId, Long dossierId, String pieceData, JsonNode originalAiResponse) {
-        Dossier dossier = dossierRepository.findById(dossierId)
-                .orElseThrow(() -> new IllegalArgumentException("Dossier not found for ID: " + dossierId));
+        try {
+            return saveEcrituresAndFacture(pieceId, dossierId,
+                    () -> pieceProcessingService.readPieceContent(pieceData, originalAiResponse));
+        } finally {
+            // The AI pipeline notifies once per piece itself, after its own last step
+            notifyPiecesUpdate(dossierId);
+        }
+    }
+
+    @Override
+    @Transactional
+    public Piece saveEcrituresAndFacture(Long pieceId, Long dossierId, PieceDTO aiResult) {
+        return saveEcrituresAndFacture(pieceId, dossierId, () -> pieceProcessingService.toPieceContent(aiResult));
+    }
+
+    @Override
+    @Transactional
+    public Piece saveEcrituresAndFacture(Long pieceId, Long dossierId, PieceDTO aiResultHeader,
+                                         EcritureChunkSource ecritureChunks, String resultFingerprint) {
+        return saveEcrituresAndFacture(pieceId, dossierId,
+                () -> pieceProcessingService.toPieceContent(aiResultHeader, ecritureChunks, resultFingerprint));
+    }
+
+    /**
+     * The content is built inside the try block so an unreadable payload rejects the piece.
+     * <p>
+     * Idempotent per AI result: when the piece already holds the ecritures of a result with the same
+     * fingerprint (a retry after a later step failed, or a piece picked twice), nothing is written.
+     * A different result replaces whatever a previous run left on the piece.
+     * <p>
+     * The final status is a versioned transition: if another worker moved the piece on meanwhile,
+     * the whole save is rolled back.
+     */
+    private Piece saveEcrituresAndFacture(Long pieceId, Long dossierId, Supplier<PieceContent> contentSupplier) {
+        // One load for the piece and its dossier (fetched with it)
         Piece piece = pieceRepository.findById(pieceId)
                 .orElseThrow(() -> new IllegalArgumentException("Piece not found for ID: " + pieceId));
+        Dossier dossier = piece.getDossier();
+        if (!dossier.getId().equals(dossierId)) {
+            throw new IllegalArgumentException("Piece " + pieceId + " does not belong to dossier " + dossierId);
+        }
 
         try {
-            // ** Step 1: Save FactureData first **
-            saveFactureDataForPiece(piece, pieceData, originalAiResponse);
+            PieceContent content = contentSupplier.get();
 
-            // ** Step 2: Save Ecritures temporarily **
-            saveEcrituresForPiece(piece, dossierId, pieceData, originalAiResponse);
+            String fingerprint = content.getResultFingerprint();
+            if (fingerprint != null && fingerprint.equals(piece.getResultFingerprint())) {
+                log.info("⏭️ AI result of piece {} is already persisted, nothing to write (status {})",
+                        pieceId, piece.getStatus());
+                return piece;
+            }
+            if (ecritureRepository.existsByPieceId(pieceId)) {
+                int removed = pieceProcessingService.deleteEcrituresOfPiece(pieceId);
+                log.info("♻️ Replacing {} ecritures left on piece {} by a previous run", removed, pieceId);
+            }
+
+            Piece loaded = piece;
+            pipelineMetrics.run(Stage.PERSISTENCE, loaded, () -> {
+                // ** Step 1: Save FactureData first **
+                pieceProcessingService.saveFactureDataForPiece(loaded, content.getFactureData(), content.getOriginalEcritures());
+
+                // ** Step 2: Save Ecritures temporarily **
+                if (content.isStreamed()) {
+                    pieceProcessingService.saveEcritureChunksForPiece(pieceId, dossierId, content.getEcritureChunks());
+                } else {
+                    pieceProcessingService.saveEcrituresForPiece(loaded, dossier, content.getEcritures(), content.getOriginalEcritures());
+                }
+            });
+            if (content.isStreamed()) {
+                // Chunks clear the persistence context: continue with a managed piece
+                piece = pieceRepository.findById(pieceId)
+                        .orElseThrow(() -> new IllegalArgumentException("Piece not found for ID: " + pieceId));
+            }
 
             // ** Step 3: ENSURE AMOUNT IS SET - CRITICAL FIX **
-            ensurePieceAmountIsSet(piece, pieceData, dossier, originalAiResponse);
+            ensurePieceAmountIsSet(piece, content);
 
             // ** Step 4: Perform comprehensive duplicate check **
             if (duplicateDetectionService != null) {
-                Optional<Piece> comprehensiveDuplicate = duplicateDetectionService.performComprehensiveDuplicateCheck(piece);
+                Piece saved = piece;
+                Optional<Piece> comprehensiveDuplicate = pipelineMetrics.time(Stage.DUPLICATE_CHECK, saved,
+                        () -> duplicateDetectionService.performComprehensiveDuplicateCheck(saved));
 
+                if (piece.getNearDuplicateOfId() != null) {
+                    logNearDuplicateOutcome(piece, comprehensiveDuplicate);
+                }
                 if (comprehensiveDuplicate.isPresent()) {
                     log.warn("🚫 Comprehensive duplicate detected, marking piece {} as duplicate of piece {}",
                             piece.getId(), comprehensiveDuplicate.get().getId());
 
+                    // The piece is managed: these changes are flushed with the transaction
                     if (piece.getEcritures() != null) {
                         piece.getEcritures().clear();
-                        pieceRepository.save(piece);
                     }
-
-                    // ✅ CRITICAL FIX: Set status to DUPLICATE before marking
-                    piece.setStatus(PieceStatus.DUPLICATE);
                     piece.setIsDuplicate(true);
                     piece.setOriginalPiece(comprehensiveDuplicate.get());
-
-                    // Save the piece with duplicate status
-                    piece = pieceRepository.save(piece);
-
-                    duplicateDetectionService.markAsDuplicate(piece, comprehensiveDuplicate.get());
+                    piece.setResultFingerprint(fingerprint);
+                    pieceUpdates.transition(piece, PieceStatus.DUPLICATE);
 
                     log.info("⏭️ Marked piece {} as DUPLICATE of piece {}", piece.getId(), comprehensiveDuplicate.get().getId());
-                    notifyPiecesUpdate(dossierId);
                     return piece;
                 }
             }
 
             // ** Step 5: Update the status of the Piece **
-            piece.setStatus(PieceStatus.PROCESSED);
             piece.setIsDuplicate(false); // Ensure it's not marked as duplicate
-            piece = pieceRepository.save(piece);
+            piece.setNearDuplicateOfId(null); // Its result differs from the look-alike's
+            piece.setResultFingerprint(fingerprint);
+            // Later pieces are checked against its invoice and ecritures
+            duplicateDetectionService.recordFingerprints(piece);
+            pieceUpdates.transition(piece, PieceStatus.PROCESSED);
 
             log.info("✅ Piece {} successfully processed with amount: {}", piece.getId(), piece.getAmount());
 
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("⚠️ Piece {} was moved on by another worker, discarding this save: {}", pieceId, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("💥 Error in saveEcrituresAndFacture for piece {}: {}", piece.getId(), e.getMessage(), e);
-            piece.setStatus(PieceStatus.REJECTED);
-            pieceRepository.save(piece);
-        } finally {
-            notifyPiecesUpdate(dossierId);
+            pieceUpdates.transition(piece, PieceStatus.REJECTED);
         }
 
         return piece;
     }
 
-    private void ensurePieceAmountIsSet(Piece piece, String pieceData, Dossier dossier, JsonNode originalAiResponse) {
+    private void logNearDuplicateOutcome(Piece piece, Optional<Piece> duplicateOf) {
+        Long candidateId = piece.getNearDuplicateOfId();
+        if (duplicateOf.isEmpty()) {
+            log.info("🖼️ Piece {} looks like piece {} but its AI result differs (same template, other values)",
+                    piece.getId(), candidateId);
+        } else if (candidateId.equals(duplicateOf.get().getId())) {
+            log.info("🖼️ AI result confirms piece {} as a copy of look-alike piece {}", piece.getId(), candidateId);
+        } else {
+            log.info("🖼️ Piece {} looks like piece {} but duplicates piece {}",
+                    piece.getId(), candidateId, duplicateOf.get().getId());
+        }
+    }
+
+    private void ensurePieceAmountIsSet(Piece piece, PieceContent content) {
         // If amount is already set, keep it
         if (piece.getAmount() != null) {
             log.info("💰 Piece {} already has amount: {}", piece.getId(), piece.getAmount());
@@ -187,24 +315,23 @@ public class PieceServiceImpl implements PieceService {
         Double calculatedAmount = null;
 
         // Priority 1: Try to get amount from original AI response first (most accurate)
-        try {
-            JsonNode originalEcritures = parseOriginalAiResponse(originalAiResponse);
-            if (originalEcritures != null && originalEcritures.isArray()) {
-                BigDecimal maxAmount = BigDecimal.ZERO;
-                for (JsonNode entry : originalEcritures) {
-                    String debitStr = entry.has("DebitAmt") ? entry.get("DebitAmt").asText("0") : "0";
-                    String creditStr = entry.has("CreditAmt") ? entry.get("CreditAmt").asText("0") : "0";
-
-                    BigDecimal debit = new BigDecimal(debitStr);
-                    BigDecimal credit = new BigDecimal(creditStr);
-
-                    maxAmount = maxAmount.max(debit.max(credit));
+        JsonNode originalEcritures = content.getOriginalEcritures();
+        if (originalEcritures != null && originalEcritures.isArray()) {
+            BigDecimal maxAmount = BigDecimal.ZERO;
+            for (JsonNode entry : originalEcritures) {
+                BigDecimal debit = AiValueParsers.parseExactAmount(entry, "DebitAmt");
+                BigDecimal credit = AiValueParsers.parseExactAmount(entry, "CreditAmt");
+                if (debit == null || credit == null) {
+                    log.warn("Unparseable amount in original AI response: {}", entry);
+                    maxAmount = null;
+                    break;
                 }
+                maxAmount = maxAmount.max(debit.max(credit));
+            }
+            if (maxAmount != null) {
                 calculatedAmount = maxAmount.doubleValue();
                 log.info("💰 Calculated amount from original AI: {}", calculatedAmount);
             }
-        } catch (Exception e) {
-            log.warn("Error getting amount from original AI response: {}", e.getMessage());
         }
 
         // Priority 2: Use AI amount from piece
@@ -215,7 +342,7 @@ public class PieceServiceImpl implements PieceService {
 
         // Priority 3: Fallback to calculating from ecritures
         if (calculatedAmount == null) {
-            calculatedAmount = calculateAmountFromEcritures(pieceData, dossier, originalAiResponse);
+            calculatedAmount = calculateAmountFromEcritures(content.getEcritures());
             log.info("💰 Calculated amount from ecritures: {}", calculatedAmount);
         }
 
@@ -241,57 +368,11 @@ public class PieceServiceImpl implements PieceService {
         }
     }
 
-    /**
-     * ✅ Deserialize ecritures for amount calculation
-     */
-    private List<Ecriture> deserializeEcritures(String pieceData, Dossier dossier) {
-        try {
-            JsonNode rootNode = objectMapper.readTree(pieceData);
-            JsonNode ecrituresNode = rootNode.get("ecritures");
-
-            if (ecrituresNode == null || ecrituresNode.isNull()) {
-                log.warn("'ecritures' field is missing or null in the JSON");
-                return Collections.emptyList();
-            }
-
-            List<Ecriture> ecritures = new ArrayList<>();
-            for (JsonNode ecritureNode : ecrituresNode) {
-                Ecriture ecriture = objectMapper.treeToValue(ecritureNode, Ecriture.class);
-                ecritures.add(ecriture);
-            }
-            return ecritures;
-        } catch (IOException e) {
-            log.error("Failed to parse 'ecritures' JSON: {}", e.getMessage(), e);
-            throw new IllegalArgumentException("Invalid JSON format for 'ecritures': " + e.getMessage(), e);
-        }
-    }
-
-    /**
-     * ✅ Parse original AI response for amount extraction
-     */
-    private JsonNode parseOriginalAiResponse(JsonNode originalAiResponse) {
-        if (originalAiResponse == null) {
-            log.debug("Original AI response is null");
-            return null;
-        }
-
-        try {
-            String responseText = originalAiResponse.asText();
-            JsonNode parsedOriginal = objectMapper.readTree(responseText);
-            JsonNode originalEcritures = parsedOriginal.get("ecritures");
-            return originalEcritures != null ? originalEcritures : parsedOriginal.get("Ecritures");
-        } catch (Exception e) {
-            log.error("Error parsing original AI response: {}", e.getMessage());
-            return null;
-        }
-    }
-
     /**
      * ✅ Calculate amount from ecritures (fallback method)
      */
-    private Double calculateAmountFromEcritures(String pieceData, Dossier dossier, JsonNode originalAiResponse) {
+    private Double calculateAmountFromEcritures(List<Ecriture> ecritures) {
         try {
-            List<Ecriture> ecritures = deserializeEcritures(pieceData, dossier);
             return ecritures.stream()
                     .flatMap(e -> e.getLines().stream())
                     .mapToDouble(line -> Math.max(line.getDebit() != null ? line.getDebit() : 0.0,
@@ -353,6 +434,7 @@ public class PieceServiceImpl implements PieceService {
     @Override
     @Transactional
     public void deletePiece(Long id) {
+        duplicateDetectionService.deleteFingerprints(id);
         pieceRepository.deleteById(id);
     }
 
@@ -362,8 +444,9 @@ public class PieceServiceImpl implements PieceService {
     public Piece updatePieceStatus(Long pieceId, String newStatus) {
         Piece piece = getPieceById(pieceId);
         PieceStatus status = PieceStatus.valueOf(newStatus.toUpperCase());
-        piece.setStatus(status);
-        return pieceRepository.save(piece);
+        // Versioned like the pipeline's own transitions, so a worker holding the piece notices the change
+        pieceUpdates.transition(piece, status);
+        return piece;
     }
 
     @Override
@@ -376,7 +459,42 @@ public class PieceServiceImpl implements PieceService {
             throw new IllegalStateException("Seules les pièces dupliquées peuvent être forcées à être considérées comme non dupliquées.");
         }
 
-        return pieceProcessingService.forcePieceAsNotDuplicate(piece);
+        Piece forced = pieceProcessingService.forcePieceAsNotDuplicate(piece);
+        queueForcedSubmission(forced);
+        // Can serve as original of look-alikes again, whether or not the index dropped it meanwhile
+        duplicateDetectionService.indexPerceptualHash(forced);
+        return forced;
+    }
+
+    /**
+     * An exact copy kept at upload never had its file sent to the AI: release its held submission (or,
+     * for a copy uploaded before submissions were held, queue one like its original's). A piece marked
+     * duplicate after its AI call already has a SENT submission and is simply processed again.
+     */
+    private void queueForcedSubmission(Piece piece) {
+        Optional<AiSubmissionOutbox> latest = aiSubmissionOutboxRepository.findFirstByPieceIdOrderByIdDesc(piece.getId());
+        AiSubmissionOutbox submission;
+        if (latest.isPresent()) {
+            submission = latest.get();
+            if (submission.getStatus() != AiSubmissionStatus.HELD) {
+                return;
+            }
+            submission.setStatus(AiSubmissionStatus.PENDING);
+            submission.setAttempts(0);
+            submission.setLastError(null);
+            submission.setNextAttemptAt(new Date());
+        } else {
+            Optional<AiSubmissionOutbox> original = piece.getOriginalPiece() == null ? Optional.empty()
+                    : aiSubmissionOutboxRepository.findFirstByPieceIdOrderByIdDesc(piece.getOriginalPiece().getId());
+            if (original.isEmpty()) {
+                log.warn("⚠️ Forced piece {} has no AI submission to send, re-upload it to process it", piece.getId());
+                return;
+            }
+            submission = new AiSubmissionOutbox(piece, original.get().getContentType(), original.get().getCountry());
+        }
+        submission = aiSubmissionOutboxRepository.save(submission);
+        log.info("📨 Forced piece {} queued for AI submission", piece.getId());
+        eventPublisher.publishEvent(new AiSubmissionQueuedEvent(submission.getId(), piece.getId()));
     }
 
     // Statistics operations
@@ -483,14 +601,4 @@ public class PieceServiceImpl implements PieceService {
             log.error("Failed to send error notification to WebSocket: {}", notifyError.getMessage());
         }
     }
-
-    private void saveFactureDataForPiece(Piece piece, String pieceData, JsonNode originalAiResponse) {
-        // Implement or delegate to pieceProcessingService
-        pieceProcessingService.saveFactureDataForPiece(piece, pieceData, originalAiResponse);
-    }
-
-    private void saveEcrituresForPiece(Piece piece, Long dossierId, String pieceData, JsonNode originalAiResponse) {
-        // Implement or delegate to pieceProcessingService
-        pieceProcessingService.saveEcrituresForPiece(piece, dossierId, pieceData, originalAiResponse);
-    }
-}
\ No newline at end of file
+}
@@ -6,12 +6,18 @@ import com.pacioli.core.DTO.FactureDataDTO;
 import com.pacioli.core.DTO.JournalDTO;
 import com.pacioli.core.DTO.LineDTO;
 import com.pacioli.core.DTO.PieceDTO;
+import com.pacioli.core.models.Account;
 import com.pacioli.core.models.Ecriture;
+import com.pacioli.core.models.FactureData;
+import com.pacioli.core.models.Journal;
 import com.pacioli.core.models.Line;
 import com.pacioli.core.models.Piece;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -39,6 +45,7 @@ public class PieceDTOMapper {
             dto.setOriginalPieceId(piece.getOriginalPiece().getId());
             dto.setOriginalPieceName(piece.getOriginalPiece().getOriginalFileName());
         }
+        dto.setNearDuplicateOfId(piece.getNearDuplicateOfId());
 
         // Add AI currency and amount info
         dto.setAiCurrency(piece.getAiCurrency());
@@ -134,4 +141,111 @@ public class PieceDTOMapper {
 
         return lineDTO;
     }
+
+    // ===== AI result DTO -> new entities (no JSON round-trip) =====
+
+    /**
+     * Builds the (unsaved) FactureData of an AI result, field for field as Jackson would from the DTO.
+     */
+    public FactureData toFactureData(FactureDataDTO dto) {
+        if (dto == null) {
+            return null;
+        }
+        FactureData factureData = new FactureData();
+        factureData.setId(dto.getId());
+        factureData.setInvoiceNumber(dto.getInvoiceNumber());
+        factureData.setInvoiceDate(dto.getInvoiceDate());
+        factureData.setTotalTTC(dto.getTotalTTC());
+        factureData.setTotalHT(dto.getTotalHT());
+        factureData.setTotalTVA(dto.getTotalTVA());
+        factureData.setTaxRate(dto.getTaxRate());
+        factureData.setTier(dto.getTier());
+        factureData.setIce(dto.getIce());
+        factureData.setDevise(dto.getDevise());
+
+        factureData.setExchangeRate(dto.getExchangeRate());
+        factureData.setOriginalCurrency(dto.getOriginalCurrency());
+        factureData.setConvertedCurrency(dto.getConvertedCurrency());
+        factureData.setExchangeRateDate(dto.getExchangeRateDate());
+
+        factureData.setConvertedTotalTTC(dto.getConvertedTotalTTC());
+        factureData.setConvertedTotalHT(dto.getConvertedTotalHT());
+        factureData.setConvertedTotalTVA(dto.getConvertedTotalTVA());
+        factureData.setUsdTotalTTC(dto.getUsdTotalTTC());
+        factureData.setUsdTotalHT(dto.getUsdTotalHT());
+        factureData.setUsdTotalTVA(dto.getUsdTotalTVA());
+        return factureData;
+    }
+
+    /**
+     * Builds the (unsaved) Ecritures and Lines of an AI result; accounts and journals are detached
+     * placeholders carrying number/name only, resolved against the dossier when persisted.
+     */
+    public List<Ecriture> toEcritures(List<EcrituresDTO2> dtos) {
+        if (dtos == null) {
+            return Collections.emptyList();
+        }
+        List<Ecriture> ecritures = new ArrayList<>(dtos.size());
+        for (EcrituresDTO2 dto : dtos) {
+            ecritures.add(mapDTOToEcriture(dto));
+        }
+        return ecritures;
+    }
+
+    private Ecriture mapDTOToEcriture(EcrituresDTO2 dto) {
+        Ecriture ecriture = new Ecriture();
+        ecriture.setId(dto.getId());
+        ecriture.setUniqueEntryNumber(dto.getUniqueEntryNumber());
+        ecriture.setEntryDate(dto.getEntryDate() != null ? LocalDate.parse(dto.getEntryDate(), DATE_FORMATTER) : null);
+        ecriture.setManuallyUpdated(false);
+
+        if (dto.getJournal() != null) {
+            Journal journal = new Journal();
+            journal.setId(dto.getJournal().getId());
+            journal.setName(dto.getJournal().getName());
+            journal.setType(dto.getJournal().getType());
+            ecriture.setJournal(journal);
+        }
+
+        if (dto.getLines() != null) {
+            List<Line> lines = new ArrayList<>(dto.getLines().size());
+            for (LineDTO lineDTO : dto.getLines()) {
+                Line line = mapDTOToLine(lineDTO);
+                line.setEcriture(ecriture);
+                lines.add(line);
+            }
+            ecriture.setLines(lines);
+        }
+        return ecriture;
+    }
+
+    private Line mapDTOToLine(LineDTO dto) {
+        Line line = new Line();
+        line.setId(dto.getId());
+        line.setLabel(dto.getLabel());
+        line.setDebit(dto.getDebit());
+        line.setCredit(dto.getCredit());
+        line.setManuallyUpdated(dto.getManuallyUpdated());
+        line.setManualUpdateDate(dto.getManualUpdateDate());
+
+        if (dto.getAccount() != null) {
+            Account account = new Account();
+            account.setId(dto.getAccount().getId());
+            account.setAccount(dto.getAccount().getAccount());
+            account.setLabel(dto.getAccount().getLabel());
+            line.setAccount(account);
+        }
+
+        line.setOriginalDebit(dto.getOriginalDebit());
+        line.setOriginalCredit(dto.getOriginalCredit());
+        line.setOriginalCurrency(dto.getOriginalCurrency());
+        line.setConvertedDebit(dto.getConvertedDebit());
+        line.setConvertedCredit(dto.getConvertedCredit());
+        line.setConvertedCurrency(dto.getConvertedCurrency());
+        line.setExchangeRate(dto.getExchangeRate());
+        line.setExchangeRateDate(dto.getExchangeRateDate() != null ? dto.getExchangeRateDate().toString() : null);
+        line.setUsdDebit(dto.getUsdDebit());
+        line.setUsdCredit(dto.getUsdCredit());
+        return line;
+    }
 }
@@ -2,25 +2,30 @@ package com.pacioli.core.services.serviceImp.pieces;
 
 import com.pacioli.core.DTO.AI.BankStatementRequest;
 import com.pacioli.core.DTO.AI.BankStatementResponse;
+import com.pacioli.core.config.http.OutboundDestination;
+import com.pacioli.core.config.http.OutboundHttpClients;
+import com.pacioli.core.resilience.DependencyGuards;
 import com.pacioli.core.services.AI.services.BankApiService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 @Slf4j
 @Service
 public class AIService {
 
     private final BankApiService bankApiService;
+    private final OutboundHttpClients httpClients;
+    private final DependencyGuards dependencyGuards;
 
     @Value("${ai.service.url}")
     private String aiApiBaseUrl;
@@ -28,12 +33,28 @@ public class AIService {
     @Value("${ai.service.api-key}")
     private String aiApiKey;
 
-    public AIService(BankApiService bankApiService) {
+    @Value("${file.upload.dir:Files/}")
+    private String uploadDir;
+
+    public AIService(BankApiService bankApiService, OutboundHttpClients httpClients,
+                     DependencyGuards dependencyGuards) {
         this.bankApiService = bankApiService;
+        this.httpClients = httpClients;
+        this.dependencyGuards = dependencyGuards;
     }
 
-    public void processFileBasedOnType(MultipartFile file, String filename, Long dossierId,
-                                       String country, String pieceType) {
+    /**
+     * Sends a file already stored in the upload directory to the AI service matching the piece type.
+     * Called by the AI submission dispatcher, outside of the upload request.
+     *
+     * @throws IOException if the file is missing or the AI service did not accept it
+     */
+    public void submitStoredFile(String filename, String contentType, Long dossierId,
+                                 String country, String pieceType) throws IOException {
+        Path filePath = Paths.get(uploadDir).resolve(filename);
+        if (!Files.exists(filePath)) {
+            throw new IOException("Stored file not found: " + filePath);
+        }
         boolean isBankStatement = "Relevés bancaires".equalsIgnoreCase(pieceType);
 
         if (isBankStatement) {
@@ -41,77 +62,67 @@ public class AIService {
             // ✅ FIX: Extract UUID without extension for bank statements
             String uuid = filename.contains(".") ?
                     filename.substring(0, filename.lastIndexOf('.')) : filename;
-            processBankStatement(file, dossierId, uuid);
+            processBankStatement(new StoredMultipartFile(filePath, contentType), dossierId, uuid);
         } else {
             log.info("🤖 Sending to Normal AI Service");
-            sendFileToAI(file, filename, dossierId, country);
+            sendFileToAI(filePath, contentType, filename, dossierId, country);
         }
     }
 
-    private void processBankStatement(MultipartFile file, Long dossierId, String uuid) {
-        try {
-            BankStatementRequest bankRequest = new BankStatementRequest(dossierId, file, uuid);
-            BankStatementResponse bankResponse = bankApiService.uploadBankStatement(bankRequest);
+    private void processBankStatement(MultipartFile file, Long dossierId, String uuid) throws IOException {
+        BankStatementRequest bankRequest = new BankStatementRequest(dossierId, file, uuid);
+        BankStatementResponse bankResponse = bankApiService.uploadBankStatement(bankRequest);
 
-            if (!bankResponse.isSuccess()) {
-                log.warn("⚠️ Bank AI service returned error: {}", bankResponse.getMessage());
-            }
-        } catch (Exception e) {
-            log.error("Error processing bank statement: {}", e.getMessage(), e);
+        if (!bankResponse.isSuccess()) {
+            log.warn("⚠️ Bank AI service returned error: {}", bankResponse.getMessage());
+            throw new IOException("Bank AI service returned error: " + bankResponse.getMessage());
         }
     }
 
-    private void sendFileToAI(MultipartFile file, String filename, Long dossierID, String country) {
-        try {
-            log.info("============ START AI FILE UPLOAD TRACE ============");
-
-            String uuid = filename.contains(".") ?
-                    filename.substring(0, filename.lastIndexOf('.')) : filename;
-
-            String baseUrl = aiApiBaseUrl.endsWith("/") ?
-                    aiApiBaseUrl.substring(0, aiApiBaseUrl.length() - 1) : aiApiBaseUrl;
-
-            String finalUrl = baseUrl + "/" + dossierID + "%2F" + filename;
-            log.info("Complete API URL: {}", finalUrl);
+    // Streams the stored file from disk: heap use does not depend on the file size
+    private void sendFileToAI(Path filePath, String contentType, String filename, Long dossierID, String country) throws IOException {
+        log.info("============ START AI FILE UPLOAD TRACE ============");
 
-            Map<String, String> headers = new HashMap<>();
-            headers.put("Content-Type", file.getContentType());
-            headers.put("x-api-key", aiApiKey);
+        String uuid = filename.contains(".") ?
+                filename.substring(0, filename.lastIndexOf('.')) : filename;
 
-            byte[] fileBytes = file.getBytes();
+        String baseUrl = aiApiBaseUrl.endsWith("/") ?
+                aiApiBaseUrl.substring(0, aiApiBaseUrl.length() - 1) : aiApiBaseUrl;
 
-            URL url = new URL(finalUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("PUT");
-            connection.setDoOutput(true);
+        String finalUrl = baseUrl + "/" + dossierID + "%2F" + filename;
+        log.info("Complete API URL: {}", finalUrl);
 
-            headers.forEach(connection::setRequestProperty);
+        HttpRequest request = httpClients.newRequest(OutboundDestination.INVOICE_AI, URI.create(finalUrl))
+                .header("Content-Type", contentType != null ? contentType : "application/octet-stream")
+                .header("x-api-key", aiApiKey)
+                .PUT(HttpRequest.BodyPublishers.ofFile(filePath))
+                .build();
 
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(fileBytes);
+        HttpResponse<String> httpResponse = dependencyGuards.execute(OutboundDestination.INVOICE_AI, () -> {
+            HttpResponse<String> sent;
+            try {
+                sent = httpClients.send(OutboundDestination.INVOICE_AI, request, HttpResponse.BodyHandlers.ofString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while sending file to AI", e);
             }
-
-            int responseCode = connection.getResponseCode();
-            StringBuilder response = new StringBuilder();
-
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(
-                    responseCode >= 400 ? connection.getErrorStream() : connection.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
+            // Throttling and server errors count against the invoice AI circuit
+            if (sent.statusCode() == 429 || sent.statusCode() >= 500) {
+                throw new IOException("AI service responded with status " + sent.statusCode() + ": " + sent.body());
             }
+            return sent;
+        });
 
-            if (responseCode == 200) {
-                log.info("File successfully sent to AI: {}", filename);
-            } else {
-                log.warn("AI service responded with non-OK status: {} - {}", responseCode, response);
-            }
+        int responseCode = httpResponse.statusCode();
+        String response = httpResponse.body();
 
-            log.info("============ END AI FILE UPLOAD TRACE ============");
+        log.info("============ END AI FILE UPLOAD TRACE ============");
 
-        } catch (Exception e) {
-            log.error("Error in sendFileToAI: {}", e.getMessage(), e);
+        if (responseCode == 200) {
+            log.info("File successfully sent to AI: {}", filename);
+        } else {
+            log.warn("AI service responded with non-OK status: {} - {}", responseCode, response);
+            throw new IOException("AI service responded with status " + responseCode + ": " + response);
         }
     }
 }
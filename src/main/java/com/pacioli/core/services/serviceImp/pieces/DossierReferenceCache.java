@@ -0,0 +1,167 @@
+package com.pacioli.core.services.serviceImp.pieces;
+
+import com.pacioli.core.config.batch.BatchProcessingConfig;
+import com.pacioli.core.repositories.AccountRepository;
+import com.pacioli.core.repositories.JournalRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Account and journal ids of the most recently used dossiers, shared by the batch workers so a piece
+ * does not reload its dossier's chart of accounts. Only ids are cached: callers turn them into
+ * references inside their own persistence context.
+ * <p>
+ * Ids created by a worker are published once its transaction commits, and a dossier is evicted
+ * whenever its accounts or journals are edited, so a rolled back or stale id is never handed out.
+ */
+@Slf4j
+@Component
+public class DossierReferenceCache {
+
+    private final AccountRepository accountRepository;
+    private final JournalRepository journalRepository;
+    private final BatchProcessingConfig batchConfig;
+
+    private final Map<Long, DossierReferences> dossiers = new ConcurrentHashMap<>();
+    // Bumped on every eviction, so a load that raced with one is not kept
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong accessClock = new AtomicLong();
+
+    public DossierReferenceCache(AccountRepository accountRepository,
+                                 JournalRepository journalRepository,
+                                 BatchProcessingConfig batchConfig) {
+        this.accountRepository = accountRepository;
+        this.journalRepository = journalRepository;
+        this.batchConfig = batchConfig;
+    }
+
+    private static final class DossierReferences {
+        final Map<String, Long> accountIds = new ConcurrentHashMap<>();
+        // Keyed by upper-cased name: journals are matched case-insensitively
+        final Map<String, Long> journalIds = new ConcurrentHashMap<>();
+        volatile long lastAccess;
+    }
+
+    public Long findAccountId(Long dossierId, String accountNumber) {
+        return references(dossierId).accountIds.get(accountNumber);
+    }
+
+    public Long findJournalId(Long dossierId, String journalName) {
+        return references(dossierId).journalIds.get(journalKey(journalName));
+    }
+
+    public void cacheAccountAfterCommit(Long dossierId, String accountNumber, Long accountId) {
+        afterCommit(() -> {
+            DossierReferences refs = dossiers.get(dossierId);
+            if (refs != null) {
+                refs.accountIds.putIfAbsent(accountNumber, accountId);
+            }
+        });
+    }
+
+    public void cacheJournalAfterCommit(Long dossierId, String journalName, Long journalId) {
+        afterCommit(() -> {
+            DossierReferences refs = dossiers.get(dossierId);
+            if (refs != null) {
+                refs.journalIds.putIfAbsent(journalKey(journalName), journalId);
+            }
+        });
+    }
+
+    /**
+     * Drops the dossier now and again once the current transaction completes, so a worker reloading
+     * in between cannot keep what was there before the change.
+     */
+    public void evict(Long dossierId) {
+        if (dossierId == null) {
+            return;
+        }
+        evictNow(dossierId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictNow(dossierId);
+                }
+            });
+        }
+    }
+
+    static String journalKey(String journalName) {
+        return journalName.toUpperCase(Locale.ROOT);
+    }
+
+    private void evictNow(Long dossierId) {
+        evictions.incrementAndGet();
+        if (dossiers.remove(dossierId) != null) {
+            log.debug("🗑️ Evicted cached accounts and journals of dossier {}", dossierId);
+        }
+    }
+
+    private DossierReferences references(Long dossierId) {
+        DossierReferences refs = dossiers.get(dossierId);
+        if (refs == null) {
+            long evictionsBefore = evictions.get();
+            DossierReferences loaded = load(dossierId);
+            refs = dossiers.putIfAbsent(dossierId, loaded);
+            if (refs == null) {
+                refs = loaded;
+                if (evictions.get() != evictionsBefore) {
+                    // Serve this load to the caller but do not keep it
+                    dossiers.remove(dossierId, loaded);
+                }
+                trimToSize();
+            }
+        }
+        refs.lastAccess = accessClock.incrementAndGet();
+        return refs;
+    }
+
+    private DossierReferences load(Long dossierId) {
+        DossierReferences refs = new DossierReferences();
+        refs.lastAccess = accessClock.incrementAndGet();
+        for (Object[] row : accountRepository.findAccountIdsByDossierId(dossierId)) {
+            if (row[0] != null) {
+                refs.accountIds.putIfAbsent((String) row[0], (Long) row[1]);
+            }
+        }
+        for (Object[] row : journalRepository.findJournalIdsByDossierId(dossierId)) {
+            if (row[0] != null) {
+                refs.journalIds.putIfAbsent(journalKey((String) row[0]), (Long) row[1]);
+            }
+        }
+        log.debug("📒 Cached {} accounts and {} journals of dossier {}",
+                refs.accountIds.size(), refs.journalIds.size(), dossierId);
+        return refs;
+    }
+
+    private void trimToSize() {
+        int maxDossiers = Math.max(1, batchConfig.getReferenceCacheDossiers());
+        while (dossiers.size() > maxDossiers) {
+            dossiers.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                    .ifPresent(eldest -> dossiers.remove(eldest.getKey(), eldest.getValue()));
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
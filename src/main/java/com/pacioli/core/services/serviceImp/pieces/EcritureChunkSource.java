@@ -0,0 +1,16 @@
+package com.pacioli.core.services.serviceImp.pieces;
+
+import com.pacioli.core.DTO.EcrituresDTO2;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Ecritures of an AI result produced chunk by chunk (large bank statements streamed from disk),
+ * so the whole result never has to be held in memory at once.
+ */
+@FunctionalInterface
+public interface EcritureChunkSource {
+    void forEachChunk(Consumer<List<EcrituresDTO2>> sink) throws IOException;
+}
@@ -5,10 +5,16 @@ import org.springframework.web.multipart.MultipartFile;
 public class FileProcessingResult {
     private final String filename;
     private final MultipartFile fileToProcess;
+    // SHA-256 (hex) of the uploaded file, before any PDF to image conversion
+    private final String fileHash;
+    // PerceptualHash of the first page, null for bank statements or when it could not be rendered
+    private final Long perceptualHash;
 
-    public FileProcessingResult(String filename, MultipartFile fileToProcess) {
+    public FileProcessingResult(String filename, MultipartFile fileToProcess, String fileHash, Long perceptualHash) {
         this.filename = filename;
         this.fileToProcess = fileToProcess;
+        this.fileHash = fileHash;
+        this.perceptualHash = perceptualHash;
     }
 
     public String getFilename() {
@@ -18,4 +24,12 @@ public class FileProcessingResult {
     public MultipartFile getFileToProcess() {
         return fileToProcess;
     }
+
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public Long getPerceptualHash() {
+        return perceptualHash;
+    }
 }
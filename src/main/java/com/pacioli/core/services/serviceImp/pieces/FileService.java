@@ -1,6 +1,7 @@
 package com.pacioli.core.services.serviceImp.pieces;
 
 import com.pacioli.core.services.ConfigurationService;
+import com.pacioli.core.utils.PerceptualHash;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.rendering.ImageType;
@@ -12,24 +13,35 @@ import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 @Slf4j
 @Service
 public class FileService {
 
+    // Resolution the perceptual hash is taken at when the upload is not converted anyway
+    private static final int PERCEPTUAL_HASH_DPI = 36;
+    private static final int PERCEPTUAL_HASH_MAX_SIZE = 512;
+
     @Autowired
     private ConfigurationService configurationService;
 
@@ -79,8 +91,9 @@ public class FileService {
         } else {
             String uuid = UUID.randomUUID().toString();
             String formattedFilename = uuid + "." + fileExtension;
-            saveFileToDisk(file, formattedFilename);
-            return new FileProcessingResult(formattedFilename, file);
+            String fileHash = saveFileToDisk(file, formattedFilename);
+            Long perceptualHash = isBankStatement ? null : perceptualHash(file, isPdf);
+            return new FileProcessingResult(formattedFilename, file, fileHash, perceptualHash);
         }
     }
 
@@ -97,8 +110,9 @@ public class FileService {
         } else {
             String uuid = UUID.randomUUID().toString();
             String formattedFilename = uuid + "." + fileExtension;
-            saveFileToDisk(file, formattedFilename);
-            return new FileProcessingResult(formattedFilename, file);
+            String fileHash = saveFileToDisk(file, formattedFilename);
+            Long perceptualHash = isBankStatement ? null : perceptualHash(file, isPdf);
+            return new FileProcessingResult(formattedFilename, file, fileHash, perceptualHash);
         }
     }
 
@@ -179,8 +193,10 @@ public class FileService {
             log.info("Converting PDF to PNG (first page only)");
 
             int maxPages = getPdfConversionMaxPages();
-            // Convert PDF to PNG images
-            List<MultipartFile> convertedImages = convertPdfToPngImages(pdfFile, maxPages);
+            // Convert PDF to PNG images, hashing the uploaded PDF as PDFBox reads it
+            MessageDigest digest = sha256();
+            RenderedPages rendered = convertPdfToPngImages(pdfFile, maxPages, digest);
+            List<MultipartFile> convertedImages = rendered.images();
 
             if (convertedImages.isEmpty()) {
                 log.warn("No images were converted from the PDF, falling back to save as-is");
@@ -195,8 +211,9 @@ public class FileService {
             saveFileToDisk(firstPageImage, formattedFilename);
             log.info("✅ PDF converted and saved as PNG: {}", formattedFilename);
 
-            // Return the converted PNG file, not the original PDF
-            return new FileProcessingResult(formattedFilename, firstPageImage);
+            // Return the converted PNG file, not the original PDF; the hash stays the uploaded file's
+            return new FileProcessingResult(formattedFilename, firstPageImage, HexFormat.of().formatHex(digest.digest()),
+                    rendered.firstPagePerceptualHash());
 
         } catch (Exception e) {
             log.error("Error during PDF conversion: {}", e.getMessage(), e);
@@ -205,11 +222,19 @@ public class FileService {
         }
     }
 
-    private List<MultipartFile> convertPdfToPngImages(MultipartFile pdfFile, int maxPages) throws IOException {
+    // Converted pages, and the PerceptualHash of the first one taken from the full-size render
+    private record RenderedPages(List<MultipartFile> images, Long firstPagePerceptualHash) {
+    }
+
+    private RenderedPages convertPdfToPngImages(MultipartFile pdfFile, int maxPages, MessageDigest digest) throws IOException {
         List<MultipartFile> imageFiles = new ArrayList<>();
+        Long firstPagePerceptualHash = null;
 
         // Use try-with-resources for PDDocument
-        try (PDDocument document = PDDocument.load(pdfFile.getInputStream())) {
+        try (DigestInputStream pdfStream = new DigestInputStream(pdfFile.getInputStream(), digest);
+             PDDocument document = PDDocument.load(pdfStream)) {
+            // Make sure the hash covers the whole upload, whatever PDFBox left unread
+            pdfStream.transferTo(OutputStream.nullOutputStream());
             log.info("PDF loaded successfully. Number of pages: {}", document.getNumberOfPages());
 
             PDFRenderer pdfRenderer = new PDFRenderer(document);
@@ -237,6 +262,9 @@ public class FileService {
                 BufferedImage image = pdfRenderer.renderImageWithDPI(page, dpi, ImageType.RGB);
                 log.info("Page {} rendered. Image dimensions: {}x{}",
                         (page + 1), image.getWidth(), image.getHeight());
+                if (page == 0) {
+                    firstPagePerceptualHash = PerceptualHash.of(image);
+                }
 
                 // **SCALE DOWN VERY LARGE IMAGES IMMEDIATELY**
                 if (image.getWidth() > 2000 || image.getHeight() > 2000) {
@@ -294,7 +322,7 @@ public class FileService {
             throw new IOException("Failed to convert PDF to PNG images", e);
         }
 
-        return imageFiles;
+        return new RenderedPages(imageFiles, firstPagePerceptualHash);
     }
 
     private FileProcessingResult saveAsOriginal(MultipartFile file) throws IOException {
@@ -302,8 +330,54 @@ public class FileService {
         String fileExtension = getFileExtension(originalFilename);
         String uuid = UUID.randomUUID().toString();
         String formattedFilename = uuid + "." + fileExtension;
-        saveFileToDisk(file, formattedFilename);
-        return new FileProcessingResult(formattedFilename, file);
+        String fileHash = saveFileToDisk(file, formattedFilename);
+        // Only reached when the PDF could not be rendered
+        return new FileProcessingResult(formattedFilename, file, fileHash, null);
+    }
+
+    /**
+     * PerceptualHash of the first page of an upload that is stored as it is: the PDF rendered at a low
+     * resolution, or the image decoded with subsampling. Null if it cannot be read, which never fails
+     * the upload: the piece just goes without near-duplicate detection.
+     */
+    private Long perceptualHash(MultipartFile file, boolean isPdf) {
+        try {
+            BufferedImage image = isPdf ? renderFirstPageForHash(file) : readImageForHash(file);
+            return image != null ? PerceptualHash.of(image) : null;
+        } catch (Exception e) {
+            log.warn("Could not compute the perceptual hash of {}: {}", file.getOriginalFilename(), e.getMessage());
+            return null;
+        }
+    }
+
+    private BufferedImage renderFirstPageForHash(MultipartFile pdfFile) throws IOException {
+        try (PDDocument document = PDDocument.load(pdfFile.getInputStream())) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            return new PDFRenderer(document).renderImageWithDPI(0, PERCEPTUAL_HASH_DPI, ImageType.GRAY);
+        }
+    }
+
+    private BufferedImage readImageForHash(MultipartFile imageFile) throws IOException {
+        try (InputStream in = imageFile.getInputStream();
+             ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // A phone photo decoded at full size is tens of MB for 72 averaged cells
+                int subsampling = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / PERCEPTUAL_HASH_MAX_SIZE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
     }
 
     private byte[] compressImageToPngBytes(BufferedImage image, float quality) throws IOException {
@@ -374,14 +448,31 @@ public class FileService {
         return resizedImage;
     }
 
-    private void saveFileToDisk(MultipartFile file, String formattedFilename) throws IOException {
+    /**
+     * Streams the file to the upload directory.
+     *
+     * @return SHA-256 (hex) of the bytes written, computed in the same pass
+     */
+    private String saveFileToDisk(MultipartFile file, String formattedFilename) throws IOException {
         Path uploadPath = Paths.get(uploadDir);
         if (!Files.exists(uploadPath)) {
             Files.createDirectories(uploadPath);
         }
 
         Path filePath = uploadPath.resolve(formattedFilename);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, filePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
     private String getFileExtension(String filename) {
@@ -0,0 +1,154 @@
+package com.pacioli.core.services.serviceImp.pieces;
+
+import com.pacioli.core.config.batch.BatchProcessingConfig;
+import com.pacioli.core.repositories.PieceRepository;
+import com.pacioli.core.utils.HammingBkTree;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Perceptual hashes of the pieces of the most recently used dossiers, in one BK-tree per dossier, so an
+ * upload is compared with the dossier's pages by Hamming distance without scanning them all.
+ * <p>
+ * Every lookup first reads the pieces uploaded since shortly before the previous one (by upload date,
+ * through the partial index on perceptual_hash), which brings in uploads made on other nodes. The
+ * overlap catches uploads that committed after that read although they were dated, and numbered,
+ * before rows it returned; pieces read twice are only added once. Pieces uploaded on this node are
+ * added once their transaction commits. Callers check that a match can still serve as original,
+ * and remove the ones that no longer can (deleted, rejected or marked duplicate since).
+ */
+@Slf4j
+@Component
+public class PerceptualHashIndex {
+
+    // Longest upload transaction (and clock skew between nodes) whose piece is still found by the next read
+    private static final long LOOKBACK_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private final PieceRepository pieceRepository;
+    private final BatchProcessingConfig batchConfig;
+
+    private final Map<Long, DossierHashes> dossiers = new ConcurrentHashMap<>();
+    private final AtomicLong accessClock = new AtomicLong();
+
+    public PerceptualHashIndex(PieceRepository pieceRepository, BatchProcessingConfig batchConfig) {
+        this.pieceRepository = pieceRepository;
+        this.batchConfig = batchConfig;
+    }
+
+    // Guarded by its own monitor
+    private static final class DossierHashes {
+        final HammingBkTree tree = new HammingBkTree();
+        final Set<Long> pieceIds = new HashSet<>();
+        // When the database was last read, 0 before the first read
+        long loadedAt;
+        volatile long lastAccess;
+
+        boolean add(long pieceId, long hash) {
+            if (pieceIds.add(pieceId)) {
+                tree.add(hash, pieceId);
+                return true;
+            }
+            return false;
+        }
+
+        boolean remove(long pieceId, long hash) {
+            return pieceIds.remove(pieceId) && tree.remove(hash, pieceId);
+        }
+    }
+
+    /**
+     * Pieces of the dossier whose hash is within maxDistance of the given one, nearest first.
+     */
+    public List<HammingBkTree.Match> findNear(Long dossierId, long hash, int maxDistance) {
+        DossierHashes hashes = dossiers.computeIfAbsent(dossierId, id -> new DossierHashes());
+        hashes.lastAccess = accessClock.incrementAndGet();
+        List<HammingBkTree.Match> matches;
+        synchronized (hashes) {
+            long now = System.currentTimeMillis();
+            Date since = new Date(hashes.loadedAt == 0 ? 0 : hashes.loadedAt - LOOKBACK_MS);
+            int added = 0;
+            for (Object[] row : pieceRepository.findPerceptualHashes(dossierId, since)) {
+                if (hashes.add(((Number) row[0]).longValue(), ((Number) row[1]).longValue())) {
+                    added++;
+                }
+            }
+            hashes.loadedAt = now;
+            if (added > 0) {
+                log.debug("🖼️ Indexed {} more perceptual hashes of dossier {} ({} in all)",
+                        added, dossierId, hashes.tree.size());
+            }
+            matches = hashes.tree.search(hash, maxDistance);
+        }
+        trimToSize();
+        return matches;
+    }
+
+    public void addAfterCommit(Long dossierId, Long pieceId, long hash) {
+        afterCommit(() -> {
+            DossierHashes hashes = dossiers.get(dossierId);
+            if (hashes != null) {
+                synchronized (hashes) {
+                    hashes.add(pieceId, hash);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops matches that can no longer serve as original. The reads of later lookups leave them out too,
+     * see PieceRepository.findPerceptualHashes.
+     */
+    public void remove(Long dossierId, Collection<HammingBkTree.Match> stale) {
+        DossierHashes hashes = dossiers.get(dossierId);
+        if (hashes == null || stale.isEmpty()) {
+            return;
+        }
+        int removed = 0;
+        synchronized (hashes) {
+            for (HammingBkTree.Match match : stale) {
+                if (hashes.remove(match.id(), match.hash())) {
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            log.debug("🖼️ Dropped {} perceptual hashes of dossier {} that can no longer serve as original",
+                    removed, dossierId);
+        }
+    }
+
+    private void trimToSize() {
+        int maxDossiers = Math.max(1, batchConfig.getPerceptualHashCacheDossiers());
+        while (dossiers.size() > maxDossiers) {
+            dossiers.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                    .ifPresent(eldest -> dossiers.remove(eldest.getKey(), eldest.getValue()));
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
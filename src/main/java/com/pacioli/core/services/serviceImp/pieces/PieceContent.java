@@ -0,0 +1,64 @@
+package com.pacioli.core.services.serviceImp.pieces;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.pacioli.core.models.Ecriture;
+import com.pacioli.core.models.FactureData;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Accounting content of one piece, ready to persist: built once (from the AI result DTO or from
+ * the submitted JSON) and then read by every persistence step instead of re-parsing the payload.
+ */
+public class PieceContent {
+    private final FactureData factureData;
+    private final List<Ecriture> ecritures;
+    // Raw AI entries carrying the exact amount strings, null when not available
+    private final JsonNode originalEcritures;
+    // Set instead of ecritures when they are streamed chunk by chunk
+    private final EcritureChunkSource ecritureChunks;
+    // See ResultFingerprint
+    private final String resultFingerprint;
+
+    public PieceContent(FactureData factureData, List<Ecriture> ecritures, JsonNode originalEcritures,
+                        String resultFingerprint) {
+        this.factureData = factureData;
+        this.ecritures = ecritures;
+        this.originalEcritures = originalEcritures;
+        this.ecritureChunks = null;
+        this.resultFingerprint = resultFingerprint;
+    }
+
+    public PieceContent(FactureData factureData, EcritureChunkSource ecritureChunks, String resultFingerprint) {
+        this.factureData = factureData;
+        this.ecritures = Collections.emptyList();
+        this.originalEcritures = null;
+        this.ecritureChunks = ecritureChunks;
+        this.resultFingerprint = resultFingerprint;
+    }
+
+    public FactureData getFactureData() {
+        return factureData;
+    }
+
+    public List<Ecriture> getEcritures() {
+        return ecritures;
+    }
+
+    public JsonNode getOriginalEcritures() {
+        return originalEcritures;
+    }
+
+    public EcritureChunkSource getEcritureChunks() {
+        return ecritureChunks;
+    }
+
+    public String getResultFingerprint() {
+        return resultFingerprint;
+    }
+
+    public boolean isStreamed() {
+        return ecritureChunks != null;
+    }
+}
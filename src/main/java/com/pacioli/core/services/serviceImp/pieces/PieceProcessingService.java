@@ -2,24 +2,28 @@ package com.pacioli.core.services.serviceImp.pieces;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pacioli.core.DTO.PieceDTO;
 import com.pacioli.core.enums.PieceStatus;
 import com.pacioli.core.models.*;
 import com.pacioli.core.repositories.*;
 import com.pacioli.core.services.serviceImp.AccountCreationService;
 import com.pacioli.core.services.serviceImp.DuplicateDetectionService;
+import com.pacioli.core.services.serviceImp.mappers.PieceDTOMapper;
+import com.pacioli.core.utils.AiValueParsers;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -35,32 +39,105 @@ public class PieceProcessingService {
     private final EcritureRepository ecritureRepository;
     private final LineRepository lineRepository;
     private final DossierRepository dossierRepository;
-    private final AccountRepository accountRepository;
     private final JournalRepository journalRepository;
     private final AccountCreationService accountCreationService;
+    private final DossierReferenceCache referenceCache;
     private final ObjectMapper objectMapper;
+    private final PieceDTOMapper pieceDTOMapper;
+    private final PieceUpdates pieceUpdates;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     public PieceProcessingService(PieceRepository pieceRepository,
                                   FactureDataRepository factureDataRepository,
                                   EcritureRepository ecritureRepository,
                                   LineRepository lineRepository,
                                   DossierRepository dossierRepository,
-                                  AccountRepository accountRepository,
                                   JournalRepository journalRepository,
                                   AccountCreationService accountCreationService,
+                                  DossierReferenceCache referenceCache,
                                   DuplicateDetectionService duplicateDetectionService,
-                                  ObjectMapper objectMapper) {
+                                  ObjectMapper objectMapper,
+                                  PieceDTOMapper pieceDTOMapper,
+                                  PieceUpdates pieceUpdates) {
         this.pieceRepository = pieceRepository;
         this.factureDataRepository = factureDataRepository;
         this.ecritureRepository = ecritureRepository;
         this.lineRepository = lineRepository;
         this.dossierRepository = dossierRepository;
-        this.accountRepository = accountRepository;
         this.journalRepository = journalRepository;
         this.accountCreationService = accountCreationService;
+        this.referenceCache = referenceCache;
         this.objectMapper = objectMapper;
+        this.pieceDTOMapper = pieceDTOMapper;
+        this.pieceUpdates = pieceUpdates;
+    }
+
+
+    /**
+     * Reads the submitted piece JSON once into the content to persist.
+     */
+    public PieceContent readPieceContent(String pieceData, JsonNode originalAiResponse) {
+        JsonNode rootNode;
+        try {
+            rootNode = objectMapper.readTree(pieceData);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to parse factureData or ecritures: " + e.getMessage(), e);
+        }
+        return new PieceContent(readFactureData(rootNode), readEcritures(rootNode),
+                parseOriginalAiResponse(originalAiResponse), ResultFingerprint.of(pieceData));
+    }
+
+    /**
+     * Maps the AI result DTO straight onto the content to persist, without a JSON round-trip.
+     */
+    public PieceContent toPieceContent(PieceDTO pieceDTO) {
+        FactureData factureData = pieceDTOMapper.toFactureData(pieceDTO.getFactureData());
+        List<Ecriture> ecritures = pieceDTOMapper.toEcritures(pieceDTO.getEcritures());
+        if (factureData == null && !ecritures.isEmpty()) {
+            // Same defaults as a payload without "factureData"
+            factureData = createFactureDataFromEcriture(objectMapper.missingNode());
+        }
+        return new PieceContent(factureData, ecritures, null, fingerprint(pieceDTO));
+    }
+
+    /**
+     * Content of a large AI result whose ecritures are streamed: only the piece level DTO is in memory.
+     */
+    public PieceContent toPieceContent(PieceDTO header, EcritureChunkSource ecritureChunks, String resultFingerprint) {
+        FactureData factureData = pieceDTOMapper.toFactureData(header.getFactureData());
+        if (factureData == null) {
+            factureData = createFactureDataFromEcriture(objectMapper.missingNode());
+        }
+        return new PieceContent(factureData, ecritureChunks, resultFingerprint);
+    }
+
+    /**
+     * Fingerprint of the accounting content of an AI result; piece level fields are left out.
+     */
+    private String fingerprint(PieceDTO pieceDTO) {
+        try {
+            return ResultFingerprint.start()
+                    .update(objectMapper.writeValueAsBytes(pieceDTO.getFactureData()))
+                    .update(objectMapper.writeValueAsBytes(pieceDTO.getEcritures()))
+                    .finish();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to fingerprint AI result: " + e.getMessage(), e);
+        }
     }
 
+    /**
+     * Drops the ecritures and lines a previous run left on the piece, so the result replaces them
+     * instead of being added next to them.
+     *
+     * @return the number of ecritures removed
+     */
+    @Transactional
+    public int deleteEcrituresOfPiece(Long pieceId) {
+        lineRepository.deleteByEcriturePieceId(pieceId);
+        return ecritureRepository.deleteByPieceId(pieceId);
+    }
 
     /**
      * Parse original AI response for amount extraction
@@ -100,9 +177,7 @@ public class PieceProcessingService {
     /**
      * Save FactureData for piece
      */
-    public void saveFactureDataForPiece(Piece piece, String pieceData, JsonNode originalAiResponse) {
-        FactureData factureData = deserializeFactureData(pieceData);
-
+    public void saveFactureDataForPiece(Piece piece, FactureData factureData, JsonNode originalEcritures) {
         if (factureData == null) {
             log.warn("⚠️ No FactureData found in the pieceData for piece {}", piece.getId());
             return;
@@ -110,16 +185,9 @@ public class PieceProcessingService {
 
         factureData.setPiece(piece);
 
-        // Parse original AI response to get exact string values
-        try {
-            String responseText = originalAiResponse.asText();
-            JsonNode parsedOriginal = objectMapper.readTree(responseText);
-            JsonNode originalEcritures = parseOriginalAiResponse(originalAiResponse);
-            if (originalEcritures == null) {
-                originalEcritures = parsedOriginal.get("Ecritures");
-            }
-
-            if (originalEcritures != null && originalEcritures.isArray() && originalEcritures.size() > 0) {
+        // Exact string values from the original AI response
+        if (originalEcritures != null && originalEcritures.isArray() && originalEcritures.size() > 0) {
+            try {
                 JsonNode firstEntry = originalEcritures.get(0);
 
                 // Set amounts using exact precision from original AI response
@@ -137,25 +205,29 @@ public class PieceProcessingService {
                 BigDecimal totalDebit = BigDecimal.ZERO;
                 BigDecimal totalCredit = BigDecimal.ZERO;
 
+                boolean parseable = true;
                 for (JsonNode entry : originalEcritures) {
-                    String debitStr = entry.get("DebitAmt").asText("0");
-                    String creditStr = entry.get("CreditAmt").asText("0");
-
-                    BigDecimal debit = new BigDecimal(debitStr.replace(",", "."));
-                    BigDecimal credit = new BigDecimal(creditStr.replace(",", "."));
+                    BigDecimal debit = AiValueParsers.parseExactAmount(entry, "DebitAmt");
+                    BigDecimal credit = AiValueParsers.parseExactAmount(entry, "CreditAmt");
+                    if (debit == null || credit == null) {
+                        parseable = false;
+                        break;
+                    }
 
                     totalDebit = totalDebit.add(debit);
                     totalCredit = totalCredit.add(credit);
                 }
 
-                if (totalDebit.compareTo(totalCredit) != 0) {
+                if (!parseable) {
+                    log.warn("❗ Unparseable amount in original AI response for piece {}, balance not checked", piece.getId());
+                } else if (totalDebit.compareTo(totalCredit) != 0) {
                     log.warn("❗ Imbalanced accounting: Debit={} ≠ Credit={}", totalDebit, totalCredit);
                 } else {
                     log.info("✅ Accounting is balanced: {} = {}", totalDebit, totalCredit);
                 }
+            } catch (Exception e) {
+                log.error("❌ Error processing original AI response for piece {}: {}", piece.getId(), e.getMessage(), e);
             }
-        } catch (Exception e) {
-            log.error("❌ Error processing original AI response for piece {}: {}", piece.getId(), e.getMessage(), e);
         }
 
         // Set ICE if missing
@@ -219,10 +291,13 @@ public class PieceProcessingService {
             existing.setTotalTVAExact(factureData.getTotalTVAExact());
 
             factureDataRepository.save(existing);
+            piece.setFactureData(existing);
             log.info("📝 Updated existing FactureData for piece {}", piece.getId());
         } else {
             factureData.setPiece(piece);
             factureDataRepository.save(factureData);
+            // The inverse side too: the duplicate check and the fingerprints read it from the piece
+            piece.setFactureData(factureData);
             log.info("✅ Created new FactureData for piece {}", piece.getId());
         }
     }
@@ -231,50 +306,20 @@ public class PieceProcessingService {
      * Save Ecritures for piece
      */
     @Transactional
-    public void saveEcrituresForPiece(Piece piece, Long dossierId, String pieceData, JsonNode originalAiResponse) {
+    public void saveEcrituresForPiece(Piece piece, Dossier dossier, List<Ecriture> ecritures, JsonNode originalEcritures) {
         log.info("🔥🔥🔥 SAVE ECritures START =========================================");
-//        log.info("🔥 Processing Piece ID: {}, Dossier ID: {}", piece.getId(), dossierId);
 
         try {
-            // DEBUG: Log the incoming pieceData
-            log.debug("🔥 Raw pieceData length: {}", pieceData.length());
-            try {
-                JsonNode root = objectMapper.readTree(pieceData);
-//                log.info("🔥 Root keys: {}", root.fieldNames());
+            Long dossierId = dossier.getId();
+            log.info("🔥 Dossier: {} (ID: {}), original AI entries: {}",
+                    dossier.getName(), dossierId, originalEcritures != null);
 
-                if (root.has("ecritures")) {
-                    JsonNode ecrituresNode = root.get("ecritures");
-                    log.info("🔥 Found 'ecritures' field with {} elements",
-                            ecrituresNode.isArray() ? ecrituresNode.size() : "not an array");
+            // Ids resolved by this call, on top of the shared dossier cache which only learns about
+            // accounts and journals created here once the transaction commits
+            Map<String, Long> accountIds = new HashMap<>();
+            Map<String, Long> journalIds = new HashMap<>();
 
-                    if (ecrituresNode.isArray() && ecrituresNode.size() > 0) {
-                        log.info("🔥 First ecriture in pieceData has keys: {}",
-                                ecrituresNode.get(0).fieldNames());
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Error parsing pieceData for debug: {}", e.getMessage());
-            }
-
-            Dossier dossier = dossierRepository.findById(dossierId)
-                    .orElseThrow(() -> new IllegalArgumentException("Dossier not found for ID: " + dossierId));
-            log.info("🔥 Fetched Dossier: {} (ID: {})", dossier.getName(), dossier.getId());
-
-            // Parse original AI response to get exact string values
-            JsonNode originalEcritures = parseOriginalAiResponse(originalAiResponse);
-            log.info("🔥 Original AI response parsed: {}", originalEcritures != null);
-
-            // Fetch existing Accounts and Journals for the Dossier
-            Map<String, Account> accountMap = accountRepository.findByDossierId(dossierId).stream()
-                    .collect(Collectors.toMap(Account::getAccount, Function.identity()));
-//            log.info("🔥 Loaded {} existing accounts", accountMap.size());
-
-            List<Journal> journals = journalRepository.findByDossierId(dossierId);
-//            log.info("🔥 Loaded {} existing journals", journals.size());
-
-            // ✅ THIS SHOULD RETURN ALL ECritures
-            List<Ecriture> ecritures = deserializeEcritures(pieceData, dossier);
-            log.info("🔥🔥 Deserialized {} Ecritures for piece {}", ecritures.size(), piece.getId());
+            log.info("🔥🔥 {} Ecritures to save for piece {}", ecritures.size(), piece.getId());
 
             if (ecritures.isEmpty()) {
                 log.warn("⚠️ No Ecritures to save!");
@@ -299,38 +344,21 @@ public class PieceProcessingService {
                 }
 
                 // Find or create Journal
-                Journal journal = findOrCreateJournal(ecriture, dossier, journals);
+                Journal journal = findOrCreateJournal(ecriture, dossier, journalIds);
                 ecriture.setJournal(journal);
-                log.debug("🔥 Set journal: {}", journal.getName());
 
                 try {
-                    // ✅ SAVE ECriture first
-                    Ecriture savedEcriture = ecritureRepository.save(ecriture);
-                    log.info("✅ Saved Ecriture {}: ID={}, uniqueNumber={}",
-                            i + 1, savedEcriture.getId(), savedEcriture.getUniqueEntryNumber());
-                    totalSavedEcritures++;
-
-                    if (ecriture.getLines() == null || ecriture.getLines().isEmpty()) {
-                        log.warn("⚠️ Ecriture {} has no lines!", i + 1);
-                        continue;
-                    }
-
-                    log.info("🔥 Processing {} lines for Ecriture {}",
-                            ecriture.getLines().size(), i + 1);
-
-                    // Process lines
-                    for (int j = 0; j < ecriture.getLines().size(); j++) {
-                        Line line = ecriture.getLines().get(j);
-                        line.setEcriture(savedEcriture); // Link to saved ecriture
+                    // Resolve accounts before saving: persisting the ecriture cascades to its lines,
+                    // and from there to any account that is not yet managed
+                    List<Line> lines = ecriture.getLines() != null ? ecriture.getLines() : Collections.emptyList();
+                    for (int j = 0; j < lines.size(); j++) {
+                        Line line = lines.get(j);
+                        line.setEcriture(ecriture);
 
                         if (line.getManuallyUpdated() == null) {
                             line.setManuallyUpdated(false);
                         }
 
-//                        log.debug("🔥 Line {}: label={}, account={}",
-//                                j + 1, line.getLabel(),
-//                                line.getAccount() != null ? line.getAccount().getAccount() : "null");
-
                         // Handle currency conversion info from original AI response
                         processLineConversion(line, j, originalEcritures, piece);
 
@@ -340,21 +368,29 @@ public class PieceProcessingService {
 
                         if (accountNumber != null) {
                             String accountLabel = line.getAccount().getLabel();
-                            Account account = findOrCreateAccount(accountNumber, dossier, journal,
-                                    accountLabel, accountMap);
+                            Account account = findOrCreateAccount(accountNumber, dossierId, journal.getId(),
+                                    accountLabel, accountIds);
                             line.setAccount(account);
-//                            log.debug("✅ Set account for line {}: {}", j + 1, accountNumber);
                         } else {
                             log.warn("⚠️ Line {} has no account number!", j + 1);
+                            line.setAccount(null);
                         }
                     }
 
-                    // ✅ SAVE LINES after linking
-                    lineRepository.saveAll(ecriture.getLines());
-                    totalLines += ecriture.getLines().size();
+                    // ✅ SAVE ECriture with its lines: ids come from the pooled sequences, so persist issues
+                    // no SQL here and the rows go out as JDBC batches when the transaction flushes
+                    Ecriture savedEcriture = ecritureRepository.save(ecriture);
+                    log.debug("✅ Saved Ecriture {}: ID={}, uniqueNumber={}",
+                            i + 1, savedEcriture.getId(), savedEcriture.getUniqueEntryNumber());
+                    totalSavedEcritures++;
+
+                    if (lines.isEmpty()) {
+                        log.warn("⚠️ Ecriture {} has no lines!", i + 1);
+                        continue;
+                    }
 
-                    log.info("✅ Saved {} lines for Ecriture {}",
-                            ecriture.getLines().size(), savedEcriture.getId());
+                    // Lines are persisted by the cascade from their ecriture
+                    totalLines += lines.size();
 
                 } catch (Exception e) {
                     log.error("❌ Error saving Ecriture {}: {}", i + 1, e.getMessage(), e);
@@ -372,7 +408,38 @@ public class PieceProcessingService {
         }
     }
 
-    private Journal findOrCreateJournal(Ecriture ecriture, Dossier dossier, List<Journal> journals) {
+    /**
+     * Saves ecritures handed over chunk by chunk. The persistence context is flushed and cleared after
+     * each chunk so memory is bounded by the chunk size, not by the statement: entities loaded before
+     * this call are detached afterwards and must be reloaded.
+     *
+     * @return the number of ecritures saved
+     */
+    @Transactional
+    public int saveEcritureChunksForPiece(Long pieceId, Long dossierId, EcritureChunkSource ecritureChunks) {
+        int[] saved = {0};
+        try {
+            ecritureChunks.forEachChunk(chunk -> {
+                Piece piece = pieceRepository.findById(pieceId)
+                        .orElseThrow(() -> new IllegalArgumentException("Piece not found for ID: " + pieceId));
+                Dossier dossier = dossierRepository.findById(dossierId)
+                        .orElseThrow(() -> new IllegalArgumentException("Dossier not found for ID: " + dossierId));
+
+                List<Ecriture> ecritures = pieceDTOMapper.toEcritures(chunk);
+                saveEcrituresForPiece(piece, dossier, ecritures, null);
+                saved[0] += ecritures.size();
+
+                entityManager.flush();
+                entityManager.clear();
+                log.info("🏦 Saved chunk of {} ecritures for piece {} ({} so far)", ecritures.size(), pieceId, saved[0]);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read ecritures of piece " + pieceId + ": " + e.getMessage(), e);
+        }
+        return saved[0];
+    }
+
+    private Journal findOrCreateJournal(Ecriture ecriture, Dossier dossier, Map<String, Long> journalIds) {
         String journalName = ecriture.getJournal() != null ?
                 ecriture.getJournal().getName() : "BQ"; // Default to "BQ" for bank
         String journalType = ecriture.getJournal() != null ?
@@ -380,20 +447,39 @@ public class PieceProcessingService {
 
         log.debug("🔥 Looking for journal: name={}, type={}", journalName, journalType);
 
-        Journal journal = journals.stream()
-                .filter(j -> j.getName().equalsIgnoreCase(journalName))
-                .findFirst()
-                .orElseGet(() -> {
-                    log.info("🔥 Creating new Journal: {} ({})", journalName, journalType);
-                    Journal newJournal = new Journal(journalName, journalType,
-                            dossier.getCabinet(), dossier);
-                    Journal savedJournal = journalRepository.save(newJournal);
-                    journals.add(savedJournal);
-                    return savedJournal;
-                });
-
-        log.debug("🔥 Using journal: {} (ID: {})", journal.getName(), journal.getId());
-        return journal;
+        String journalKey = DossierReferenceCache.journalKey(journalName);
+        Long journalId = journalIds.get(journalKey);
+        if (journalId == null) {
+            journalId = referenceCache.findJournalId(dossier.getId(), journalName);
+            if (journalId == null) {
+                journalId = createJournal(journalName, journalType, dossier);
+            }
+            journalIds.put(journalKey, journalId);
+        }
+
+        log.debug("🔥 Using journal: {} (ID: {})", journalName, journalId);
+        return entityManager.getReference(Journal.class, journalId);
+    }
+
+    /**
+     * Create a journal missing from the cache, unless another worker did it first: creation is
+     * serialized per dossier and name until the creating transaction ends.
+     */
+    private Long createJournal(String journalName, String journalType, Dossier dossier) {
+        Long dossierId = dossier.getId();
+        long lockKey = (dossierId << 32) | (DossierReferenceCache.journalKey(journalName).hashCode() & 0xffffffffL);
+        journalRepository.lockForCreation(lockKey);
+
+        List<Long> existing = journalRepository.findIdsByNameIgnoreCaseAndDossierId(journalName, dossierId);
+        if (!existing.isEmpty()) {
+            return existing.get(0);
+        }
+
+        log.info("🔥 Creating new Journal: {} ({})", journalName, journalType);
+        Journal savedJournal = journalRepository.save(new Journal(journalName, journalType,
+                dossier.getCabinet(), dossier));
+        referenceCache.cacheJournalAfterCommit(dossierId, journalName, savedJournal.getId());
+        return savedJournal.getId();
     }
 
     private void processLineConversion(Line line, int lineIndex, JsonNode originalEcritures, Piece piece) {
@@ -451,12 +537,10 @@ public class PieceProcessingService {
     }
 
     /**
-     * Deserialize FactureData from JSON
+     * Read FactureData from the parsed piece JSON
      */
-    private FactureData deserializeFactureData(String pieceData) {
+    private FactureData readFactureData(JsonNode rootNode) {
         try {
-            JsonNode rootNode = objectMapper.readTree(pieceData);
-
             // Case 1: "factureData" exists in JSON
             JsonNode factureDataNode = rootNode.get("factureData");
             if (factureDataNode != null && !factureDataNode.isNull()) {
@@ -497,137 +581,75 @@ public class PieceProcessingService {
     }
 
     /**
-     * Deserialize Ecritures from JSON
+     * Read Ecritures from the parsed piece JSON. Accounts are left as read; they are resolved
+     * against the dossier (and created if needed) when the lines are saved.
      */
-    private List<Ecriture> deserializeEcritures(String pieceData, Dossier dossier) {
-        try {
-            JsonNode rootNode = objectMapper.readTree(pieceData);
-            JsonNode ecrituresNode = rootNode.get("ecritures");
+    private List<Ecriture> readEcritures(JsonNode rootNode) {
+        JsonNode ecrituresNode = rootNode.get("ecritures");
 
-            if (ecrituresNode == null || ecrituresNode.isNull()) {
-                log.warn("'ecritures' field is missing or null in the JSON");
-                return Collections.emptyList();
-            }
+        if (ecrituresNode == null || ecrituresNode.isNull()) {
+            log.warn("'ecritures' field is missing or null in the JSON");
+            return Collections.emptyList();
+        }
 
-            log.info("🔥 DESERIALIZE: Found {} ecritures in JSON (isArray: {})",
-                    ecrituresNode.size(), ecrituresNode.isArray());
+        if (!ecrituresNode.isArray()) {
+            log.error("❌ 'ecritures' is not an array!");
+            return Collections.emptyList();
+        }
 
-            if (!ecrituresNode.isArray()) {
-                log.error("❌ 'ecritures' is not an array!");
-                return Collections.emptyList();
-            }
+        List<Ecriture> ecritures = new ArrayList<>(ecrituresNode.size());
+        for (int i = 0; i < ecrituresNode.size(); i++) {
+            try {
+                Ecriture ecriture = objectMapper.treeToValue(ecrituresNode.get(i), Ecriture.class);
 
-            // Check structure of first ecriture
-            if (ecrituresNode.size() > 0) {
-                JsonNode firstEcriture = ecrituresNode.get(0);
-                log.info("🔥 First ecriture keys: {}", firstEcriture.fieldNames());
-                if (firstEcriture.has("lines")) {
-                    JsonNode lines = firstEcriture.get("lines");
-                    log.info("🔥 First ecriture has {} lines",
-                            lines.isArray() ? lines.size() : "not an array");
+                if (ecriture.getManuallyUpdated() == null) {
+                    ecriture.setManuallyUpdated(false);
                 }
-            }
-
-            Map<String, Account> accountMap = accountRepository.findByDossierId(dossier.getId()).stream()
-                    .collect(Collectors.toMap(Account::getAccount, Function.identity()));
-            log.info("Initial Account Map size: {}", accountMap.size());
-
-            List<Ecriture> ecritures = new ArrayList<>();
-            for (int i = 0; i < ecrituresNode.size(); i++) {
-                JsonNode ecritureNode = ecrituresNode.get(i);
-
-                log.info("🔥 Processing ecriture {} of {}", i + 1, ecrituresNode.size());
 
-                try {
-                    Ecriture ecriture = objectMapper.treeToValue(ecritureNode, Ecriture.class);
-
-                    if (ecriture.getManuallyUpdated() == null) {
-                        ecriture.setManuallyUpdated(false);
-                    }
-
-                    log.info("🔥 Ecriture {}: uniqueNumber={}, date={}",
-                            i + 1,
-                            ecriture.getUniqueEntryNumber(),
-                            ecriture.getEntryDate());
-
-                    if (ecriture.getLines() != null) {
-                        log.info("🔥 Ecriture {} has {} lines", i + 1, ecriture.getLines().size());
-
-                        for (int j = 0; j < ecriture.getLines().size(); j++) {
-                            Line line = ecriture.getLines().get(j);
-                            line.setEcriture(ecriture); // CRITICAL: Link line to ecriture
-
-                            if (line.getManuallyUpdated() == null) {
-                                line.setManuallyUpdated(false);
-                            }
-
-//                            log.debug("🔥 Line {}: label={}, debit={}, credit={}",
-//                                    j + 1, line.getLabel(), line.getDebit(), line.getCredit());
-
-                            Account account = line.getAccount();
-                            if (account != null) {
-                                Account existingAccount = accountMap.get(account.getAccount());
-                                if (existingAccount == null) {
-                                    existingAccount = accountRepository.findByAccountAndDossierId(
-                                            account.getAccount(), dossier.getId());
-                                    if (existingAccount != null) {
-                                        accountMap.put(existingAccount.getAccount(), existingAccount);
-                                    }
-                                }
-
-                                if (existingAccount != null) {
-                                    line.setAccount(existingAccount);
-                                } else {
-                                    account.setDossier(dossier);
-                                    log.info("🔥 Prepared new Account: {}", account.getAccount());
-                                    accountMap.put(account.getAccount(), account);
-                                }
-                            } else {
-                                log.warn("🔥 Line {} has no account!", j + 1);
-                            }
+                if (ecriture.getLines() != null) {
+                    for (Line line : ecriture.getLines()) {
+                        line.setEcriture(ecriture); // CRITICAL: Link line to ecriture
+                        if (line.getManuallyUpdated() == null) {
+                            line.setManuallyUpdated(false);
                         }
-                    } else {
-                        log.warn("🔥 Ecriture {} has NO lines!", i + 1);
                     }
-
-                    ecritures.add(ecriture);
-                    log.info("✅ Added ecriture {} to list", i + 1);
-
-                } catch (Exception e) {
-                    log.error("❌ Failed to deserialize ecriture {}: {}", i + 1, e.getMessage(), e);
-                    throw e;
+                } else {
+                    log.warn("🔥 Ecriture {} has NO lines!", i + 1);
                 }
-            }
 
-            log.info("✅ Successfully deserialized {} Ecritures", ecritures.size());
-            return ecritures;
+                ecritures.add(ecriture);
 
-        } catch (IOException e) {
-            log.error("❌ Failed to parse 'ecritures' JSON: {}", e.getMessage(), e);
-            throw new IllegalArgumentException("Invalid JSON format for 'ecritures': " + e.getMessage(), e);
-        } catch (Exception e) {
-            log.error("❌ Unexpected error in deserializeEcritures: {}", e.getMessage(), e);
-            throw e;
+            } catch (IOException e) {
+                log.error("❌ Failed to parse ecriture {}: {}", i + 1, e.getMessage(), e);
+                throw new IllegalArgumentException("Invalid JSON format for 'ecritures': " + e.getMessage(), e);
+            }
         }
+
+        log.info("✅ Read {} Ecritures from JSON", ecritures.size());
+        return ecritures;
     }
+
     /**
      * Find or create account
      */
-    private Account findOrCreateAccount(String accountNumber, Dossier dossier, Journal journal,
-                                        String accountLabel, Map<String, Account> accountMap) {
-        if (accountMap.containsKey(accountNumber)) {
-            return accountMap.get(accountNumber);
+    private Account findOrCreateAccount(String accountNumber, Long dossierId, Long journalId,
+                                        String accountLabel, Map<String, Long> accountIds) {
+        Long accountId = accountIds.get(accountNumber);
+        if (accountId == null) {
+            accountId = referenceCache.findAccountId(dossierId, accountNumber);
         }
-
-        try {
-            Account account = accountCreationService.findOrCreateAccount(
-                    accountNumber, dossier, journal, accountLabel);
-            accountMap.put(accountNumber, account);
-            return account;
-        } catch (Exception e) {
-            log.error("❌ Error finding/creating account {}: {}", accountNumber, e.getMessage());
-            throw e;
+        if (accountId == null) {
+            try {
+                accountId = accountCreationService.findOrCreateAccountId(
+                        accountNumber, dossierId, journalId, accountLabel);
+                referenceCache.cacheAccountAfterCommit(dossierId, accountNumber, accountId);
+            } catch (Exception e) {
+                log.error("❌ Error finding/creating account {}: {}", accountNumber, e.getMessage());
+                throw e;
+            }
         }
+        accountIds.put(accountNumber, accountId);
+        return entityManager.getReference(Account.class, accountId);
     }
 
     /**
@@ -643,13 +665,13 @@ public class PieceProcessingService {
         piece.setIsForced(true);
         piece.setIsDuplicate(false);
         piece.setAmount(null);
-        piece.setStatus(PieceStatus.UPLOADED);
         piece.setAiAmount(null);
         piece.setAiCurrency(null);
         piece.setExchangeRate(null);
         piece.setConvertedCurrency(null);
         piece.setExchangeRateDate(null);
         piece.setExchangeRateUpdated(false);
+        piece.setResultFingerprint(null);
 
         // Delete factureData if exists
         if (piece.getFactureData() != null) {
@@ -666,7 +688,11 @@ public class PieceProcessingService {
             piece.getEcritures().clear();
         }
 
-        return pieceRepository.save(piece);
+        Piece saved = pieceRepository.save(piece);
+        // A fresh retry budget: the attempts spent on it as a duplicate are not its own
+        pieceRepository.scheduleRetry(saved.getId(), 0, null);
+        pieceUpdates.transition(saved, PieceStatus.UPLOADED);
+        return saved;
     }
 
     /**
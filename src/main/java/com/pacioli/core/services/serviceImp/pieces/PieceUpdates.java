@@ -0,0 +1,74 @@
+package com.pacioli.core.services.serviceImp.pieces;
+
+import com.pacioli.core.enums.PieceStatus;
+import com.pacioli.core.models.Piece;
+import com.pacioli.core.repositories.PieceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Writes of the AI pipeline on the piece loaded for the unit of work, each a single targeted UPDATE
+ * instead of a reload and save. Status transitions are versioned: one based on a status someone else
+ * changed meanwhile fails instead of overwriting it.
+ */
+@Slf4j
+@Service
+public class PieceUpdates {
+
+    private final PieceRepository pieceRepository;
+
+    public PieceUpdates(PieceRepository pieceRepository) {
+        this.pieceRepository = pieceRepository;
+    }
+
+    /**
+     * Moves the piece to the given status and updates it in place.
+     *
+     * @throws OptimisticLockingFailureException if the piece changed status since it was loaded
+     */
+    @Transactional
+    public void transition(Piece piece, PieceStatus status) {
+        long version = piece.getStatusVersion() != null ? piece.getStatusVersion() : 0L;
+        int updated = pieceRepository.transitionStatus(piece.getId(), version, status.name());
+        if (updated == 0) {
+            throw new OptimisticLockingFailureException("Piece " + piece.getId() + " changed status since it was loaded"
+                    + " (version " + version + "), not moving it to " + status);
+        }
+        piece.setStatus(status);
+        piece.setStatusVersion(version + 1);
+        log.info("📝 Updated piece {} status to: {}", piece.getId(), status);
+    }
+
+    /**
+     * Links the piece to its original and moves it to DUPLICATE, both or neither.
+     *
+     * @throws OptimisticLockingFailureException if the piece changed status since it was loaded
+     */
+    @Transactional
+    public void markDuplicate(Piece piece, Long originalPieceId) {
+        pieceRepository.linkDuplicate(piece.getId(), originalPieceId);
+        transition(piece, PieceStatus.DUPLICATE);
+        piece.setIsDuplicate(true);
+    }
+
+    /**
+     * Stores the amount and currency data extracted from the AI result.
+     */
+    @Transactional
+    public void saveAiData(Piece piece) {
+        pieceRepository.updateAiData(piece.getId(), piece.getAiAmount(), piece.getAiCurrency(), piece.getAmount(),
+                piece.getExchangeRate(), piece.getConvertedCurrency(), piece.getExchangeRateDate());
+    }
+
+    /**
+     * Takes over the outcome of a step that ran on another instance of the same piece.
+     */
+    public void adopt(Piece piece, Piece outcome) {
+        piece.setStatus(outcome.getStatus());
+        piece.setStatusVersion(outcome.getStatusVersion());
+        piece.setIsDuplicate(outcome.getIsDuplicate());
+        piece.setAmount(outcome.getAmount());
+    }
+}
@@ -0,0 +1,46 @@
+package com.pacioli.core.services.serviceImp.pieces;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 of the normalized AI result of a piece. Stored with the ecritures it produced, it lets a
+ * retried or re-queued piece skip persisting the very same result again.
+ */
+public final class ResultFingerprint {
+
+    private final MessageDigest digest;
+
+    private ResultFingerprint() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static ResultFingerprint start() {
+        return new ResultFingerprint();
+    }
+
+    public static String of(String content) {
+        return start().update(content).finish();
+    }
+
+    public ResultFingerprint update(byte[] content) {
+        digest.update(content);
+        // Separator, so consecutive parts cannot be shifted into one another
+        digest.update((byte) 0);
+        return this;
+    }
+
+    public ResultFingerprint update(String content) {
+        return update(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String finish() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
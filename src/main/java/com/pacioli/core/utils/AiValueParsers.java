@@ -0,0 +1,236 @@
+package com.pacioli.core.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * Parsers for the amounts and dates found in AI responses, shared by the processors, DTO builders and
+ * converters. They read the characters in place: no intermediate strings, and a value that cannot be
+ * parsed is reported through the return value, never by throwing.
+ */
+public final class AiValueParsers {
+
+    // Exact powers of ten: a mantissa below 2^53 divided by one of them is correctly rounded
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int NOT_A_PLAIN_DECIMAL = -1;
+
+    private AiValueParsers() {
+    }
+
+    // ==================== AMOUNTS ====================
+
+    /**
+     * Amount of a field: numeric nodes as they are, text with a comma or a dot as decimal separator.
+     *
+     * @return 0 when the field is absent, null or not a number
+     */
+    public static double parseAmount(JsonNode node, String fieldName) {
+        if (node == null) {
+            return 0.0;
+        }
+        JsonNode value = node.get(fieldName);
+        if (value == null || value.isNull()) {
+            return 0.0;
+        }
+        if (value.isNumber()) {
+            return value.doubleValue();
+        }
+        return parseAmount(value.asText(), 0.0);
+    }
+
+    /**
+     * Parses {@code [sign]digits[(,|.)digits]} directly. Anything else (exponent, NaN...) goes through
+     * {@link Double#parseDouble} after replacing the comma, so results never differ from it.
+     */
+    public static double parseAmount(String text, double fallback) {
+        if (text == null) {
+            return fallback;
+        }
+        long scanned = scanPlainDecimal(text);
+        if (scanned != NOT_A_PLAIN_DECIMAL) {
+            double value = (scanned >>> 6) / POWERS_OF_TEN[(int) (scanned & 0x1F)];
+            return (scanned & 0x20) != 0 ? -value : value;
+        }
+        if (text.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(text.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Exact amount of a field, for balance checks.
+     *
+     * @return null when the field is present but not a number; 0 when it is absent or null
+     */
+    public static BigDecimal parseExactAmount(JsonNode node, String fieldName) {
+        JsonNode value = node == null ? null : node.get(fieldName);
+        if (value == null || value.isNull()) {
+            return BigDecimal.ZERO;
+        }
+        if (value.isNumber()) {
+            return value.decimalValue();
+        }
+        String text = value.asText();
+        long scanned = scanPlainDecimal(text);
+        if (scanned != NOT_A_PLAIN_DECIMAL) {
+            long unscaled = scanned >>> 6;
+            return BigDecimal.valueOf((scanned & 0x20) != 0 ? -unscaled : unscaled, (int) (scanned & 0x1F));
+        }
+        try {
+            return new BigDecimal(text.trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scans a plain decimal, surrounding whitespace allowed.
+     *
+     * @return mantissa << 6 | negative << 5 | fraction digits, or NOT_A_PLAIN_DECIMAL when the text is
+     * something else or does not fit an exactly representable double
+     */
+    private static long scanPlainDecimal(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return NOT_A_PLAIN_DECIMAL;
+        }
+
+        long negative = 0;
+        char first = text.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-' ? 1 : 0;
+            start++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (mantissa > (MAX_EXACT_MANTISSA - 9) / 10) {
+                    return NOT_A_PLAIN_DECIMAL;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if ((c == ',' || c == '.') && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return NOT_A_PLAIN_DECIMAL;
+            }
+        }
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return NOT_A_PLAIN_DECIMAL;
+        }
+        return mantissa << 6 | negative << 5 | Math.max(0, fractionDigits);
+    }
+
+    // ==================== DATES ====================
+
+    /**
+     * Parses the date formats the AI returns, telling them apart by their shape instead of trying one
+     * formatter after the other: dd/MM/yyyy, dd-MM-yyyy, and yyyy-M-d with one or two digit month and
+     * day, read as yyyy-dd-MM when that is the only valid reading. Out of range days are brought back
+     * to the end of the month, like the formatters' default (smart) resolution did.
+     *
+     * @return null when the text is none of these formats
+     */
+    public static LocalDate parseDate(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        // Three numeric fields separated by the same '/' or '-'
+        int firstEnd = skipDigits(text, start, end);
+        if (firstEnd == start || firstEnd == end) {
+            return null;
+        }
+        char separator = text.charAt(firstEnd);
+        if (separator != '/' && separator != '-') {
+            return null;
+        }
+        int secondEnd = skipDigits(text, firstEnd + 1, end);
+        if (secondEnd == firstEnd + 1 || secondEnd == end || text.charAt(secondEnd) != separator) {
+            return null;
+        }
+        int thirdEnd = skipDigits(text, secondEnd + 1, end);
+        if (thirdEnd == secondEnd + 1 || thirdEnd != end) {
+            return null;
+        }
+
+        int firstLength = firstEnd - start;
+        int secondLength = secondEnd - firstEnd - 1;
+        int thirdLength = end - secondEnd - 1;
+        int first = number(text, start, firstEnd);
+        int second = number(text, firstEnd + 1, secondEnd);
+        int third = number(text, secondEnd + 1, end);
+
+        if (separator == '-' && firstLength == 4) {
+            LocalDate date = resolve(first, second, third);
+            if (date == null && secondLength == 2 && thirdLength == 2) {
+                date = resolve(first, third, second);
+            }
+            return date;
+        }
+        // dd/MM/yyyy or dd-MM-yyyy
+        if (firstLength == 2 && secondLength == 2 && thirdLength == 4) {
+            return resolve(third, second, first);
+        }
+        return null;
+    }
+
+    private static int skipDigits(CharSequence text, int from, int end) {
+        int i = from;
+        while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    // Values past 9 digits are out of range for every field anyway
+    private static int number(CharSequence text, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = Math.min(value * 10 + (text.charAt(i) - '0'), Integer.MAX_VALUE);
+        }
+        return (int) value;
+    }
+
+    private static LocalDate resolve(int year, int month, int day) {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        int monthLength = Month.of(month).length(Year.isLeap(year));
+        return LocalDate.of(year, month, Math.min(day, monthLength));
+    }
+}
@@ -0,0 +1,62 @@
+package com.pacioli.core.utils;
+
+import java.util.Locale;
+
+/**
+ * Normalized base of an uploaded file name, stored on the piece so that renamed copies ("facture_copy.pdf",
+ * "Facture (2).pdf", "facture 3.pdf") are found by an indexed lookup: lower-cased, without extension, one
+ * copy/version suffix or trailing number removed.
+ */
+public final class FileNameKey {
+
+    private static final String[] COPY_SUFFIXES = {
+            "_copy", "_duplicate", "_new", "_v1", "_v2", "_v3",
+            "_version1", "_version2", "_version3", "_final",
+            "(1)", "(2)", "(3)", "(4)", "(5)", " - copy"
+    };
+
+    private FileNameKey() {
+    }
+
+    public static String of(String originalFileName) {
+        if (originalFileName == null) {
+            return null;
+        }
+        String name = originalFileName.toLowerCase(Locale.ROOT);
+
+        // Remove file extension
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            name = name.substring(0, dot);
+        }
+
+        // Remove one suffix that indicates a copy or a version
+        for (String suffix : COPY_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                name = name.substring(0, name.length() - suffix.length());
+                break;
+            }
+        }
+
+        // Remove a trailing number and the spaces around it
+        int end = name.length();
+        while (end > 0 && isSpace(name.charAt(end - 1))) {
+            end--;
+        }
+        int numberEnd = end;
+        while (end > 0 && name.charAt(end - 1) >= '0' && name.charAt(end - 1) <= '9') {
+            end--;
+        }
+        if (end < numberEnd) {
+            while (end > 0 && isSpace(name.charAt(end - 1))) {
+                end--;
+            }
+            name = name.substring(0, end);
+        }
+        return name.trim();
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,116 @@
+package com.pacioli.core.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * BK-tree of 64-bit hashes under the Hamming distance: a lookup within a small distance only visits
+ * the subtrees whose distance to each node is compatible with the triangle inequality, instead of
+ * comparing the hash with every entry. Not thread-safe.
+ */
+public final class HammingBkTree {
+
+    public record Match(long id, long hash, int distance) {
+    }
+
+    private static final class Node {
+        final long hash;
+        final List<Long> ids = new ArrayList<>(1);
+        // Indexed by distance to this node's hash, created on first use
+        Node[] children;
+
+        Node(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    public void add(long hash, long id) {
+        size++;
+        if (root == null) {
+            root = new Node(hash);
+            root.ids.add(id);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = PerceptualHash.distance(hash, node.hash);
+            if (distance == 0) {
+                node.ids.add(id);
+                return;
+            }
+            if (node.children == null) {
+                node.children = new Node[Long.SIZE + 1];
+            }
+            Node child = node.children[distance];
+            if (child == null) {
+                child = new Node(hash);
+                child.ids.add(id);
+                node.children[distance] = child;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Drops the entry added with this hash and id. Its node stays in place to route lookups to the
+     * nodes below it. Returns false if there is no such entry.
+     */
+    public boolean remove(long hash, long id) {
+        Node node = root;
+        while (node != null) {
+            int distance = PerceptualHash.distance(hash, node.hash);
+            if (distance == 0) {
+                if (node.ids.remove(Long.valueOf(id))) {
+                    size--;
+                    return true;
+                }
+                return false;
+            }
+            node = node.children == null ? null : node.children[distance];
+        }
+        return false;
+    }
+
+    /**
+     * Entries within maxDistance of the hash, nearest first, then by id.
+     */
+    public List<Match> search(long hash, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        if (root == null || maxDistance < 0) {
+            return matches;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = PerceptualHash.distance(hash, node.hash);
+            if (distance <= maxDistance) {
+                for (Long id : node.ids) {
+                    matches.add(new Match(id, node.hash, distance));
+                }
+            }
+            if (node.children != null) {
+                int from = Math.max(1, distance - maxDistance);
+                int to = Math.min(Long.SIZE, distance + maxDistance);
+                for (int d = from; d <= to; d++) {
+                    if (node.children[d] != null) {
+                        pending.push(node.children[d]);
+                    }
+                }
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::distance).thenComparingLong(Match::id));
+        return matches;
+    }
+
+    public int size() {
+        return size;
+    }
+}
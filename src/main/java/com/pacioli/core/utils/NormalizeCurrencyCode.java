@@ -3,6 +3,10 @@ package com.pacioli.core.utils;
 import org.springframework.stereotype.Component;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 /**
  * Helper class to normalize currency codes or symbols to standard ISO codes
  * This handles cases where AI returns currency symbols (like $) instead of codes (like USD)
@@ -11,6 +15,25 @@ import lombok.extern.slf4j.Slf4j;
 @Component  // Add Component annotation to make it injectable
 public class NormalizeCurrencyCode {
 
+    // Common currency symbols and names, upper-cased, to their ISO codes
+    private static final Map<String, String> ALIASES = new HashMap<>();
+
+    static {
+        alias("USD", "$", "USD$", "US$", "DOLLAR", "DOLLARS", "US DOLLAR", "US DOLLARS", "UNITED STATES DOLLAR");
+        alias("EUR", "€", "EUR€", "EU€", "EURO", "EUROS");
+        alias("GBP", "£", "GBP£", "UK£", "POUND", "POUNDS", "BRITISH POUND");
+        alias("JPY", "¥", "JPY¥", "JP¥", "YEN");
+        alias("MAD", "DH", "MAD", "DIRHAM", "DIRHAMS", "MOROCCAN DIRHAM");
+        alias("DZD", "DA", "DZD", "DINAR", "DINARS", "ALGERIAN DINAR");
+        alias("XOF", "CFA", "XOF", "FRANC", "FRANCS", "CFA FRANC");
+    }
+
+    private static void alias(String code, String... aliases) {
+        for (String alias : aliases) {
+            ALIASES.put(alias, code);
+        }
+    }
+
     /**
      * Normalizes a currency code or symbol to a standard ISO code
      *
@@ -18,97 +41,68 @@ public class NormalizeCurrencyCode {
      * @return The normalized ISO currency code, or the original input if it's already a valid code
      */
     public String normalizeCurrencyCode(String input) {
-        if (input == null || input.trim().isEmpty()) {
+        if (input == null || input.isBlank()) {
             log.debug("Empty currency code provided, returning null");
             return null;
         }
 
-        // Trim and convert to uppercase
-        String normalized = input.trim().toUpperCase();
-
-        // Map of common currency symbols to their ISO codes
-        switch (normalized) {
-            case "$":
-            case "USD$":
-            case "US$":
-            case "DOLLAR":
-            case "DOLLARS":
-            case "US DOLLAR":
-            case "US DOLLARS":
-            case "UNITED STATES DOLLAR":
-                log.debug("Normalized '{}' to USD", input);
-                return "USD";
-
-            case "€":
-            case "EUR€":
-            case "EU€":
-            case "EURO":
-            case "EUROS":
-                log.debug("Normalized '{}' to EUR", input);
-                return "EUR";
+        String normalized = canonical(input);
 
-            case "£":
-            case "GBP£":
-            case "UK£":
-            case "POUND":
-            case "POUNDS":
-            case "BRITISH POUND":
-                log.debug("Normalized '{}' to GBP", input);
-                return "GBP";
-
-            case "¥":
-            case "JPY¥":
-            case "JP¥":
-            case "YEN":
-                log.debug("Normalized '{}' to JPY", input);
-                return "JPY";
-
-            case "DH":
-            case "MAD":
-            case "DIRHAM":
-            case "DIRHAMS":
-            case "MOROCCAN DIRHAM":
-                log.debug("Normalized '{}' to MAD", input);
-                return "MAD";
+        String code = ALIASES.get(normalized);
+        if (code != null) {
+            log.debug("Normalized '{}' to {}", input, code);
+            return code;
+        }
 
-            case "DA":
-            case "DZD":
-            case "DINAR":
-            case "DINARS":
-            case "ALGERIAN DINAR":
-                log.debug("Normalized '{}' to DZD", input);
-                return "DZD";
+        // If it's already a 3-letter code, assume it's valid
+        if (isLetterCode(normalized)) {
+            log.debug("Using existing 3-letter currency code: {}", normalized);
+            return normalized;
+        }
 
-            case "CFA":
-            case "XOF":
-            case "FRANC":
-            case "FRANCS":
-            case "CFA FRANC":
-                log.debug("Normalized '{}' to XOF", input);
-                return "XOF";
+        // For unrecognized inputs, try to extract a valid code
+        if (normalized.contains("USD") || normalized.contains("DOLLAR")) {
+            log.info("Extracted USD from: '{}'", input);
+            return "USD";
+        } else if (normalized.contains("EUR") || normalized.contains("EURO")) {
+            log.info("Extracted EUR from: '{}'", input);
+            return "EUR";
+        } else if (normalized.contains("MAD") || normalized.contains("DIRHAM")) {
+            log.info("Extracted MAD from: '{}'", input);
+            return "MAD";
+        }
 
-            default:
-                // If it's already a 3-letter code, assume it's valid
-                if (normalized.length() == 3 && normalized.matches("[A-Z]{3}")) {
-                    log.debug("Using existing 3-letter currency code: {}", normalized);
-                    return normalized;
-                }
+        // Default to USD for unrecognized inputs
+        log.warn("Unrecognized currency code/symbol: '{}', defaulting to USD", input);
+        return "USD";
+    }
 
-                // For unrecognized inputs, try to extract a valid code
-                if (normalized.contains("USD") || normalized.contains("DOLLAR")) {
-                    log.info("Extracted USD from: '{}'", input);
-                    return "USD";
-                } else if (normalized.contains("EUR") || normalized.contains("EURO")) {
-                    log.info("Extracted EUR from: '{}'", input);
-                    return "EUR";
-                } else if (normalized.contains("MAD") || normalized.contains("DIRHAM")) {
-                    log.info("Extracted MAD from: '{}'", input);
-                    return "MAD";
-                }
+    // Trimmed and upper-cased; codes the AI already returns that way are used as they are
+    private static String canonical(String input) {
+        int length = input.length();
+        if (input.charAt(0) > ' ' && input.charAt(length - 1) > ' ') {
+            boolean upperCase = true;
+            for (int i = 0; i < length && upperCase; i++) {
+                char c = input.charAt(i);
+                upperCase = c < 'a' || c > 'z' && c < 128;
+            }
+            if (upperCase) {
+                return input;
+            }
+        }
+        return input.trim().toUpperCase(Locale.ROOT);
+    }
 
-                // Default to USD for unrecognized inputs
-                log.warn("Unrecognized currency code/symbol: '{}', defaulting to USD", input);
-                return "USD";
+    private static boolean isLetterCode(String code) {
+        if (code.length() != 3) {
+            return false;
+        }
+        for (int i = 0; i < 3; i++) {
+            char c = code.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return false;
+            }
         }
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package com.pacioli.core.utils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 64-bit difference hash (dHash) of a page image: the luminance of the page averaged over a 9x8 grid,
+ * one bit per pair of horizontally adjacent cells, set when the left one is clearly brighter.
+ * Rescaling, recompression, a new scan or a photo of the same page change few bits, so copies of a
+ * document that differ in bytes are found by Hamming distance. Pages laid out alike (invoices of one
+ * supplier template) hash alike too, whatever their values: a close hash only makes a candidate.
+ */
+public final class PerceptualHash {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    // Two luma levels out of 255, in luminance() units
+    private static final double MIN_DIFFERENCE = 2 * 1000;
+
+    private PerceptualHash() {
+    }
+
+    public static long of(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long[] sums = new long[GRID_WIDTH * GRID_HEIGHT];
+        long[] counts = new long[GRID_WIDTH * GRID_HEIGHT];
+
+        // Box average of every pixel, one row at a time
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = (int) ((long) y * GRID_HEIGHT / height) * GRID_WIDTH;
+            for (int x = 0; x < width; x++) {
+                int cell = cellRow + (int) ((long) x * GRID_WIDTH / width);
+                sums[cell] += luminance(row[x]);
+                counts[cell]++;
+            }
+        }
+
+        double[] means = new double[sums.length];
+        for (int cell = 0; cell < sums.length; cell++) {
+            means[cell] = counts[cell] == 0 ? 0 : (double) sums[cell] / counts[cell];
+        }
+
+        long hash = 0;
+        for (int cellY = 0; cellY < GRID_HEIGHT; cellY++) {
+            for (int cellX = 0; cellX < GRID_WIDTH - 1; cellX++) {
+                int left = cellY * GRID_WIDTH + cellX;
+                // Blank areas of a page are only apart by noise: they must give 0, not a random bit
+                boolean brighter = means[left] - means[left + 1] > MIN_DIFFERENCE;
+                hash = hash << 1 | (brighter ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    // ITU-R BT.601 luma, in [0, 255000]
+    private static int luminance(int rgb) {
+        return ((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114;
+    }
+}
@@ -0,0 +1,54 @@
+package com.pacioli.core.batches;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FairShareSelectorTest {
+
+    @Test
+    void smallCabinetIsServedDespiteBulkUpload() {
+        List<FairShareSelector.Candidate> candidates = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            candidates.add(new FairShareSelector.Candidate(i, 1L, 10L));
+        }
+        candidates.add(new FairShareSelector.Candidate(100L, 2L, 20L));
+
+        List<Long> selected = FairShareSelector.select(candidates, 4, id -> 1, id -> Integer.MAX_VALUE);
+
+        assertThat(selected).containsExactly(1L, 100L, 2L, 3L);
+    }
+
+    @Test
+    void roundRobinsDossiersAndAppliesWeights() {
+        List<FairShareSelector.Candidate> candidates = List.of(
+                new FairShareSelector.Candidate(1L, 1L, 10L),
+                new FairShareSelector.Candidate(2L, 1L, 10L),
+                new FairShareSelector.Candidate(3L, 1L, 11L),
+                new FairShareSelector.Candidate(4L, 2L, 20L),
+                new FairShareSelector.Candidate(5L, 2L, 20L));
+        Map<Long, Integer> weights = Map.of(1L, 2);
+
+        List<Long> selected = FairShareSelector.select(candidates, 5,
+                id -> weights.getOrDefault(id, 1), id -> Integer.MAX_VALUE);
+
+        assertThat(selected).containsExactly(1L, 3L, 4L, 2L, 5L);
+    }
+
+    @Test
+    void stopsServingCabinetAtItsCap() {
+        List<FairShareSelector.Candidate> candidates = List.of(
+                new FairShareSelector.Candidate(1L, 1L, 10L),
+                new FairShareSelector.Candidate(2L, 1L, 10L),
+                new FairShareSelector.Candidate(3L, 1L, 10L),
+                new FairShareSelector.Candidate(4L, 2L, 20L));
+
+        List<Long> selected = FairShareSelector.select(candidates, 10, id -> 1, id -> id == 1L ? 1 : 0);
+
+        assertThat(selected).containsExactly(1L);
+    }
+}
@@ -0,0 +1,52 @@
+package com.pacioli.core.batches;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LaneAllocatorTest {
+
+    private static final Map<PieceLane, Integer> WEIGHTS = Map.of(
+            PieceLane.NEW, 4, PieceLane.RETRY, 2, PieceLane.RECOVERED, 1, PieceLane.BANK, 2);
+    private static final Map<PieceLane, Double> MIN_SHARES = Map.of(
+            PieceLane.NEW, 0.25, PieceLane.RETRY, 0.15, PieceLane.RECOVERED, 0.1, PieceLane.BANK, 0.15);
+
+    @Test
+    void recoveredPiecesGetTheirShareUnderUploadLoad() {
+        Map<PieceLane, Integer> quota = LaneAllocator.allocate(20,
+                demand(1000, 0, 5, 0), WEIGHTS, MIN_SHARES);
+
+        assertThat(quota.get(PieceLane.RECOVERED)).isGreaterThanOrEqualTo(2);
+        assertThat(quota.get(PieceLane.NEW) + quota.get(PieceLane.RECOVERED)).isEqualTo(20);
+    }
+
+    @Test
+    void splitsByWeightWhenEveryLaneIsBusy() {
+        Map<PieceLane, Integer> quota = LaneAllocator.allocate(10,
+                demand(100, 100, 100, 0), WEIGHTS, MIN_SHARES);
+
+        assertThat(quota).containsEntry(PieceLane.NEW, 6)
+                .containsEntry(PieceLane.RETRY, 2)
+                .containsEntry(PieceLane.RECOVERED, 2);
+    }
+
+    @Test
+    void givesUnusedSlotsToOtherLanes() {
+        Map<PieceLane, Integer> quota = LaneAllocator.allocate(10,
+                demand(2, 100, 0, 0), WEIGHTS, MIN_SHARES);
+
+        assertThat(quota).containsEntry(PieceLane.NEW, 2).containsEntry(PieceLane.RETRY, 8);
+    }
+
+    private static Map<PieceLane, Integer> demand(int fresh, int retry, int recovered, int bank) {
+        Map<PieceLane, Integer> demand = new EnumMap<>(PieceLane.class);
+        if (fresh > 0) demand.put(PieceLane.NEW, fresh);
+        if (retry > 0) demand.put(PieceLane.RETRY, retry);
+        if (recovered > 0) demand.put(PieceLane.RECOVERED, recovered);
+        if (bank > 0) demand.put(PieceLane.BANK, bank);
+        return demand;
+    }
+}
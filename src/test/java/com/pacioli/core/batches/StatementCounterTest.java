@@ -0,0 +1,67 @@
+package com.pacioli.core.batches;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatementCounterTest {
+
+    private final StatementCounter inspector = new StatementCounter();
+
+    @Test
+    void countsStatementsByKindInsideScope() {
+        try (StatementCounter.Scope scope = StatementCounter.open()) {
+            inspector.inspect("select p1_0.id from piece p1_0 where p1_0.id=?");
+            inspector.inspect("  insert into ecriture (id) values (?)");
+            inspector.inspect("insert into line (id) values (?)");
+            inspector.inspect("UPDATE piece SET status = ? WHERE id = ? AND status_version = ?");
+            inspector.inspect("delete from line where ecriture_id in (select id from ecriture where piece_id=?)");
+
+            assertThat(scope.getSelects()).isEqualTo(1);
+            assertThat(scope.getInserts()).isEqualTo(2);
+            assertThat(scope.getUpdates()).isEqualTo(1);
+            assertThat(scope.getDeletes()).isEqualTo(1);
+            assertThat(scope.getFixedCost()).isEqualTo(3);
+            assertThat(scope.getTotal()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void sequenceFetchesAreNotPartOfTheFixedCost() {
+        try (StatementCounter.Scope scope = StatementCounter.open()) {
+            inspector.inspect("select nextval('line_seq')");
+            inspector.inspect("select next value for ecriture_seq");
+            inspector.inspect("select e1_0.id from ecriture e1_0 where e1_0.piece_id=?");
+
+            assertThat(scope.getSequences()).isEqualTo(2);
+            assertThat(scope.getSelects()).isEqualTo(1);
+            assertThat(scope.getFixedCost()).isEqualTo(1);
+            assertThat(scope.getTotal()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void nestedScopesCountForTheOuterOneAndNothingIsCountedOutside() {
+        inspector.inspect("select 1");
+
+        try (StatementCounter.Scope outer = StatementCounter.open()) {
+            try (StatementCounter.Scope inner = StatementCounter.open()) {
+                inspector.inspect("select 1");
+                assertThat(inner.getSelects()).isEqualTo(1);
+            }
+            inspector.inspect("update piece set status = ?");
+
+            assertThat(outer.getSelects()).isEqualTo(1);
+            assertThat(outer.getUpdates()).isEqualTo(1);
+        }
+
+        try (StatementCounter.Scope after = StatementCounter.open()) {
+            assertThat(after.getTotal()).isZero();
+        }
+    }
+
+    @Test
+    void returnsTheStatementUnchanged() {
+        assertThat(inspector.inspect("select 1")).isEqualTo("select 1");
+    }
+}
@@ -0,0 +1,58 @@
+package com.pacioli.core.batches.processors.normalizers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BankStatementStreamReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BankStatementStreamReader reader = new BankStatementStreamReader(objectMapper);
+
+    @Test
+    void readsGroupsFromFencedOutputText() throws IOException {
+        String statement = "```json\n{\"Ecritures\": ["
+                + "{\"entries\": [{\"Date\": \"01/02/2024\", \"EcritLib\": \"Virement \\\"loyer\\\" é\", \"DebitAmt\": \"1200,50\"}]},"
+                + "{\"entries\": [{\"Date\": \"03/02/2024\", \"EcritLib\": \"Frais\", \"DebitAmt\": \"12\"}]}"
+                + "]}\n```";
+        String response = objectMapper.writeValueAsString(
+                objectMapper.createObjectNode().put("inputTokens", 42).put("outputText", statement));
+
+        List<ObjectNode> groups = read(response);
+
+        assertThat(groups).hasSize(2);
+        assertThat(groups.get(0).get("isTransactionGroup").asBoolean()).isTrue();
+        assertThat(groups.get(0).get("Date").asText()).isEqualTo("01/02/2024");
+        assertThat(groups.get(0).get("entries").get(0).get("EcritLib").asText()).isEqualTo("Virement \"loyer\" é");
+        assertThat(groups.get(1).get("entries").get(0).get("DebitAmt").asText()).isEqualTo("12");
+    }
+
+    @Test
+    void readsUnwrappedStatementAndSkipsItemsWithoutEntries() throws IOException {
+        String response = "{\"Ecritures\": [{\"entries\": [{\"Date\": \"01/02/2024\"}]}, {\"Date\": \"02/02/2024\"}]}";
+
+        List<ObjectNode> groups = read(response);
+
+        assertThat(groups).hasSize(1);
+        assertThat(groups.get(0).get("Date").asText()).isEqualTo("01/02/2024");
+    }
+
+    @Test
+    void returnsNothingWithoutEcritures() throws IOException {
+        assertThat(read("{\"outputText\": \"{\\\"other\\\": []}\"}")).isEmpty();
+    }
+
+    private List<ObjectNode> read(String response) throws IOException {
+        List<ObjectNode> groups = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)), groups::add);
+        return groups;
+    }
+}
@@ -0,0 +1,34 @@
+package com.pacioli.core.resilience;
+
+import com.pacioli.core.Exceptions.DependencyUnavailableException;
+import com.pacioli.core.config.http.OutboundDestination;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class AdaptiveConcurrencyLimitersTest {
+
+    @Test
+    void noPermitInTimeMeansTheDependencyIsUnavailableForAWhile() throws InterruptedException {
+        AdaptiveLimiterProperties properties = new AdaptiveLimiterProperties();
+        properties.setInitialLimit(1);
+        properties.setMaxLimit(1);
+        properties.setAcquireTimeoutMs(10);
+        properties.setRetryDelayMs(5000);
+        AdaptiveConcurrencyLimiters limiters = new AdaptiveConcurrencyLimiters(properties, new SimpleMeterRegistry());
+        assertThat(limiters.limiter(OutboundDestination.INVOICE_AI).tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+
+        long before = System.currentTimeMillis();
+        Throwable thrown = catchThrowable(() -> limiters.execute(OutboundDestination.INVOICE_AI, () -> "called"));
+
+        // Parked by the processors like an open circuit, not counted as a failed AI attempt
+        DependencyUnavailableException unavailable = DependencyUnavailableException.find(thrown);
+        assertThat(unavailable).isNotNull();
+        assertThat(unavailable.getDestination()).isEqualTo(OutboundDestination.INVOICE_AI);
+        assertThat(unavailable.getRetryAt().getTime()).isGreaterThanOrEqualTo(before + 5000);
+    }
+}
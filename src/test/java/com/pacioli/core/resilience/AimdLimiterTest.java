@@ -0,0 +1,73 @@
+package com.pacioli.core.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AimdLimiterTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void growsWhileLatencyIsStableAndSaturated() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(4, 1, 50, 0.5, 2.0);
+
+        for (int i = 0; i < 40; i++) {
+            fill(limiter);
+            for (int j = limiter.getInFlight(); j > 0; j--) {
+                limiter.onSuccess(RTT);
+            }
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(4);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void backsOffOnDropAndNeverGoesBelowMin() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(10, 2, 50, 0.5, 2.0);
+
+        assertThat(limiter.tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+        limiter.onDropped();
+        assertThat(limiter.getLimit()).isEqualTo(5);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+            Thread.sleep(2);
+            limiter.onDropped();
+        }
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void backsOffOnLatencySpike() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(10, 1, 50, 0.5, 2.0);
+
+        limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+        limiter.onSuccess(RTT);
+        limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+        limiter.onSuccess(RTT * 5);
+
+        assertThat(limiter.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void refusesPermitsAboveTheLimit() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 50, 0.5, 2.0);
+
+        assertThat(limiter.tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(limiter.tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(limiter.tryAcquire(10, TimeUnit.MILLISECONDS)).isFalse();
+
+        limiter.onIgnored();
+        assertThat(limiter.tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    private static void fill(AimdLimiter limiter) throws InterruptedException {
+        while (limiter.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+            // take every available permit
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.pacioli.core.services.serviceImp;
+
+import com.pacioli.core.DTO.AccountDTO;
+import com.pacioli.core.DTO.EcrituresDTO2;
+import com.pacioli.core.DTO.FactureDataDTO;
+import com.pacioli.core.DTO.JournalDTO;
+import com.pacioli.core.DTO.LineDTO;
+import com.pacioli.core.DTO.PieceDTO;
+import com.pacioli.core.enums.AiSubmissionStatus;
+import com.pacioli.core.enums.PieceStatus;
+import com.pacioli.core.models.Account;
+import com.pacioli.core.models.AiSubmissionOutbox;
+import com.pacioli.core.models.Cabinet;
+import com.pacioli.core.models.Dossier;
+import com.pacioli.core.models.DuplicateFingerprint;
+import com.pacioli.core.models.Journal;
+import com.pacioli.core.models.Piece;
+import com.pacioli.core.repositories.AccountRepository;
+import com.pacioli.core.repositories.AiSubmissionOutboxRepository;
+import com.pacioli.core.repositories.CabinetRepository;
+import com.pacioli.core.repositories.DossierRepository;
+import com.pacioli.core.repositories.DuplicateFingerprintRepository;
+import com.pacioli.core.repositories.JournalRepository;
+import com.pacioli.core.repositories.PieceRepository;
+import com.pacioli.core.services.PieceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Duplicate handling of PieceServiceImpl against an in-memory database.
+ */
+@SpringBootTest
+@TestPropertySource(locations = "classpath:h2.properties")
+class PieceServiceImplDuplicatesTest {
+
+    @Autowired
+    private PieceService pieceService;
+    @Autowired
+    private PieceRepository pieceRepository;
+    @Autowired
+    private AiSubmissionOutboxRepository outboxRepository;
+    @Autowired
+    private CabinetRepository cabinetRepository;
+    @Autowired
+    private DossierRepository dossierRepository;
+    @Autowired
+    private DuplicateFingerprintRepository fingerprintRepository;
+    @Autowired
+    private DuplicateDetectionService duplicateDetectionService;
+    @Autowired
+    private JournalRepository journalRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Dossier dossier;
+
+    @BeforeEach
+    void setUp() {
+        Cabinet cabinet = new Cabinet();
+        cabinet.setName("Cabinet");
+        cabinet = cabinetRepository.save(cabinet);
+
+        dossier = new Dossier();
+        dossier.setCabinet(cabinet);
+        dossier.setName("Dossier " + UUID.randomUUID());
+        dossier = dossierRepository.save(dossier);
+
+        Journal journal = new Journal();
+        journal.setCabinet(cabinet);
+        journal.setDossier(dossier);
+        journal.setName("ACH");
+        journal.setType("Achats");
+        journalRepository.save(journal);
+
+        accountRepository.save(account("441100", "Fournisseurs"));
+        accountRepository.save(account("611000", "Achats de services"));
+    }
+
+    private Account account(String number, String label) {
+        Account account = new Account();
+        account.setAccount(number);
+        account.setLabel(label);
+        account.setDossier(dossier);
+        account.setHasEntries(true);
+        return account;
+    }
+
+    @Test
+    void anInvoiceIsMatchedOnItsDateAndTotalAlone() {
+        LocalDate invoiceDate = LocalDate.of(2024, 3, 14);
+        Piece first = piece(PieceStatus.UPLOADED, null);
+        Piece second = piece(PieceStatus.UPLOADED, null);
+
+        pieceService.saveEcrituresAndFacture(first.getId(), dossier.getId(),
+                result(first, invoiceDate, 1200.0, "14/03/2024", 1000.0));
+        // Booked on another day with other amounts: only the invoice gives it away
+        pieceService.saveEcrituresAndFacture(second.getId(), dossier.getId(),
+                result(second, invoiceDate, 1200.0, "02/04/2024", 350.0));
+
+        List<DuplicateFingerprint> recorded = fingerprintRepository.findAll().stream()
+                .filter(fingerprint -> fingerprint.getPieceId().equals(first.getId()))
+                .toList();
+        assertThat(recorded).anySatisfy(fingerprint -> {
+            assertThat(fingerprint.getKind()).isEqualTo(DuplicateFingerprint.Kind.INVOICE);
+            assertThat(fingerprint.getFingerprintDate()).isEqualTo(invoiceDate);
+            assertThat(fingerprint.getAmountCents()).isEqualTo(120000L);
+        });
+        Piece duplicate = pieceRepository.findById(second.getId()).orElseThrow();
+        assertThat(duplicate.getStatus()).isEqualTo(PieceStatus.DUPLICATE);
+        assertThat(duplicate.getOriginalPiece().getId()).isEqualTo(first.getId());
+    }
+
+    @Test
+    void forcingAHeldCopySendsItsFileWithAFreshRetryBudget() {
+        Piece original = piece(PieceStatus.PROCESSED, null);
+        Piece copy = piece(PieceStatus.DUPLICATE, original);
+        AiSubmissionOutbox held = new AiSubmissionOutbox(copy, "application/pdf", "MA");
+        held.setStatus(AiSubmissionStatus.HELD);
+        outboxRepository.save(held);
+        transactionTemplate.executeWithoutResult(tx -> pieceRepository.scheduleRetry(copy.getId(), 4, new Date()));
+
+        pieceService.forcePieceNotDuplicate(copy.getId());
+
+        Piece forced = pieceRepository.findById(copy.getId()).orElseThrow();
+        assertThat(forced.getStatus()).isEqualTo(PieceStatus.UPLOADED);
+        assertThat(forced.getAttemptCount()).isZero();
+        assertThat(forced.getNextAttemptAt()).isNull();
+        // Released to the dispatcher, which may already have tried it
+        assertThat(outboxRepository.findFirstByPieceIdOrderByIdDesc(copy.getId())).get()
+                .extracting(AiSubmissionOutbox::getStatus).isNotEqualTo(AiSubmissionStatus.HELD);
+    }
+
+    @Test
+    void forcingACopyWithoutSubmissionQueuesOneLikeItsOriginals() {
+        Piece original = piece(PieceStatus.PROCESSED, null);
+        AiSubmissionOutbox sent = new AiSubmissionOutbox(original, "image/png", "MA");
+        sent.setStatus(AiSubmissionStatus.SENT);
+        outboxRepository.save(sent);
+        Piece copy = piece(PieceStatus.DUPLICATE, original);
+
+        pieceService.forcePieceNotDuplicate(copy.getId());
+
+        AiSubmissionOutbox queued = outboxRepository.findFirstByPieceIdOrderByIdDesc(copy.getId()).orElseThrow();
+        assertThat(queued.getFilename()).isEqualTo(copy.getFilename());
+        assertThat(queued.getContentType()).isEqualTo("image/png");
+        assertThat(queued.getCountry()).isEqualTo("MA");
+    }
+
+    @Test
+    void aLookAlikeBehindPiecesDeletedSinceIndexingIsStillFound() {
+        long hash = 0x5A5A_A5A5_5A5A_A5A5L;
+        List<Piece> deleted = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            deleted.add(pieceWithHash(hash));
+        }
+        Piece lookAlike = pieceWithHash(hash ^ 1);
+        assertThat(duplicateDetectionService.findNearDuplicateCandidate(dossier.getId(), hash)).isPresent();
+
+        pieceRepository.deleteAll(deleted);
+
+        assertThat(duplicateDetectionService.findNearDuplicateCandidate(dossier.getId(), hash)).get()
+                .extracting(Piece::getId).isEqualTo(lookAlike.getId());
+    }
+
+    private Piece pieceWithHash(long perceptualHash) {
+        Piece piece = new Piece();
+        piece.setDossier(dossier);
+        String name = UUID.randomUUID() + ".pdf";
+        piece.setFilename(name);
+        piece.setOriginalFileName(name);
+        piece.setType("Achats");
+        piece.setUploadDate(new Date());
+        piece.setStatus(PieceStatus.PROCESSED);
+        piece.setPerceptualHash(perceptualHash);
+        return pieceRepository.save(piece);
+    }
+
+    private Piece piece(PieceStatus status, Piece original) {
+        Piece piece = new Piece();
+        piece.setDossier(dossier);
+        String name = UUID.randomUUID() + ".pdf";
+        piece.setFilename(name);
+        piece.setOriginalFileName(name);
+        piece.setType("Achats");
+        piece.setUploadDate(new Date());
+        piece.setStatus(status);
+        piece.setIsDuplicate(original != null);
+        piece.setOriginalPiece(original);
+        return pieceRepository.save(piece);
+    }
+
+    private PieceDTO result(Piece piece, LocalDate invoiceDate, double totalTTC, String entryDate, double amount) {
+        PieceDTO result = new PieceDTO();
+        result.setId(piece.getId());
+        result.setFilename(piece.getFilename());
+        result.setUploadDate(piece.getUploadDate());
+        result.setDossierId(dossier.getId());
+
+        FactureDataDTO factureData = new FactureDataDTO();
+        factureData.setInvoiceNumber("FA-" + piece.getId());
+        factureData.setInvoiceDate(Date.from(invoiceDate.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        factureData.setTotalTTC(totalTTC);
+        factureData.setDevise("MAD");
+        result.setFactureData(factureData);
+
+        EcrituresDTO2 ecriture = new EcrituresDTO2();
+        ecriture.setUniqueEntryNumber(UUID.randomUUID().toString());
+        ecriture.setEntryDate(entryDate);
+        JournalDTO journal = new JournalDTO();
+        journal.setName("ACH");
+        journal.setType("Achats");
+        ecriture.setJournal(journal);
+        ecriture.setLines(List.of(line("441100", "Fournisseurs", 0.0, amount),
+                line("611000", "Achats de services", amount, 0.0)));
+        result.setEcritures(List.of(ecriture));
+        return result;
+    }
+
+    private LineDTO line(String number, String label, double debit, double credit) {
+        LineDTO line = new LineDTO();
+        line.setLabel(label);
+        line.setDebit(debit);
+        line.setCredit(credit);
+        line.setOriginalCurrency("MAD");
+        line.setConvertedCurrency("MAD");
+        AccountDTO account = new AccountDTO();
+        account.setAccount(number);
+        account.setLabel(label);
+        line.setAccount(account);
+        return line;
+    }
+}
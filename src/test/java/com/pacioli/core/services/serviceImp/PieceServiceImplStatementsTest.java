@@ -0,0 +1,192 @@
+package com.pacioli.core.services.serviceImp;
+
+import com.pacioli.core.DTO.AccountDTO;
+import com.pacioli.core.DTO.EcrituresDTO2;
+import com.pacioli.core.DTO.FactureDataDTO;
+import com.pacioli.core.DTO.JournalDTO;
+import com.pacioli.core.DTO.LineDTO;
+import com.pacioli.core.DTO.PieceDTO;
+import com.pacioli.core.batches.StatementCounter;
+import com.pacioli.core.config.batch.BatchProcessingConfig;
+import com.pacioli.core.enums.PieceStatus;
+import com.pacioli.core.models.Account;
+import com.pacioli.core.models.Cabinet;
+import com.pacioli.core.models.Dossier;
+import com.pacioli.core.models.Journal;
+import com.pacioli.core.models.Piece;
+import com.pacioli.core.repositories.AccountRepository;
+import com.pacioli.core.repositories.CabinetRepository;
+import com.pacioli.core.repositories.DossierRepository;
+import com.pacioli.core.repositories.EcritureRepository;
+import com.pacioli.core.repositories.JournalRepository;
+import com.pacioli.core.repositories.PieceRepository;
+import com.pacioli.core.services.PieceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Statements run to persist an AI result, against an in-memory database: they must stay within
+ * batch.processing.max-statements-per-piece, and not grow with the number of ecritures.
+ */
+@SpringBootTest
+@TestPropertySource(locations = "classpath:h2.properties")
+class PieceServiceImplStatementsTest {
+
+    @Autowired
+    private PieceService pieceService;
+    @Autowired
+    private PieceRepository pieceRepository;
+    @Autowired
+    private EcritureRepository ecritureRepository;
+    @Autowired
+    private CabinetRepository cabinetRepository;
+    @Autowired
+    private DossierRepository dossierRepository;
+    @Autowired
+    private JournalRepository journalRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private BatchProcessingConfig batchConfig;
+
+    private Dossier dossier;
+
+    @BeforeEach
+    void setUp() {
+        Cabinet cabinet = new Cabinet();
+        cabinet.setName("Cabinet");
+        cabinet = cabinetRepository.save(cabinet);
+
+        dossier = new Dossier();
+        dossier.setCabinet(cabinet);
+        dossier.setName("Dossier " + UUID.randomUUID());
+        dossier = dossierRepository.save(dossier);
+
+        Journal journal = new Journal();
+        journal.setCabinet(cabinet);
+        journal.setDossier(dossier);
+        journal.setName("ACH");
+        journal.setType("Achats");
+        journalRepository.save(journal);
+
+        accountRepository.save(account("441100", "Fournisseurs"));
+        accountRepository.save(account("611000", "Achats de services"));
+    }
+
+    private Account account(String number, String label) {
+        Account account = new Account();
+        account.setAccount(number);
+        account.setLabel(label);
+        account.setDossier(dossier);
+        account.setHasEntries(true);
+        return account;
+    }
+
+    @Test
+    void anInvoiceStaysWithinTheStatementBudget() {
+        Piece piece = uploadedPiece();
+
+        StatementCounter.Scope statements = persist(piece, buildResult(piece, 1));
+
+        assertThat(pieceRepository.findById(piece.getId())).get()
+                .extracting(Piece::getStatus).isEqualTo(PieceStatus.PROCESSED);
+        assertThat(statements.getFixedCost()).isLessThanOrEqualTo(batchConfig.getMaxStatementsPerPiece());
+    }
+
+    @Test
+    void theFixedCostDoesNotGrowWithTheEcritures() {
+        Piece first = uploadedPiece();
+        Piece small = uploadedPiece();
+        Piece large = uploadedPiece();
+        // Loads the accounts and journals of the dossier into the reference cache
+        persist(first, buildResult(first, 1));
+
+        StatementCounter.Scope one = persist(small, buildResult(small, 1));
+        StatementCounter.Scope many = persist(large, buildResult(large, 40));
+
+        assertThat(ecritureRepository.existsByPieceId(large.getId())).isTrue();
+        assertThat(many.getFixedCost()).isEqualTo(one.getFixedCost());
+        assertThat(many.getInserts()).isGreaterThan(one.getInserts());
+    }
+
+    private StatementCounter.Scope persist(Piece piece, PieceDTO result) {
+        try (StatementCounter.Scope statements = StatementCounter.open()) {
+            pieceService.saveEcrituresAndFacture(piece.getId(), dossier.getId(), result);
+            return statements;
+        }
+    }
+
+    private Piece uploadedPiece() {
+        Piece piece = new Piece();
+        piece.setDossier(dossier);
+        String name = UUID.randomUUID() + ".pdf";
+        piece.setFilename(name);
+        piece.setOriginalFileName(name);
+        piece.setType("Achats");
+        piece.setUploadDate(new Date());
+        piece.setStatus(PieceStatus.UPLOADED);
+        return pieceRepository.save(piece);
+    }
+
+    private PieceDTO buildResult(Piece piece, int ecritureCount) {
+        PieceDTO result = new PieceDTO();
+        result.setId(piece.getId());
+        result.setFilename(piece.getFilename());
+        result.setUploadDate(piece.getUploadDate());
+        result.setDossierId(dossier.getId());
+
+        FactureDataDTO factureData = new FactureDataDTO();
+        // Distinct per piece, so the two pieces of a test are not duplicates of each other
+        factureData.setInvoiceNumber("FA-" + piece.getId());
+        factureData.setInvoiceDate(new Date());
+        factureData.setTotalTTC(1200.0 + piece.getId());
+        factureData.setTotalHT(1000.0);
+        factureData.setTotalTVA(200.0);
+        factureData.setTaxRate(20.0);
+        factureData.setDevise("MAD");
+        result.setFactureData(factureData);
+
+        List<EcrituresDTO2> ecritures = new ArrayList<>(ecritureCount);
+        for (int i = 0; i < ecritureCount; i++) {
+            EcrituresDTO2 ecriture = new EcrituresDTO2();
+            ecriture.setUniqueEntryNumber(UUID.randomUUID().toString());
+            ecriture.setEntryDate("14/03/2024");
+            JournalDTO journal = new JournalDTO();
+            journal.setName("ACH");
+            journal.setType("Achats");
+            ecriture.setJournal(journal);
+
+            List<LineDTO> lines = new ArrayList<>(2);
+            for (int j = 0; j < 2; j++) {
+                LineDTO line = new LineDTO();
+                line.setLabel("Prestation de services " + i + "-" + j);
+                double amount = 100.0 + piece.getId() + i;
+                line.setDebit(j == 0 ? 0.0 : amount);
+                line.setCredit(j == 0 ? amount : 0.0);
+                line.setOriginalCurrency("MAD");
+                line.setConvertedCurrency("MAD");
+                line.setExchangeRateDate(LocalDate.of(2024, 3, 14));
+                AccountDTO account = new AccountDTO();
+                account.setAccount(j == 0 ? "441100" : "611000");
+                account.setLabel(j == 0 ? "Fournisseurs" : "Achats de services");
+                line.setAccount(account);
+                lines.add(line);
+            }
+            ecriture.setLines(lines);
+            ecritures.add(ecriture);
+        }
+        result.setEcritures(ecritures);
+        return result;
+    }
+}
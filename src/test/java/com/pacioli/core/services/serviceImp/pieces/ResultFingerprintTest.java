@@ -0,0 +1,24 @@
+package com.pacioli.core.services.serviceImp.pieces;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultFingerprintTest {
+
+    @Test
+    void sameContentGivesSameFingerprint() {
+        String first = ResultFingerprint.start().update("{\"a\":1}").update("[1,2]").finish();
+        String second = ResultFingerprint.start().update("{\"a\":1}").update("[1,2]").finish();
+
+        assertThat(first).isEqualTo(second).hasSize(64);
+    }
+
+    @Test
+    void partsCannotBeShiftedIntoOneAnother() {
+        String first = ResultFingerprint.start().update("ab").update("c").finish();
+        String second = ResultFingerprint.start().update("a").update("bc").finish();
+
+        assertThat(first).isNotEqualTo(second);
+    }
+}
@@ -0,0 +1,108 @@
+package com.pacioli.core.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AiValueParsersTest {
+
+    // The formatters BaseAIProcessor tried one after the other
+    private static final List<DateTimeFormatter> LEGACY_FORMATTERS = List.of(
+            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"),
+            DateTimeFormatter.ofPattern("yyyy-MM-d"),
+            DateTimeFormatter.ofPattern("yyyy-M-dd"),
+            DateTimeFormatter.ofPattern("yyyy-M-d"),
+            DateTimeFormatter.ofPattern("yyyy-dd-MM")
+    );
+
+    private static LocalDate legacyParseDate(String text) {
+        for (DateTimeFormatter formatter : LEGACY_FORMATTERS) {
+            try {
+                return LocalDate.parse(text.trim(), formatter);
+            } catch (DateTimeParseException ignored) {
+                // next formatter
+            }
+        }
+        return null;
+    }
+
+    private static double legacyParseAmount(String text) {
+        if (text.trim().isEmpty()) {
+            return 0.0;
+        }
+        try {
+            return Double.parseDouble(text.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    @Test
+    void datesMatchTheFormatterList() {
+        String[] fields = {"0", "1", "3", "9", "00", "01", "02", "09", "12", "13", "14", "28", "29", "30", "31", "32",
+                "003", "2023", "2024", "0000", "0001", "20245"};
+        for (String separator : new String[]{"/", "-", "."}) {
+            for (String first : fields) {
+                for (String second : fields) {
+                    for (String third : fields) {
+                        String text = first + separator + second + separator + third;
+                        assertThat(AiValueParsers.parseDate(text)).as(text).isEqualTo(legacyParseDate(text));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void unparseableDatesGiveNull() {
+        for (String text : new String[]{"", "  ", "14/03", "14/03/2024/1", "14/03-2024", "2024/03/14", "14 mars 2024",
+                "2024-03-14T10:00", "-2024-03-14"}) {
+            assertThat(AiValueParsers.parseDate(text)).as(text).isNull();
+            assertThat(legacyParseDate(text)).as(text).isNull();
+        }
+        assertThat(AiValueParsers.parseDate(" 14/03/2024 ")).isEqualTo(LocalDate.of(2024, 3, 14));
+    }
+
+    @Test
+    void amountsMatchDoubleParsing() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String integer = Long.toString(random.nextLong() >>> random.nextInt(64));
+            String text = (random.nextBoolean() ? "" : "-") + integer
+                    + (random.nextBoolean() ? (random.nextBoolean() ? "," : ".") + random.nextInt(1_000_000) : "");
+            assertThat(AiValueParsers.parseAmount(text, 0.0)).as(text).isEqualTo(legacyParseAmount(text));
+        }
+        for (String text : new String[]{"", " ", "0", "-0", "+1.5", " 8100,00 ", ".5", "5.", ",", "-", "1e3", "1,5e-2",
+                "Infinity", "8 100,00", "1.234,56", "12a", "0x10", "1.5d", "0.1000000000000000055511151231257827"}) {
+            assertThat(AiValueParsers.parseAmount(text, 0.0)).as(text).isEqualTo(legacyParseAmount(text));
+        }
+    }
+
+    @Test
+    void exactAmountsKeepTheirScale() {
+        ObjectNode entry = new ObjectMapper().createObjectNode()
+                .put("DebitAmt", "14520,00")
+                .put("CreditAmt", "abc")
+                .put("Rate", 10.85)
+                .putNull("Empty");
+
+        assertThat(AiValueParsers.parseExactAmount(entry, "DebitAmt")).isEqualTo(new BigDecimal("14520.00"));
+        assertThat(AiValueParsers.parseExactAmount(entry, "CreditAmt")).isNull();
+        assertThat(AiValueParsers.parseExactAmount(entry, "Rate")).isEqualByComparingTo("10.85");
+        assertThat(AiValueParsers.parseExactAmount(entry, "Empty")).isEqualTo(BigDecimal.ZERO);
+        assertThat(AiValueParsers.parseExactAmount(entry, "Missing")).isEqualTo(BigDecimal.ZERO);
+        assertThat(AiValueParsers.parseAmount(entry, "DebitAmt")).isEqualTo(14520.0);
+        assertThat(AiValueParsers.parseAmount(entry, "CreditAmt")).isZero();
+    }
+}
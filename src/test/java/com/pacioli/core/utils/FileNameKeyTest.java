@@ -0,0 +1,28 @@
+package com.pacioli.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileNameKeyTest {
+
+    @Test
+    void copiesOfAFileShareItsKey() {
+        assertThat(FileNameKey.of("Facture_Atlas.pdf")).isEqualTo("facture_atlas");
+        assertThat(FileNameKey.of("Facture_Atlas_copy.pdf")).isEqualTo("facture_atlas");
+        assertThat(FileNameKey.of("FACTURE_ATLAS_FINAL.PDF")).isEqualTo("facture_atlas");
+        assertThat(FileNameKey.of("Facture_Atlas(2).png")).isEqualTo("facture_atlas");
+        assertThat(FileNameKey.of("Facture_Atlas - Copy.pdf")).isEqualTo("facture_atlas");
+        assertThat(FileNameKey.of("Facture_Atlas 3.pdf")).isEqualTo("facture_atlas");
+    }
+
+    @Test
+    void removesOnlyOneSuffixAndTheLastNumber() {
+        assertThat(FileNameKey.of("releve_v2_copy.pdf")).isEqualTo("releve_v");
+        assertThat(FileNameKey.of("scan 12 34 .jpg")).isEqualTo("scan 12");
+        assertThat(FileNameKey.of("archive.2024.03.pdf")).isEqualTo("archive.2024.");
+        assertThat(FileNameKey.of("2024.pdf")).isEmpty();
+        assertThat(FileNameKey.of("sans extension")).isEqualTo("sans extension");
+        assertThat(FileNameKey.of(null)).isNull();
+    }
+}
@@ -0,0 +1,162 @@
+package com.pacioli.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PerceptualHashTest {
+
+    // An A4 page at 72 DPI with a logo, a header block and a table of lines
+    private static BufferedImage page(int logoX, int tableRows) {
+        BufferedImage image = new BufferedImage(595, 842, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 595, 842);
+        g.setColor(new Color(30, 60, 140));
+        g.fillRect(logoX, 40, 160, 70);
+        g.setColor(Color.BLACK);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 28));
+        g.drawString("FACTURE FA-2024-0042", 300, 90);
+        g.fillRect(40, 180, 515, 4);
+        for (int i = 0; i < tableRows; i++) {
+            g.fillRect(40, 220 + i * 40, 300, 14);
+            g.fillRect(450, 220 + i * 40, 105, 14);
+        }
+        g.dispose();
+        return image;
+    }
+
+    // The same supplier template filled in with another invoice's number and amounts
+    private static BufferedImage invoice(String number, String... amounts) {
+        BufferedImage image = page(40, 0);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.fillRect(300, 60, 295, 40);
+        g.setColor(Color.BLACK);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 28));
+        g.drawString("FACTURE " + number, 300, 90);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+        for (int i = 0; i < amounts.length; i++) {
+            g.drawString("Prestation de services, lot " + (i + 1), 40, 232 + i * 40);
+            g.drawString(amounts[i], 470, 232 + i * 40);
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage rescanned(BufferedImage page) throws IOException {
+        // Smaller, slightly darker, with sensor noise, through a lossy format
+        BufferedImage scan = new BufferedImage(420, 594, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scan.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(page, 0, 0, 420, 594, null);
+        g.dispose();
+        Random random = new Random(7);
+        for (int y = 0; y < scan.getHeight(); y++) {
+            for (int x = 0; x < scan.getWidth(); x++) {
+                int rgb = scan.getRGB(x, y);
+                int shift = -20 + random.nextInt(11);
+                int r = clamp(((rgb >> 16) & 0xFF) + shift);
+                int gr = clamp(((rgb >> 8) & 0xFF) + shift);
+                int b = clamp((rgb & 0xFF) + shift);
+                scan.setRGB(x, y, r << 16 | gr << 8 | b);
+            }
+        }
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(scan, "jpg", jpeg);
+        return ImageIO.read(new ByteArrayInputStream(jpeg.toByteArray()));
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    @Test
+    void aRescannedPageStaysClose() throws IOException {
+        BufferedImage original = page(40, 10);
+        long hash = PerceptualHash.of(original);
+
+        assertThat(PerceptualHash.of(page(40, 10))).isEqualTo(hash);
+        assertThat(PerceptualHash.distance(hash, PerceptualHash.of(rescanned(original)))).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void aDifferentLayoutIsFar() {
+        long hash = PerceptualHash.of(page(40, 10));
+
+        assertThat(PerceptualHash.distance(hash, PerceptualHash.of(page(400, 3)))).isGreaterThan(10);
+    }
+
+    @Test
+    void anotherInvoiceOfTheSameTemplateIsAsClose() {
+        long hash = PerceptualHash.of(invoice("FA-2024-0042", "1 200,00", "350,00", "84,50", "1 634,50"));
+        long other = PerceptualHash.of(invoice("FA-2024-0107", "980,00", "1 415,20", "62,00", "2 457,20"));
+
+        // Within the default max distance: the hash alone cannot tell them from a rescan, so a match
+        // is only a candidate for the fingerprints of the AI result to confirm
+        assertThat(PerceptualHash.distance(hash, other)).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void bkTreeFindsWhatALinearScanFinds() {
+        Random random = new Random(42);
+        HammingBkTree tree = new HammingBkTree();
+        long[] hashes = new long[5_000];
+        for (int i = 0; i < hashes.length; i++) {
+            // Clusters of near-identical hashes, like copies of the same pages
+            hashes[i] = i % 5 == 0 ? random.nextLong() : hashes[i - 1] ^ (1L << random.nextInt(64));
+            tree.add(hashes[i], i);
+        }
+        assertThat(tree.size()).isEqualTo(hashes.length);
+
+        for (int q = 0; q < 200; q++) {
+            long query = q % 2 == 0 ? hashes[random.nextInt(hashes.length)] ^ (1L << random.nextInt(64)) : random.nextLong();
+            int maxDistance = q % 9;
+            List<HammingBkTree.Match> matches = tree.search(query, maxDistance);
+
+            long expected = 0;
+            for (int i = 0; i < hashes.length; i++) {
+                if (PerceptualHash.distance(query, hashes[i]) <= maxDistance) {
+                    expected++;
+                }
+            }
+            assertThat(matches).hasSize((int) expected);
+            assertThat(matches).allSatisfy(m -> assertThat(m.distance())
+                    .isEqualTo(PerceptualHash.distance(query, hashes[(int) m.id()])).isLessThanOrEqualTo(maxDistance));
+            assertThat(matches).isSortedAccordingTo((a, b) -> a.distance() != b.distance()
+                    ? Integer.compare(a.distance(), b.distance()) : Long.compare(a.id(), b.id()));
+        }
+    }
+
+    @Test
+    void bkTreeNoLongerFindsARemovedEntry() {
+        HammingBkTree tree = new HammingBkTree();
+        long hash = 0x0F0F_F0F0_0F0F_F0F0L;
+        tree.add(hash, 1);
+        tree.add(hash, 2);
+        tree.add(hash ^ 0b11, 3);
+        tree.add(hash ^ 0b111, 4);
+
+        assertThat(tree.remove(hash, 1)).isTrue();
+        assertThat(tree.remove(hash ^ 0b11, 3)).isTrue();
+        assertThat(tree.remove(hash ^ 0b11, 3)).isFalse();
+        assertThat(tree.remove(hash, 4)).isFalse();
+
+        assertThat(tree.size()).isEqualTo(2);
+        // The node of a removed entry still leads to the entries below it
+        assertThat(tree.search(hash, 3)).extracting(HammingBkTree.Match::id).containsExactly(2L, 4L);
+    }
+}